@@ -0,0 +1,92 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Rnd;
+
+/**
+ * Fixed data sets shared by benchmarks. Everything is generated from default {@link Rnd} seed, so every run
+ * and every commit measures the same data.
+ */
+final class BenchmarkData {
+    // 2016-01-01T00:00:00.000Z
+    static final long START_TIMESTAMP = 1451606400000L;
+    static final int SYMBOL_COUNT = 1000;
+
+    private BenchmarkData() {
+    }
+
+    static JournalStructure trades(String name) {
+        return new JournalStructure(name)
+                .$sym("sym").valueCountHint(SYMBOL_COUNT).index()
+                .$double("price")
+                .$int("qty")
+                .$long("id")
+                .$str("note")
+                .$ts()
+                .partitionBy(PartitionBy.DAY)
+                .$();
+    }
+
+    static String[] symbols(Rnd rnd) {
+        String[] symbols = new String[SYMBOL_COUNT];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = rnd.nextString(4);
+        }
+        return symbols;
+    }
+
+    static void createTrades(JournalFactory factory, String name, int count) throws JournalException {
+        try (JournalWriter w = factory.writer(trades(name))) {
+            appendTrades(w, new Rnd(), count);
+            w.commit();
+        }
+    }
+
+    /**
+     * Appends rows one second apart starting from {@link #START_TIMESTAMP}.
+     */
+    static void appendTrades(JournalWriter w, Rnd rnd, int count) throws JournalException {
+        String[] symbols = symbols(rnd);
+        long t = START_TIMESTAMP;
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(t);
+            ew.putSym(0, symbols[rnd.nextPositiveInt() % symbols.length]);
+            ew.putDouble(1, rnd.nextDouble());
+            ew.putInt(2, rnd.nextPositiveInt() % 10000);
+            ew.putLong(3, rnd.nextLong());
+            ew.putStr(4, rnd.nextChars(16));
+            ew.putDate(5, t);
+            ew.append();
+            t += 1000;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.io.parser.DelimitedTextParser;
+import com.questdb.io.parser.listener.Listener;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.DirectByteCharSequence;
+import com.questdb.std.ObjList;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses CSV text that is already in memory, the way import handler feeds parser with chunks of
+ * uploaded file. Score is lines per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DelimitedTextParserBenchmark {
+    private static final int LINES = 200000;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private final DelimitedTextParser parser = new DelimitedTextParser();
+    private final CountingListener listener = new CountingListener();
+    private long address;
+    private long len;
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int parse() {
+        parser.of(',');
+        parser.setHeader(false);
+        listener.count = 0;
+        for (long p = 0; p < len; p += CHUNK_SIZE) {
+            parser.parse(address + p, Math.min(CHUNK_SIZE, len - p), Integer.MAX_VALUE, listener);
+        }
+        parser.parseLast();
+        return listener.count;
+    }
+
+    @Setup
+    public void setUp() {
+        Rnd rnd = new Rnd();
+        String[] symbols = BenchmarkData.symbols(rnd);
+        StringBuilder b = new StringBuilder();
+        long t = BenchmarkData.START_TIMESTAMP;
+        for (int i = 0; i < LINES; i++) {
+            b.append(symbols[rnd.nextPositiveInt() % symbols.length]).append(',');
+            b.append(rnd.nextDouble()).append(',');
+            b.append(rnd.nextPositiveInt() % 10000).append(',');
+            // every tenth note is quoted and has delimiter inside
+            if (i % 10 == 0) {
+                b.append('"').append(rnd.nextChars(8)).append(',').append(rnd.nextChars(8)).append('"');
+            } else {
+                b.append(rnd.nextChars(16));
+            }
+            b.append(',').append(t).append('\n');
+            t += 1000;
+        }
+
+        byte[] bytes = b.toString().getBytes(StandardCharsets.UTF_8);
+        len = bytes.length;
+        address = Unsafe.malloc(len);
+        for (int i = 0; i < bytes.length; i++) {
+            Unsafe.getUnsafe().putByte(address + i, bytes[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Unsafe.free(address, len);
+        parser.close();
+    }
+
+    private static class CountingListener implements Listener {
+        private int count;
+
+        @Override
+        public void onError(int line) {
+        }
+
+        @Override
+        public void onFieldCount(int count) {
+        }
+
+        @Override
+        public void onFields(int line, ObjList<DirectByteCharSequence> fields, int hi) {
+            count++;
+        }
+
+        @Override
+        public void onHeader(ObjList<DirectByteCharSequence> fields, int hi) {
+        }
+
+        @Override
+        public void onLineCount(int count) {
+        }
+    }
+}
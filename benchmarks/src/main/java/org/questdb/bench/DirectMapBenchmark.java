@@ -0,0 +1,86 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.misc.Rnd;
+import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.DirectMapValues;
+import com.questdb.std.IntList;
+import com.questdb.store.ColumnType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get-or-create of map values keyed by symbol-like string and int, which is what keyed aggregation does
+ * for every row. Map is cleared between invocations, so it sees both new and existing keys. Score is
+ * lookups per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectMapBenchmark {
+    private static final int LOOKUPS = 1000000;
+    private static final int KEYS = 10000;
+    private final String[] strKeys = new String[LOOKUPS];
+    private final int[] intKeys = new int[LOOKUPS];
+    private DirectMap map;
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getOrCreate() {
+        map.clear();
+        for (int i = 0; i < LOOKUPS; i++) {
+            DirectMap.KeyWriter kw = map.keyWriter();
+            kw.putStr(strKeys[i]);
+            kw.putInt(intKeys[i]);
+            DirectMapValues values = map.getOrCreateValues(kw);
+            values.putLong(0, values.isNew() ? 1 : values.getLong(0) + 1);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        IntList valueTypes = new IntList();
+        valueTypes.add(ColumnType.LONG);
+        map = new DirectMap(1024 * 1024, 2, valueTypes);
+
+        Rnd rnd = new Rnd();
+        String[] symbols = BenchmarkData.symbols(rnd);
+        for (int i = 0; i < LOOKUPS; i++) {
+            int k = rnd.nextPositiveInt() % KEYS;
+            strKeys[i] = symbols[k % symbols.length];
+            intKeys[i] = k;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        map.close();
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.JournalConfigurationBuilder;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends fixed batch of rows to new journal, once through object API and once through
+ * {@link com.questdb.JournalEntryWriter}. Score is rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalWriterBenchmark {
+    private static final int ROWS = 100000;
+    private final Trade[] trades = new Trade[ROWS];
+    private File dir;
+    private JournalFactory factory;
+    private JournalWriter<Trade> objectWriter;
+    private JournalWriter genericWriter;
+    private int journalCount = 0;
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void appendObject() throws JournalException {
+        for (int i = 0; i < ROWS; i++) {
+            objectWriter.append(trades[i]);
+        }
+        objectWriter.commit();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeWriters() {
+        objectWriter.close();
+        genericWriter.close();
+        Files.delete(objectWriter.getLocation());
+        Files.delete(genericWriter.getLocation());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void entryWriter() throws JournalException {
+        // seed is reset, so that every invocation writes the same rows
+        BenchmarkData.appendTrades(genericWriter, new Rnd(), ROWS);
+        genericWriter.commit();
+    }
+
+    @Setup(Level.Invocation)
+    public void openWriters() throws JournalException {
+        String suffix = Integer.toString(journalCount++);
+        objectWriter = factory.writer(Trade.class, "obj" + suffix);
+        genericWriter = factory.writer(BenchmarkData.trades("gen" + suffix));
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = Files.makeTempDir();
+        factory = new JournalFactory(new JournalConfigurationBuilder() {{
+            $(Trade.class)
+                    .partitionBy(PartitionBy.DAY)
+                    .$sym("sym").valueCountHint(BenchmarkData.SYMBOL_COUNT).index()
+                    .$ts();
+        }}.build(dir));
+
+        Rnd rnd = new Rnd();
+        String[] symbols = BenchmarkData.symbols(rnd);
+        long t = BenchmarkData.START_TIMESTAMP;
+        for (int i = 0; i < ROWS; i++) {
+            trades[i] = new Trade()
+                    .setSym(symbols[rnd.nextPositiveInt() % symbols.length])
+                    .setPrice(rnd.nextDouble())
+                    .setQty(rnd.nextPositiveInt() % 10000)
+                    .setId(rnd.nextLong())
+                    .setNote(rnd.nextString(16))
+                    .setTimestamp(t);
+            t += 1000;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        factory.close();
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import com.questdb.store.IndexCursor;
+import com.questdb.store.KVIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link KVIndex#add(int, long)} into empty index and full scan of values of every key. Score is
+ * values per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KVIndexBenchmark {
+    private static final int KEYS = 1024;
+    private static final int VALUES = 1000000;
+    private final int[] keys = new int[VALUES];
+    private File dir;
+    private KVIndex index;
+    private KVIndex scratch;
+    private int scratchCount = 0;
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void add() {
+        for (int i = 0; i < VALUES; i++) {
+            scratch.add(keys[i], i);
+        }
+        scratch.commit();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeScratch() {
+        scratch.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long cursor() {
+        long sum = 0;
+        for (int k = 0; k < KEYS; k++) {
+            IndexCursor cursor = index.cursor(k);
+            while (cursor.hasNext()) {
+                sum += cursor.next();
+            }
+        }
+        return sum;
+    }
+
+    @Setup(Level.Invocation)
+    public void openScratch() throws JournalException {
+        scratch = new KVIndex(new File(dir, "scratch" + scratchCount++), KEYS, VALUES, 1, JournalMode.APPEND, 0);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws JournalException {
+        dir = Files.makeTempDir();
+        Rnd rnd = new Rnd();
+        for (int i = 0; i < VALUES; i++) {
+            keys[i] = rnd.nextPositiveInt() % KEYS;
+        }
+
+        try (KVIndex w = new KVIndex(new File(dir, "index"), KEYS, VALUES, 1, JournalMode.APPEND, 0)) {
+            for (int i = 0; i < VALUES; i++) {
+                w.add(keys[i], i);
+            }
+            w.commit();
+        }
+        index = new KVIndex(new File(dir, "index"), KEYS, VALUES, 1, JournalMode.READ, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+        Files.delete(dir);
+    }
+}
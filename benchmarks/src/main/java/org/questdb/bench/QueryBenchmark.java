@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.ParserException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs queries that are executed by {@link com.questdb.ql.impl.sort.RBTreeSortedRecordSource} and
+ * {@link com.questdb.ql.impl.join.HashJoinRecordSource} over fixed data set. Queries are compiled once,
+ * so score is cursor preparation and iteration of all records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int ROWS = 500000;
+    private final QueryCompiler compiler = new QueryCompiler();
+    private File dir;
+    private JournalFactory factory;
+    private RecordSource sort;
+    private RecordSource hashJoin;
+
+    @Benchmark
+    public long hashJoin() {
+        return consume(hashJoin);
+    }
+
+    @Setup
+    public void setUp() throws JournalException, ParserException {
+        dir = Files.makeTempDir();
+        factory = new JournalFactory(dir.getAbsolutePath());
+        BenchmarkData.createTrades(factory, "trades", ROWS);
+
+        try (JournalWriter w = factory.writer(new JournalStructure("refdata").$sym("sym").$str("sector").$int("lot").$())) {
+            Rnd rnd = new Rnd();
+            String[] symbols = BenchmarkData.symbols(rnd);
+            for (int i = 0; i < symbols.length; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putSym(0, symbols[i]);
+                ew.putStr(1, rnd.nextChars(8));
+                ew.putInt(2, rnd.nextPositiveInt() % 1000);
+                ew.append();
+            }
+            w.commit();
+        }
+
+        sort = compiler.compile(factory, "trades order by price");
+        hashJoin = compiler.compile(factory, "trades t join refdata r on t.sym = r.sym");
+    }
+
+    @Benchmark
+    public long sort() {
+        return consume(sort);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sort.close();
+        hashJoin.close();
+        factory.close();
+        Files.delete(dir);
+    }
+
+    private long consume(RecordSource rs) {
+        RecordCursor cursor = rs.prepareCursor(factory);
+        long sum = 0;
+        while (cursor.hasNext()) {
+            Record r = cursor.next();
+            sum += r.getInt(2);
+        }
+        return sum;
+    }
+}
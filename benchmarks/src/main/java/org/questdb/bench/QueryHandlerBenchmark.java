@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalConfigurationBuilder;
+import com.questdb.misc.Files;
+import com.questdb.net.http.HttpServer;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.net.http.SimpleUrlMatcher;
+import com.questdb.net.http.handlers.QueryHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads whole journal as JSON from {@link QueryHandler} over loopback. Query is served from handler's
+ * cache after first request, so score is dominated by JSON serialization and chunked transfer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryHandlerBenchmark {
+    private static final int ROWS = 200000;
+    private final byte[] buf = new byte[64 * 1024];
+    private File dir;
+    private JournalFactoryPool factoryPool;
+    private HttpServer server;
+    private URL url;
+
+    @Benchmark
+    public long download() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        long total = 0;
+        try (InputStream in = conn.getInputStream()) {
+            int n;
+            while ((n = in.read(buf)) > -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Setup
+    public void setUp() throws JournalException, IOException {
+        dir = Files.makeTempDir();
+        try (JournalFactory factory = new JournalFactory(dir.getAbsolutePath())) {
+            BenchmarkData.createTrades(factory, "trades", ROWS);
+        }
+
+        final ServerConfiguration configuration = new ServerConfiguration();
+        factoryPool = new JournalFactoryPool(new JournalConfigurationBuilder().build(dir), 1);
+        server = new HttpServer(configuration, new SimpleUrlMatcher() {{
+            put("/js", new QueryHandler(factoryPool, configuration));
+        }});
+        server.start();
+        url = new URL("http://localhost:" + configuration.getHttpPort() + "/js?query=trades");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.halt();
+        factoryPool.close();
+        Files.delete(dir);
+    }
+}
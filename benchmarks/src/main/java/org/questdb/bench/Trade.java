@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package org.questdb.bench;
+
+public class Trade {
+    private String sym;
+    private double price;
+    private int qty;
+    private long id;
+    private String note;
+    private long timestamp;
+
+    public Trade setId(long id) {
+        this.id = id;
+        return this;
+    }
+
+    public Trade setNote(String note) {
+        this.note = note;
+        return this;
+    }
+
+    public Trade setPrice(double price) {
+        this.price = price;
+        return this;
+    }
+
+    public Trade setQty(int qty) {
+        this.qty = qty;
+        return this;
+    }
+
+    public Trade setSym(String sym) {
+        this.sym = sym;
+        return this;
+    }
+
+    public Trade setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+}
@@ -35,6 +35,7 @@ import com.questdb.net.http.MimeTypes;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.net.http.SimpleUrlMatcher;
 import com.questdb.net.http.handlers.*;
+import com.questdb.net.lp.LineProtocolServer;
 import sun.misc.Signal;
 import sun.misc.SignalHandler;
 
@@ -81,16 +82,16 @@ class BootstrapMain {
         configureLoggers(configuration);
 
         final SimpleUrlMatcher matcher = new SimpleUrlMatcher();
+        final HttpServer server = new HttpServer(configuration, matcher);
         JournalFactory factory = new JournalFactory(configuration.getDbPath().getAbsolutePath());
         JournalFactoryPool pool = new JournalFactoryPool(factory.getConfiguration(), configuration.getJournalPoolSize());
         matcher.put("/imp", new ImportHandler(factory));
-        matcher.put("/js", new QueryHandler(pool, configuration));
-        matcher.put("/csv", new CsvHandler(pool, configuration));
+        matcher.put("/js", new QueryHandler(pool, configuration, server.getWorkerPool()));
+        matcher.put("/csv", new CsvHandler(pool, configuration, server.getWorkerPool()));
         matcher.put("/chk", new ExistenceCheckHandler(factory));
         matcher.setDefaultHandler(new StaticContentHandler(configuration.getHttpPublic(), new MimeTypes(configuration.getMimeTypes())));
 
         StringBuilder welcome = Misc.getThreadLocalBuilder();
-        HttpServer server = new HttpServer(configuration, matcher);
         if (!server.start(LogFactory.INSTANCE.getJobs(), configuration.getHttpQueueDepth())) {
             welcome.append("Could not bind socket ").append(configuration.getHttpIP()).append(':').append(configuration.getHttpPort());
             welcome.append(". Already running?");
@@ -105,6 +106,16 @@ class BootstrapMain {
             }
 
             System.err.println(welcome);
+
+            final LineProtocolServer lineServer = configuration.isLineEnabled() ? new LineProtocolServer(configuration, factory) : null;
+            if (lineServer != null) {
+                if (lineServer.start()) {
+                    System.err.println("Line protocol on " + configuration.getLineTcpPort() + "/tcp and " + configuration.getLineUdpPort() + "/udp");
+                } else {
+                    System.err.println("Could not bind line protocol ports " + configuration.getLineTcpPort() + "/tcp and " + configuration.getLineUdpPort() + "/udp");
+                }
+            }
+
             System.out.println(new Date() + " QuestDB is running");
 
             if (Os.type != Os.WINDOWS) {
@@ -118,6 +129,11 @@ class BootstrapMain {
             Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
                 public void run() {
                     System.out.println(new Date() + " QuestDB is shutting down");
+                    // line server commits pending rows when halted
+                    if (lineServer != null) {
+                        lineServer.halt();
+                    }
+                    server.halt();
                 }
             }));
         }
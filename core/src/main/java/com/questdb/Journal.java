@@ -480,8 +480,9 @@ public class Journal<T> implements Iterable<T>, Closeable {
     }
 
     public boolean refresh() {
+        long txAddress = tx.address;
         if (isOpen() && txLog.head(tx)) {
-            refreshInternal();
+            refreshInternal(txAddress);
             for (int i = 0, sz = symbolTables.size(); i < sz; i++) {
                 symbolTables.getQuick(i).applyTx(tx.symbolTableSizes[i], tx.symbolTableIndexPointers[i]);
             }
@@ -604,12 +605,33 @@ public class Journal<T> implements Iterable<T>, Closeable {
         if (files != null && tx.journalMaxRowID > 0) {
             Arrays.sort(files);
             for (int i = 0; i < files.length; i++) {
-                File f = files[i];
 
                 if (partitionIndex > Rows.toPartitionIndex(tx.journalMaxRowID)) {
                     break;
                 }
 
+                // versions of partition sort next to each other, newest committed one is to be read
+                String name = getPartitionName(files[i].getName());
+                File f = null;
+                long version = -1;
+                while (true) {
+                    long v = getPartitionVersion(files[i].getName());
+                    if (v > version && v <= tx.txn) {
+                        version = v;
+                        f = files[i];
+                    }
+
+                    if (i + 1 < files.length && name.equals(getPartitionName(files[i + 1].getName()))) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+
+                if (f == null) {
+                    continue;
+                }
+
                 long txLimit = Journal.TX_LIMIT_EVAL;
                 long[] indexTxAddresses = null;
                 if (partitionIndex == Rows.toPartitionIndex(tx.journalMaxRowID)) {
@@ -618,25 +640,25 @@ public class Journal<T> implements Iterable<T>, Closeable {
                 }
 
                 try {
-                    Interval interval = new Interval(f.getName(), getMetadata().getPartitionBy());
+                    Interval interval = new Interval(name, getMetadata().getPartitionBy());
                     if (partitionIndex < partitions.size()) {
                         Partition<T> partition = partitions.getQuick(partitionIndex);
-                        Interval that = partition.getInterval();
-                        if (that == null || that.equals(interval)) {
+                        if (f.equals(partition.getPartitionDir())) {
                             partition.applyTx(txLimit, indexTxAddresses);
                             partitionIndex++;
-                        } else {
-                            partition.close();
-                            partitions.remove(partitionIndex);
+                            continue;
                         }
-                    } else {
-                        partitions.add(new Partition<>(this, interval, partitionIndex++, txLimit, indexTxAddresses));
+                        // partition has been rewritten or new one has been inserted before it,
+                        // either way partitions that follow have to be open again
+                        removePartitions(partitionIndex);
                     }
+                    partitions.add(new Partition<>(this, interval, f, partitionIndex++, txLimit, indexTxAddresses));
                 } catch (NumericException e) {
                     LOG.info().$("Foreign directory: ").$(f.getName()).$();
                 }
             }
         }
+        removePartitions(partitionIndex);
         configureIrregularPartition();
     }
 
@@ -655,6 +677,32 @@ public class Journal<T> implements Iterable<T>, Closeable {
         return inactiveColumns;
     }
 
+    /**
+     * Name of partition kept in given directory. Directory of partition that has been rewritten carries
+     * number of transaction that wrote it after partition name.
+     */
+    static String getPartitionName(String dirName) {
+        int dot = dirName.indexOf('.');
+        return dot == -1 ? dirName : dirName.substring(0, dot);
+    }
+
+    /**
+     * Version of partition in given directory, which is 0 for original directory of partition and -1 when
+     * directory name is not recognised.
+     */
+    static long getPartitionVersion(String dirName) {
+        int dot = dirName.indexOf('.');
+        if (dot == -1) {
+            return 0;
+        }
+
+        try {
+            return Numbers.parseLong(dirName, dot + 1, dirName.length());
+        } catch (NumericException e) {
+            return -1;
+        }
+    }
+
     long getTimestamp(T o) {
         return Unsafe.getUnsafe().getLong(o, timestampOffset);
     }
@@ -702,12 +750,12 @@ public class Journal<T> implements Iterable<T>, Closeable {
      * Replaces current Lag partition, which is cached in this instance of Partition Manager with Lag partition,
      * which was written to _lag file by another process.
      */
-    private void refreshInternal() {
+    private void refreshInternal(long prevTxAddress) {
 
         assert tx.address > 0;
 
         int txPartitionIndex = tx.journalMaxRowID == -1 ? 0 : Rows.toPartitionIndex(tx.journalMaxRowID);
-        if (partitions.size() != txPartitionIndex + 1 || tx.journalMaxRowID < 1) {
+        if (partitions.size() != txPartitionIndex + 1 || tx.journalMaxRowID < 1 || txLog.isPartitionChanged(prevTxAddress)) {
             if (tx.journalMaxRowID < 1 || partitions.size() > txPartitionIndex + 1) {
                 closePartitions();
             }
@@ -727,4 +775,11 @@ public class Journal<T> implements Iterable<T>, Closeable {
             irregularPartition = null;
         }
     }
+
+    private void removePartitions(int lo) {
+        for (int i = partitions.size() - 1; i >= lo; i--) {
+            partitions.getQuick(i).close();
+            partitions.remove(i);
+        }
+    }
 }
@@ -40,13 +40,24 @@ public class JournalEntryWriterImpl implements JournalEntryWriter {
     private final int timestampIndex;
     private final boolean[] skipped;
     private final long[] koTuple;
+    private final boolean ordered;
     private AbstractColumn columns[];
     private SymbolIndexProxy indexProxies[];
     private Partition partition;
     private long timestamp;
 
     public JournalEntryWriterImpl(JournalWriter journal) {
+        this(journal, true);
+    }
+
+    /**
+     * @param journal writer rows are written for
+     * @param ordered true when rows are appended to end of journal, false when they are kept aside
+     *                and appended rows do not move journal timestamp forward
+     */
+    JournalEntryWriterImpl(JournalWriter journal, boolean ordered) {
         this.journal = journal;
+        this.ordered = ordered;
         this.meta = new ColumnMetadata[journal.getMetadata().getColumnCount()];
         journal.getMetadata().copyColumnMetadata(meta);
         this.timestampIndex = journal.getMetadata().getTimestampIndex();
@@ -67,7 +78,9 @@ public class JournalEntryWriterImpl implements JournalEntryWriter {
             }
         }
         partition.applyTx(Journal.TX_LIMIT_EVAL, null);
-        journal.updateTsLo(timestamp);
+        if (ordered) {
+            journal.updateTsLo(timestamp);
+        }
     }
 
     @Override
@@ -26,6 +26,8 @@ package com.questdb;
 import com.questdb.ex.IncompatibleJournalException;
 import com.questdb.ex.JournalException;
 import com.questdb.ex.JournalRuntimeException;
+import com.questdb.ex.NumericException;
+import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.Constants;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
@@ -41,6 +43,8 @@ import com.questdb.mp.SCSequence;
 import com.questdb.mp.SPSequence;
 import com.questdb.mp.Sequence;
 import com.questdb.query.ResultSet;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.ObjHashSet;
 import com.questdb.std.PeekingListIterator;
 import com.questdb.store.*;
 
@@ -49,11 +53,14 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -69,11 +76,17 @@ public class JournalWriter<T> extends Journal<T> {
     // discard.txt related
     private final File discardTxt;
     private Lock writeLock;
+    // rows older than last row of journal, created on first out-of-order append
+    private OutOfOrderMerger<T> outOfOrderMerger;
     private TxListener txListener;
     private boolean txActive = false;
     private int txPartitionIndex = -1;
     private long appendTimestampLo = -1;
     private PartitionCleaner partitionCleaner;
+    private PartitionCompressor partitionCompressor;
+    private GroupCommitter groupCommitter;
+    private long commitSeq = 0;
+    private int sealedPartitionCount = 0;
     private boolean commitOnClose = true;
     // irregular partition related
     private boolean doDiscard = true;
@@ -144,6 +157,33 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    /**
+     * Adds objects in any timestamp order and commits. Rows that are not older than last row of journal are appended
+     * as usual. Older rows are kept aside off-heap and on commit are merged into partitions they belong to, see
+     * {@link #entryWriterOutOfOrder(long)}. Unlike {@link #mergeAppend(List)} this does not need lag partition
+     * and accepts rows of any age.
+     *
+     * @param objects objects to add, list itself is not modified
+     * @throws com.questdb.ex.JournalException if there is an error
+     */
+    public void appendOutOfOrder(List<T> objects) throws JournalException {
+        checkOutOfOrder();
+        beginTx();
+        for (int i = 0, n = objects.size(); i < n; i++) {
+            T obj = objects.get(i);
+            if (obj == null) {
+                throw new JournalException("Cannot append NULL to %s", this);
+            }
+
+            if (getTimestamp(obj) < getAppendTimestampLo()) {
+                getOutOfOrderMerger().append(obj);
+            } else {
+                append(obj);
+            }
+        }
+        commit();
+    }
+
     /**
      * Copy the objects corresponding to the specified ids to the end of the Journal.
      *
@@ -182,11 +222,20 @@ public class JournalWriter<T> extends Journal<T> {
                 if (isCommitOnClose()) {
                     commit();
                 }
+                outOfOrderMerger = Misc.free(outOfOrderMerger);
                 if (partitionCleaner != null) {
                     purgeTempPartitions();
                     partitionCleaner.halt();
                     partitionCleaner = null;
                 }
+                if (partitionCompressor != null) {
+                    partitionCompressor.halt();
+                    partitionCompressor = null;
+                }
+                if (groupCommitter != null) {
+                    groupCommitter.halt();
+                    groupCommitter = null;
+                }
                 super.close();
                 if (writeLock != null) {
                     LockManager.release(writeLock);
@@ -275,11 +324,46 @@ public class JournalWriter<T> extends Journal<T> {
             notifyTxListener();
             expireOpenFiles();
             txActive = false;
+            if (partitionCompressor != null) {
+                compressSealedPartitions();
+            }
+        }
+    }
+
+    /**
+     * Commits transaction without waiting for it to reach disk. With group commit enabled files touched by
+     * transaction are forced by background thread, together with files of all transactions committed while
+     * previous flush was in progress. Without group commit this method is equivalent to {@link #commitDurable()}.
+     *
+     * @return commit sequence, which can be passed to {@link #waitDurable(long)}
+     * @throws JournalException if commit fails
+     */
+    public long commitAsync() throws JournalException {
+        if (groupCommitter == null) {
+            commit(true, -1L, -1L);
+            return ++commitSeq;
+        }
+
+        if (txActive) {
+            commit(false, -1L, -1L);
+            // out-of-order merge moves start of transaction back, it is known after commit
+            for (int i = Math.max(txPartitionIndex, 0), n = nonLagPartitionCount(); i < n; i++) {
+                groupCommitter.add(partitions.getQuick(i).getPartitionDir());
+            }
+            if (hasIrregularPartition()) {
+                groupCommitter.add(getIrregularPartition().getPartitionDir());
+            }
+            commitSeq = groupCommitter.publish();
         }
+        return commitSeq;
     }
 
     public void commitDurable() throws JournalException {
-        commit(true, -1L, -1L);
+        if (groupCommitter == null) {
+            commit(true, -1L, -1L);
+        } else {
+            waitDurable(commitAsync());
+        }
     }
 
     public void compact() throws JournalException {
@@ -335,6 +419,27 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    /**
+     * Entry writer that accepts row of any timestamp. Row, which is not older than last row of journal, is appended
+     * as usual. Older row is kept aside off-heap until commit. Commit sorts such rows and merges them column by
+     * column into new version of every partition they belong to, starting with first row of partition newer
+     * than oldest merged row. Partition that does not exist is created, even when it falls before first partition
+     * or between existing ones. Readers do not see merged rows, or any of partitions they were merged into, until
+     * transaction is committed and rollback simply discards rows kept aside.
+     *
+     * @param timestamp timestamp of row
+     * @return entry writer
+     * @throws JournalException if journal does not have timestamp, has lag partition or there is an error
+     */
+    public JournalEntryWriter entryWriterOutOfOrder(long timestamp) throws JournalException {
+        checkOutOfOrder();
+        if (timestamp < getAppendTimestampLo()) {
+            beginTx();
+            return getOutOfOrderMerger().entryWriter(timestamp);
+        }
+        return entryWriter(timestamp);
+    }
+
     public Partition<T> getAppendPartition(long timestamp) throws JournalException {
         int sz = partitions.size();
         if (sz > 0) {
@@ -385,6 +490,50 @@ public class JournalWriter<T> extends Journal<T> {
         return this;
     }
 
+    public boolean isCompressSealedPartitions() {
+        return partitionCompressor != null;
+    }
+
+    /**
+     * Enables background compression of partitions writer no longer appends to. Column files of such partitions
+     * are replaced with compressed copies, blocks of which are decoded transparently as they are read.
+     *
+     * @param compress true to compress sealed partitions on commit
+     * @return this writer
+     */
+    public JournalWriter<T> setCompressSealedPartitions(boolean compress) {
+        if (compress && partitionCompressor == null) {
+            partitionCompressor = new PartitionCompressor(getMetadata(), getLocation().getName());
+        } else if (!compress && partitionCompressor != null) {
+            partitionCompressor.halt();
+            partitionCompressor = null;
+        }
+        return this;
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommitter != null;
+    }
+
+    /**
+     * Enables group commit. Durable commits are no longer forced on calling thread, instead dedicated
+     * thread forces all files modified since its previous run. Callers use {@link #commitAsync()} and
+     * {@link #waitDurable(long)} to decide when they need to block. Files are forced via independent
+     * file handles, which relies on OS flushing shared memory mappings of file on fsync.
+     *
+     * @param groupCommit true to force files on background thread
+     * @return this writer
+     */
+    public JournalWriter<T> setGroupCommit(boolean groupCommit) {
+        if (groupCommit && groupCommitter == null) {
+            groupCommitter = new GroupCommitter(getLocation(), commitSeq);
+        } else if (!groupCommit && groupCommitter != null) {
+            groupCommitter.halt();
+            groupCommitter = null;
+        }
+        return this;
+    }
+
     public boolean isTxActive() {
         return txActive;
     }
@@ -571,13 +720,38 @@ public class JournalWriter<T> extends Journal<T> {
     }
 
     public void rollback(long txn, long txPin) throws JournalException {
-        rollback0(txLog.findAddress(txn, txPin), true);
+        rollback(txn, txPin, true);
+    }
+
+    /**
+     * Rolls journal back to given transaction. Rows discarded by rollback are written out to discard file only
+     * when writeDiscard is true, owners that routinely roll back their own data can skip it.
+     *
+     * @param txn          transaction number to roll back to
+     * @param txPin        pin of transaction to roll back to
+     * @param writeDiscard true to keep discarded rows in discard file
+     * @throws JournalException if transaction cannot be found or rollback fails
+     */
+    public void rollback(long txn, long txPin, boolean writeDiscard) throws JournalException {
+        rollback0(txLog.findAddress(txn, txPin), writeDiscard);
     }
 
     public void setTxListener(TxListener txListener) {
         this.txListener = txListener;
     }
 
+    /**
+     * Blocks until transaction with given commit sequence and all transactions before it are on disk.
+     *
+     * @param commitSeq sequence returned by {@link #commitAsync()}
+     * @throws JournalException if files could not be forced or thread is interrupted
+     */
+    public void waitDurable(long commitSeq) throws JournalException {
+        if (groupCommitter != null) {
+            groupCommitter.await(commitSeq);
+        }
+    }
+
     public void truncate() throws JournalException {
         beginTx();
         int partitionCount = getPartitionCount();
@@ -594,11 +768,28 @@ public class JournalWriter<T> extends Journal<T> {
             getSymbolTable(i).truncate();
         }
         appendTimestampLo = -1;
+        sealedPartitionCount = 0;
         commitDurable();
     }
 
+    private void checkOutOfOrder() throws JournalException {
+        if (getMetadata().getTimestampIndex() == -1) {
+            throw new JournalException("Out-of-order append requires timestamp: %s", this);
+        }
+
+        if (hasIrregularPartition()) {
+            throw new JournalException("Out-of-order append is not supported with lag partition: %s", this);
+        }
+    }
+
     private void commit(byte command, long txn, long txPin) throws JournalException {
-        boolean force = command == Tx.TX_FORCE;
+        boolean force = (command & Tx.TX_FORCE) != 0;
+        boolean merge = outOfOrderMerger != null && !outOfOrderMerger.isEmpty();
+        if (merge) {
+            mergeOutOfOrder(txn == -1 ? txLog.getNextTxn() : txn);
+            command |= Tx.TX_PARTITIONS;
+        }
+
         Partition<T> partition = lastNonEmptyNonLag();
         Partition<T> lag = getIrregularPartition();
 
@@ -660,6 +851,17 @@ public class JournalWriter<T> extends Journal<T> {
         if (force) {
             txLog.force();
         }
+
+        if (merge) {
+            outOfOrderMerger.purge();
+        }
+    }
+
+    private void compressSealedPartitions() {
+        // last partition keeps receiving data, everything before it is sealed
+        for (int n = nonLagPartitionCount() - 1; sealedPartitionCount < n; sealedPartitionCount++) {
+            partitionCompressor.compress(partitions.getQuick(sealedPartitionCount).getPartitionDir());
+        }
     }
 
     private Partition<T> createTempPartition() {
@@ -682,6 +884,46 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private OutOfOrderMerger<T> getOutOfOrderMerger() {
+        if (outOfOrderMerger == null) {
+            outOfOrderMerger = new OutOfOrderMerger<>(this);
+        }
+        return outOfOrderMerger;
+    }
+
+    private boolean isPartitionDir(String dirName) {
+        if (Journal.getPartitionVersion(dirName) == -1) {
+            return false;
+        }
+
+        String name = Journal.getPartitionName(dirName);
+        if (getMetadata().getPartitionBy() == PartitionBy.NONE) {
+            return "default".equals(name);
+        }
+
+        try {
+            new Interval(name, getMetadata().getPartitionBy());
+            return true;
+        } catch (NumericException e) {
+            return false;
+        }
+    }
+
+    private void mergeOutOfOrder(long txn) throws JournalException {
+        if (partitionCompressor != null) {
+            // compressor must be done with partitions before they can be replaced
+            partitionCompressor.drain();
+        }
+
+        int first = outOfOrderMerger.merge(txn);
+        if (txPartitionIndex > first) {
+            txPartitionIndex = first;
+        }
+        sealedPartitionCount = Math.min(sealedPartitionCount, first);
+        appendPartition = null;
+        appendTimestampHi = -1;
+    }
+
     private void notifyTxListener() {
         if (txListener != null) {
             txListener.onCommit();
@@ -700,6 +942,11 @@ public class JournalWriter<T> extends Journal<T> {
             throw new IncompatibleJournalException("Server txn is not compatible with %s", this.getLocation());
         }
 
+        // partition versions committed by out-of-order merge replace old ones for good
+        if (txLog.isPartitionChanged(address)) {
+            throw new JournalException("Cannot roll back past out-of-order merge: %s", this);
+        }
+
         txLog.read(address, tx);
 
         if (tx.address == 0) {
@@ -711,6 +958,10 @@ public class JournalWriter<T> extends Journal<T> {
             writeDiscardFile(tx.journalMaxRowID);
         }
 
+        if (outOfOrderMerger != null) {
+            outOfOrderMerger.clear();
+        }
+
         // partitions need to be dealt with first to make sure new lag is assigned a correct partitionIndex
         rollbackPartitions(tx);
 
@@ -738,20 +989,29 @@ public class JournalWriter<T> extends Journal<T> {
         appendTimestampLo = -1;
         appendTimestampHi = -1;
         appendPartition = null;
+        sealedPartitionCount = Math.min(sealedPartitionCount, Math.max(nonLagPartitionCount() - 1, 0));
         txLog.writeTxAddress(tx.address);
         txActive = false;
     }
 
     private void rollbackPartitionDirs() throws JournalException {
+        final CharSequenceHashSet current = new CharSequenceHashSet();
+        for (int i = 0, n = nonLagPartitionCount(); i < n; i++) {
+            current.add(partitions.getQuick(i).getName());
+        }
+
+        // partitions that have not been committed, versions of partitions that have been replaced
+        // and rows kept aside for out-of-order merge are all removed
         File[] files = getLocation().listFiles(new FileFilter() {
             public boolean accept(File f) {
-                return f.isDirectory() && !f.getName().startsWith(Constants.TEMP_DIRECTORY_PREFIX);
+                String name = f.getName();
+                return f.isDirectory() && !current.contains(name) && (name.startsWith(OutOfOrderMerger.STAGING_DIR_PREFIX)
+                        || (!name.startsWith(Constants.TEMP_DIRECTORY_PREFIX) && isPartitionDir(name)));
             }
         });
 
         if (files != null) {
-            Arrays.sort(files);
-            for (int i = getPartitionCount(); i < files.length; i++) {
+            for (int i = 0; i < files.length; i++) {
                 Files.deleteOrException(files[i]);
             }
         }
@@ -759,6 +1019,11 @@ public class JournalWriter<T> extends Journal<T> {
 
     private void rollbackPartitions(Tx tx) throws JournalException {
         int partitionIndex = tx.journalMaxRowID == -1 ? 0 : Rows.toPartitionIndex(tx.journalMaxRowID);
+        if (partitionCompressor != null) {
+            // compressor must not replace files of partitions that are about to be truncated or removed
+            partitionCompressor.drain();
+        }
+
         while (true) {
             Partition<T> p = partitions.getLast();
             if (p == null) {
@@ -770,6 +1035,11 @@ public class JournalWriter<T> extends Journal<T> {
                 Files.deleteOrException(p.getPartitionDir());
                 partitions.remove(partitions.size() - 1);
             } else if (p.getPartitionIndex() == partitionIndex) {
+                if (partitionIndex < sealedPartitionCount) {
+                    // compressor might have replaced columns writer has mapped, they are restored
+                    // from compressed copies and then truncated with the rest
+                    p.uncompress();
+                }
                 p.open();
                 p.truncate(tx.journalMaxRowID == -1 ? 0 : Rows.toLocalRowID(tx.journalMaxRowID));
                 break;
@@ -908,6 +1178,234 @@ public class JournalWriter<T> extends Journal<T> {
         }
     }
 
+    private static class GroupCommitter {
+        private final ExecutorService executor;
+        private final File location;
+        private final Object lock = new Object();
+        private ObjHashSet<File> pending = new ObjHashSet<>();
+        private ObjHashSet<File> flushing = new ObjHashSet<>();
+        private long requestedSeq;
+        private long durableSeq;
+        private IOException error;
+        private boolean running = true;
+
+        GroupCommitter(File location, long commitSeq) {
+            this.location = location;
+            this.requestedSeq = this.durableSeq = commitSeq;
+            this.executor = Executors.newSingleThreadExecutor(new NamedDaemonThreadFactory("questdb-journal-committer-" + location.getName(), false));
+            this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    GroupCommitter.this.run();
+                }
+            });
+        }
+
+        void add(File dir) {
+            synchronized (lock) {
+                pending.add(dir);
+            }
+        }
+
+        void await(long seq) throws JournalException {
+            synchronized (lock) {
+                while (durableSeq < seq) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw new JournalException("Interrupted while waiting for commit %d", e, seq);
+                    }
+                }
+                if (error != null) {
+                    throw new JournalException("Cannot force journal files: %s", error, location);
+                }
+            }
+        }
+
+        void halt() {
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        long publish() {
+            synchronized (lock) {
+                requestedSeq++;
+                lock.notifyAll();
+                return requestedSeq;
+            }
+        }
+
+        /**
+         * Forces files of every journal partition directory that has been flagged as modified and then journal
+         * root files. Transaction log goes last, so that transaction is never on disk ahead of its data.
+         */
+        private void flush() throws IOException {
+            for (int i = 0, n = flushing.size(); i < n; i++) {
+                forceFiles(flushing.get(i));
+            }
+            forceFiles(location);
+            forceFile(new File(location, TxLog.FILE_NAME));
+            // make new partition directories durable too, where OS allows to sync a directory
+            forceDir(location);
+        }
+
+        private static void forceDir(File dir) {
+            try (FileChannel ch = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+                ch.force(true);
+            } catch (IOException ignore) {
+                // not all file systems support this
+            }
+        }
+
+        private static void forceFile(File file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.force(true);
+            } catch (NoSuchFileException ignore) {
+                // file was removed by compaction or by partition compressor
+            }
+        }
+
+        private static void forceFiles(File dir) throws IOException {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+
+            for (int i = 0; i < files.length; i++) {
+                File f = files[i];
+                String name = f.getName();
+                // closing any channel would release process locks on lock files
+                if (f.isFile() && !name.endsWith(".lock") && !TxLog.FILE_NAME.equals(name)) {
+                    forceFile(f);
+                }
+            }
+        }
+
+        private void run() {
+            while (true) {
+                long seq;
+                synchronized (lock) {
+                    while (running && requestedSeq == durableSeq) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException ignore) {
+                        }
+                    }
+
+                    // pending commits are flushed before thread exits
+                    if (requestedSeq == durableSeq) {
+                        break;
+                    }
+
+                    seq = requestedSeq;
+                    ObjHashSet<File> dirs = flushing;
+                    flushing = pending;
+                    pending = dirs;
+                }
+
+                IOException e = null;
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    LOG.error().$("Cannot force ").$(location).$(ex).$();
+                    e = ex;
+                }
+                flushing.clear();
+
+                synchronized (lock) {
+                    if (e != null) {
+                        error = e;
+                    }
+                    durableSeq = seq;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class PartitionCompressor {
+        private final ExecutorService executor;
+        private final ColumnMetadata[] columns;
+
+        PartitionCompressor(JournalMetadata metadata, String name) {
+            this.executor = Executors.newSingleThreadExecutor(new NamedDaemonThreadFactory("questdb-journal-compressor-" + name, false));
+            this.columns = new ColumnMetadata[metadata.getColumnCount()];
+            metadata.copyColumnMetadata(columns);
+        }
+
+        public void compress(final File partitionDir) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try (ColumnCodec codec = new ColumnCodec()) {
+                        for (int i = 0; i < columns.length; i++) {
+                            ColumnMetadata m = columns[i];
+                            compress(codec, partitionDir, m.name + ".d", ColumnCodec.codecOf(m.type, false));
+                            switch (m.type) {
+                                case ColumnType.STRING:
+                                case ColumnType.BINARY:
+                                    compress(codec, partitionDir, m.name + ".i", ColumnCodec.codecOf(m.type, true));
+                                    break;
+                                default:
+                                    break;
+                            }
+                        }
+                        LOG.info().$("Compressed ").$(partitionDir).$();
+                    } catch (Throwable e) {
+                        LOG.error().$("Cannot compress ").$(partitionDir).$(e).$();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Waits for all partitions submitted so far to be compressed.
+         */
+        public void drain() throws JournalException {
+            try {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new JournalException(e);
+            }
+        }
+
+        public void halt() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        private void compress(ColumnCodec codec, File dir, String name, int codecType) throws JournalException {
+            File raw = new File(dir, name);
+            if (!raw.exists()) {
+                // already compressed
+                return;
+            }
+
+            // readers must never see partially written file, so compressed copy appears under its final name
+            // before raw file is removed
+            File tmp = new File(dir, name + ColumnCodec.FILE_SUFFIX + ".tmp");
+            codec.compress(raw, tmp, codecType);
+            if (!tmp.renameTo(new File(dir, name + ColumnCodec.FILE_SUFFIX))) {
+                throw new JournalException("Cannot rename %s", tmp);
+            }
+            Files.deleteOrException(raw);
+        }
+    }
+
     private static class PartitionCleaner {
         private final ExecutorService executor;
         private final Sequence pubSeq;
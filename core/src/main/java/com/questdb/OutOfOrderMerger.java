@@ -0,0 +1,363 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.factory.configuration.Constants;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Files;
+import com.questdb.misc.Interval;
+import com.questdb.std.DirectLongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.store.FixedColumn;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.UUID;
+
+/**
+ * Keeps rows older than last row of journal aside until commit and then merges them into partitions they belong to.
+ * Staged rows are sorted off-heap and merged column by column into new version of every partition they touch, which
+ * is written to directory of its own starting with first row newer than oldest staged row. Partition that does
+ * not exist yet is created wherever it falls. Readers keep reading current partitions until transaction that
+ * references new versions is committed.
+ */
+class OutOfOrderMerger<T> implements Closeable {
+    static final String STAGING_DIR_PREFIX = Constants.TEMP_DIRECTORY_PREFIX + ".ooo.";
+    private static final Log LOG = LogFactory.getLog(OutOfOrderMerger.class);
+    private final JournalWriter<T> writer;
+    private final JournalEntryWriterImpl entryWriter;
+    private final ObjList<Partition<T>> merged = new ObjList<>();
+    private final ObjList<Partition<T>> created = new ObjList<>();
+    private final ObjList<Partition<T>> replaced = new ObjList<>();
+    private final ObjList<File> superseded = new ObjList<>();
+    private TempPartition<T> staging;
+
+    OutOfOrderMerger(JournalWriter<T> writer) {
+        this.writer = writer;
+        this.entryWriter = new JournalEntryWriterImpl(writer, false);
+    }
+
+    private static void copy(DirectLongList src, long i, DirectLongList dst, long k) {
+        dst.set(k * 2, src.get(i * 2));
+        dst.set(k * 2 + 1, src.get(i * 2 + 1));
+    }
+
+    /**
+     * Sorts pairs of timestamp and row by timestamp. Sort is stable, rows of same timestamp remain in order
+     * they were staged.
+     */
+    private static void sort(DirectLongList rows, long n) {
+        DirectLongList tmp = new DirectLongList(n * 2);
+        try {
+            tmp.setPos(n * 2);
+            DirectLongList src = rows;
+            DirectLongList dst = tmp;
+            for (long w = 1; w < n; w <<= 1) {
+                for (long lo = 0; lo < n; lo += w << 1) {
+                    long mid = Math.min(lo + w, n);
+                    long hi = Math.min(lo + (w << 1), n);
+                    long i = lo;
+                    long j = mid;
+                    long k = lo;
+                    while (i < mid && j < hi) {
+                        if (src.get(j * 2) < src.get(i * 2)) {
+                            copy(src, j++, dst, k++);
+                        } else {
+                            copy(src, i++, dst, k++);
+                        }
+                    }
+
+                    while (i < mid) {
+                        copy(src, i++, dst, k++);
+                    }
+
+                    while (j < hi) {
+                        copy(src, j++, dst, k++);
+                    }
+                }
+                DirectLongList t = src;
+                src = dst;
+                dst = t;
+            }
+
+            if (src != rows) {
+                for (long i = 0; i < n; i++) {
+                    copy(src, i, rows, i);
+                }
+            }
+        } finally {
+            tmp.free();
+        }
+    }
+
+    /**
+     * Position of first row in [lo, hi) newer than given timestamp.
+     */
+    private static long upperBound(FixedColumn timestamps, long timestamp, long lo, long hi) {
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (timestamps.getLong(mid) <= timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    void append(T obj) throws JournalException {
+        staging().append(obj);
+    }
+
+    /**
+     * Discards staged rows.
+     */
+    void clear() {
+        if (staging != null) {
+            File dir = staging.getPartitionDir();
+            staging.close();
+            staging = null;
+            if (!Files.delete(dir) || !Files.delete(new File(dir.getPath() + ".lock"))) {
+                LOG.error().$("Cannot delete ").$(dir).$();
+            }
+        }
+    }
+
+    JournalEntryWriter entryWriter(long timestamp) throws JournalException {
+        entryWriter.setPartition(staging(), timestamp);
+        return entryWriter;
+    }
+
+    boolean isEmpty() {
+        return staging == null || staging.size() == 0;
+    }
+
+    /**
+     * Merges staged rows and puts partitions they were merged into in place of partitions they replace. Replaced
+     * partitions are closed, their directories are removed by {@link #purge()} once transaction is committed.
+     * Nothing is changed when merge fails.
+     *
+     * @param txn number of transaction merged rows are going to be committed by
+     * @return index of first partition that has been replaced or inserted
+     * @throws JournalException when partition cannot be written
+     */
+    int merge(long txn) throws JournalException {
+        long n = staging.size();
+        DirectLongList rows = new DirectLongList(n * 2);
+        DirectLongList plan = new DirectLongList(16);
+        try {
+            FixedColumn timestamps = staging.getTimestampColumn();
+            rows.setPos(n * 2);
+            boolean sorted = true;
+            long prev = Long.MIN_VALUE;
+            for (long r = 0; r < n; r++) {
+                long t = timestamps.getLong(r);
+                rows.set(r * 2, t);
+                rows.set(r * 2 + 1, r);
+                sorted &= t >= prev;
+                prev = t;
+            }
+
+            if (!sorted) {
+                sort(rows, n);
+            }
+
+            ObjList<Partition<T>> partitions = writer.partitions;
+            int partitionBy = writer.getMetadata().getPartitionBy();
+            int count = partitions.size();
+            int first = -1;
+            int k = 0;
+            try {
+                long lo = 0;
+                while (lo < n) {
+                    Interval interval = new Interval(rows.get(lo * 2), partitionBy);
+                    long hi = lo + 1;
+                    while (hi < n && interval.contains(rows.get(hi * 2))) {
+                        hi++;
+                    }
+
+                    while (k < count && partitions.getQuick(k).getInterval().getLo() < interval.getLo()) {
+                        merged.add(partitions.getQuick(k++));
+                    }
+
+                    Partition<T> partition = null;
+                    if (k < count && partitions.getQuick(k).getInterval().getLo() == interval.getLo()) {
+                        partition = partitions.getQuick(k++).open();
+                        replaced.add(partition);
+                    }
+
+                    if (first == -1) {
+                        first = merged.size();
+                    }
+                    merged.add(merge(partition, interval, rows, lo, hi, plan, txn));
+                    lo = hi;
+                }
+
+                while (k < count) {
+                    merged.add(partitions.getQuick(k++));
+                }
+            } catch (Throwable e) {
+                for (int i = 0, m = created.size(); i < m; i++) {
+                    Partition<T> p = created.getQuick(i);
+                    p.close();
+                    Files.delete(p.getPartitionDir());
+                }
+                created.clear();
+                replaced.clear();
+                merged.clear();
+                throw e;
+            }
+
+            for (int i = 0, m = replaced.size(); i < m; i++) {
+                Partition<T> p = replaced.getQuick(i);
+                p.close();
+                superseded.add(p.getPartitionDir());
+            }
+
+            partitions.clear();
+            for (int i = 0, m = merged.size(); i < m; i++) {
+                Partition<T> p = merged.getQuick(i);
+                p.setPartitionIndex(i);
+                partitions.add(p);
+            }
+
+            created.clear();
+            replaced.clear();
+            merged.clear();
+            staging.truncate(0);
+            return first;
+        } finally {
+            rows.free();
+            plan.free();
+        }
+    }
+
+    /**
+     * Removes directories of partitions replaced by committed merge. Directories that cannot be removed
+     * right now, e.g. because they are open elsewhere, are dealt with when writer is open next time.
+     */
+    void purge() {
+        for (int i = 0, n = superseded.size(); i < n; i++) {
+            File dir = superseded.getQuick(i);
+            if (!Files.delete(dir)) {
+                LOG.info().$("Cannot delete ").$(dir).$();
+            }
+        }
+        superseded.clear();
+    }
+
+    private Partition<T> merge(Partition<T> partition, Interval interval, DirectLongList rows, long lo, long hi, DirectLongList plan, long txn) throws JournalException {
+        JournalMetadata<T> metadata = writer.getMetadata();
+        File dir = new File(writer.getLocation(), interval.getDirName(metadata.getPartitionBy()) + '.' + txn);
+        // directory of this version can only be left behind by merge that has not been committed
+        Files.deleteOrException(dir);
+        Partition<T> result = new Partition<>(writer, interval, dir, 0, Journal.TX_LIMIT_EVAL, null);
+        created.add(result);
+        result.open();
+
+        // plan is list of row runs to copy, each is a position and row count,
+        // staged rows are told apart from rows of partition by negative position
+        plan.clear();
+        long size = 0;
+        long r = 0;
+        FixedColumn timestamps = null;
+        if (partition != null) {
+            size = partition.size();
+            timestamps = partition.getTimestampColumn();
+            r = upperBound(timestamps, rows.get(lo * 2), 0, size);
+            if (r > 0) {
+                plan.add(0);
+                plan.add(r);
+            }
+        }
+
+        long s = lo;
+        while (s < hi) {
+            long t = rows.get(s * 2);
+            if (r < size && timestamps.getLong(r) <= t) {
+                // rows of partition go first when timestamps are equal
+                long e = upperBound(timestamps, t, r + 1, size);
+                plan.add(r);
+                plan.add(e - r);
+                r = e;
+            } else {
+                long row = rows.get(s * 2 + 1);
+                long limit = r < size ? timestamps.getLong(r) : Long.MAX_VALUE;
+                long e = s + 1;
+                while (e < hi && rows.get(e * 2 + 1) == row + e - s && rows.get(e * 2) < limit) {
+                    e++;
+                }
+                plan.add(-row - 1);
+                plan.add(e - s);
+                s = e;
+            }
+        }
+
+        if (r < size) {
+            plan.add(r);
+            plan.add(size - r);
+        }
+
+        for (int c = 0, columnCount = metadata.getColumnCount(); c < columnCount; c++) {
+            for (int i = 0, m = plan.size(); i < m; i += 2) {
+                long from = plan.get(i);
+                Partition<T> src = from < 0 ? staging : partition;
+                long row = from < 0 ? -from - 1 : from;
+                switch (metadata.getColumnQuick(c).type) {
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        result.varCol(c).append(src.varCol(c), row, plan.get(i + 1));
+                        break;
+                    default:
+                        result.fixCol(c).append(src.fixCol(c), row, plan.get(i + 1));
+                        break;
+                }
+            }
+        }
+
+        result.applyTx(Journal.TX_LIMIT_EVAL, null);
+        result.updateIndexes(0, result.size());
+        LOG.info().$("Merged ").$(hi - lo).$(" rows into ").$(dir).$();
+        return result;
+    }
+
+    private TempPartition<T> staging() throws JournalException {
+        if (staging == null) {
+            TempPartition<T> p = new TempPartition<>(writer, null, 0, STAGING_DIR_PREFIX + UUID.randomUUID());
+            p.open();
+            staging = p;
+        }
+        return staging;
+    }
+}
@@ -57,8 +57,16 @@ public class Partition<T> implements Closeable {
     private long lastAccessed = System.currentTimeMillis();
     private long txLimit;
     private FixedColumn timestampColumn;
+    private ColumnStats[] columnStats;
 
     Partition(Journal<T> journal, Interval interval, int partitionIndex, long txLimit, long[] indexTxAddresses) {
+        this(journal, interval, interval == null ? null : new File(journal.getLocation(), interval.getDirName(journal.getMetadata().getPartitionBy())), partitionIndex, txLimit, indexTxAddresses);
+    }
+
+    /**
+     * Partition kept in directory of its own choosing, such as new version of partition that has been rewritten.
+     */
+    Partition(Journal<T> journal, Interval interval, File partitionDir, int partitionIndex, long txLimit, long[] indexTxAddresses) {
         JournalMetadata<T> meta = journal.getMetadata();
         this.journal = journal;
         this.partitionIndex = partitionIndex;
@@ -67,9 +75,7 @@ public class Partition<T> implements Closeable {
         this.columnCount = meta.getColumnCount();
         this.columnMetadata = new ColumnMetadata[columnCount];
         meta.copyColumnMetadata(columnMetadata);
-        if (interval != null) {
-            setPartitionDir(new File(this.journal.getLocation(), interval.getDirName(meta.getPartitionBy())), indexTxAddresses);
-        }
+        setPartitionDir(partitionDir, indexTxAddresses);
     }
 
     public void applyTx(long txLimit, long[] indexTxAddresses) {
@@ -99,6 +105,12 @@ public class Partition<T> implements Closeable {
             LOG.debug().$("Partition").$(partitionDir).$(" is closed").$();
         }
 
+        if (columnStats != null) {
+            for (int i = 0; i < columnStats.length; i++) {
+                columnStats[i] = Misc.free(columnStats[i]);
+            }
+        }
+
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             Misc.free(indexProxies.getQuick(i));
         }
@@ -177,11 +189,52 @@ public class Partition<T> implements Closeable {
         return varCol(columnIndex).getFlyweightStrB(localRowID);
     }
 
-    public KVIndex getIndexForColumn(String columnName) throws JournalException {
+    public CharSequence getFlyweightSym(long localRowID, int columnIndex) {
+        int symbolIndex = fixCol(columnIndex).getInt(localRowID);
+        switch (symbolIndex) {
+            case SymbolTable.VALUE_IS_NULL:
+            case SymbolTable.VALUE_NOT_FOUND:
+                return null;
+            default:
+                return columnMetadata[columnIndex].symbolTable.getFlyweightValue(symbolIndex);
+        }
+    }
+
+    /**
+     * Statistics of numeric column. Statistics can be read without opening partition.
+     *
+     * @param columnIndex index of column
+     * @return column statistics or null when column type is not supported or statistics have not been written yet
+     * @throws JournalException when statistics file cannot be open
+     */
+    public ColumnStats getColumnStats(int columnIndex) throws JournalException {
+        ColumnStats stats = columnStats == null ? null : Unsafe.arrayGet(columnStats, columnIndex);
+        if (stats == null) {
+            ColumnMetadata m = Unsafe.arrayGet(columnMetadata, columnIndex);
+            if (!ColumnStats.isSupported(m.type) || columnIndex == journal.getMetadata().getTimestampIndex()) {
+                return null;
+            }
+
+            File file = new File(partitionDir, m.name + ColumnStats.FILE_SUFFIX);
+            int mode = journal.getMode();
+            boolean writer = mode == JournalMode.APPEND || mode == JournalMode.BULK_APPEND;
+            if (!writer && !file.exists()) {
+                return null;
+            }
+
+            if (columnStats == null) {
+                columnStats = new ColumnStats[columnCount];
+            }
+            Unsafe.arrayPut(columnStats, columnIndex, stats = new ColumnStats(file, m.type, writer ? mode : JournalMode.READ));
+        }
+        return stats;
+    }
+
+    public ColumnIndex getIndexForColumn(String columnName) throws JournalException {
         return getIndexForColumn(journal.getMetadata().getColumnIndex(columnName));
     }
 
-    public KVIndex getIndexForColumn(final int columnIndex) throws JournalException {
+    public ColumnIndex getIndexForColumn(final int columnIndex) throws JournalException {
         SymbolIndexProxy h = sparseIndexProxies[columnIndex];
         if (h == null) {
             throw new JournalException("There is no index for column '%s' in %s", columnMetadata[columnIndex].name, this);
@@ -225,6 +278,14 @@ public class Partition<T> implements Closeable {
         this.partitionIndex = partitionIndex;
     }
 
+    /**
+     * Row count set by transaction or {@link Journal#TX_LIMIT_EVAL} when row count is evaluated from
+     * column files. Latter is the case for partitions, which are followed by other partitions in transaction.
+     */
+    public long getTxLimit() {
+        return txLimit;
+    }
+
     public short getShort(long localRowID, int columnIndex) {
         return fixCol(columnIndex).getShort(localRowID);
     }
@@ -294,32 +355,32 @@ public class Partition<T> implements Closeable {
 
             switch (m.type) {
                 case ColumnType.BOOLEAN:
-                    Unsafe.getUnsafe().putBoolean(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getBool(localRowID));
+                    Unsafe.getUnsafe().putBoolean(obj, m.offset, fixCol(i).getBool(localRowID));
                     break;
                 case ColumnType.BYTE:
-                    Unsafe.getUnsafe().putByte(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getByte(localRowID));
+                    Unsafe.getUnsafe().putByte(obj, m.offset, fixCol(i).getByte(localRowID));
                     break;
                 case ColumnType.DOUBLE:
-                    Unsafe.getUnsafe().putDouble(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getDouble(localRowID));
+                    Unsafe.getUnsafe().putDouble(obj, m.offset, fixCol(i).getDouble(localRowID));
                     break;
                 case ColumnType.FLOAT:
-                    Unsafe.getUnsafe().putFloat(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getFloat(localRowID));
+                    Unsafe.getUnsafe().putFloat(obj, m.offset, fixCol(i).getFloat(localRowID));
                     break;
                 case ColumnType.INT:
-                    Unsafe.getUnsafe().putInt(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getInt(localRowID));
+                    Unsafe.getUnsafe().putInt(obj, m.offset, fixCol(i).getInt(localRowID));
                     break;
                 case ColumnType.LONG:
                 case ColumnType.DATE:
-                    Unsafe.getUnsafe().putLong(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getLong(localRowID));
+                    Unsafe.getUnsafe().putLong(obj, m.offset, fixCol(i).getLong(localRowID));
                     break;
                 case ColumnType.SHORT:
-                    Unsafe.getUnsafe().putShort(obj, m.offset, ((FixedColumn) Unsafe.arrayGet(columns, i)).getShort(localRowID));
+                    Unsafe.getUnsafe().putShort(obj, m.offset, fixCol(i).getShort(localRowID));
                     break;
                 case ColumnType.STRING:
-                    Unsafe.getUnsafe().putObject(obj, m.offset, ((VariableColumn) Unsafe.arrayGet(columns, i)).getStr(localRowID));
+                    Unsafe.getUnsafe().putObject(obj, m.offset, varCol(i).getStr(localRowID));
                     break;
                 case ColumnType.SYMBOL:
-                    Unsafe.getUnsafe().putObject(obj, m.offset, m.symbolTable.value(((FixedColumn) Unsafe.arrayGet(columns, i)).getInt(localRowID)));
+                    Unsafe.getUnsafe().putObject(obj, m.offset, m.symbolTable.value(fixCol(i).getInt(localRowID)));
                     break;
                 case ColumnType.BINARY:
                     readBin(localRowID, obj, i, m);
@@ -379,10 +440,30 @@ public class Partition<T> implements Closeable {
             try {
                 for (int n = 0, k = indexProxies.size(); n < k; n++) {
                     SymbolIndexProxy<T> proxy = indexProxies.getQuick(n);
-                    KVIndex index = proxy.getIndex();
-                    FixedColumn col = fixCol(proxy.getColumnIndex());
-                    for (long i = oldSize; i < newSize; i++) {
-                        index.add(col.getInt(i), i);
+                    ColumnIndex index = proxy.getIndex();
+                    int columnIndex = proxy.getColumnIndex();
+                    ColumnMetadata m = Unsafe.arrayGet(columnMetadata, columnIndex);
+                    // keys are worked out the same way append() does
+                    switch (m.type) {
+                        case ColumnType.STRING:
+                            VariableColumn str = varCol(columnIndex);
+                            for (long i = oldSize; i < newSize; i++) {
+                                CharSequence s = str.getFlyweightStr(i);
+                                index.add(s == null ? SymbolTable.VALUE_IS_NULL : Hash.boundedHash(s, m.distinctCountHint), i);
+                            }
+                            break;
+                        case ColumnType.INT:
+                            FixedColumn ints = fixCol(columnIndex);
+                            for (long i = oldSize; i < newSize; i++) {
+                                index.add(ints.getInt(i) & m.distinctCountHint, i);
+                            }
+                            break;
+                        default:
+                            FixedColumn col = fixCol(columnIndex);
+                            for (long i = oldSize; i < newSize; i++) {
+                                index.add(col.getInt(i), i);
+                            }
+                            break;
                     }
                     index.commit();
                 }
@@ -498,6 +579,14 @@ public class Partition<T> implements Closeable {
         for (int i = 0, k = indexProxies.size(); i < k; i++) {
             indexProxies.getQuick(i).getIndex().commit();
         }
+
+        long size = size();
+        for (int i = 0; i < columnCount; i++) {
+            ColumnStats stats = getColumnStats(i);
+            if (stats != null) {
+                stats.update(fixCol(i), size);
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -531,6 +620,15 @@ public class Partition<T> implements Closeable {
                 }
             }
         }
+
+        if (columnStats != null) {
+            for (int i = 0; i < columnStats.length; i++) {
+                ColumnStats stats = Unsafe.arrayGet(columnStats, i);
+                if (stats != null) {
+                    stats.force();
+                }
+            }
+        }
     }
 
     void getIndexPointers(long[] pointers) throws JournalException {
@@ -545,36 +643,7 @@ public class Partition<T> implements Closeable {
 
         try {
             for (int i = 0; i < columns.length; i++) {
-                switch (Unsafe.arrayGet(columnMetadata, i).type) {
-                    case ColumnType.STRING:
-                    case ColumnType.BINARY:
-                        Unsafe.arrayPut(columns, i,
-                                new VariableColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint, journal.getMode()
-                                        ),
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".i"),
-                                                Unsafe.arrayGet(columnMetadata, i).indexBitHint,
-                                                journal.getMode()
-                                        )
-                                )
-                        );
-                        break;
-                    default:
-                        Unsafe.arrayPut(columns, i,
-                                new FixedColumn(
-                                        new MemoryFile(
-                                                new File(partitionDir, Unsafe.arrayGet(columnMetadata, i).name + ".d"),
-                                                Unsafe.arrayGet(columnMetadata, i).bitHint,
-                                                journal.getMode()
-                                        ),
-                                        Unsafe.arrayGet(columnMetadata, i).size
-                                )
-                        );
-                        break;
-                }
+                openColumn(i);
             }
         } catch (JournalException e) {
             closePartiallyOpenColumns();
@@ -587,8 +656,32 @@ public class Partition<T> implements Closeable {
         }
     }
 
+    private void openColumn(int i) throws JournalException {
+        ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+        AbstractColumn column;
+        switch (m.type) {
+            case ColumnType.STRING:
+            case ColumnType.BINARY:
+                column = new VariableColumn(openFile(m.name + ".d", m.bitHint), openFile(m.name + ".i", m.indexBitHint));
+                break;
+            default:
+                column = new FixedColumn(openFile(m.name + ".d", m.bitHint), m.size);
+                break;
+        }
+        Unsafe.arrayPut(columns, i, column);
+    }
+
+    private MemoryFile openFile(String name, int bitHint) throws JournalException {
+        // compressed copy is complete by the time it appears, raw file might be gone any moment after that
+        File packed = new File(partitionDir, name + ColumnCodec.FILE_SUFFIX);
+        if (packed.exists()) {
+            return new CompressedMemoryFile(packed, journal.getMode());
+        }
+        return new MemoryFile(new File(partitionDir, name), bitHint, journal.getMode());
+    }
+
     private void readBin(long localRowID, T obj, int i, ColumnMetadata m) {
-        int size = ((VariableColumn) Unsafe.arrayGet(columns, i)).getBinLen(localRowID);
+        int size = varCol(i).getBinLen(localRowID);
         ByteBuffer buf = (ByteBuffer) Unsafe.getUnsafe().getObject(obj, m.offset);
         if (size == -1) {
             if (buf != null) {
@@ -604,7 +697,7 @@ public class Partition<T> implements Closeable {
                 buf.rewind();
             }
             buf.limit(size);
-            ((VariableColumn) Unsafe.arrayGet(columns, i)).getBin(localRowID, buf);
+            varCol(i).getBin(localRowID, buf);
             buf.flip();
         }
     }
@@ -637,9 +730,10 @@ public class Partition<T> implements Closeable {
         getIndexForColumn(columnIndex).close();
 
         File base = new File(partitionDir, columnMetadata[columnIndex].name);
-        KVIndex.delete(base);
+        int indexType = columnMetadata[columnIndex].indexType;
+        SymbolIndexProxy.deleteIndex(indexType, base);
 
-        try (KVIndex index = new KVIndex(base, keyCountHint, recordCountHint, txCountHint, JournalMode.APPEND, 0)) {
+        try (ColumnIndex index = SymbolIndexProxy.newIndex(indexType, base, keyCountHint, recordCountHint, txCountHint, JournalMode.APPEND, 0)) {
             FixedColumn col = fixCol(columnIndex);
             for (long localRowID = 0, sz = size(); localRowID < sz; localRowID++) {
                 index.add(col.getInt(localRowID), localRowID);
@@ -673,4 +767,44 @@ public class Partition<T> implements Closeable {
             clearTx();
         }
     }
+
+    /**
+     * Brings compressed columns back to raw form, so that writer can change them. Partition is closed
+     * and has to be open again.
+     *
+     * @throws JournalException when column cannot be restored
+     */
+    void uncompress() throws JournalException {
+        close();
+        try (ColumnCodec codec = new ColumnCodec()) {
+            for (int i = 0; i < columnCount; i++) {
+                ColumnMetadata m = Unsafe.arrayGet(columnMetadata, i);
+                uncompress(codec, m.name + ".d");
+                switch (m.type) {
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                        uncompress(codec, m.name + ".i");
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    private void uncompress(ColumnCodec codec, String name) throws JournalException {
+        File packed = new File(partitionDir, name + ColumnCodec.FILE_SUFFIX);
+        if (!packed.exists()) {
+            return;
+        }
+
+        File file = new File(partitionDir, name);
+        File tmp = new File(partitionDir, name + ".tmp");
+        codec.decompress(packed, tmp);
+        // readers prefer compressed copy while both files exist
+        if (!tmp.renameTo(file) || !Files.delete(packed)) {
+            throw new JournalException("Cannot restore %s", file);
+        }
+        LOG.info().$("Restored ").$(file).$();
+    }
 }
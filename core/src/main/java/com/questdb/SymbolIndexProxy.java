@@ -27,6 +27,9 @@ import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.misc.Misc;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.ColumnIndex;
+import com.questdb.store.IndexType;
 import com.questdb.store.KVIndex;
 
 import java.io.Closeable;
@@ -36,7 +39,7 @@ class SymbolIndexProxy<T> implements Closeable {
 
     private final Partition<T> partition;
     private final int columnIndex;
-    private KVIndex index;
+    private ColumnIndex index;
     private long txAddress;
 
     SymbolIndexProxy(Partition<T> partition, int columnIndex, long txAddress) {
@@ -67,7 +70,22 @@ class SymbolIndexProxy<T> implements Closeable {
                 '}';
     }
 
-    KVIndex getIndex() throws JournalException {
+    static void deleteIndex(int indexType, File base) {
+        if (indexType == IndexType.BITMAP) {
+            BitmapIndex.delete(base);
+        } else {
+            KVIndex.delete(base);
+        }
+    }
+
+    static ColumnIndex newIndex(int indexType, File base, long keyCountHint, long recordCountHint, int txCountHint, int journalMode, long txAddress) throws JournalException {
+        if (indexType == IndexType.BITMAP) {
+            return new BitmapIndex(base, keyCountHint, recordCountHint, txCountHint, journalMode, txAddress);
+        }
+        return new KVIndex(base, keyCountHint, recordCountHint, txCountHint, journalMode, txAddress);
+    }
+
+    ColumnIndex getIndex() throws JournalException {
         if (index == null) {
             openIndex();
         }
@@ -82,7 +100,8 @@ class SymbolIndexProxy<T> implements Closeable {
             throw new JournalException("There is no index for column: %s", columnMetadata.name);
         }
 
-        index = new KVIndex(
+        index = newIndex(
+                columnMetadata.indexType,
                 new File(partition.getPartitionDir(), columnMetadata.name),
                 columnMetadata.distinctCountHint,
                 meta.getRecordHint(),
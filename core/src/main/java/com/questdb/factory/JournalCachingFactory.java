@@ -29,6 +29,7 @@ import com.questdb.JournalKey;
 import com.questdb.ex.JournalException;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.std.ObjList;
 import com.questdb.std.ObjObjHashMap;
 
 import java.util.ArrayList;
@@ -39,6 +40,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
     private final ObjObjHashMap<JournalKey, Journal> readers = new ObjObjHashMap<>();
     private final ObjObjHashMap<JournalKey, JournalBulkReader> bulkReaders = new ObjObjHashMap<>();
     private final List<Journal> journalList = new ArrayList<>();
+    private final ObjList<Journal> usedJournals = new ObjList<>();
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private JournalFactoryPool pool;
     private boolean inPool = false;
@@ -62,6 +64,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
             bulkReaders.put(key, result);
             journalList.add(result);
         }
+        use(result);
         return result;
     }
 
@@ -75,6 +78,7 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
             readers.put(key, result);
             journalList.add(result);
         }
+        use(result);
         return result;
     }
 
@@ -110,9 +114,19 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
             readers.put(key, result);
             journalList.add(result);
         }
+        use(result);
         return result;
     }
 
+    /**
+     * Readers this factory handed out since it was taken from pool, each reader is listed once.
+     *
+     * @return list of readers in order of first use
+     */
+    public ObjList<Journal> getUsedJournals() {
+        return usedJournals;
+    }
+
     @Override
     public boolean closing(Journal journal) {
         return false;
@@ -136,5 +150,12 @@ public class JournalCachingFactory extends AbstractJournalReaderFactory implemen
 
     void setInUse() {
         inPool = false;
+        usedJournals.clear();
+    }
+
+    private void use(Journal journal) {
+        if (usedJournals.indexOf(journal) == -1) {
+            usedJournals.add(journal);
+        }
     }
 }
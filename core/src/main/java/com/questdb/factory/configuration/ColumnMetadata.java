@@ -23,6 +23,7 @@
 
 package com.questdb.factory.configuration;
 
+import com.questdb.store.IndexType;
 import com.questdb.store.SymbolTable;
 import com.questdb.store.UnstructuredFile;
 
@@ -33,6 +34,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
     public int size;
     public int avgSize = Constants.DEFAULT_STRING_AVG_SIZE;
     public boolean indexed;
+    public int indexType = IndexType.KV;
     public int bitHint;
     public int indexBitHint;
     public int distinctCountHint;
@@ -47,6 +49,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
         this.size = from.size;
         this.avgSize = from.avgSize;
         this.indexed = from.indexed;
+        this.indexType = from.indexType;
         this.bitHint = from.bitHint;
         this.indexBitHint = from.indexBitHint;
         this.distinctCountHint = from.distinctCountHint;
@@ -97,6 +100,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
         result = 31 * result + size;
         result = 31 * result + avgSize;
         result = 31 * result + (indexed ? 1 : 0);
+        result = 31 * result + indexType;
         result = 31 * result + bitHint;
         result = 31 * result + indexBitHint;
         result = 31 * result + distinctCountHint;
@@ -116,6 +120,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 && distinctCountHint == that.distinctCountHint
                 && indexBitHint == that.indexBitHint
                 && indexed == that.indexed
+                && indexType == that.indexType
                 && noCache == that.noCache
                 && size == that.size
                 && name.equals(that.name)
@@ -133,6 +138,7 @@ public class ColumnMetadata implements RecordColumnMetadata {
                 ", size*=" + size +
                 ", avgSize=" + avgSize +
                 ", indexed=" + indexed +
+                ", indexType=" + IndexType.nameOf(indexType) +
                 ", bitHint=" + bitHint +
                 ", indexBitHint=" + indexBitHint +
                 ", distinctCountHint=" + distinctCountHint +
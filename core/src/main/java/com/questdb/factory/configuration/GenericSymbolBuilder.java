@@ -25,6 +25,7 @@ package com.questdb.factory.configuration;
 
 import com.questdb.misc.Numbers;
 import com.questdb.store.ColumnType;
+import com.questdb.store.IndexType;
 
 public class GenericSymbolBuilder extends AbstractGenericMetadataBuilder {
     public GenericSymbolBuilder(JournalStructure parent, ColumnMetadata meta) {
@@ -33,6 +34,18 @@ public class GenericSymbolBuilder extends AbstractGenericMetadataBuilder {
         meta.size = 4;
     }
 
+    /**
+     * Indexes column with compressed bitmap index, which is smaller and faster to combine with other
+     * bitmap indexes than default index, when column has few distinct values.
+     *
+     * @return this builder
+     */
+    public GenericSymbolBuilder bitmapIndex() {
+        this.meta.indexed = true;
+        this.meta.indexType = IndexType.BITMAP;
+        return this;
+    }
+
     public GenericSymbolBuilder index() {
         this.meta.indexed = true;
         return this;
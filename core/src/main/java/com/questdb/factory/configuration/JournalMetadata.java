@@ -126,11 +126,46 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         ioBlockTxCount = buf.getInt();
         keyColumn = buf.getStr();
         lag = buf.getInt();
+        // index types were added after the rest of metadata, older journals don't have them
+        if (buf.getPos() < buf.getAppendOffset()) {
+            for (int i = 0; i < columnCount; i++) {
+                columnMetadata[i].indexType = buf.getInt();
+            }
+        }
         constructor = null;
         partialMapping = false;
         this.key = new JournalKey<>(id);
     }
 
+    /**
+     * Copies metadata with columns of its own. Journal binds symbol tables to column metadata, so
+     * readers opened concurrently with {@code model} must not share its columns.
+     *
+     * @param model metadata to copy
+     */
+    public JournalMetadata(JournalMetadata<T> model) {
+        this.id = model.id;
+        this.modelClass = model.modelClass;
+        this.location = model.location;
+        this.partitionBy = model.partitionBy;
+        this.columnCount = model.columnCount;
+        this.columnMetadata = new ColumnMetadata[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnMetadata[i] = new ColumnMetadata().copy(model.columnMetadata[i]);
+        }
+        this.timestampColumnIndex = model.timestampColumnIndex;
+        this.timestampMetadata = timestampColumnIndex > -1 ? columnMetadata[timestampColumnIndex] : null;
+        this.constructor = model.constructor;
+        this.openFileTTL = model.openFileTTL;
+        this.ioBlockRecordCount = model.ioBlockRecordCount;
+        this.ioBlockTxCount = model.ioBlockTxCount;
+        this.keyColumn = model.keyColumn;
+        this.columnIndexLookup = model.columnIndexLookup;
+        this.lag = model.lag;
+        this.partialMapping = model.partialMapping;
+        this.key = model.key;
+    }
+
     public void copyColumnMetadata(ColumnMetadata[] meta) {
 
         if (meta.length != columnCount) {
@@ -248,6 +283,7 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
                     || thisM.size != thatM.size
                     || thisM.distinctCountHint != thatM.distinctCountHint
                     || thisM.indexed != thatM.indexed
+                    || thisM.indexType != thatM.indexType
                     || (thisM.sameAs == null && thatM.sameAs != null)
                     || (thisM.sameAs != null && !thisM.sameAs.equals(thatM.sameAs))
                     ) {
@@ -316,6 +352,9 @@ public class JournalMetadata<T> extends AbstractRecordMetadata {
         buf.put(ioBlockTxCount);
         buf.put(keyColumn);
         buf.put(lag);
+        for (int i = 0; i < columnMetadata.length; i++) {
+            buf.put(columnMetadata[i].indexType);
+        }
         buf.setAppendOffset(buf.getPos());
     }
 
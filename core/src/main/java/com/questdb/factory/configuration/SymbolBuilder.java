@@ -26,6 +26,7 @@ package com.questdb.factory.configuration;
 import com.questdb.ex.JournalConfigurationException;
 import com.questdb.misc.Numbers;
 import com.questdb.store.ColumnType;
+import com.questdb.store.IndexType;
 
 public class SymbolBuilder<T> extends AbstractMetadataBuilder<T> {
     public SymbolBuilder(JournalMetadataBuilder<T> parent, ColumnMetadata meta) {
@@ -37,6 +38,18 @@ public class SymbolBuilder<T> extends AbstractMetadataBuilder<T> {
         meta.size = 4;
     }
 
+    /**
+     * Indexes column with compressed bitmap index, which is smaller and faster to combine with other
+     * bitmap indexes than default index, when column has few distinct values.
+     *
+     * @return this builder
+     */
+    public SymbolBuilder<T> bitmapIndex() {
+        this.meta.indexed = true;
+        this.meta.indexType = IndexType.BITMAP;
+        return this;
+    }
+
     public SymbolBuilder<T> index() {
         this.meta.indexed = true;
         return this;
@@ -32,6 +32,7 @@ import com.questdb.io.parser.listener.InputAnalysisListener;
 import com.questdb.io.parser.listener.JournalImportListener;
 import com.questdb.io.parser.listener.Listener;
 import com.questdb.misc.ByteBuffers;
+import com.questdb.mp.WorkerPool;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
@@ -92,20 +93,46 @@ public final class ImportManager {
     }
 
     public static void importFile(JournalWriterFactory factory, String fileName, char delimiter, CharSequence schema, int sampleSize) throws IOException {
+        importFile(factory, fileName, delimiter, schema, sampleSize, 1);
+    }
 
-        try (TextParser parser = new DelimitedTextParser().of(delimiter)) {
-            File file = new File(fileName);
-            String location = file.getName();
+    /**
+     * Imports journal from delimited values text file on several threads. Input is split into chunks at line ends,
+     * chunks are parsed and converted on worker threads and appended to journal in order of input. Quoted fields
+     * may span lines. Format is the same as in {@link #importFile(JournalWriterFactory, String, char, CharSequence)}.
+     *
+     * @param factory    journal factory
+     * @param fileName   name of input file
+     * @param delimiter  inout delimiter
+     * @param schema     optional instance of ImportSchema
+     * @param sampleSize number of lines to auto-detect types of fields from
+     * @param workers    number of threads to parse input on, 1 parses input on calling thread
+     * @throws IOException in case imported file cannot be read
+     */
+    public static void importFile(JournalWriterFactory factory, String fileName, char delimiter, CharSequence schema, int sampleSize, int workers) throws IOException {
+        File file = new File(fileName);
+        String location = file.getName();
 
-            switch (factory.getConfiguration().exists(location)) {
-                case JournalConfiguration.EXISTS_FOREIGN:
-                    throw new JournalRuntimeException("A foreign file/directory already exists: " + (new File(factory.getConfiguration().getJournalBase(), location)));
-                default:
-                    try (JournalImportListener l = new JournalImportListener(factory).of(location, false)) {
-                        analyzeAndParse(file, parser, l, schema, sampleSize);
+        switch (factory.getConfiguration().exists(location)) {
+            case JournalConfiguration.EXISTS_FOREIGN:
+                throw new JournalRuntimeException("A foreign file/directory already exists: " + (new File(factory.getConfiguration().getJournalBase(), location)));
+            default:
+                try (JournalImportListener l = new JournalImportListener(factory).of(location, false)) {
+                    if (workers > 1) {
+                        WorkerPool workerPool = new WorkerPool(workers);
+                        workerPool.start();
+                        try (ParallelImporter importer = new ParallelImporter(delimiter, workers, workerPool)) {
+                            importer.importFile(file, l, schema, sampleSize);
+                        } finally {
+                            workerPool.halt();
+                        }
+                    } else {
+                        try (TextParser parser = new DelimitedTextParser().of(delimiter)) {
+                            analyzeAndParse(file, parser, l, schema, sampleSize);
+                        }
                     }
-                    break;
-            }
+                }
+                break;
         }
     }
 
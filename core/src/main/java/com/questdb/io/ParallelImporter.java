@@ -0,0 +1,296 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.io;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.io.parser.DelimitedTextParser;
+import com.questdb.io.parser.listener.JournalImportListener;
+import com.questdb.io.parser.listener.Listener;
+import com.questdb.io.parser.listener.RowBatch;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.WorkerPool;
+import com.questdb.std.DirectByteCharSequence;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Imports delimited text file on several threads. Mapped input is split into chunks at line ends, taking quoted
+ * fields into account. Chunks are parsed and converted on worker pool threads into row batches, which are
+ * appended to journal by importing thread in order of input. Number of chunks in flight is limited to number of
+ * workers, so importing thread appends one batch while workers convert the following ones.
+ */
+class ParallelImporter implements Closeable {
+    private static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private final char delimiter;
+    private final long chunkSize;
+    private final ObjList<Chunk> chunks;
+    private final int workers;
+    private final WorkerPool workerPool;
+
+    ParallelImporter(char delimiter, int workers, WorkerPool workerPool) {
+        this(delimiter, workers, workerPool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param delimiter  field delimiter
+     * @param workers    maximum number of chunks converted at the same time
+     * @param workerPool threads to convert input on
+     * @param chunkSize  minimum number of bytes converted by worker in one go
+     */
+    ParallelImporter(char delimiter, int workers, WorkerPool workerPool, long chunkSize) {
+        this.delimiter = delimiter;
+        this.workers = workers;
+        this.workerPool = workerPool;
+        this.chunkSize = chunkSize;
+        this.chunks = new ObjList<>(workers);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = chunks.size(); i < n; i++) {
+            chunks.getQuick(i).close();
+        }
+        chunks.clear();
+    }
+
+    void importFile(File file, JournalImportListener listener, CharSequence schema, int sampleSize) throws IOException {
+        try (DelimitedTextParser parser = new DelimitedTextParser()) {
+            parser.of(delimiter);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                try (FileChannel channel = raf.getChannel()) {
+                    long size = channel.size();
+                    long bufSize = ByteBuffers.getMaxMappedBufferSize(size);
+                    long p = 0;
+                    boolean header = false;
+                    while (p < size) {
+                        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, p, size - p < bufSize ? size - p : bufSize);
+                        try {
+                            long lo = ByteBuffers.getAddress(buf);
+                            if (p == 0) {
+                                parser.putSchema(schema);
+                                parser.analyseStructure(lo, buf.remaining(), sampleSize, listener);
+                                header = parser.isHeader();
+                                prepare(listener.getImportedMetadata());
+                            }
+
+                            long consumed = importMapped(lo, lo + buf.remaining(), p + buf.remaining() == size, p == 0 && header, listener);
+                            if (consumed == 0) {
+                                throw new JournalRuntimeException("Line is longer than " + bufSize + " bytes at offset " + p);
+                            }
+                            p += consumed;
+                        } finally {
+                            ByteBuffers.release(buf);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds end of chunk, which is end of first line after chunk size bytes, unless input runs out earlier.
+     * Line ends inside of quotes do not count.
+     *
+     * @return address after end of chunk or -1 when there is no line end and more input is to follow
+     */
+    private long chunkEnd(long lo, long hi, boolean last) {
+        long min = lo + chunkSize;
+        long lineEnd = -1;
+        boolean inQuote = false;
+        for (long p = lo; p < hi; p++) {
+            switch (Unsafe.getUnsafe().getByte(p)) {
+                case '"':
+                    inQuote = !inQuote;
+                    break;
+                case '\n':
+                    if (!inQuote) {
+                        lineEnd = p + 1;
+                        if (lineEnd >= min) {
+                            return lineEnd;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        // chunk that is short of its size still has to end with complete line
+        return last ? hi : lineEnd;
+    }
+
+    /**
+     * Converts and appends complete lines of mapped input.
+     *
+     * @return number of bytes consumed, which excludes incomplete last line
+     */
+    private long importMapped(long lo, long hi, boolean last, boolean header, JournalImportListener listener) {
+        long from = lo;
+        int published = 0;
+        int appended = 0;
+        boolean more = true;
+        try {
+            while (true) {
+                while (more && published - appended < chunks.size()) {
+                    long to = chunkEnd(from, hi, last);
+                    if (to == -1) {
+                        more = false;
+                        break;
+                    }
+
+                    Chunk chunk = chunks.getQuick(published % chunks.size());
+                    chunk.of(from, to, header && from == lo);
+                    workerPool.execute(chunk);
+                    published++;
+                    from = to;
+                    more = from < hi;
+                }
+
+                if (appended == published) {
+                    return from - lo;
+                }
+
+                Chunk chunk = chunks.getQuick(appended % chunks.size());
+                chunk.await();
+                appended++;
+                listener.onBatch(chunk.batch);
+            }
+        } finally {
+            // mapped memory must not be released under worker threads
+            while (appended < published) {
+                chunks.getQuick(appended++ % chunks.size()).await0();
+            }
+        }
+    }
+
+    private void prepare(ObjList<ImportedColumnMetadata> metadata) {
+        close();
+        for (int i = 0; i < workers; i++) {
+            chunks.add(new Chunk(metadata));
+        }
+    }
+
+    private class Chunk implements Runnable, Listener, Closeable {
+        private final ObjList<ImportedColumnMetadata> metadata;
+        private final DelimitedTextParser parser;
+        private final RowBatch batch;
+        private long lo;
+        private long hi;
+        private boolean header;
+        private CountDownLatch latch;
+        private Throwable error;
+
+        private Chunk(ObjList<ImportedColumnMetadata> metadata) {
+            this.metadata = metadata;
+            this.parser = new DelimitedTextParser();
+            this.parser.of(delimiter);
+            this.parser.setFieldCount(metadata.size());
+            this.batch = new RowBatch(chunkSize, metadata.size());
+        }
+
+        @Override
+        public void close() {
+            Misc.free(parser);
+            Misc.free(batch);
+        }
+
+        @Override
+        public void onError(int line) {
+        }
+
+        @Override
+        public void onFieldCount(int count) {
+        }
+
+        @Override
+        public void onFields(int line, ObjList<DirectByteCharSequence> values, int hi) {
+            int failed = JournalImportListener.putFields(batch, metadata, line, values, hi);
+            if (failed == -1) {
+                batch.append();
+            } else {
+                batch.onError(failed);
+            }
+        }
+
+        @Override
+        public void onHeader(ObjList<DirectByteCharSequence> values, int hi) {
+        }
+
+        @Override
+        public void onLineCount(int count) {
+        }
+
+        @Override
+        public void run() {
+            try {
+                batch.clear();
+                parser.restart();
+                parser.setHeader(header);
+                parser.parse(lo, hi - lo, Integer.MAX_VALUE, this);
+                parser.parseLast();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        private void await() {
+            await0();
+            if (error != null) {
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                }
+                throw new JournalRuntimeException(error);
+            }
+        }
+
+        private void await0() {
+            while (true) {
+                try {
+                    latch.await();
+                    return;
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }
+
+        private void of(long lo, long hi, boolean header) {
+            this.lo = lo;
+            this.hi = hi;
+            this.header = header;
+            this.error = null;
+            this.latch = new CountDownLatch(1);
+        }
+    }
+}
@@ -96,7 +96,7 @@ public class RecordSourcePrinter {
                 r.getStr(i, sink);
                 break;
             case ColumnType.SYMBOL:
-                sink.put(r.getSym(i));
+                sink.put(r.getFlyweightSym(i));
                 break;
             case ColumnType.SHORT:
                 Numbers.append(sink, r.getShort(i));
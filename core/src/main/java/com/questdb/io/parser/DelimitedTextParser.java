@@ -76,6 +76,10 @@ public class DelimitedTextParser implements TextParser {
         return lineCount;
     }
 
+    public boolean isHeader() {
+        return header;
+    }
+
     @Override
     public TextParser of(char separator) {
         clear();
@@ -109,6 +113,20 @@ public class DelimitedTextParser implements TextParser {
         }
     }
 
+    /**
+     * Fixes number of fields instead of taking it from first parsed line. This lets parser start in the
+     * middle of input, where first line is not necessarily representative.
+     *
+     * @param count number of fields in line
+     */
+    public void setFieldCount(int count) {
+        fields.clear();
+        for (int i = 0; i < count; i++) {
+            fields.add(csPool.next());
+        }
+        calcFields = false;
+    }
+
     @Override
     public void setHeader(boolean header) {
         this.header = header;
@@ -64,6 +64,68 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
         this.factory = factory;
     }
 
+    /**
+     * Converts fields of line to types of imported columns and puts them into entry writer. Empty fields are
+     * left out, so they take default values of their columns.
+     *
+     * @param w        entry writer
+     * @param metadata imported column metadata
+     * @param line     line number for logging
+     * @param values   fields of line
+     * @param hi       number of fields
+     * @return index of field that failed conversion or -1 when all fields are put
+     */
+    public static int putFields(JournalEntryWriter w, ObjList<ImportedColumnMetadata> metadata, int line, ObjList<DirectByteCharSequence> values, int hi) {
+        for (int i = 0; i < hi; i++) {
+            if (values.getQuick(i).length() == 0) {
+                continue;
+            }
+            try {
+                switch (metadata.getQuick(i).importedColumnType) {
+                    case ImportedColumnType.STRING:
+                        w.putStr(i, values.getQuick(i));
+                        break;
+                    case ImportedColumnType.DOUBLE:
+                        w.putDouble(i, Numbers.parseDouble(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.INT:
+                        w.putInt(i, Numbers.parseInt(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.FLOAT:
+                        w.putFloat(i, Numbers.parseFloat(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.DATE_ISO:
+                        w.putDate(i, Dates.parseDateTime(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.DATE_1:
+                        w.putDate(i, Dates.parseDateTimeFmt1(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.DATE_2:
+                        w.putDate(i, Dates.parseDateTimeFmt2(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.DATE_3:
+                        w.putDate(i, Dates.parseDateTimeFmt3(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.SYMBOL:
+                        w.putSym(i, values.getQuick(i));
+                        break;
+                    case ImportedColumnType.LONG:
+                        w.putLong(i, Numbers.parseLong(values.getQuick(i)));
+                        break;
+                    case ImportedColumnType.BOOLEAN:
+                        w.putBool(i, Chars.equalsIgnoreCase(values.getQuick(i), "true"));
+                        break;
+                    default:
+                        break;
+                }
+            } catch (Exception e) {
+                LOG.debug().$("Error at (").$(line).$(',').$(i).$(") as ").$(metadata.getQuick(i).importedColumnType).$(": ").$(e.getMessage()).$();
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public void clear() {
         writer = Misc.free(writer);
@@ -90,6 +152,13 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
         return errors;
     }
 
+    /**
+     * @return metadata of imported columns, with types adjusted to existing journal
+     */
+    public ObjList<ImportedColumnMetadata> getImportedMetadata() {
+        return metadata;
+    }
+
     public long getImportedRowCount() {
         try {
             return writer.size() - _size;
@@ -108,6 +177,24 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
         return this;
     }
 
+    /**
+     * Appends rows converted on other threads. Batches must be appended in order of input.
+     *
+     * @param batch converted rows and their conversion errors
+     */
+    public void onBatch(RowBatch batch) {
+        try {
+            batch.appendTo(writer);
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        LongList batchErrors = batch.getErrors();
+        for (int i = 0, n = batchErrors.size(); i < n; i++) {
+            errors.setQuick(i, errors.getQuick(i) + batchErrors.getQuick(i));
+        }
+    }
+
     @Override
     public void onError(int line) {
 
@@ -119,60 +206,13 @@ public class JournalImportListener implements InputAnalysisListener, Closeable,
 
     @Override
     public void onFields(int line, ObjList<DirectByteCharSequence> values, int hi) {
-        boolean append = true;
         try {
             JournalEntryWriter w = writer.entryWriter();
-            for (int i = 0; i < hi; i++) {
-                if (values.getQuick(i).length() == 0) {
-                    continue;
-                }
-                try {
-                    switch (metadata.getQuick(i).importedColumnType) {
-                        case ImportedColumnType.STRING:
-                            w.putStr(i, values.getQuick(i));
-                            break;
-                        case ImportedColumnType.DOUBLE:
-                            w.putDouble(i, Numbers.parseDouble(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.INT:
-                            w.putInt(i, Numbers.parseInt(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.FLOAT:
-                            w.putFloat(i, Numbers.parseFloat(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.DATE_ISO:
-                            w.putDate(i, Dates.parseDateTime(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.DATE_1:
-                            w.putDate(i, Dates.parseDateTimeFmt1(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.DATE_2:
-                            w.putDate(i, Dates.parseDateTimeFmt2(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.DATE_3:
-                            w.putDate(i, Dates.parseDateTimeFmt3(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.SYMBOL:
-                            w.putSym(i, values.getQuick(i));
-                            break;
-                        case ImportedColumnType.LONG:
-                            w.putLong(i, Numbers.parseLong(values.getQuick(i)));
-                            break;
-                        case ImportedColumnType.BOOLEAN:
-                            w.putBool(i, Chars.equalsIgnoreCase(values.getQuick(i), "true"));
-                            break;
-                        default:
-                            break;
-                    }
-                } catch (Exception e) {
-                    errors.increment(i);
-                    LOG.debug().$("Error at (").$(line).$(',').$(i).$(") as ").$(metadata.getQuick(i).importedColumnType).$(": ").$(e.getMessage()).$();
-                    append = false;
-                    break;
-                }
-            }
-            if (append) {
+            int failed = putFields(w, metadata, line, values, hi);
+            if (failed == -1) {
                 w.append();
+            } else {
+                errors.increment(failed);
             }
         } catch (JournalException e) {
             throw new JournalRuntimeException(e);
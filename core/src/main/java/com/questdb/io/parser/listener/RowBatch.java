@@ -0,0 +1,294 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.io.parser.listener;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.DirectByteCharSequence;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Rows converted by import thread and held in native memory until they are appended to journal by writer
+ * thread. Each value is stored as column index, value type and value. Row ends with {@link #EOR}.
+ * <p>
+ * Batch implements entry writer, so that fields are converted by same code that imports into journal directly.
+ * Strings are stored one byte per character, which is how they are parsed from input.
+ */
+public class RowBatch implements JournalEntryWriter, Closeable, Mutable {
+    private static final int EOR = -1;
+    private static final byte BYTE = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte FLOAT = 5;
+    private static final byte LONG = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte DATE = 8;
+    private static final byte STRING = 9;
+    private static final byte SYMBOL = 10;
+    private static final byte NULL = 11;
+    private final LongList errors = new LongList();
+    private final DirectByteCharSequence cs = new DirectByteCharSequence();
+    private final int columnCount;
+    private long address;
+    private long capacity;
+    private long pos;
+    private long rowStart;
+    private int rowCount;
+
+    public RowBatch(long capacity, int columnCount) {
+        this.columnCount = columnCount;
+        this.address = Unsafe.malloc(this.capacity = capacity);
+        clear();
+    }
+
+    @Override
+    public void append() {
+        ensureCapacity(4);
+        Unsafe.getUnsafe().putInt(pos, EOR);
+        pos += 4;
+        rowStart = pos;
+        rowCount++;
+    }
+
+    @Override
+    public void put(int index, byte value) {
+        putHeader(index, BYTE, 1);
+        Unsafe.getUnsafe().putByte(pos++, value);
+    }
+
+    @Override
+    public void putBin(int index, InputStream value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OutputStream putBin(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putBool(int index, boolean value) {
+        putHeader(index, BOOLEAN, 1);
+        Unsafe.getUnsafe().putByte(pos++, (byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public void putDate(int index, long value) {
+        putHeader(index, DATE, 8);
+        Unsafe.getUnsafe().putLong(pos, value);
+        pos += 8;
+    }
+
+    @Override
+    public void putDouble(int index, double value) {
+        putHeader(index, DOUBLE, 8);
+        Unsafe.getUnsafe().putDouble(pos, value);
+        pos += 8;
+    }
+
+    @Override
+    public void putFloat(int index, float value) {
+        putHeader(index, FLOAT, 4);
+        Unsafe.getUnsafe().putFloat(pos, value);
+        pos += 4;
+    }
+
+    @Override
+    public void putInt(int index, int value) {
+        putHeader(index, INT, 4);
+        Unsafe.getUnsafe().putInt(pos, value);
+        pos += 4;
+    }
+
+    @Override
+    public void putLong(int index, long value) {
+        putHeader(index, LONG, 8);
+        Unsafe.getUnsafe().putLong(pos, value);
+        pos += 8;
+    }
+
+    @Override
+    public void putNull(int index) {
+        putHeader(index, NULL, 0);
+    }
+
+    @Override
+    public void putShort(int index, short value) {
+        putHeader(index, SHORT, 2);
+        Unsafe.getUnsafe().putShort(pos, value);
+        pos += 2;
+    }
+
+    @Override
+    public void putStr(int index, CharSequence value) {
+        putChars(index, STRING, value);
+    }
+
+    @Override
+    public void putSym(int index, CharSequence value) {
+        putChars(index, SYMBOL, value);
+    }
+
+    /**
+     * Appends rows of batch to journal.
+     *
+     * @param writer journal writer
+     * @throws JournalException when writer fails to append row
+     */
+    public void appendTo(JournalWriter writer) throws JournalException {
+        long p = address;
+        for (int r = 0; r < rowCount; r++) {
+            JournalEntryWriter w = writer.entryWriter();
+            int index;
+            while ((index = Unsafe.getUnsafe().getInt(p)) != EOR) {
+                byte type = Unsafe.getUnsafe().getByte(p + 4);
+                p += 5;
+                switch (type) {
+                    case BYTE:
+                        w.put(index, Unsafe.getUnsafe().getByte(p++));
+                        break;
+                    case BOOLEAN:
+                        w.putBool(index, Unsafe.getUnsafe().getByte(p++) == 1);
+                        break;
+                    case SHORT:
+                        w.putShort(index, Unsafe.getUnsafe().getShort(p));
+                        p += 2;
+                        break;
+                    case INT:
+                        w.putInt(index, Unsafe.getUnsafe().getInt(p));
+                        p += 4;
+                        break;
+                    case FLOAT:
+                        w.putFloat(index, Unsafe.getUnsafe().getFloat(p));
+                        p += 4;
+                        break;
+                    case LONG:
+                        w.putLong(index, Unsafe.getUnsafe().getLong(p));
+                        p += 8;
+                        break;
+                    case DOUBLE:
+                        w.putDouble(index, Unsafe.getUnsafe().getDouble(p));
+                        p += 8;
+                        break;
+                    case DATE:
+                        w.putDate(index, Unsafe.getUnsafe().getLong(p));
+                        p += 8;
+                        break;
+                    case STRING:
+                    case SYMBOL:
+                        int len = Unsafe.getUnsafe().getInt(p);
+                        p += 4;
+                        cs.of(p, p + len);
+                        p += len;
+                        if (type == STRING) {
+                            w.putStr(index, cs);
+                        } else {
+                            w.putSym(index, cs);
+                        }
+                        break;
+                    default:
+                        w.putNull(index);
+                        break;
+                }
+            }
+            p += 4;
+            w.append();
+        }
+    }
+
+    @Override
+    public final void clear() {
+        pos = rowStart = address;
+        rowCount = 0;
+        errors.seed(columnCount, 0);
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, capacity);
+            address = 0;
+        }
+    }
+
+    /**
+     * @return number of conversion errors by column index
+     */
+    public LongList getErrors() {
+        return errors;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Discards values of current row and counts error of column, which failed conversion.
+     *
+     * @param index column index
+     */
+    public void onError(int index) {
+        pos = rowStart;
+        errors.increment(index);
+    }
+
+    private void ensureCapacity(long len) {
+        if (pos + len > address + capacity) {
+            long newCapacity = Math.max(capacity * 2, pos + len - address);
+            long p = Unsafe.malloc(newCapacity);
+            Unsafe.getUnsafe().copyMemory(address, p, pos - address);
+            Unsafe.free(address, capacity);
+            pos = p + (pos - address);
+            rowStart = p + (rowStart - address);
+            address = p;
+            capacity = newCapacity;
+        }
+    }
+
+    private void putChars(int index, byte type, CharSequence value) {
+        int len = value.length();
+        putHeader(index, type, 4 + len);
+        Unsafe.getUnsafe().putInt(pos, len);
+        pos += 4;
+        for (int i = 0; i < len; i++) {
+            Unsafe.getUnsafe().putByte(pos++, (byte) value.charAt(i));
+        }
+    }
+
+    private void putHeader(int index, byte type, int len) {
+        ensureCapacity(5 + len);
+        Unsafe.getUnsafe().putInt(pos, index);
+        Unsafe.getUnsafe().putByte(pos + 4, type);
+        pos += 5;
+    }
+}
@@ -25,6 +25,7 @@ package com.questdb.misc;
 
 import com.questdb.io.sink.AbstractCharSink;
 import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
 import com.questdb.std.Mutable;
 
 import java.io.FileOutputStream;
@@ -38,9 +39,26 @@ public class BytecodeAssembler implements Mutable {
     public static final int aload_0 = 42;
     public static final int ineg = 0x74;
     public static final int aload_1 = 43;
+    public static final int aaload = 0x32;
     public static final int istore_2 = 61;
+    public static final int dadd = 0x63;
+    public static final int dsub = 0x67;
+    public static final int dmul = 0x6b;
+    public static final int ddiv = 0x6f;
+    public static final int lcmp = 0x94;
+    public static final int dcmpl = 0x97;
+    public static final int dcmpg = 0x98;
+    public static final int ifeq = 0x99;
     public static final int ifne = 154;
+    public static final int iflt = 0x9b;
+    public static final int ifge = 0x9c;
+    public static final int ifgt = 0x9d;
+    public static final int ifle = 0x9e;
+    public static final int if_icmpeq = 0x9f;
+    public static final int if_icmpne = 0xa0;
     public static final int ireturn = 172;
+    public static final int lreturn = 0xad;
+    public static final int dreturn = 0xaf;
     public static final int return_ = 177;
     public static final int getfield = 180;
     public static final int putfield = 181;
@@ -48,6 +66,8 @@ public class BytecodeAssembler implements Mutable {
     private static final int iconst_0 = 3;
     private static final int bipush = 16;
     private static final int sipush = 17;
+    private static final int ldc_w = 0x13;
+    private static final int ldc2_w = 0x14;
     private static final int invokespecial = 183;
     private static final int invokeinterface = 185;
     private static final int O_POOL_COUNT = 8;
@@ -143,6 +163,16 @@ public class BytecodeAssembler implements Mutable {
         put(0);
     }
 
+    public void ldc(int constantIndex) {
+        put(ldc_w);
+        putShort(constantIndex);
+    }
+
+    public void ldc2(int constantIndex) {
+        put(ldc2_w);
+        putShort(constantIndex);
+    }
+
     @SuppressWarnings("unchecked")
     public <T> Class<T> loadClass(Class<?> host) {
         byte b[] = new byte[position()];
@@ -156,14 +186,37 @@ public class BytecodeAssembler implements Mutable {
         return poolCount++;
     }
 
+    public int poolDoubleConstant(double value) {
+        put(0x06);
+        putLong(Double.doubleToRawLongBits(value));
+        // long and double constants take two pool slots
+        int index = poolCount;
+        poolCount += 2;
+        return index;
+    }
+
     public int poolField(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x09, classIndex, nameAndTypeIndex);
     }
 
+    public int poolIntConstant(int value) {
+        put(0x03);
+        putInt(value);
+        return poolCount++;
+    }
+
     public int poolInterfaceMethod(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x0B, classIndex, nameAndTypeIndex);
     }
 
+    public int poolLongConstant(long value) {
+        put(0x05);
+        putLong(value);
+        int index = poolCount;
+        poolCount += 2;
+        return index;
+    }
+
     public int poolMethod(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x0A, classIndex, nameAndTypeIndex);
     }
@@ -241,6 +294,36 @@ public class BytecodeAssembler implements Mutable {
         putInt(lenPos, position() - lenPos - 4);
     }
 
+    /**
+     * Writes StackMapTable attribute where every frame is "same" frame, i.e. locals are those of method
+     * signature and operand stack is empty. This is sufficient for code that never branches with values on stack.
+     *
+     * @param stackMapTableIndex pool index of "StackMapTable" string
+     * @param offsets            sorted, distinct branch target offsets relative to start of method code
+     */
+    public void putStackMapSameFrames(int stackMapTableIndex, IntList offsets) {
+        putShort(stackMapTableIndex);
+        int lenPos = position();
+        putInt(0);
+        int n = offsets.size();
+        putShort(n);
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            int offset = offsets.getQuick(i);
+            int delta = offset - last - 1;
+            if (delta < 64) {
+                // frame type SAME
+                put(delta);
+            } else {
+                // frame type SAME_FRAME_EXTENDED
+                put(251);
+                putShort(delta);
+            }
+            last = offset;
+        }
+        putInt(lenPos, position() - lenPos - 4);
+    }
+
     public void setupPool() {
         // magic
         putInt(0xCAFEBABE);
@@ -304,6 +387,13 @@ public class BytecodeAssembler implements Mutable {
         buf.putInt(v);
     }
 
+    private void putLong(long v) {
+        if (buf.remaining() < 8) {
+            resize();
+        }
+        buf.putLong(v);
+    }
+
     private void putShort(short v) {
         if (buf.remaining() < 2) {
             resize();
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.mp;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.ObjectFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of threads for short tasks handed off by parallel query and import code. Idle threads block until task
+ * is submitted. Queue of pending tasks is bounded, when it is full, as well as before pool is started and after
+ * it is halted, task runs on submitting thread, so submitter never blocks and task is never lost.
+ * <p>
+ * Tasks are expected to deal with their own errors, anything that escapes task is logged and dropped to keep
+ * thread alive.
+ */
+public class WorkerPool {
+    private static final Log LOG = LogFactory.getLog(WorkerPool.class);
+    private static final int QUEUE_CAPACITY = 1024;
+    private final static AtomicInteger COUNTER = new AtomicInteger();
+    private final RingQueue<Holder> queue = new RingQueue<>(Holder.FACTORY, QUEUE_CAPACITY);
+    private final Sequence pubSeq = new MPSequence(QUEUE_CAPACITY);
+    private final Sequence subSeq = new MCSequence(QUEUE_CAPACITY, null);
+    // one permit per submitted task, permit can outlive its task when task is taken by other thread
+    private final Semaphore pending = new Semaphore(0);
+    private final int workerCount;
+    private final CountDownLatch haltLatch;
+    private volatile boolean running = false;
+
+    /**
+     * @param workerCount number of threads, 0 makes every task run on submitting thread
+     */
+    public WorkerPool(int workerCount) {
+        this.workerCount = workerCount;
+        this.haltLatch = new CountDownLatch(workerCount);
+        pubSeq.then(subSeq).then(pubSeq);
+    }
+
+    public void execute(Runnable task) {
+        if (!running) {
+            task.run();
+            return;
+        }
+
+        while (true) {
+            long seq = pubSeq.next();
+            if (seq > -1) {
+                queue.get(seq).task = task;
+                pubSeq.done(seq);
+                pending.release();
+                return;
+            }
+
+            if (seq == -1) {
+                task.run();
+                return;
+            }
+        }
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Stops threads once they are done with tasks they run. Tasks left in queue run on halting thread.
+     * Halted pool cannot be started again.
+     */
+    public void halt() {
+        if (running) {
+            running = false;
+            pending.release(workerCount);
+            try {
+                haltLatch.await();
+            } catch (InterruptedException e) {
+                throw new JournalRuntimeException(e);
+            }
+            drain();
+        }
+    }
+
+    public void start() {
+        if (running || workerCount == 0 || haltLatch.getCount() == 0) {
+            return;
+        }
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (running) {
+                            pending.acquireUninterruptibly();
+                            drain();
+                        }
+                    } finally {
+                        haltLatch.countDown();
+                    }
+                }
+            }, "questdb-pool-" + COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            long seq = subSeq.next();
+            if (seq == -1) {
+                return;
+            }
+
+            if (seq == -2) {
+                continue;
+            }
+
+            Holder h = queue.get(seq);
+            Runnable task = h.task;
+            h.task = null;
+            subSeq.done(seq);
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOG.error().$("Task failed: ").$(e).$();
+            }
+        }
+    }
+
+    private static class Holder {
+        private static final ObjectFactory<Holder> FACTORY = new ObjectFactory<Holder>() {
+            @Override
+            public Holder newInstance() {
+                return new Holder();
+            }
+        };
+
+        private Runnable task;
+    }
+}
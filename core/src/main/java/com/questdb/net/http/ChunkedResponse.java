@@ -23,9 +23,28 @@
 
 package com.questdb.net.http;
 
+import com.questdb.std.CharSink;
+
 public interface ChunkedResponse extends ResponseSink, FragmentedResponse {
     void bookmark();
 
+    /**
+     * Copies content to given sink as it is sent, starting from current write position. Content is copied
+     * before compression. Null sink stops copying.
+     *
+     * @param sink sink to receive copy of content
+     */
+    void capture(CharSink sink);
+
+    /**
+     * Copies raw bytes to content buffer, as many as fit.
+     *
+     * @param address address of bytes to copy
+     * @param len     number of bytes to copy
+     * @return number of bytes copied, which is less than len when content buffer is full
+     */
+    long putBytes(long address, long len);
+
     /**
      * Resets content buffer pointer to bookmarked position.
      *
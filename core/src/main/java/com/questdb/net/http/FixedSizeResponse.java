@@ -23,7 +23,22 @@
 
 package com.questdb.net.http;
 
+import com.questdb.ex.DisconnectedChannelException;
+import com.questdb.ex.SlowWritableChannelException;
+
 public interface FixedSizeResponse extends FragmentedResponse {
 
+    /**
+     * Sends part of file as content, one content buffer at a time. When channel is slow to write remaining
+     * part of file is sent on resume, file must stay open until then.
+     *
+     * @param fd     file open for reading
+     * @param offset offset in file of first byte to send
+     * @param len    number of bytes to send
+     * @throws DisconnectedChannelException when file is shorter than expected or peer is gone
+     * @throws SlowWritableChannelException when channel cannot take more data, sending continues on resume
+     */
+    void sendFile(long fd, long offset, long len) throws DisconnectedChannelException, SlowWritableChannelException;
+
     void status(int status, CharSequence contentType, long len);
 }
@@ -23,7 +23,6 @@
 
 package com.questdb.net.http;
 
-import com.questdb.ex.FatalError;
 import com.questdb.ex.JournalRuntimeException;
 import com.questdb.ex.NetworkError;
 import com.questdb.iter.clock.Clock;
@@ -31,7 +30,6 @@ import com.questdb.iter.clock.MilliClock;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.misc.Misc;
-import com.questdb.misc.Os;
 import com.questdb.mp.*;
 import com.questdb.std.ObjHashSet;
 import com.questdb.std.ObjList;
@@ -48,6 +46,7 @@ public class HttpServer {
     private final CountDownLatch startComplete = new CountDownLatch(1);
     private final UrlMatcher urlMatcher;
     private final ServerConfiguration configuration;
+    private final WorkerPool workerPool;
     private volatile boolean running = true;
     private Clock clock = MilliClock.INSTANCE;
     private IODispatcher dispatcher;
@@ -60,6 +59,14 @@ public class HttpServer {
         this.haltLatch = new CountDownLatch(workerCount);
         this.workers = new ObjList<>(workerCount);
         this.configuration = configuration;
+        this.workerPool = new WorkerPool(configuration.getDbPoolWorkers());
+    }
+
+    /**
+     * Threads for parallel query plans of handlers. Pool is started and halted together with server.
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
     }
 
     public void halt() {
@@ -72,6 +79,7 @@ public class HttpServer {
                 }
                 haltLatch.await();
                 dispatcher.close();
+                workerPool.halt();
             } catch (Exception e) {
                 throw new JournalRuntimeException(e);
             }
@@ -97,7 +105,7 @@ public class HttpServer {
         ioPubSequence.then(ioSubSequence).then(ioPubSequence);
 
         try {
-            this.dispatcher = createDispatcher("0.0.0.0", address.getPort(), ioQueue, ioPubSequence, clock, configuration, queueDepth);
+            this.dispatcher = IODispatchers.create("0.0.0.0", address.getPort(), ioQueue, ioPubSequence, clock, configuration, queueDepth);
         } catch (NetworkError e) {
             LOG.error().$("Server failed to start: ").$(e.getMessage()).$();
             running = false;
@@ -113,6 +121,7 @@ public class HttpServer {
             jobs.addAll(extraJobs);
         }
 
+        workerPool.start();
         for (int i = 0; i < workerCount; i++) {
             Worker w;
             workers.add(w = new Worker(jobs, haltLatch));
@@ -128,28 +137,6 @@ public class HttpServer {
         start(null, 1024);
     }
 
-    private IODispatcher createDispatcher(
-            CharSequence ip,
-            int port,
-            RingQueue<IOEvent> ioQueue,
-            Sequence ioSequence,
-            Clock clock,
-            ServerConfiguration configuration,
-            int capacity
-    ) {
-
-        switch (Os.type) {
-            case Os.OSX:
-                return new KQueueDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
-            case Os.WINDOWS:
-                return new Win32SelectDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
-            case Os.LINUX:
-                return new EpollDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
-            default:
-                throw new FatalError("Unsupported operating system");
-        }
-    }
-
     int getConnectionCount() {
         return this.dispatcher.getConnectionCount();
     }
@@ -112,4 +112,8 @@ public class IOContext implements Closeable, Mutable, Locality {
     int getResponseCode() {
         return response.getCode();
     }
+
+    void setConnection(CharSequence connection) {
+        response.setConnection(connection);
+    }
 }
@@ -27,7 +27,7 @@ import com.questdb.mp.Job;
 
 import java.io.Closeable;
 
-interface IODispatcher extends Closeable, Job {
+public interface IODispatcher extends Closeable, Job {
     int getConnectionCount();
 
     void registerChannel(IOContext context, int channelStatus);
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http;
+
+import com.questdb.ex.FatalError;
+import com.questdb.iter.clock.Clock;
+import com.questdb.misc.Os;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+
+public final class IODispatchers {
+
+    private IODispatchers() {
+    }
+
+    /**
+     * Creates dispatcher for current operating system, listening on given address. Connection limit and idle
+     * timeout are taken from {@link ServerConfiguration#getHttpMaxConnections()} and
+     * {@link ServerConfiguration#getHttpTimeout()}.
+     */
+    public static IODispatcher create(
+            CharSequence ip,
+            int port,
+            RingQueue<IOEvent> ioQueue,
+            Sequence ioSequence,
+            Clock clock,
+            ServerConfiguration configuration,
+            int capacity
+    ) {
+        switch (Os.type) {
+            case Os.OSX:
+                return new KQueueDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
+            case Os.WINDOWS:
+                return new Win32SelectDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
+            case Os.LINUX:
+                return new EpollDispatcher(ip, port, ioQueue, ioSequence, clock, configuration, capacity);
+            default:
+                throw new FatalError("Unsupported operating system");
+        }
+    }
+}
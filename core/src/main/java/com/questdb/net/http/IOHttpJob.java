@@ -73,6 +73,14 @@ public class IOHttpJob implements Job {
         urlMatcher.setupHandlers();
     }
 
+    private static CharSequence connectionHeader(Request r) {
+        if (!r.isKeepAlive()) {
+            return "close";
+        }
+        // HTTP/1.1 connections are persistent by default
+        return r.isHttp10() ? "keep-alive" : null;
+    }
+
     private static void logAccess(IOContext context) {
         ACCESS.xinfo().
                 $ip(Net.getPeerIP(context.channel.getFd())).
@@ -87,7 +95,23 @@ public class IOHttpJob implements Job {
                 $();
     }
 
-    private void process(IOContext context, final int channelStatus) {
+    /**
+     * Processes requests of connection until channel needs to wait. Requests pipelined by client are
+     * already in request buffer and are processed in order without waiting for channel to become readable.
+     *
+     * @param context       connection context
+     * @param channelStatus status reported by dispatcher
+     */
+    private void process(IOContext context, int channelStatus) {
+        int newChannelStatus;
+        do {
+            newChannelStatus = process0(context, channelStatus);
+            channelStatus = ChannelStatus.READ;
+        } while (newChannelStatus == ChannelStatus.READ && context.request.isPipelined());
+        ioDispatcher.registerChannel(context, newChannelStatus);
+    }
+
+    private int process0(IOContext context, final int channelStatus) {
         final Request r = context.request;
         final SimpleResponse sr = context.simpleResponse();
 
@@ -98,6 +122,7 @@ public class IOHttpJob implements Job {
             boolean log = r.isIncomplete();
             if (channelStatus == ChannelStatus.READ) {
                 r.read();
+                context.setConnection(connectionHeader(r));
             }
 
             if (r.getUrl() == null) {
@@ -139,8 +164,9 @@ public class IOHttpJob implements Job {
                     logAccess(context);
                 }
             }
+            // client that asked to close connection is disconnected once response is sent
+            newChannelStatus = r.isKeepAlive() ? ChannelStatus.READ : ChannelStatus.EOF;
             context.clear();
-            newChannelStatus = ChannelStatus.READ;
         } catch (HeadersTooLargeException ignored) {
             silent(context, 431, null);
             LOG.info().$("Headers too large").$();
@@ -162,7 +188,7 @@ public class IOHttpJob implements Job {
             LOG.error().$("Internal error: ").$(e).$();
             logAccess(context);
         }
-        ioDispatcher.registerChannel(context, newChannelStatus);
+        return newChannelStatus;
     }
 
     private void silent(IOContext context, int code, CharSequence msg) {
@@ -49,6 +49,7 @@ public class Request implements Closeable, Mutable {
     private final int soRcvSmall;
     private final int soRcvLarge;
     private final int soRetries;
+    private boolean pipelined;
 
     public Request(NetworkChannel channel, ServerConfiguration configuration) {
         this.channel = channel;
@@ -63,9 +64,17 @@ public class Request implements Closeable, Mutable {
 
     @Override
     public void clear() {
+        // bytes past headers of complete GET request are start of next pipelined request
+        if (!hb.isIncomplete() && Chars.equals("GET", hb.getMethod()) && in.hasRemaining()) {
+            in.compact();
+            in.flip();
+            pipelined = true;
+        } else {
+            in.clear();
+            pipelined = false;
+        }
         this.hb.clear();
         this.pool.clear();
-        this.in.clear();
         this.multipartParser.clear();
     }
 
@@ -93,10 +102,27 @@ public class Request implements Closeable, Mutable {
         return hb.getUrlParam(name);
     }
 
+    public boolean isHttp10() {
+        return isHttp10(hb.getMethodLine());
+    }
+
     public boolean isIncomplete() {
         return hb.isIncomplete();
     }
 
+    /**
+     * Persistent connection unless client asks otherwise. HTTP/1.0 clients have to ask for keep-alive explicitly.
+     *
+     * @return true when connection is to be kept open after response
+     */
+    public boolean isKeepAlive() {
+        CharSequence connection = hb.get("Connection");
+        if (connection != null) {
+            return !Chars.equalsIgnoreCase("close", connection);
+        }
+        return !isHttp10(hb.getMethodLine());
+    }
+
     public boolean isMultipart() {
         return Chars.equalsNc("multipart/form-data", hb.getContentType());
     }
@@ -123,13 +149,41 @@ public class Request implements Closeable, Mutable {
         }
     }
 
+    /**
+     * Bytes of pipelined request are left in buffer by {@link #clear()}. They have to be processed
+     * without waiting for channel, which may have nothing more to read.
+     *
+     * @return true when buffer holds start of next request
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
     public void read() throws HeadersTooLargeException, IOException, MalformedHeaderException {
-        drainChannel();
+        if (pipelined) {
+            pipelined = false;
+        } else {
+            drainChannel();
+        }
         if (isIncomplete()) {
             readHeaders();
         }
     }
 
+    private static boolean isHttp10(CharSequence methodLine) {
+        final String version = "HTTP/1.0";
+        int len = methodLine == null ? 0 : methodLine.length();
+        if (len < version.length()) {
+            return false;
+        }
+        for (int i = 0, k = len - version.length(); i < version.length(); i++) {
+            if (methodLine.charAt(k + i) != version.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void drainChannel() throws IOException {
         in.clear();
         ByteBuffers.copyNonBlocking(channel, in, soRetries);
@@ -56,6 +56,7 @@ public class Response implements Closeable, Mutable {
     private static final int FLUSH = 9;
     private static final int SEND_DEFLATED_CONT = 10;
     private static final int SEND_DEFLATED_END = 11;
+    private static final int SEND_FILE = 12;
     private final ByteBuffer out;
     private final long outPtr;
     private final long limit;
@@ -71,13 +72,19 @@ public class Response implements Closeable, Mutable {
     private long _wPtr;
     private ByteBuffer zout;
     private ByteBuffer _flushBuf;
-    private int state;
+    // nothing to send until handler starts response, so that resume of idle response is a no-op
+    private int state = DONE;
     private long z_streamp = 0;
     private boolean compressed = false;
     private long pzout;
     private int crc = 0;
     private long total = 0;
     private boolean header = true;
+    private CharSink captureSink;
+    private long capturePtr;
+    private long fileFd;
+    private long fileOffset;
+    private long fileHi;
 
     public Response(WritableByteChannel channel, ServerConfiguration configuration, Clock clock) {
         if (configuration.getHttpBufRespHeader() <= 0) {
@@ -105,6 +112,8 @@ public class Response implements Closeable, Mutable {
         out.clear();
         hb.clear();
         this._wPtr = outPtr;
+        this.captureSink = null;
+        this.state = DONE;
         if (zout != null) {
             zout.clear();
         }
@@ -127,6 +136,10 @@ public class Response implements Closeable, Mutable {
         return hb.getCode();
     }
 
+    public void setConnection(CharSequence connection) {
+        hb.setConnection(connection);
+    }
+
     public void resume() throws DisconnectedChannelException, SlowWritableChannelException {
         machine0();
     }
@@ -275,6 +288,9 @@ public class Response implements Closeable, Mutable {
                 case FLUSH:
                     state = deflate(true);
                     break;
+                case SEND_FILE:
+                    state = sendFile();
+                    break;
                 case DONE:
                     return;
                 default:
@@ -319,6 +335,20 @@ public class Response implements Closeable, Mutable {
         this.total = 0;
     }
 
+    private int sendFile() throws DisconnectedChannelException, SlowWritableChannelException {
+        if (fileOffset < fileHi) {
+            long n = Files.read(fileFd, outPtr, (int) Math.min(sz, fileHi - fileOffset), fileOffset);
+            if (n <= 0) {
+                throw DisconnectedChannelException.INSTANCE;
+            }
+            fileOffset += n;
+            out.limit((int) n);
+            _flushBuf = out;
+            return SEND_FILE;
+        }
+        return DONE;
+    }
+
     private class SimpleResponseImpl implements SimpleResponse {
 
         public void send(int code) throws DisconnectedChannelException, SlowWritableChannelException {
@@ -410,6 +440,14 @@ public class Response implements Closeable, Mutable {
             flushSingle(out);
         }
 
+        @Override
+        public void sendFile(long fd, long offset, long len) throws DisconnectedChannelException, SlowWritableChannelException {
+            fileFd = fd;
+            fileOffset = offset;
+            fileHi = offset + len;
+            machine(null, SEND_FILE);
+        }
+
         @Override
         public void sendHeader() throws DisconnectedChannelException, SlowWritableChannelException {
             flushSingle(hb.prepareBuffer());
@@ -425,6 +463,20 @@ public class Response implements Closeable, Mutable {
             bookmark = _wPtr;
         }
 
+        @Override
+        public void capture(CharSink sink) {
+            captureSink = sink;
+            capturePtr = _wPtr;
+        }
+
+        @Override
+        public long putBytes(long address, long len) {
+            long n = Math.min(len, limit - _wPtr);
+            Unsafe.getUnsafe().copyMemory(address, _wPtr, n);
+            _wPtr += n;
+            return n;
+        }
+
         @Override
         public boolean resetToBookmark() {
             _wPtr = bookmark;
@@ -471,6 +523,13 @@ public class Response implements Closeable, Mutable {
         @Override
         public void sendChunk() throws DisconnectedChannelException, SlowWritableChannelException {
             if (outPtr != _wPtr) {
+                if (captureSink != null) {
+                    for (long p = capturePtr; p < _wPtr; p++) {
+                        captureSink.put((char) (Unsafe.getUnsafe().getByte(p) & 0xff));
+                    }
+                    capturePtr = outPtr;
+                }
+
                 if (compressed) {
                     machine(null, MULTI_CHUNK);
                 } else {
@@ -44,6 +44,7 @@ public class ResponseHeaderBuffer extends AbstractCharSink implements Closeable,
     private long _wptr;
     private boolean chunky;
     private int code;
+    private CharSequence connection;
 
     public ResponseHeaderBuffer(int size, Clock clock) {
         this.clock = clock;
@@ -58,6 +59,7 @@ public class ResponseHeaderBuffer extends AbstractCharSink implements Closeable,
         headers.clear();
         _wptr = headerPtr;
         chunky = false;
+        connection = null;
     }
 
     @Override
@@ -102,6 +104,10 @@ public class ResponseHeaderBuffer extends AbstractCharSink implements Closeable,
         return chunky;
     }
 
+    public void setConnection(CharSequence connection) {
+        this.connection = connection;
+    }
+
     public String status(int code, CharSequence contentType, long contentLength) {
         this.code = code;
         String status = httpStatusMap.get(code);
@@ -123,6 +129,9 @@ public class ResponseHeaderBuffer extends AbstractCharSink implements Closeable,
         if (contentType != null) {
             put("Content-Type: ").put(contentType).put(Misc.EOL);
         }
+        if (connection != null) {
+            put("Connection: ").put(connection).put(Misc.EOL);
+        }
 
         return status;
     }
@@ -23,6 +23,7 @@
 
 package com.questdb.net.http;
 
+import com.questdb.PartitionBy;
 import com.questdb.ex.NumericException;
 import com.questdb.misc.Numbers;
 import com.questdb.net.SslConfig;
@@ -43,6 +44,8 @@ public class ServerConfiguration {
     private int httpBufReqMultipart = 1024;
     private int httpBufRespHeader = 1024;
     private int httpBufRespContent = 1024 * 1024;
+    private int httpCacheSize = 0;
+    private int httpCachePlans = 1024;
     private int httpThreads = 2;
     private int httpTimeout = 10000000;
     private int httpMaxConnections = 128;
@@ -56,16 +59,33 @@ public class ServerConfiguration {
     private int dbAsOfRowPage = 1024 * 1024;
     private int dbSortKeyPage = 1024 * 1024;
     private int dbSortDataPage = 4 * 1024 * 1024;
+    private int dbSortRunSize = 0;
     private int dbAggregatePage = 4 * 1024 * 1024;
+    private int dbAggregateWorkers = 1;
     private int dbHashKeyPage = 4 * 1024 * 1024;
     private int dbHashDataPage = 8 * 1024 * 1024;
     private int dbHashRowPage = 1024 * 1024;
+    private int dbHashBudget = 0;
+    private int dbHashWorkers = 1;
+    private int dbLatestWorkers = 1;
     private int dbCyclesBeforeCancel = 1024 * 1024;
     private int dbAnalyticFuncPage = 2 * 1024 * 1024;
     private int dbAnalyticWindowPage = 4 * 1024 * 1024;
+    private boolean lineEnabled = false;
+    private int lineTcpPort = 9009;
+    private int lineUdpPort = 9009;
+    private int lineThreads = 1;
+    private int lineMaxConnections = 64;
+    private int lineBufSize = 64 * 1024;
+    private int lineCommitRows = 10000;
+    private int lineCommitInterval = 1000;
+    private int lineIdleTimeout = 300000;
+    private int lineMaxJournals = 1000;
+    private int linePartitionBy = PartitionBy.DAY;
     private File dbPath = new File("db");
     private File mimeTypes = new File("conf/mime.types");
     private File httpPublic = new File("public");
+    private File httpExportPath = new File("tmp");
     private File accessLog = new File("log/access.log");
     private File errorLog = new File("log/error.log");
 
@@ -140,6 +160,14 @@ public class ServerConfiguration {
             this.httpBufRespContent = n;
         }
 
+        if ((n = parseSize(props, "http.cache.size")) > -1) {
+            this.httpCacheSize = n;
+        }
+
+        if ((n = parseInt(props, "http.cache.plans")) > -1) {
+            this.httpCachePlans = n;
+        }
+
         if ((s = props.getProperty("db.path")) != null) {
             this.dbPath = mkdirs(normalize(root, new File(s)));
         } else {
@@ -172,10 +200,18 @@ public class ServerConfiguration {
             this.dbSortDataPage = n;
         }
 
+        if ((n = parseSize(props, "db.sort.runsize")) > -1) {
+            this.dbSortRunSize = n;
+        }
+
         if ((n = parseSize(props, "db.aggregate.page")) > -1) {
             this.dbAggregatePage = n;
         }
 
+        if ((n = parseInt(props, "db.aggregate.workers")) > -1) {
+            this.dbAggregateWorkers = n;
+        }
+
         if ((n = parseSize(props, "db.hash.keypage")) > -1) {
             this.dbHashKeyPage = n;
         }
@@ -188,6 +224,18 @@ public class ServerConfiguration {
             this.dbHashRowPage = n;
         }
 
+        if ((n = parseSize(props, "db.hash.budget")) > -1) {
+            this.dbHashBudget = n;
+        }
+
+        if ((n = parseInt(props, "db.hash.workers")) > -1) {
+            this.dbHashWorkers = n;
+        }
+
+        if ((n = parseInt(props, "db.latest.workers")) > -1) {
+            this.dbLatestWorkers = n;
+        }
+
         if ((n = parseInt(props, "db.cycles.before.cancel")) > -1) {
             this.dbCyclesBeforeCancel = Numbers.ceilPow2(n);
         }
@@ -200,6 +248,51 @@ public class ServerConfiguration {
             this.dbAnalyticWindowPage = n;
         }
 
+        this.lineEnabled = "true".equals(props.getProperty("line.enabled"));
+
+        if ((n = parseInt(props, "line.tcp.port")) > -1) {
+            this.lineTcpPort = n;
+        }
+
+        if ((n = parseInt(props, "line.udp.port")) > -1) {
+            this.lineUdpPort = n;
+        }
+
+        if ((n = parseInt(props, "line.threads")) > -1) {
+            this.lineThreads = n;
+        }
+
+        if ((n = parseInt(props, "line.max.connections")) > -1) {
+            this.lineMaxConnections = n;
+        }
+
+        if ((n = parseSize(props, "line.buf.size")) > -1) {
+            this.lineBufSize = n;
+        }
+
+        if ((n = parseInt(props, "line.commit.rows")) > -1) {
+            this.lineCommitRows = n;
+        }
+
+        if ((n = parseInt(props, "line.commit.interval")) > -1) {
+            this.lineCommitInterval = n;
+        }
+
+        if ((n = parseInt(props, "line.idle.timeout")) > -1) {
+            this.lineIdleTimeout = n;
+        }
+
+        if ((n = parseInt(props, "line.max.journals")) > -1) {
+            this.lineMaxJournals = n;
+        }
+
+        if ((s = props.getProperty("line.partition.by")) != null) {
+            this.linePartitionBy = PartitionBy.fromString(s);
+            if (this.linePartitionBy == -1) {
+                throw new IllegalArgumentException("line.partition.by is invalid: " + s);
+            }
+        }
+
         if ((s = props.getProperty("mime.types")) != null) {
             this.mimeTypes = normalize(root, new File(s));
         } else {
@@ -212,6 +305,12 @@ public class ServerConfiguration {
             this.httpPublic = mkdirs(normalize(root, this.httpPublic));
         }
 
+        if ((s = props.getProperty("http.export.path")) != null) {
+            this.httpExportPath = mkdirs(normalize(root, new File(s)));
+        } else {
+            this.httpExportPath = mkdirs(normalize(root, this.httpExportPath));
+        }
+
         if ((s = props.getProperty("http.log.access")) != null) {
             this.accessLog = normalize(root, new File(s));
         } else {
@@ -263,6 +362,14 @@ public class ServerConfiguration {
         return dbAggregatePage;
     }
 
+    public int getDbAggregateWorkers() {
+        return dbAggregateWorkers;
+    }
+
+    public void setDbAggregateWorkers(int dbAggregateWorkers) {
+        this.dbAggregateWorkers = dbAggregateWorkers;
+    }
+
     public int getDbAnalyticFuncPage() {
         return dbAnalyticFuncPage;
     }
@@ -287,6 +394,18 @@ public class ServerConfiguration {
         return dbCyclesBeforeCancel;
     }
 
+    public void setDbCyclesBeforeCancel(int dbCyclesBeforeCancel) {
+        this.dbCyclesBeforeCancel = dbCyclesBeforeCancel;
+    }
+
+    public int getDbHashBudget() {
+        return dbHashBudget;
+    }
+
+    public void setDbHashBudget(int dbHashBudget) {
+        this.dbHashBudget = dbHashBudget;
+    }
+
     public int getDbHashDataPage() {
         return dbHashDataPage;
     }
@@ -299,6 +418,30 @@ public class ServerConfiguration {
         return dbHashRowPage;
     }
 
+    public int getDbHashWorkers() {
+        return dbHashWorkers;
+    }
+
+    public void setDbHashWorkers(int dbHashWorkers) {
+        this.dbHashWorkers = dbHashWorkers;
+    }
+
+    public int getDbLatestWorkers() {
+        return dbLatestWorkers;
+    }
+
+    public void setDbLatestWorkers(int dbLatestWorkers) {
+        this.dbLatestWorkers = dbLatestWorkers;
+    }
+
+    /**
+     * Number of threads in pool shared by parallel query plans. Worker settings of plans count query thread,
+     * which is not part of pool.
+     */
+    public int getDbPoolWorkers() {
+        return Math.max(Math.max(dbAggregateWorkers, dbHashWorkers), dbLatestWorkers) - 1;
+    }
+
     public File getDbPath() {
         return dbPath;
     }
@@ -311,6 +454,14 @@ public class ServerConfiguration {
         return dbSortKeyPage;
     }
 
+    public int getDbSortRunSize() {
+        return dbSortRunSize;
+    }
+
+    public void setDbSortRunSize(int dbSortRunSize) {
+        this.dbSortRunSize = dbSortRunSize;
+    }
+
     public File getErrorLog() {
         return errorLog;
     }
@@ -319,14 +470,26 @@ public class ServerConfiguration {
         return httpBufReqContent;
     }
 
+    public void setHttpBufReqContent(int httpBufReqContent) {
+        this.httpBufReqContent = httpBufReqContent;
+    }
+
     public int getHttpBufReqHeader() {
         return httpBufReqHeader;
     }
 
+    public void setHttpBufReqHeader(int httpBufReqHeader) {
+        this.httpBufReqHeader = httpBufReqHeader;
+    }
+
     public int getHttpBufReqMultipart() {
         return httpBufReqMultipart;
     }
 
+    public void setHttpBufReqMultipart(int httpBufReqMultipart) {
+        this.httpBufReqMultipart = httpBufReqMultipart;
+    }
+
     public int getHttpBufRespContent() {
         return httpBufRespContent;
     }
@@ -339,6 +502,34 @@ public class ServerConfiguration {
         return httpBufRespHeader;
     }
 
+    public void setHttpBufRespHeader(int httpBufRespHeader) {
+        this.httpBufRespHeader = httpBufRespHeader;
+    }
+
+    public int getHttpCachePlans() {
+        return httpCachePlans;
+    }
+
+    public void setHttpCachePlans(int httpCachePlans) {
+        this.httpCachePlans = httpCachePlans;
+    }
+
+    public int getHttpCacheSize() {
+        return httpCacheSize;
+    }
+
+    public void setHttpCacheSize(int httpCacheSize) {
+        this.httpCacheSize = httpCacheSize;
+    }
+
+    public File getHttpExportPath() {
+        return httpExportPath;
+    }
+
+    public void setHttpExportPath(File httpExportPath) {
+        this.httpExportPath = httpExportPath;
+    }
+
     public String getHttpIP() {
         return httpIP;
     }
@@ -391,6 +582,70 @@ public class ServerConfiguration {
         return journalPoolSize;
     }
 
+    public int getLineBufSize() {
+        return lineBufSize;
+    }
+
+    public int getLineCommitInterval() {
+        return lineCommitInterval;
+    }
+
+    public void setLineCommitInterval(int lineCommitInterval) {
+        this.lineCommitInterval = lineCommitInterval;
+    }
+
+    public int getLineCommitRows() {
+        return lineCommitRows;
+    }
+
+    public void setLineCommitRows(int lineCommitRows) {
+        this.lineCommitRows = lineCommitRows;
+    }
+
+    public int getLineIdleTimeout() {
+        return lineIdleTimeout;
+    }
+
+    public void setLineIdleTimeout(int lineIdleTimeout) {
+        this.lineIdleTimeout = lineIdleTimeout;
+    }
+
+    public int getLineMaxConnections() {
+        return lineMaxConnections;
+    }
+
+    public int getLineMaxJournals() {
+        return lineMaxJournals;
+    }
+
+    public void setLineMaxJournals(int lineMaxJournals) {
+        this.lineMaxJournals = lineMaxJournals;
+    }
+
+    public int getLinePartitionBy() {
+        return linePartitionBy;
+    }
+
+    public void setLinePartitionBy(int linePartitionBy) {
+        this.linePartitionBy = linePartitionBy;
+    }
+
+    public int getLineTcpPort() {
+        return lineTcpPort;
+    }
+
+    public int getLineThreads() {
+        return lineThreads;
+    }
+
+    public int getLineUdpPort() {
+        return lineUdpPort;
+    }
+
+    public boolean isLineEnabled() {
+        return lineEnabled;
+    }
+
     public File getMimeTypes() {
         return mimeTypes;
     }
@@ -410,6 +665,8 @@ public class ServerConfiguration {
                 ", httpBufReqMultipart=" + httpBufReqMultipart +
                 ", httpBufRespHeader=" + httpBufRespHeader +
                 ", httpBufRespContent=" + httpBufRespContent +
+                ", httpCacheSize=" + httpCacheSize +
+                ", httpCachePlans=" + httpCachePlans +
                 ", httpThreads=" + httpThreads +
                 ", httpTimeout=" + httpTimeout +
                 ", httpMaxConnections=" + httpMaxConnections +
@@ -423,10 +680,27 @@ public class ServerConfiguration {
                 ", dbAsOfRowPage=" + dbAsOfRowPage +
                 ", dbSortKeyPage=" + dbSortKeyPage +
                 ", dbSortDataPage=" + dbSortDataPage +
+                ", dbSortRunSize=" + dbSortRunSize +
                 ", dbAggregatePage=" + dbAggregatePage +
+                ", dbAggregateWorkers=" + dbAggregateWorkers +
+                ", dbHashBudget=" + dbHashBudget +
+                ", dbHashWorkers=" + dbHashWorkers +
+                ", dbLatestWorkers=" + dbLatestWorkers +
+                ", lineEnabled=" + lineEnabled +
+                ", lineTcpPort=" + lineTcpPort +
+                ", lineUdpPort=" + lineUdpPort +
+                ", lineThreads=" + lineThreads +
+                ", lineMaxConnections=" + lineMaxConnections +
+                ", lineBufSize=" + lineBufSize +
+                ", lineCommitRows=" + lineCommitRows +
+                ", lineCommitInterval=" + lineCommitInterval +
+                ", lineIdleTimeout=" + lineIdleTimeout +
+                ", lineMaxJournals=" + lineMaxJournals +
+                ", linePartitionBy=" + PartitionBy.toString(linePartitionBy) +
                 ", dbPath=" + dbPath +
                 ", mimeTypes=" + mimeTypes +
                 ", httpPublic=" + httpPublic +
+                ", httpExportPath=" + httpExportPath +
                 ", accessLog=" + accessLog +
                 ", errorLog=" + errorLog +
                 '}';
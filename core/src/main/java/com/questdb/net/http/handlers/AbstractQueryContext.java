@@ -24,15 +24,18 @@
 package com.questdb.net.http.handlers;
 
 import com.questdb.ex.*;
+import com.questdb.factory.JournalCachingFactory;
 import com.questdb.factory.JournalFactoryPool;
-import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.log.LogRecord;
+import com.questdb.io.sink.StringSink;
 import com.questdb.misc.Chars;
 import com.questdb.misc.Misc;
 import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.WorkerPool;
 import com.questdb.net.http.ChunkedResponse;
 import com.questdb.net.http.Request;
 import com.questdb.net.http.ServerConfiguration;
@@ -42,12 +45,11 @@ import com.questdb.ql.RecordSource;
 import com.questdb.ql.impl.ChannelCheckCancellationHandler;
 import com.questdb.ql.parser.QueryCompiler;
 import com.questdb.ql.parser.QueryError;
-import com.questdb.std.AssociativeCache;
+import com.questdb.std.CharSink;
 import com.questdb.std.Mutable;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 
 public abstract class AbstractQueryContext implements Mutable, Closeable {
@@ -58,11 +60,13 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
     public static final int QUERY_RECORD_COLUMNS = 5;
     public static final int QUERY_RECORD_SUFFIX = 6;
     public static final int QUERY_DATA_SUFFIX = 7;
+    public static final int QUERY_CACHED = 8;
+    public static final int QUERY_FILE = 9;
     static final ThreadLocal<QueryCompiler> COMPILER = new ThreadLocal<>();
-    static final ThreadLocal<AssociativeCache<RecordSource>> CACHE = new ThreadLocal<>();
     static final Log LOG = LogFactory.getLog(AbstractQueryContext.class);
     final ChannelCheckCancellationHandler cancellationHandler;
     final long fd;
+    final StringSink cacheKey = new StringSink();
     RecordSource recordSource;
     CharSequence query;
     RecordMetadata metadata;
@@ -71,7 +75,12 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
     long skip;
     long stop;
     Record record;
-    JournalReaderFactory factory;
+    JournalCachingFactory factory;
+    PlanCache planCache;
+    ResultCache resultCache;
+    ResultCache.Entry cached;
+    ResultCache.Entry capture;
+    long cachedOffset;
     int queryState = QUERY_PREFIX;
     int columnIndex;
 
@@ -86,12 +95,18 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         metadata = null;
         cursor = null;
         record = null;
+        if (cached != null) {
+            resultCache.release(cached);
+            cached = null;
+        }
+        capture = Misc.free(capture);
+        resultCache = null;
         if (factory != null) {
             debug().$("Closing journal factory ").$();
         }
         factory = Misc.free(factory);
         if (recordSource != null) {
-            CACHE.get().put(query.toString(), recordSource);
+            planCache.put(query, recordSource);
             recordSource = null;
         }
         query = null;
@@ -105,16 +120,25 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         clear();
     }
 
-    public void compileQuery(ChunkedResponse r, JournalFactoryPool pool, AtomicLong misses, AtomicLong hits) throws IOException {
+    public void compileQuery(ChunkedResponse r, JournalFactoryPool pool, PlanCache planCache, ResultCache resultCache) throws IOException {
         try {
             // Prepare Context.
             this.factory = pool.get();
-            recordSource = CACHE.get().poll(query);
+            if (resultCache != null) {
+                this.resultCache = resultCache;
+                cacheKey.clear();
+                cacheKey(cacheKey);
+                cached = resultCache.get(cacheKey, factory);
+                if (cached != null) {
+                    cachedOffset = 0;
+                    header(r, 200);
+                    return;
+                }
+            }
+            this.planCache = planCache;
+            recordSource = planCache.poll(query);
             if (recordSource == null) {
                 recordSource = COMPILER.get().compile(factory, query);
-                misses.incrementAndGet();
-            } else {
-                hits.incrementAndGet();
             }
             cursor = recordSource.prepareCursor(factory, cancellationHandler);
             metadata = recordSource.getMetadata();
@@ -180,12 +204,30 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         return true;
     }
 
-    static void setupThread(ServerConfiguration configuration) {
+    static void setupThread(ServerConfiguration configuration, WorkerPool workerPool) {
         if (COMPILER.get() == null) {
-            COMPILER.set(new QueryCompiler(configuration));
+            COMPILER.set(new QueryCompiler(configuration, workerPool));
         }
-        if (CACHE.get() == null) {
-            CACHE.set(new AssociativeCache<RecordSource>(8, 128));
+    }
+
+    /**
+     * Writes key of cached response. Subclasses add URL parameters that affect their output.
+     *
+     * @param sink sink for key
+     */
+    protected void cacheKey(CharSink sink) {
+        sink.put(skip).put(',').put(stop).put(',');
+        ResultCache.normalize(query, sink);
+    }
+
+    /**
+     * Adds captured response to result cache. Must be called after last chunk of response is sent.
+     */
+    void cacheResult(ChunkedResponse r) {
+        if (capture != null) {
+            r.capture(null);
+            resultCache.put(cacheKey, capture, factory.getUsedJournals());
+            capture = null;
         }
     }
 
@@ -203,5 +245,32 @@ public abstract class AbstractQueryContext implements Mutable, Closeable {
         return LOG.info().$('[').$(fd).$("] ");
     }
 
+    /**
+     * Copies cached response to client, sending chunks as content buffer fills up.
+     */
+    void sendCached(ChunkedResponse r) throws DisconnectedChannelException, SlowWritableChannelException {
+        final long address = cached.getAddress();
+        final long len = cached.length();
+        while (cachedOffset < len) {
+            try {
+                r.put((char) (Unsafe.getUnsafe().getByte(address + cachedOffset) & 0xff));
+                cachedOffset++;
+            } catch (ResponseContentBufferTooSmallException ignored) {
+                r.sendChunk();
+            }
+        }
+    }
+
     protected abstract void sendException(ChunkedResponse r, int position, CharSequence message, int code) throws DisconnectedChannelException, SlowWritableChannelException;
+
+    /**
+     * Starts copying response content into new cache entry unless copying has started already or
+     * result cache is disabled.
+     */
+    void startCapture(ChunkedResponse r) {
+        if (resultCache != null && capture == null) {
+            capture = resultCache.newEntry();
+            r.capture(capture);
+        }
+    }
 }
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.ex.DisconnectedChannelException;
+import com.questdb.ex.SlowWritableChannelException;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ChunkedResponse;
+import com.questdb.ql.Record;
+import com.questdb.std.DirectInputStream;
+import com.questdb.std.DirectMemoryStructure;
+import com.questdb.std.IntList;
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+
+/**
+ * Encodes query result in binary columnar format. All numbers are little-endian. Response starts with schema:
+ * <pre>
+ *     int columnCount
+ *     columnCount x (string name, string type)
+ * </pre>
+ * followed by batches of rows:
+ * <pre>
+ *     int rowCount
+ *     columnCount x (int byteCount, byte[byteCount] values)
+ * </pre>
+ * and ends with batch of zero rows followed by long total count of rows. Fixed size values are stored as
+ * they are in journal columns, with same null values: BOOLEAN and BYTE take 1 byte, SHORT 2, INT and FLOAT 4,
+ * LONG, DOUBLE and DATE 8. Strings, symbols and binary values are prefixed with int length, which is -1 for null.
+ * Length of strings is in chars, which follow as UTF-16, length of binary values is in bytes.
+ */
+class ColumnBatch implements Mutable, Closeable {
+    private final Buffer head = new Buffer(0);
+    private final ObjList<Buffer> columns = new ObjList<>();
+    private final IntList types = new IntList();
+    private int columnCount;
+    private int rowCount;
+    // buffer being sent and read position in it, -1 is head buffer
+    private int sendIndex;
+    private long sendOffset;
+
+    public void add(Record record) {
+        for (int i = 0; i < columnCount; i++) {
+            Buffer b = columns.getQuick(i);
+            switch (types.getQuick(i)) {
+                case ColumnType.BOOLEAN:
+                    b.putByte((byte) (record.getBool(i) ? 1 : 0));
+                    break;
+                case ColumnType.BYTE:
+                    b.putByte(record.get(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    b.putDouble(record.getDouble(i));
+                    break;
+                case ColumnType.FLOAT:
+                    b.putFloat(record.getFloat(i));
+                    break;
+                case ColumnType.INT:
+                    b.putInt(record.getInt(i));
+                    break;
+                case ColumnType.LONG:
+                    b.putLong(record.getLong(i));
+                    break;
+                case ColumnType.DATE:
+                    b.putLong(record.getDate(i));
+                    break;
+                case ColumnType.SHORT:
+                    b.putShort(record.getShort(i));
+                    break;
+                case ColumnType.STRING:
+                    b.putStr(record.getFlyweightStr(i));
+                    break;
+                case ColumnType.SYMBOL:
+                    b.putStr(record.getFlyweightSym(i));
+                    break;
+                case ColumnType.BINARY:
+                    b.putBin(record.getBin(i));
+                    break;
+                default:
+                    break;
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * Discards rows and prepares empty batch.
+     */
+    @Override
+    public void clear() {
+        head.clear();
+        for (int i = 0; i < columnCount; i++) {
+            columns.getQuick(i).clear();
+        }
+        rowCount = 0;
+        sendIndex = -1;
+        sendOffset = 0;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(head);
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            Misc.free(columns.getQuick(i));
+        }
+        columns.clear();
+        columnCount = 0;
+    }
+
+    /**
+     * Ends batch of rows added so far, making it ready to be sent. Batch of zero rows ends result and is
+     * followed by total count of rows.
+     *
+     * @param count total count of rows, only used when batch is empty
+     */
+    public void finish(long count) {
+        head.putInt(rowCount);
+        if (rowCount == 0) {
+            head.putLong(count);
+        } else {
+            for (int i = 0; i < columnCount; i++) {
+                columns.getQuick(i).putLength();
+            }
+        }
+    }
+
+    public void of(RecordMetadata metadata) {
+        this.columnCount = metadata.getColumnCount();
+        types.clear();
+        for (int i = 0; i < columnCount; i++) {
+            if (i == columns.size()) {
+                columns.add(new Buffer(4));
+            }
+            types.add(metadata.getColumnQuick(i).getType());
+        }
+        clear();
+    }
+
+    public void putSchema(RecordMetadata metadata) {
+        head.putInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            RecordColumnMetadata m = metadata.getColumnQuick(i);
+            head.putStr(m.getName());
+            head.putStr(ColumnType.nameOf(m.getType()));
+        }
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Copies finished batch to response content, sending chunks as content buffer fills up.
+     * When socket is slow this method throws exception and can be called again to carry on.
+     */
+    public void send(ChunkedResponse r) throws DisconnectedChannelException, SlowWritableChannelException {
+        final int n = rowCount == 0 ? 0 : columnCount;
+        while (sendIndex < n) {
+            Buffer b = sendIndex == -1 ? head : columns.getQuick(sendIndex);
+            long len = b.size();
+            while (sendOffset < len) {
+                long copied = r.putBytes(b.getAddress() + sendOffset, len - sendOffset);
+                sendOffset += copied;
+                if (sendOffset < len) {
+                    r.sendChunk();
+                }
+            }
+            sendIndex++;
+            sendOffset = 0;
+        }
+    }
+
+    /**
+     * Growable native buffer. Column buffers reserve first 4 bytes for their length.
+     */
+    private static class Buffer extends DirectMemoryStructure implements Mutable {
+        private final int reserved;
+        private long pos;
+        private long limit;
+
+        Buffer(int reserved) {
+            this.reserved = reserved;
+        }
+
+        @Override
+        public void clear() {
+            if (address == 0) {
+                address = Unsafe.malloc(capacity = 4096);
+                limit = address + capacity;
+            }
+            pos = address + reserved;
+        }
+
+        long getAddress() {
+            return address;
+        }
+
+        void putBin(DirectInputStream s) {
+            if (s == null) {
+                putInt(-1);
+            } else {
+                long len = s.size();
+                putInt((int) len);
+                ensureCapacity(len);
+                s.copyTo(pos, 0, len);
+                pos += len;
+            }
+        }
+
+        void putByte(byte value) {
+            ensureCapacity(1);
+            Unsafe.getUnsafe().putByte(pos++, value);
+        }
+
+        void putDouble(double value) {
+            ensureCapacity(8);
+            Unsafe.getUnsafe().putDouble(pos, value);
+            pos += 8;
+        }
+
+        void putFloat(float value) {
+            ensureCapacity(4);
+            Unsafe.getUnsafe().putFloat(pos, value);
+            pos += 4;
+        }
+
+        void putInt(int value) {
+            ensureCapacity(4);
+            Unsafe.getUnsafe().putInt(pos, value);
+            pos += 4;
+        }
+
+        void putLength() {
+            Unsafe.getUnsafe().putInt(address, (int) (size() - reserved));
+        }
+
+        void putLong(long value) {
+            ensureCapacity(8);
+            Unsafe.getUnsafe().putLong(pos, value);
+            pos += 8;
+        }
+
+        void putShort(short value) {
+            ensureCapacity(2);
+            Unsafe.getUnsafe().putShort(pos, value);
+            pos += 2;
+        }
+
+        void putStr(CharSequence value) {
+            if (value == null) {
+                putInt(-1);
+            } else {
+                int len = value.length();
+                putInt(len);
+                ensureCapacity(len * 2);
+                for (int i = 0; i < len; i++) {
+                    Unsafe.getUnsafe().putChar(pos + i * 2, value.charAt(i));
+                }
+                pos += len * 2;
+            }
+        }
+
+        long size() {
+            return pos - address;
+        }
+
+        private void ensureCapacity(long len) {
+            if (pos + len > limit) {
+                long sz = size();
+                long cap = Math.max(capacity * 2, sz + len);
+                long p = Unsafe.malloc(cap);
+                Unsafe.getUnsafe().copyMemory(address, p, sz);
+                Unsafe.free(address, capacity);
+                address = p;
+                capacity = cap;
+                pos = p + sz;
+                limit = p + cap;
+            }
+        }
+    }
+}
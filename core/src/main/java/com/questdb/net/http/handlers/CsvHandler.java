@@ -28,46 +28,63 @@ import com.questdb.ex.ResponseContentBufferTooSmallException;
 import com.questdb.ex.SlowWritableChannelException;
 import com.questdb.factory.JournalFactoryPool;
 import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.io.sink.FileSink;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Files;
 import com.questdb.misc.Misc;
 import com.questdb.misc.Numbers;
-import com.questdb.net.http.ChunkedResponse;
-import com.questdb.net.http.ContextHandler;
-import com.questdb.net.http.IOContext;
-import com.questdb.net.http.ServerConfiguration;
+import com.questdb.mp.WorkerPool;
+import com.questdb.net.http.*;
 import com.questdb.ql.Record;
 import com.questdb.std.CharSink;
 import com.questdb.std.LocalValue;
 import com.questdb.std.Mutable;
+import com.questdb.std.Path;
 import com.questdb.store.ColumnType;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static com.questdb.net.http.handlers.AbstractQueryContext.*;
 
 public class CsvHandler implements ContextHandler {
     private final JournalFactoryPool factoryPool;
     private final LocalValue<ExportHandlerContext> localContext = new LocalValue<>();
-    private final AtomicLong cacheHits = new AtomicLong();
-    private final AtomicLong cacheMisses = new AtomicLong();
     private final ServerConfiguration configuration;
-
+    private final WorkerPool workerPool;
+    private final PlanCache planCache;
+    private final ResultCache resultCache;
+    private final File exportPath;
 
     public CsvHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration) {
+        this(factoryPool, configuration, null);
+    }
+
+    /**
+     * @param workerPool threads for parallel query plans or null to run queries on HTTP threads alone
+     */
+    public CsvHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, WorkerPool workerPool) {
         this.factoryPool = factoryPool;
         this.configuration = configuration;
+        this.workerPool = workerPool;
+        this.planCache = new PlanCache(configuration.getHttpCachePlans());
+        this.resultCache = configuration.getHttpCacheSize() > 0 ? new ResultCache(configuration.getHttpCacheSize()) : null;
+        this.exportPath = configuration.getHttpExportPath();
+        deleteExportFiles(exportPath);
     }
 
     @Override
     public void handle(IOContext context) throws IOException {
         ExportHandlerContext ctx = localContext.get(context);
         if (ctx == null) {
-            localContext.set(context, ctx = new ExportHandlerContext(context.channel.getFd(), context.getServerConfiguration().getDbCyclesBeforeCancel()));
+            localContext.set(context, ctx = new ExportHandlerContext(context.channel.getFd(), context.getServerConfiguration().getDbCyclesBeforeCancel(), exportPath));
         }
         ChunkedResponse r = context.chunkedResponse();
         if (ctx.parseUrl(r, context.request)) {
-            ctx.compileQuery(r, factoryPool, cacheMisses, cacheHits);
+            ctx.toFile = Chars.equalsNc("true", context.request.getUrlParam("file"));
+            // file export is not captured, its content never goes through response buffer
+            ctx.compileQuery(r, factoryPool, planCache, ctx.toFile ? null : resultCache);
             resume(context);
         }
     }
@@ -76,12 +93,17 @@ public class CsvHandler implements ContextHandler {
     @Override
     public void resume(IOContext context) throws IOException {
         ExportHandlerContext ctx = localContext.get(context);
-        if (ctx == null || ctx.cursor == null) {
+        if (ctx == null || (ctx.cursor == null && ctx.cached == null)) {
+            return;
+        }
+
+        if (ctx.toFile) {
+            sendFile(context.fixedSizeResponse(), ctx);
             return;
         }
 
         final ChunkedResponse r = context.chunkedResponse();
-        final int columnCount = ctx.metadata.getColumnCount();
+        final int columnCount = ctx.metadata == null ? 0 : ctx.metadata.getColumnCount();
 
         OUT:
         while (true) {
@@ -89,6 +111,12 @@ public class CsvHandler implements ContextHandler {
                 SWITCH:
                 switch (ctx.queryState) {
                     case QUERY_METADATA:
+                        if (ctx.cached != null) {
+                            ctx.queryState = QUERY_CACHED;
+                            break;
+                        }
+
+                        ctx.startCapture(r);
                         for (; ctx.columnIndex < columnCount; ctx.columnIndex++) {
                             RecordColumnMetadata column = ctx.metadata.getColumnQuick(ctx.columnIndex);
 
@@ -146,6 +174,12 @@ public class CsvHandler implements ContextHandler {
                     case QUERY_DATA_SUFFIX:
                         sendDone(r, ctx);
                         break OUT;
+                    case QUERY_CACHED:
+                        ctx.sendCached(r);
+                        ctx.count = -1;
+                        ctx.queryState = QUERY_DATA_SUFFIX;
+                        r.sendChunk();
+                        break;
                     default:
                         break OUT;
                 }
@@ -166,10 +200,24 @@ public class CsvHandler implements ContextHandler {
 
     @Override
     public void setupThread() {
-        AbstractQueryContext.setupThread(configuration);
+        AbstractQueryContext.setupThread(configuration, workerPool);
     }
 
 
+    /**
+     * Deletes files of exports that were interrupted by server shutdown.
+     */
+    private static void deleteExportFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!Files.delete(f)) {
+                    LOG.error().$("Cannot delete export file ").$(f.getAbsolutePath()).$();
+                }
+            }
+        }
+    }
+
     private static void putValue(CharSink sink, int type, Record rec, int col) {
         switch (type) {
             case ColumnType.BOOLEAN:
@@ -219,7 +267,7 @@ public class CsvHandler implements ContextHandler {
                 }
                 break;
             case ColumnType.SYMBOL:
-                cs = rec.getSym(col);
+                cs = rec.getFlyweightSym(col);
                 if (cs != null) {
                     sink.put(cs);
                 }
@@ -231,17 +279,67 @@ public class CsvHandler implements ContextHandler {
         }
     }
 
+    PlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Writes result to temporary file and sends it with known content length. Rows are written in batches,
+     * worker thread is released between batches and export is abandoned when client disconnects.
+     */
+    private void sendFile(FixedSizeResponse r, ExportHandlerContext ctx) throws IOException {
+        switch (ctx.queryState) {
+            case QUERY_METADATA:
+                ctx.startExport();
+                ctx.queryState = QUERY_RECORD_START;
+                // fall through
+            case QUERY_RECORD_START:
+                if (!ctx.exportBatch()) {
+                    // channel is writable, so handler resumes as soon as other connections had their turn
+                    throw SlowWritableChannelException.INSTANCE;
+                }
+                ctx.finishExport();
+                r.status(200, "text/csv; charset=utf-8", ctx.exportSize);
+                ctx.attachment(r.headers());
+                ctx.queryState = QUERY_FILE;
+                r.sendHeader();
+                // fall through
+            case QUERY_FILE:
+                ctx.queryState = QUERY_DATA_SUFFIX;
+                r.sendFile(ctx.exportFd, 0, ctx.exportSize);
+                // fall through
+            default:
+                r.done();
+                break;
+        }
+    }
+
     private void sendDone(ChunkedResponse r, ExportHandlerContext ctx) throws DisconnectedChannelException, SlowWritableChannelException {
         if (ctx.count > -1) {
             ctx.count = -1;
-            r.sendChunk();
+            try {
+                r.sendChunk();
+            } finally {
+                ctx.cacheResult(r);
+            }
         }
         r.done();
     }
 
     private static class ExportHandlerContext extends AbstractQueryContext implements Mutable, Closeable {
-        public ExportHandlerContext(long fd, int cyclesBeforeCancel) {
+        private final File exportPath;
+        // rows written to export file before worker thread is released
+        private final int batchSize;
+        private boolean toFile;
+        private File exportFile;
+        private FileSink exportSink;
+        private long exportFd = -1;
+        private long exportSize;
+
+        public ExportHandlerContext(long fd, int cyclesBeforeCancel, File exportPath) {
             super(fd, cyclesBeforeCancel);
+            this.exportPath = exportPath;
+            this.batchSize = cyclesBeforeCancel;
             queryState = QUERY_METADATA;
         }
 
@@ -249,6 +347,23 @@ public class CsvHandler implements ContextHandler {
         public void clear() {
             super.clear();
             queryState = QUERY_METADATA;
+            toFile = false;
+            if (exportSink != null) {
+                try {
+                    exportSink.close();
+                } catch (IOException e) {
+                    error().$("Cannot close export file ").$(exportFile.getAbsolutePath()).$(e).$();
+                }
+                exportSink = null;
+            }
+            if (exportFd != -1) {
+                Files.close(exportFd);
+                exportFd = -1;
+            }
+            if (exportFile != null) {
+                Files.delete(exportFile);
+                exportFile = null;
+            }
         }
 
         @Override
@@ -260,11 +375,65 @@ public class CsvHandler implements ContextHandler {
         @Override
         protected void header(ChunkedResponse r, int code) throws DisconnectedChannelException, SlowWritableChannelException {
             queryState = QUERY_METADATA;
+            if (toFile && code == 200) {
+                // file export sends its headers once file length is known
+                return;
+            }
             r.status(code, "text/csv; charset=utf-8");
-            r.headers().put("Content-Disposition: attachment; filename=\"questdb-query-").put(System.currentTimeMillis()).put(".csv\"").put(Misc.EOL);
+            attachment(r.headers());
             r.sendHeader();
         }
 
+        private void attachment(CharSink headers) {
+            headers.put("Content-Disposition: attachment; filename=\"questdb-query-").put(System.currentTimeMillis()).put(".csv\"").put(Misc.EOL);
+        }
+
+        /**
+         * Writes next batch of rows to export file.
+         *
+         * @return true when all rows have been written
+         */
+        private boolean exportBatch() {
+            final int columnCount = metadata.getColumnCount();
+            for (int n = 0; n < batchSize; n++) {
+                cancellationHandler.check();
+                if (!cursor.hasNext()) {
+                    return true;
+                }
+
+                Record rec = cursor.next();
+                if (++count <= skip) {
+                    continue;
+                }
+
+                if (count > stop) {
+                    return true;
+                }
+
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0) {
+                        exportSink.put(',');
+                    }
+                    putValue(exportSink, metadata.getColumnQuick(i).getType(), rec, i);
+                }
+                exportSink.put(Misc.EOL);
+            }
+            return false;
+        }
+
+        private void finishExport() throws IOException {
+            exportSink.close();
+            exportSink = null;
+            exportSize = exportFile.length();
+            try (Path path = new Path(exportFile.getAbsolutePath())) {
+                exportFd = Files.openRO(path);
+            }
+            if (exportFd == -1) {
+                throw new IOException("Cannot open export file " + exportFile.getAbsolutePath());
+            }
+            info().$("Exported ").$(exportSize).$(" bytes to ").$(exportFile.getAbsolutePath()).$();
+        }
+
         @Override
         protected void sendException(ChunkedResponse r, int position, CharSequence message, int status) throws DisconnectedChannelException, SlowWritableChannelException {
             header(r, status);
@@ -272,5 +441,17 @@ public class CsvHandler implements ContextHandler {
             r.sendChunk();
             r.done();
         }
+        private void startExport() throws IOException {
+            exportFile = File.createTempFile("export", ".csv", exportPath);
+            exportSink = new FileSink(exportFile);
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                if (i > 0) {
+                    exportSink.put(',');
+                }
+                exportSink.putQuoted(metadata.getColumnQuick(i).getName());
+            }
+            exportSink.put(Misc.EOL);
+        }
+
     }
 }
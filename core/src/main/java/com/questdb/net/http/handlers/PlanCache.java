@@ -0,0 +1,136 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.misc.Misc;
+import com.questdb.ql.RecordSource;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled query plans shared by worker threads. Plans are stateful, so a plan is checked out with
+ * {@link #poll(CharSequence)} for the duration of query and returned with {@link #put(CharSequence, RecordSource)}.
+ * Same query running on several threads at once ends up with several plans under one key. When number
+ * of idle plans reaches capacity, plans of least recently used query are freed.
+ */
+public class PlanCache implements Closeable {
+    private final LinkedHashMap<String, ObjList<RecordSource>> plans = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PlanCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (ObjList<RecordSource> list : plans.values()) {
+            for (int i = 0, n = list.size(); i < n; i++) {
+                Misc.free(list.getQuick(i));
+            }
+        }
+        plans.clear();
+        size = 0;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized RecordSource poll(CharSequence query) {
+        ObjList<RecordSource> list = plans.get(query.toString());
+        if (list == null || list.size() == 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        size--;
+        RecordSource rs = list.getLast();
+        list.remove(list.size() - 1);
+        return rs;
+    }
+
+    public synchronized void put(CharSequence query, RecordSource rs) {
+        if (capacity == 0) {
+            Misc.free(rs);
+            evictions++;
+            return;
+        }
+
+        String key = query.toString();
+        ObjList<RecordSource> list = plans.get(key);
+        if (list == null) {
+            plans.put(key, list = new ObjList<>());
+        }
+        list.add(rs);
+        size++;
+
+        Iterator<Map.Entry<String, ObjList<RecordSource>>> it = plans.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            ObjList<RecordSource> victims = it.next().getValue();
+            if (victims == list) {
+                // keep plan that has just been returned, evict its idle siblings
+                for (int i = victims.size() - 2; i > -1 && size > capacity; i--) {
+                    evict(victims, i);
+                }
+                continue;
+            }
+
+            for (int i = victims.size() - 1; i > -1 && size > capacity; i--) {
+                evict(victims, i);
+            }
+
+            if (victims.size() == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void evict(ObjList<RecordSource> list, int index) {
+        Misc.free(list.getQuick(index));
+        list.remove(index);
+        size--;
+        evictions++;
+    }
+}
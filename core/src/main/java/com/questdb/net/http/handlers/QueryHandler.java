@@ -29,6 +29,7 @@ import com.questdb.ex.SlowWritableChannelException;
 import com.questdb.factory.JournalFactoryPool;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.misc.Numbers;
+import com.questdb.mp.WorkerPool;
 import com.questdb.net.http.ChunkedResponse;
 import com.questdb.net.http.ContextHandler;
 import com.questdb.net.http.IOContext;
@@ -39,21 +40,32 @@ import com.questdb.std.LocalValue;
 import com.questdb.store.ColumnType;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static com.questdb.net.http.handlers.AbstractQueryContext.*;
 
 public class QueryHandler implements ContextHandler {
+    private static final int BATCH_ROWS = 4096;
 
     private final JournalFactoryPool factoryPool;
     private final LocalValue<QueryHandlerContext> localContext = new LocalValue<>();
-    private final AtomicLong cacheHits = new AtomicLong();
-    private final AtomicLong cacheMisses = new AtomicLong();
     private final ServerConfiguration configuration;
+    private final WorkerPool workerPool;
+    private final PlanCache planCache;
+    private final ResultCache resultCache;
 
     public QueryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration) {
+        this(factoryPool, configuration, null);
+    }
+
+    /**
+     * @param workerPool threads for parallel query plans or null to run queries on HTTP threads alone
+     */
+    public QueryHandler(JournalFactoryPool factoryPool, ServerConfiguration configuration, WorkerPool workerPool) {
         this.factoryPool = factoryPool;
         this.configuration = configuration;
+        this.workerPool = workerPool;
+        this.planCache = new PlanCache(configuration.getHttpCachePlans());
+        this.resultCache = configuration.getHttpCacheSize() > 0 ? new ResultCache(configuration.getHttpCacheSize()) : null;
     }
 
     @Override
@@ -65,7 +77,7 @@ public class QueryHandler implements ContextHandler {
         }
         ChunkedResponse r = context.chunkedResponse();
         if (ctx.parseUrl(r, context.request)) {
-            ctx.compileQuery(r, factoryPool, cacheMisses, cacheHits);
+            ctx.compileQuery(r, factoryPool, planCache, resultCache);
             resume(context);
         }
     }
@@ -74,12 +86,17 @@ public class QueryHandler implements ContextHandler {
     @Override
     public void resume(IOContext context) throws IOException {
         QueryHandlerContext ctx = localContext.get(context);
-        if (ctx == null || ctx.cursor == null) {
+        if (ctx == null || (ctx.cursor == null && ctx.cached == null)) {
             return;
         }
 
         final ChunkedResponse r = context.chunkedResponse();
-        final int columnCount = ctx.metadata.getColumnCount();
+        if (ctx.binary) {
+            resumeBinary(r, ctx);
+            return;
+        }
+
+        final int columnCount = ctx.metadata == null ? 0 : ctx.metadata.getColumnCount();
 
         OUT:
         while (true) {
@@ -87,14 +104,25 @@ public class QueryHandler implements ContextHandler {
                 SWITCH:
                 switch (ctx.queryState) {
                     case QUERY_PREFIX:
+                        if (!ctx.noMeta) {
+                            r.bookmark();
+                            r.put('{').putQuoted("query").put(':').putUtf8EscapedAndQuoted(ctx.query).put(',');
+                        }
+
+                        if (ctx.cached != null) {
+                            ctx.queryState = QUERY_CACHED;
+                            break;
+                        }
+
+                        // query text is excluded from cached response, so that it can be shared
+                        // by queries that differ in whitespace only
+                        ctx.startCapture(r);
                         if (ctx.noMeta) {
                             r.put("{\"result\":[");
                             ctx.queryState = QUERY_RECORD_START;
                             break;
                         }
-                        r.bookmark();
-                        r.put('{').putQuoted("query").put(':').putUtf8EscapedAndQuoted(ctx.query);
-                        r.put(',').putQuoted("columns").put(':').put('[');
+                        r.putQuoted("columns").put(':').put('[');
                         ctx.queryState = QUERY_METADATA;
                         ctx.columnIndex = 0;
                         // fall through
@@ -180,6 +208,12 @@ public class QueryHandler implements ContextHandler {
                     case QUERY_DATA_SUFFIX:
                         sendDone(r, ctx);
                         break OUT;
+                    case QUERY_CACHED:
+                        ctx.sendCached(r);
+                        ctx.count = -1;
+                        ctx.queryState = QUERY_DATA_SUFFIX;
+                        r.sendChunk();
+                        break;
                     default:
                         break OUT;
                 }
@@ -200,7 +234,7 @@ public class QueryHandler implements ContextHandler {
 
     @Override
     public void setupThread() {
-        AbstractQueryContext.setupThread(configuration);
+        AbstractQueryContext.setupThread(configuration, workerPool);
     }
 
     private static void putValue(CharSink sink, int type, Record rec, int col) {
@@ -248,7 +282,7 @@ public class QueryHandler implements ContextHandler {
                 putStringOrNull(sink, rec.getFlyweightStr(col));
                 break;
             case ColumnType.SYMBOL:
-                putStringOrNull(sink, rec.getSym(col));
+                putStringOrNull(sink, rec.getFlyweightSym(col));
                 break;
             case ColumnType.BINARY:
                 sink.put('[');
@@ -268,11 +302,93 @@ public class QueryHandler implements ContextHandler {
     }
 
     long getCacheHits() {
-        return cacheHits.longValue();
+        return planCache.getHits();
     }
 
     long getCacheMisses() {
-        return cacheMisses.longValue();
+        return planCache.getMisses();
+    }
+
+    PlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Streams result in format of {@link ColumnBatch}. Rows are collected in batches of up to
+     * {@link #BATCH_ROWS}, each batch is sent before cursor is read further.
+     */
+    private void resumeBinary(ChunkedResponse r, QueryHandlerContext ctx) throws DisconnectedChannelException, SlowWritableChannelException {
+        while (true) {
+            switch (ctx.queryState) {
+                case QUERY_PREFIX:
+                    if (ctx.cached != null) {
+                        ctx.queryState = QUERY_CACHED;
+                        break;
+                    }
+                    ctx.startCapture(r);
+                    if (ctx.batch == null) {
+                        ctx.batch = new ColumnBatch();
+                    }
+                    ctx.batch.of(ctx.metadata);
+                    ctx.batch.putSchema(ctx.metadata);
+                    ctx.queryState = QUERY_RECORD_START;
+                    // fall through
+                case QUERY_RECORD_START:
+                    final ColumnBatch batch = ctx.batch;
+                    while (!ctx.eof && batch.rowCount() < BATCH_ROWS) {
+                        if (!ctx.cursor.hasNext()) {
+                            ctx.eof = true;
+                            break;
+                        }
+
+                        Record rec = ctx.cursor.next();
+                        ctx.count++;
+
+                        if (ctx.count > ctx.stop) {
+                            if (!ctx.fetchAll) {
+                                ctx.eof = true;
+                            }
+                            continue;
+                        }
+
+                        if (ctx.count > ctx.skip) {
+                            batch.add(rec);
+                        }
+                    }
+                    batch.finish(ctx.count);
+                    ctx.queryState = QUERY_RECORD_COLUMNS;
+                    // fall through
+                case QUERY_RECORD_COLUMNS:
+                    ctx.batch.send(r);
+                    if (ctx.batch.rowCount() == 0) {
+                        ctx.queryState = QUERY_DATA_SUFFIX;
+                    } else {
+                        // empty batch that follows ends the result
+                        ctx.batch.clear();
+                        ctx.queryState = QUERY_RECORD_START;
+                    }
+                    break;
+                case QUERY_DATA_SUFFIX:
+                    if (ctx.count > -1) {
+                        ctx.count = -1;
+                        try {
+                            r.sendChunk();
+                        } finally {
+                            ctx.cacheResult(r);
+                        }
+                    }
+                    r.done();
+                    return;
+                case QUERY_CACHED:
+                    ctx.sendCached(r);
+                    ctx.count = -1;
+                    ctx.queryState = QUERY_DATA_SUFFIX;
+                    r.sendChunk();
+                    break;
+                default:
+                    return;
+            }
+        }
     }
 
     private void sendDone(ChunkedResponse r, QueryHandlerContext ctx) throws DisconnectedChannelException, SlowWritableChannelException {
@@ -282,7 +398,12 @@ public class QueryHandler implements ContextHandler {
             r.put(',').putQuoted("count").put(':').put(ctx.count);
             r.put('}');
             ctx.count = -1;
-            r.sendChunk();
+            try {
+                r.sendChunk();
+            } finally {
+                // content is copied out before it is sent, so response is complete even if socket is slow
+                ctx.cacheResult(r);
+            }
         }
         r.done();
     }
@@ -26,12 +26,19 @@ package com.questdb.net.http.handlers;
 import com.questdb.ex.DisconnectedChannelException;
 import com.questdb.ex.SlowWritableChannelException;
 import com.questdb.misc.Chars;
+import com.questdb.misc.Misc;
 import com.questdb.net.http.ChunkedResponse;
 import com.questdb.net.http.Request;
+import com.questdb.std.CharSink;
+
+import java.io.IOException;
 
 public class QueryHandlerContext extends AbstractQueryContext {
     boolean fetchAll = false;
     boolean noMeta = false;
+    boolean binary = false;
+    boolean eof = false;
+    ColumnBatch batch;
 
     public QueryHandlerContext(long fd, int cyclesBeforeCancel) {
         super(fd, cyclesBeforeCancel);
@@ -42,6 +49,13 @@ public class QueryHandlerContext extends AbstractQueryContext {
         super.clear();
         queryState = QUERY_PREFIX;
         fetchAll = false;
+        eof = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        batch = Misc.free(batch);
     }
 
     @Override
@@ -49,20 +63,27 @@ public class QueryHandlerContext extends AbstractQueryContext {
         if (super.parseUrl(r, request)) {
             noMeta = Chars.equalsNc("true", request.getUrlParam("nm"));
             fetchAll = Chars.equalsNc("true", request.getUrlParam("count"));
+            binary = Chars.equalsNc("bin", request.getUrlParam("fmt"));
             return true;
         }
         return false;
     }
 
+    @Override
+    protected void cacheKey(CharSink sink) {
+        sink.put(noMeta ? 'n' : 'm').put(fetchAll ? 'a' : 'l').put(binary ? 'b' : 'j').put(',');
+        super.cacheKey(sink);
+    }
+
     @Override
     protected void header(ChunkedResponse r, int status) throws DisconnectedChannelException, SlowWritableChannelException {
-        r.status(status, "application/json; charset=utf-8");
-        r.sendHeader();
+        header(r, status, binary ? "application/octet-stream" : "application/json; charset=utf-8");
     }
 
     @Override
     protected void sendException(ChunkedResponse r, int position, CharSequence message, int status) throws DisconnectedChannelException, SlowWritableChannelException {
-        header(r, status);
+        // errors are reported in JSON regardless of requested format
+        header(r, status, "application/json; charset=utf-8");
         r.put('{').
                 putQuoted("query").put(':').putUtf8EscapedAndQuoted(query == null ? "" : query).put(',').
                 putQuoted("error").put(':').putQuoted(message).put(',').
@@ -71,4 +92,9 @@ public class QueryHandlerContext extends AbstractQueryContext {
         r.sendChunk();
         r.done();
     }
+
+    private void header(ChunkedResponse r, int status, CharSequence contentType) throws DisconnectedChannelException, SlowWritableChannelException {
+        r.status(status, contentType);
+        r.sendHeader();
+    }
 }
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.Journal;
+import com.questdb.ex.JournalException;
+import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.io.sink.AbstractCharSink;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.CharSink;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded off-heap cache of serialized query responses. Entry is valid for as long as every journal
+ * query has read is at the same transaction as when response was produced. Stale entries are dropped
+ * on lookup, least recently used entries are evicted when cache is full.
+ * <p>
+ * Entries are reference counted so that eviction does not free memory of response that is still being
+ * sent to slow client.
+ */
+public class ResultCache implements Closeable {
+    private static final int MIN_ENTRY_SIZE = 4096;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long capacity;
+    private final long maxEntrySize;
+    private long size;
+
+    public ResultCache(long capacity) {
+        this.capacity = capacity;
+        this.maxEntrySize = capacity / 4;
+    }
+
+    /**
+     * Appends cache key of query to sink. Whitespace outside of quotes is collapsed so that queries
+     * that differ only in formatting share cache entry.
+     *
+     * @param query query text
+     * @param sink  sink for key
+     */
+    public static void normalize(CharSequence query, CharSink sink) {
+        char quote = 0;
+        boolean space = false;
+        boolean empty = true;
+        for (int i = 0, n = query.length(); i < n; i++) {
+            char c = query.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+
+            if (space && !empty) {
+                sink.put(' ');
+            }
+            space = false;
+            empty = false;
+
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            sink.put(c);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Entry e : entries.values()) {
+            remove(e);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Finds valid entry for key. Readers of journals entry depends on are refreshed to find out whether
+     * entry is still current. Returned entry must be released via {@link #release(Entry)}.
+     *
+     * @param key     cache key
+     * @param factory factory to read journal transactions from
+     * @return entry or null if there is no valid entry for key
+     */
+    public synchronized Entry get(CharSequence key, JournalCachingFactory factory) {
+        Entry e = entries.get(key.toString());
+        if (e == null) {
+            return null;
+        }
+
+        try {
+            for (int i = 0, n = e.journals.size(); i < n; i++) {
+                Journal journal = factory.reader(e.journals.getQuick(i));
+                journal.refresh();
+                if (journal.getTxn() != e.txns.getQuick(i)) {
+                    invalidate(e);
+                    return null;
+                }
+            }
+        } catch (JournalException ex) {
+            invalidate(e);
+            return null;
+        }
+        e.refCount++;
+        return e;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Entry newEntry() {
+        return new Entry(maxEntrySize);
+    }
+
+    /**
+     * Adds complete response to cache. Cache takes ownership of entry, entries that outgrew size limit
+     * are freed straight away.
+     *
+     * @param key      cache key
+     * @param e        entry produced by {@link #newEntry()}
+     * @param journals readers response was produced from
+     */
+    public synchronized void put(CharSequence key, Entry e, ObjList<Journal> journals) {
+        if (e.overflow) {
+            e.close();
+            return;
+        }
+
+        for (int i = 0, n = journals.size(); i < n; i++) {
+            Journal journal = journals.getQuick(i);
+            e.journals.add(journal.getMetadata());
+            e.txns.add(journal.getTxn());
+        }
+
+        String k = key.toString();
+        Entry old = entries.remove(k);
+        if (old != null) {
+            remove(old);
+        }
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size + e.capacity > capacity && it.hasNext()) {
+            Entry victim = it.next().getValue();
+            it.remove();
+            remove(victim);
+        }
+
+        e.key = k;
+        entries.put(k, e);
+        size += e.capacity;
+    }
+
+    public synchronized void release(Entry e) {
+        if (--e.refCount == 0 && e.removed) {
+            e.close();
+        }
+    }
+
+    private void invalidate(Entry e) {
+        entries.remove(e.key);
+        remove(e);
+    }
+
+    private void remove(Entry e) {
+        size -= e.capacity;
+        e.removed = true;
+        if (e.refCount == 0) {
+            e.close();
+        }
+    }
+
+    public static class Entry extends AbstractCharSink implements Closeable {
+        private final ObjList<JournalMetadata> journals = new ObjList<>();
+        private final LongList txns = new LongList();
+        private final long maxSize;
+        private String key;
+        private long address;
+        private long capacity;
+        private long length;
+        private int refCount;
+        private boolean removed;
+        private boolean overflow;
+
+        private Entry(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void close() {
+            if (address != 0) {
+                Unsafe.free(address, capacity);
+                address = 0;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public CharSink put(CharSequence cs) {
+            for (int i = 0, n = cs.length(); i < n; i++) {
+                put(cs.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public CharSink put(char c) {
+            if (length == capacity && !grow()) {
+                return this;
+            }
+            Unsafe.getUnsafe().putByte(address + length++, (byte) c);
+            return this;
+        }
+
+        private boolean grow() {
+            if (overflow) {
+                return false;
+            }
+
+            long cap = Math.min(Math.max(MIN_ENTRY_SIZE, capacity * 2), maxSize);
+            if (cap == capacity) {
+                overflow = true;
+                close();
+                capacity = length = 0;
+                return false;
+            }
+
+            long p = Unsafe.malloc(cap);
+            if (address != 0) {
+                Unsafe.getUnsafe().copyMemory(address, p, length);
+                Unsafe.free(address, capacity);
+            }
+            address = p;
+            capacity = cap;
+            return true;
+        }
+    }
+}
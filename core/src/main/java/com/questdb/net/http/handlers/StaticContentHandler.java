@@ -34,7 +34,6 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.ThreadLocal;
-import java.nio.ByteBuffer;
 
 public class StaticContentHandler implements ContextHandler {
 
@@ -79,19 +78,12 @@ public class StaticContentHandler implements ContextHandler {
             return;
         }
 
-        FragmentedResponse r = context.fixedSizeResponse();
-        ByteBuffer out = r.out();
-        long wptr = ByteBuffers.getAddress(out);
-        int sz = out.remaining();
-
-        long l;
-        while (h.bytesSent < h.sendMax && (l = Files.read(h.fd, wptr, sz, h.bytesSent)) > 0) {
-            if (l + h.bytesSent > h.sendMax) {
-                l = h.sendMax - h.bytesSent;
-            }
-            out.limit((int) l);
-            h.bytesSent += l;
-            r.sendChunk();
+        FixedSizeResponse r = context.fixedSizeResponse();
+        if (h.bytesSent < h.sendMax) {
+            long lo = h.bytesSent;
+            // response sends remainder of file by itself when channel is slow to write
+            h.bytesSent = h.sendMax;
+            r.sendFile(h.fd, lo, h.sendMax - lo);
         }
         r.done();
         // reached the end naturally?
@@ -202,7 +194,7 @@ public class StaticContentHandler implements ContextHandler {
             h.fd = fd;
             h.bytesSent = 0;
             final long length = Files.length(path);
-            h.sendMax = Long.MAX_VALUE;
+            h.sendMax = length;
 
             final FixedSizeResponse r = context.fixedSizeResponse();
             r.status(200, contentType, length);
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.ex.NumericException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.DirectByteCharSequence;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.std.ObjectPool;
+
+/**
+ * Parses text line protocol straight from native memory. Each line has format:
+ * <pre>
+ *     measurement[,tag=value...] field=value[,field=value...] [timestamp]
+ * </pre>
+ * Measurement is name of journal and tags are symbols. Field values are doubles, longs when suffixed with 'i',
+ * booleans (t, f, true or false in any case) or strings in double quotes. Timestamp is number of milliseconds
+ * since epoch. Escape sequences are not supported, so names and values cannot contain spaces, commas or equal
+ * signs and strings cannot contain double quotes. Empty lines and lines starting with '#' are skipped.
+ * <p>
+ * Values are flyweights over parsed memory and are only valid for duration of {@link Listener#onLine(LineProtocolParser)}.
+ */
+public class LineProtocolParser {
+    public static final int TAG = 1;
+    public static final int DOUBLE = 2;
+    public static final int LONG = 3;
+    public static final int BOOLEAN = 4;
+    public static final int STRING = 5;
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final Log LOG = LogFactory.getLog(LineProtocolParser.class);
+    private final ObjectPool<DirectByteCharSequence> pool = new ObjectPool<>(DirectByteCharSequence.FACTORY, 64);
+    private final DirectByteCharSequence measurement = new DirectByteCharSequence();
+    private final DirectByteCharSequence line = new DirectByteCharSequence();
+    private final ObjList<DirectByteCharSequence> names = new ObjList<>();
+    private final ObjList<DirectByteCharSequence> values = new ObjList<>();
+    private final IntList types = new IntList();
+    private long timestamp;
+    private long errorCount;
+
+    public static boolean parseBool(CharSequence value) {
+        char c = value.charAt(0);
+        return c == 't' || c == 'T';
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public CharSequence getMeasurement() {
+        return measurement;
+    }
+
+    public CharSequence getName(int index) {
+        return names.getQuick(index);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getTokenCount() {
+        return names.size();
+    }
+
+    public int getType(int index) {
+        return types.getQuick(index);
+    }
+
+    public CharSequence getValue(int index) {
+        return values.getQuick(index);
+    }
+
+    /**
+     * Parses all lines that end with new line character.
+     *
+     * @return address after last parsed line, which is start of incomplete line, or hi if there is none
+     */
+    public long parse(long lo, long hi, Listener listener) {
+        long start = lo;
+        for (long p = lo; p < hi; p++) {
+            if (Unsafe.getUnsafe().getByte(p) == '\n') {
+                parseLine(start, p, listener);
+                start = p + 1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Parses single line, which must not include new line character.
+     */
+    public void parseLine(long lo, long hi, Listener listener) {
+        if (hi > lo && Unsafe.getUnsafe().getByte(hi - 1) == '\r') {
+            hi--;
+        }
+
+        if (lo == hi || Unsafe.getUnsafe().getByte(lo) == '#') {
+            return;
+        }
+
+        if (tokenize(lo, hi)) {
+            listener.onLine(this);
+        } else {
+            errorCount++;
+            LOG.debug().$("Malformed line: ").$(line.of(lo, hi)).$();
+        }
+    }
+
+    private static boolean isBool(DirectByteCharSequence value) {
+        switch (value.charAt(0)) {
+            case 't':
+            case 'T':
+                return value.length() == 1 || Chars.equalsIgnoreCase(value, "true");
+            case 'f':
+            case 'F':
+                return value.length() == 1 || Chars.equalsIgnoreCase(value, "false");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ',' || b == ' ';
+    }
+
+    private void addToken(DirectByteCharSequence name, DirectByteCharSequence value, int type) {
+        names.add(name);
+        values.add(value);
+        types.add(type);
+    }
+
+    /**
+     * Parses name=value pair.
+     *
+     * @return address after value or -1 if pair is malformed
+     */
+    private long parseToken(long lo, long hi, boolean tag) {
+        long p = lo;
+        byte b;
+        while (p < hi && (b = Unsafe.getUnsafe().getByte(p)) != '=') {
+            if (isSeparator(b)) {
+                return -1;
+            }
+            p++;
+        }
+
+        if (p == lo || p == hi) {
+            return -1;
+        }
+
+        DirectByteCharSequence name = pool.next().of(lo, p);
+        long valueLo = ++p;
+
+        if (!tag && p < hi && Unsafe.getUnsafe().getByte(p) == '"') {
+            valueLo = ++p;
+            while (p < hi && Unsafe.getUnsafe().getByte(p) != '"') {
+                p++;
+            }
+
+            if (p == hi) {
+                return -1;
+            }
+
+            addToken(name, pool.next().of(valueLo, p), STRING);
+            p++;
+            return p == hi || isSeparator(Unsafe.getUnsafe().getByte(p)) ? p : -1;
+        }
+
+        while (p < hi && !isSeparator(Unsafe.getUnsafe().getByte(p))) {
+            p++;
+        }
+
+        if (p == valueLo) {
+            return -1;
+        }
+
+        if (tag) {
+            addToken(name, pool.next().of(valueLo, p), TAG);
+        } else if (p - valueLo > 1 && Unsafe.getUnsafe().getByte(p - 1) == 'i') {
+            addToken(name, pool.next().of(valueLo, p - 1), LONG);
+        } else {
+            DirectByteCharSequence value = pool.next().of(valueLo, p);
+            addToken(name, value, isBool(value) ? BOOLEAN : DOUBLE);
+        }
+        return p;
+    }
+
+    private boolean tokenize(long lo, long hi) {
+        pool.clear();
+        names.clear();
+        values.clear();
+        types.clear();
+        timestamp = NO_TIMESTAMP;
+
+        long p = lo;
+        while (p < hi && !isSeparator(Unsafe.getUnsafe().getByte(p))) {
+            p++;
+        }
+
+        if (p == lo) {
+            return false;
+        }
+        measurement.of(lo, p);
+
+        while (p < hi && Unsafe.getUnsafe().getByte(p) == ',') {
+            if ((p = parseToken(p + 1, hi, true)) < 0) {
+                return false;
+            }
+        }
+
+        // at least one field is required
+        if (p == hi || Unsafe.getUnsafe().getByte(p) != ' ') {
+            return false;
+        }
+
+        do {
+            if ((p = parseToken(p + 1, hi, false)) < 0) {
+                return false;
+            }
+        } while (p < hi && Unsafe.getUnsafe().getByte(p) == ',');
+
+        if (p < hi) {
+            try {
+                timestamp = Numbers.parseLong(line.of(p + 1, hi));
+            } catch (NumericException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public interface Listener {
+        void onLine(LineProtocolParser parser);
+    }
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.ex.NetworkError;
+import com.questdb.factory.JournalWriterFactory;
+import com.questdb.iter.clock.Clock;
+import com.questdb.iter.clock.MilliClock;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.mp.*;
+import com.questdb.net.http.IODispatcher;
+import com.questdb.net.http.IODispatchers;
+import com.questdb.net.http.IOEvent;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.std.ObjHashSet;
+import com.questdb.std.ObjList;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Accepts line protocol over TCP and UDP and appends lines to journals named after measurements.
+ * Lines are tokenized concurrently by worker threads, each journal is appended to under its own lock.
+ */
+public class LineProtocolServer {
+    private final static Log LOG = LogFactory.getLog(LineProtocolServer.class);
+    // connections are never parsed as HTTP, buffers of their contexts are kept to minimum
+    private static final int CONTEXT_BUF_SIZE = 1024;
+    private final ServerConfiguration configuration;
+    private final JournalWriterFactory factory;
+    private final ObjList<Worker> workers;
+    private final CountDownLatch haltLatch;
+    private final int workerCount;
+    private final CountDownLatch startComplete = new CountDownLatch(1);
+    private volatile boolean running = false;
+    private boolean started = false;
+    private Clock clock = MilliClock.INSTANCE;
+    private IODispatcher dispatcher;
+    private RingQueue<IOEvent> ioQueue;
+    private LineProtocolUdpJob udpJob;
+    private LineProtocolWriter writer;
+
+    public LineProtocolServer(ServerConfiguration configuration, JournalWriterFactory factory) {
+        this.configuration = configuration;
+        this.factory = factory;
+        this.workerCount = configuration.getLineThreads();
+        this.haltLatch = new CountDownLatch(workerCount);
+        this.workers = new ObjList<>(workerCount);
+    }
+
+    public long getErrorCount() {
+        return writer.getErrorCount();
+    }
+
+    public long getRowCount() {
+        return writer.getRowCount();
+    }
+
+    public void halt() {
+        if (running) {
+            running = false;
+            try {
+                startComplete.await();
+                // server that failed to start has nothing to halt
+                if (!started) {
+                    return;
+                }
+
+                for (int i = 0; i < workers.size(); i++) {
+                    workers.getQuick(i).halt();
+                }
+                haltLatch.await();
+                dispatcher.close();
+                udpJob.close();
+            } catch (Exception e) {
+                throw new JournalRuntimeException(e);
+            }
+
+            for (int i = 0; i < ioQueue.getCapacity(); i++) {
+                IOEvent ev = ioQueue.get(i);
+                if (ev != null && ev.context != null) {
+                    ev.context = Misc.free(ev.context);
+                }
+            }
+
+            writer.close();
+        }
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public boolean start() {
+        this.running = true;
+        try {
+            started = startWorkers();
+        } finally {
+            if (!started) {
+                running = false;
+            }
+            startComplete.countDown();
+        }
+        return started;
+    }
+
+    private static ServerConfiguration dispatcherConfiguration(ServerConfiguration configuration) {
+        ServerConfiguration c = new ServerConfiguration();
+        c.setHttpBufReqHeader(CONTEXT_BUF_SIZE);
+        c.setHttpBufReqContent(CONTEXT_BUF_SIZE);
+        c.setHttpBufReqMultipart(CONTEXT_BUF_SIZE);
+        c.setHttpBufRespHeader(CONTEXT_BUF_SIZE);
+        c.setHttpBufRespContent(CONTEXT_BUF_SIZE);
+        c.setHttpMaxConnections(configuration.getLineMaxConnections());
+        c.setHttpTimeout(configuration.getHttpTimeout());
+        return c;
+    }
+
+    private boolean startWorkers() {
+        int queueDepth = Numbers.ceilPow2(configuration.getLineMaxConnections() + 1);
+        ioQueue = new RingQueue<>(IOEvent.FACTORY, queueDepth);
+        SPSequence ioPubSequence = new SPSequence(ioQueue.getCapacity());
+        MCSequence ioSubSequence = new MCSequence(ioQueue.getCapacity(), null);
+        ioPubSequence.then(ioSubSequence).then(ioPubSequence);
+
+        try {
+            this.dispatcher = IODispatchers.create("0.0.0.0", configuration.getLineTcpPort(), ioQueue, ioPubSequence, clock, dispatcherConfiguration(configuration), queueDepth);
+        } catch (NetworkError e) {
+            LOG.error().$("Line protocol server failed to start: ").$(e.getMessage()).$();
+            return false;
+        }
+
+        this.writer = new LineProtocolWriter(factory, configuration, clock);
+
+        try {
+            this.udpJob = new LineProtocolUdpJob("0.0.0.0", configuration.getLineUdpPort(), configuration.getLineBufSize(), writer);
+        } catch (IOException e) {
+            LOG.error().$("Line protocol server failed to start: ").$(e.getMessage()).$();
+            Misc.free(dispatcher);
+            return false;
+        }
+
+        ObjHashSet<Job> jobs = new ObjHashSet<>();
+        jobs.add(dispatcher);
+        jobs.add(new LineProtocolTcpJob(ioQueue, ioSubSequence, dispatcher, writer, configuration.getLineBufSize()));
+        jobs.add(udpJob);
+        jobs.add(new CommitJob());
+
+        for (int i = 0; i < workerCount; i++) {
+            Worker w;
+            workers.add(w = new Worker(jobs, haltLatch));
+            w.start();
+        }
+
+        LOG.info().$("Line protocol server is running on ").$(configuration.getLineTcpPort()).$("/tcp and ").$(configuration.getLineUdpPort()).$("/udp").$();
+        return true;
+    }
+
+    /**
+     * Commits journals that received no lines for commit interval, so that slow producers become
+     * visible to readers without waiting for row threshold, and closes writers left idle.
+     */
+    private class CommitJob extends SynchronizedJob {
+        private long lastTicks;
+
+        @Override
+        protected boolean runSerially() {
+            long now = clock.getTicks();
+            if (now == lastTicks) {
+                return false;
+            }
+            lastTicks = now;
+            boolean useful = writer.commitIdle(now);
+            return writer.closeIdle(now) || useful;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Net;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.Job;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+import com.questdb.net.http.ChannelStatus;
+import com.questdb.net.http.IOContext;
+import com.questdb.net.http.IODispatcher;
+import com.questdb.net.http.IOEvent;
+import com.questdb.std.DirectMemoryStructure;
+import com.questdb.std.LocalValue;
+import com.questdb.std.ObjectFactory;
+import com.questdb.std.ThreadLocal;
+
+/**
+ * Reads lines from connections queued by dispatcher. Lines are parsed straight from connection buffer,
+ * incomplete line at end of buffer is moved to start of buffer to be completed by next read. Each worker thread
+ * tokenizes lines with parser of its own, only appending to journals is serialized by writer.
+ */
+class LineProtocolTcpJob implements Job {
+    private static final Log LOG = LogFactory.getLog(LineProtocolTcpJob.class);
+    // number of reads from connection before giving way to other connections
+    private static final int MAX_READS = 16;
+    private final LocalValue<Buffer> localBuffer = new LocalValue<>();
+    private final ThreadLocal<LineProtocolParser> localParser = new ThreadLocal<>(new ObjectFactory<LineProtocolParser>() {
+        @Override
+        public LineProtocolParser newInstance() {
+            return new LineProtocolParser();
+        }
+    });
+    private final RingQueue<IOEvent> ioQueue;
+    private final Sequence ioSequence;
+    private final IODispatcher ioDispatcher;
+    private final LineProtocolWriter writer;
+    private final int bufSize;
+
+    LineProtocolTcpJob(RingQueue<IOEvent> ioQueue, Sequence ioSequence, IODispatcher ioDispatcher, LineProtocolWriter writer, int bufSize) {
+        this.ioQueue = ioQueue;
+        this.ioSequence = ioSequence;
+        this.ioDispatcher = ioDispatcher;
+        this.writer = writer;
+        this.bufSize = bufSize;
+    }
+
+    @Override
+    public boolean run() {
+        long cursor = ioSequence.next();
+        if (cursor < 0) {
+            return false;
+        }
+
+        IOEvent evt = ioQueue.get(cursor);
+        final IOContext context = evt.context;
+        ioSequence.done(cursor);
+
+        int status;
+        try {
+            status = process(context);
+        } catch (Throwable e) {
+            writer.countError();
+            LOG.error().$("Internal error: ").$(e).$();
+            status = ChannelStatus.DISCONNECTED;
+        }
+        ioDispatcher.registerChannel(context, status);
+        return true;
+    }
+
+    @Override
+    public void setupThread() {
+        ioDispatcher.setupThread();
+    }
+
+    private int process(IOContext context) {
+        Buffer b = localBuffer.get(context);
+        if (b == null) {
+            localBuffer.set(context, b = new Buffer(bufSize));
+        }
+
+        final LineProtocolParser parser = localParser.get();
+        final long fd = context.channel.getFd();
+        for (int i = 0; i < MAX_READS; i++) {
+            int n = Net.recv(fd, b.getAddress() + b.len, bufSize - b.len);
+
+            if (n == Net.ERETRY) {
+                return ChannelStatus.READ;
+            }
+
+            if (n < 0) {
+                // last line does not have to end with new line character
+                if (b.len > 0) {
+                    parser.parseLine(b.getAddress(), b.getAddress() + b.len, writer);
+                }
+                writer.commitAll();
+                b.len = 0;
+                return n == Net.EPEERDISCONNECT ? ChannelStatus.EOF : ChannelStatus.DISCONNECTED;
+            }
+
+            final long hi = b.getAddress() + b.len + n;
+            final long lo = parser.parse(b.getAddress(), hi, writer);
+
+            b.len = (int) (hi - lo);
+            if (b.len == bufSize) {
+                LOG.error().$("Line is longer than buffer, disconnecting ").$(fd).$();
+                return ChannelStatus.DISCONNECTED;
+            }
+
+            if (b.len > 0) {
+                Unsafe.getUnsafe().copyMemory(lo, b.getAddress(), b.len);
+            }
+        }
+        return ChannelStatus.READ;
+    }
+
+    private static class Buffer extends DirectMemoryStructure {
+        private int len;
+
+        private Buffer(int size) {
+            this.address = Unsafe.malloc(this.capacity = size);
+        }
+
+        private long getAddress() {
+            return address;
+        }
+    }
+}
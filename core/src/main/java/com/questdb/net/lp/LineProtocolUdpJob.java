@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.mp.SynchronizedJob;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Receives lines in datagrams. Each datagram holds whole lines, last of which does not have to end with
+ * new line character. Job runs on one thread at a time, so it has parser of its own.
+ */
+class LineProtocolUdpJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(LineProtocolUdpJob.class);
+    // number of datagrams received before giving way to other jobs
+    private static final int MAX_DATAGRAMS = 64;
+    private final DatagramChannel channel;
+    private final ByteBuffer buf;
+    private final long address;
+    private final LineProtocolParser parser = new LineProtocolParser();
+    private final LineProtocolWriter writer;
+
+    LineProtocolUdpJob(String ip, int port, int bufSize, LineProtocolWriter writer) throws IOException {
+        this.channel = DatagramChannel.open();
+        try {
+            this.channel.configureBlocking(false);
+            this.channel.setOption(StandardSocketOptions.SO_RCVBUF, bufSize * MAX_DATAGRAMS);
+            this.channel.bind(new InetSocketAddress(ip, port));
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.buf = ByteBuffer.allocateDirect(bufSize);
+        this.address = ByteBuffers.getAddress(buf);
+        this.writer = writer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        ByteBuffers.release(buf);
+    }
+
+    @Override
+    protected boolean runSerially() {
+        int count = 0;
+        try {
+            while (count < MAX_DATAGRAMS && channel.receive(buf) != null) {
+                final long hi = address + buf.position();
+                final long lo = parser.parse(address, hi, writer);
+                if (lo < hi) {
+                    parser.parseLine(lo, hi, writer);
+                }
+                buf.clear();
+                count++;
+            }
+        } catch (IOException e) {
+            LOG.error().$("Failed to receive datagram: ").$(e.getMessage()).$();
+        } catch (Throwable e) {
+            // rest of datagram is dropped, so that next one is parsed from start of buffer
+            buf.clear();
+            writer.countError();
+            LOG.error().$("Internal error: ").$(e).$();
+        }
+        return count > 0;
+    }
+}
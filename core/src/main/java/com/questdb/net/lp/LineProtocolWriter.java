@@ -0,0 +1,522 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.ex.NumericException;
+import com.questdb.factory.JournalWriterFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.iter.clock.Clock;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Numbers;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.std.CharSequenceObjHashMap;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.questdb.factory.configuration.JournalConfiguration.DOES_NOT_EXIST;
+import static com.questdb.factory.configuration.JournalConfiguration.EXISTS;
+
+/**
+ * Appends parsed lines to journals named after their measurement. Journal that does not exist is created from
+ * first line of its measurement: tags become symbol columns, fields become columns of their value type and
+ * line timestamp goes into "timestamp" column. Lines without timestamp are stamped with current time. Fields
+ * that journal does not have are ignored. Lines with values that cannot be converted to column type are rejected
+ * as a whole.
+ * <p>
+ * Each journal is committed once it has configured number of uncommitted rows and by {@link #commitIdle(long)}
+ * once its rows have been waiting for configured interval. Writers that receive no lines for idle timeout are
+ * closed by {@link #closeIdle(long)}. Measurements that are not plain file names, such as "../x", are rejected.
+ * Number of journals writer creates is limited by configuration, so is number of measurements that failed to
+ * open and are remembered to reject their lines without retrying.
+ * <p>
+ * Writer is thread safe. Lines of different journals are appended concurrently, lines of the same journal are
+ * appended one at a time under lock of that journal. Each caller has to have its own parser, so that lines are
+ * tokenized outside of any lock.
+ */
+public class LineProtocolWriter implements LineProtocolParser.Listener, Closeable {
+    private static final Log LOG = LogFactory.getLog(LineProtocolWriter.class);
+    private final JournalWriterFactory factory;
+    private final Clock clock;
+    private final int commitRows;
+    private final int commitInterval;
+    private final int idleTimeout;
+    private final int maxJournals;
+    private final int partitionBy;
+    // guards entries, entryList, failureCount and createdCount; lock of entry guards its state
+    private final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    private final ObjList<Entry> entryList = new ObjList<>();
+    // copy of entryList that maintenance methods iterate without holding map lock
+    private final ObjList<Entry> snapshot = new ObjList<>();
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private int failureCount;
+    private int createdCount;
+
+    public LineProtocolWriter(JournalWriterFactory factory, ServerConfiguration configuration, Clock clock) {
+        this.factory = factory;
+        this.clock = clock;
+        this.commitRows = configuration.getLineCommitRows();
+        this.commitInterval = configuration.getLineCommitInterval();
+        this.idleTimeout = configuration.getLineIdleTimeout();
+        this.maxJournals = configuration.getLineMaxJournals();
+        this.partitionBy = configuration.getLinePartitionBy();
+    }
+
+    @Override
+    public synchronized void close() {
+        snapshot();
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            Entry e = snapshot.getQuick(i);
+            synchronized (e) {
+                if (e.writer != null && e.pending > 0) {
+                    commit(e);
+                }
+                close(e);
+            }
+        }
+        snapshot.clear();
+        synchronized (entries) {
+            entryList.clear();
+            entries.clear();
+            failureCount = 0;
+        }
+    }
+
+    /**
+     * Commits and closes writers that received no lines for idle timeout. Journal is opened again by its next line.
+     *
+     * @param now current time in milliseconds
+     * @return true if any writer was closed
+     */
+    public synchronized boolean closeIdle(long now) {
+        boolean useful = false;
+        snapshot();
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            Entry e = snapshot.getQuick(i);
+            synchronized (e) {
+                if (e.writer != null && now - e.lastLine >= idleTimeout) {
+                    if (e.pending > 0) {
+                        commit(e);
+                    }
+                    close(e);
+                    remove(e);
+                    LOG.info().$("Closed idle journal ").$(e.name).$();
+                    useful = true;
+                }
+            }
+        }
+        snapshot.clear();
+        return useful;
+    }
+
+    public synchronized void commitAll() {
+        snapshot();
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            Entry e = snapshot.getQuick(i);
+            synchronized (e) {
+                if (e.writer != null && e.pending > 0) {
+                    commit(e);
+                }
+            }
+        }
+        snapshot.clear();
+    }
+
+    /**
+     * Commits journals that have uncommitted rows older than commit interval.
+     *
+     * @param now current time in milliseconds
+     * @return true if any journal was committed
+     */
+    public synchronized boolean commitIdle(long now) {
+        boolean useful = false;
+        snapshot();
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            Entry e = snapshot.getQuick(i);
+            synchronized (e) {
+                if (e.writer != null && e.pending > 0 && now - e.lastCommit >= commitInterval) {
+                    commit(e);
+                    useful = true;
+                }
+            }
+        }
+        snapshot.clear();
+        return useful;
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    @Override
+    public void onLine(LineProtocolParser parser) {
+        while (true) {
+            Entry e = acquire(parser.getMeasurement());
+            if (e == null) {
+                errorCount.incrementAndGet();
+                return;
+            }
+
+            synchronized (e) {
+                // entry closed while we were waiting for its lock, look it up again
+                if (e.closed) {
+                    continue;
+                }
+
+                if (!e.opened) {
+                    open(e, parser);
+                }
+
+                if (e.writer == null || !convert(e, parser)) {
+                    errorCount.incrementAndGet();
+                    return;
+                }
+
+                append(e, parser);
+                return;
+            }
+        }
+    }
+
+    private static boolean isValidName(CharSequence name) {
+        if (name.length() == 0 || Chars.equals(name, '.') || Chars.equals(name, "..")) {
+            return false;
+        }
+
+        for (int i = 0, n = name.length(); i < n; i++) {
+            char c = name.charAt(i);
+            if (c == '/' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(JournalEntryWriter w, int col, int type, CharSequence value, long number) {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+                w.putBool(col, number == 1);
+                break;
+            case ColumnType.BYTE:
+                w.put(col, (byte) number);
+                break;
+            case ColumnType.SHORT:
+                w.putShort(col, (short) number);
+                break;
+            case ColumnType.INT:
+                w.putInt(col, (int) number);
+                break;
+            case ColumnType.LONG:
+                w.putLong(col, number);
+                break;
+            case ColumnType.DATE:
+                w.putDate(col, number);
+                break;
+            case ColumnType.FLOAT:
+                w.putFloat(col, (float) Double.longBitsToDouble(number));
+                break;
+            case ColumnType.DOUBLE:
+                w.putDouble(col, Double.longBitsToDouble(number));
+                break;
+            case ColumnType.STRING:
+                w.putStr(col, value);
+                break;
+            case ColumnType.SYMBOL:
+                w.putSym(col, value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    void countError() {
+        errorCount.incrementAndGet();
+    }
+
+    /**
+     * Finds entry of measurement or adds new entry to be opened by caller under entry lock.
+     *
+     * @return entry or null when measurement is rejected
+     */
+    private Entry acquire(CharSequence measurement) {
+        synchronized (entries) {
+            Entry e = entries.get(measurement);
+            if (e != null) {
+                return e;
+            }
+
+            if (!isValidName(measurement)) {
+                LOG.error().$("Invalid measurement name: ").$(measurement).$();
+                return null;
+            }
+
+            e = new Entry();
+            e.name = measurement.toString();
+            entries.put(e.name, e);
+            entryList.add(e);
+            return e;
+        }
+    }
+
+    private void append(Entry e, LineProtocolParser parser) {
+        try {
+            long timestamp = parser.getTimestamp() == LineProtocolParser.NO_TIMESTAMP ? clock.getTicks() : parser.getTimestamp();
+            JournalEntryWriter w = e.metadata.getTimestampIndex() == -1 ? e.writer.entryWriter() : e.writer.entryWriter(timestamp);
+            for (int i = 0, n = parser.getTokenCount(); i < n; i++) {
+                int col = e.columns.getQuick(i);
+                if (col != -1) {
+                    put(w, col, e.metadata.getColumnQuick(col).type, parser.getValue(i), e.numbers.getQuick(i));
+                }
+            }
+            w.append();
+        } catch (JournalException ex) {
+            errorCount.incrementAndGet();
+            LOG.debug().$("Rejected line for ").$(e.name).$(": ").$(ex.getMessage()).$();
+            return;
+        }
+
+        rowCount.incrementAndGet();
+        e.lastLine = clock.getTicks();
+        if (e.pending++ == 0) {
+            e.lastCommit = e.lastLine;
+        }
+
+        if (e.pending >= commitRows) {
+            commit(e);
+        }
+    }
+
+    private void close(Entry e) {
+        e.writer = Misc.free(e.writer);
+        e.closed = true;
+    }
+
+    private void commit(Entry e) {
+        try {
+            e.writer.commit();
+        } catch (JournalException ex) {
+            throw new JournalRuntimeException(ex);
+        }
+        e.pending = 0;
+        e.lastCommit = clock.getTicks();
+    }
+
+    /**
+     * Maps tokens of line to journal columns and converts numeric values, so that invalid line is
+     * rejected before any of its values are written.
+     */
+    private boolean convert(Entry e, LineProtocolParser parser) {
+        JournalMetadata metadata = e.metadata;
+        IntList columns = e.columns;
+        LongList numbers = e.numbers;
+        columns.clear();
+        numbers.clear();
+        for (int i = 0, n = parser.getTokenCount(); i < n; i++) {
+            int col = metadata.getColumnIndexQuiet(parser.getName(i));
+            long number = 0;
+            if (col == metadata.getTimestampIndex()) {
+                col = -1;
+            }
+
+            if (col != -1) {
+                CharSequence value = parser.getValue(i);
+                try {
+                    switch (metadata.getColumnQuick(col).type) {
+                        case ColumnType.BOOLEAN:
+                            if (parser.getType(i) != LineProtocolParser.BOOLEAN) {
+                                return false;
+                            }
+                            number = LineProtocolParser.parseBool(value) ? 1 : 0;
+                            break;
+                        case ColumnType.BYTE:
+                        case ColumnType.SHORT:
+                        case ColumnType.INT:
+                        case ColumnType.LONG:
+                        case ColumnType.DATE:
+                            number = Numbers.parseLong(value);
+                            break;
+                        case ColumnType.FLOAT:
+                        case ColumnType.DOUBLE:
+                            number = Double.doubleToRawLongBits(Numbers.parseDouble(value));
+                            break;
+                        case ColumnType.STRING:
+                        case ColumnType.SYMBOL:
+                            break;
+                        default:
+                            col = -1;
+                            break;
+                    }
+                } catch (NumericException ex) {
+                    LOG.debug().$("Invalid value of ").$(parser.getName(i)).$(": ").$(value).$();
+                    return false;
+                }
+            }
+            columns.add(col);
+            numbers.add(number);
+        }
+        return true;
+    }
+
+    private JournalStructure createStructure(String name, LineProtocolParser parser) {
+        JournalStructure structure = new JournalStructure(name).partitionBy(partitionBy);
+        for (int i = 0, n = parser.getTokenCount(); i < n; i++) {
+            String column = parser.getName(i).toString();
+            switch (parser.getType(i)) {
+                case LineProtocolParser.TAG:
+                    structure.$sym(column);
+                    break;
+                case LineProtocolParser.LONG:
+                    structure.$long(column);
+                    break;
+                case LineProtocolParser.BOOLEAN:
+                    structure.$bool(column);
+                    break;
+                case LineProtocolParser.STRING:
+                    structure.$str(column);
+                    break;
+                default:
+                    structure.$double(column);
+                    break;
+            }
+        }
+        return structure.$ts();
+    }
+
+    /**
+     * Remembers measurement that failed to open, so that its lines are rejected without retrying. Once
+     * there are as many failures as journals allowed, they are forgotten and retried.
+     */
+    private void onFailure(Entry e) {
+        synchronized (entries) {
+            if (failureCount >= maxJournals) {
+                for (int i = entryList.size() - 1; i > -1; i--) {
+                    Entry f = entryList.getQuick(i);
+                    // lines that still hold removed entry are rejected as before
+                    if (f.failed && f != e) {
+                        entryList.remove(i);
+                    }
+                }
+                rebuild();
+                failureCount = 0;
+            }
+            e.failed = true;
+            failureCount++;
+        }
+    }
+
+    private void open(Entry e, LineProtocolParser parser) {
+        e.opened = true;
+        try {
+            switch (factory.getConfiguration().exists(e.name)) {
+                case DOES_NOT_EXIST:
+                    if (reserveJournal()) {
+                        e.writer = factory.writer(createStructure(e.name, parser));
+                        LOG.info().$("Created journal ").$(e.name).$();
+                    } else {
+                        LOG.error().$("Cannot create ").$(e.name).$(": limit of ").$(maxJournals).$(" journals reached").$();
+                    }
+                    break;
+                case EXISTS:
+                    e.writer = factory.writer(e.name);
+                    break;
+                default:
+                    LOG.error().$("Cannot write to ").$(e.name).$(": not a journal").$();
+                    break;
+            }
+        } catch (JournalException | JournalRuntimeException ex) {
+            LOG.error().$("Cannot open journal ").$(e.name).$(": ").$(ex.getMessage()).$();
+        }
+
+        if (e.writer != null) {
+            e.metadata = e.writer.getMetadata();
+            e.lastLine = clock.getTicks();
+        } else {
+            onFailure(e);
+        }
+    }
+
+    private void rebuild() {
+        entries.clear();
+        for (int i = 0, n = entryList.size(); i < n; i++) {
+            Entry e = entryList.getQuick(i);
+            entries.put(e.name, e);
+        }
+    }
+
+    private void remove(Entry e) {
+        synchronized (entries) {
+            entryList.remove(e);
+            rebuild();
+        }
+    }
+
+    private boolean reserveJournal() {
+        synchronized (entries) {
+            if (createdCount < maxJournals) {
+                createdCount++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void snapshot() {
+        synchronized (entries) {
+            snapshot.addAll(entryList);
+        }
+    }
+
+    private static class Entry {
+        private final IntList columns = new IntList();
+        private final LongList numbers = new LongList();
+        private String name;
+        private JournalWriter writer;
+        private JournalMetadata metadata;
+        private boolean opened;
+        private boolean closed;
+        // set under map lock
+        private boolean failed;
+        private long pending;
+        private long lastCommit;
+        private long lastLine;
+    }
+}
@@ -31,5 +31,14 @@ public interface AggregatorFunction {
 
     void calculate(Record rec, DirectMapValues values);
 
+    /**
+     * Folds partial aggregate into existing one. Partial aggregate is calculated over rows that follow
+     * rows of existing aggregate. Values of both belong to maps of the same structure.
+     *
+     * @param values  aggregate to update
+     * @param partial aggregate of following rows
+     */
+    void merge(DirectMapValues values, DirectMapValues partial);
+
     void prepare(ObjList<RecordColumnMetadata> columns, int offset);
 }
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql;
+
+import com.questdb.ql.impl.map.DirectMapValues;
+
+/**
+ * Aggregate, which can also be calculated over batch of column values laid out contiguously in memory.
+ */
+public interface BatchAggregatorFunction extends AggregatorFunction {
+    int NO_COLUMN = -1;
+    int NOT_BATCHED = -2;
+
+    /**
+     * Aggregates values of batch. Values are read in row order, so result is exactly the same
+     * as if records were passed to {@link #calculate(Record, DirectMapValues)} one by one.
+     *
+     * @param address address of first value, undefined when aggregate does not read column
+     * @param count   number of values in batch
+     * @param values  aggregate values
+     */
+    void calculate(long address, int count, DirectMapValues values);
+
+    /**
+     * @return index of source column, which values are aggregated, {@link #NO_COLUMN} when aggregate does not
+     * read column values or {@link #NOT_BATCHED} when aggregate argument is not a plain column.
+     */
+    int getBatchColumn();
+}
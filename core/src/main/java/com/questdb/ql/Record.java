@@ -52,6 +52,12 @@ public interface Record {
 
     CharSequence getFlyweightStrB(int col);
 
+    /**
+     * Value of symbol column as flyweight, valid until next call of this method. Use {@link #getSym(int)}
+     * for value that has to be kept.
+     */
+    CharSequence getFlyweightSym(int col);
+
     int getInt(int col);
 
     long getLong(int col);
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.Partition;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.store.FixedColumn;
+
+/**
+ * Walks partition slices in batches of rows, which are laid out contiguously in memory for every
+ * one of requested fixed-width columns. Batch ends where slice ends or where page of any
+ * of the columns ends, whichever comes first. Column values of batch can then be read with
+ * tight loop over memory address instead of going through record for every row.
+ */
+public class ColumnBatchCursor {
+    private final IntList columns = new IntList();
+    private final LongList addresses = new LongList();
+    private PartitionCursor partitionCursor;
+    private Partition partition;
+    private long rowLo;
+    private long rowHi = -1;
+    private long nextRowLo;
+    private int size;
+
+    /**
+     * Adds column to batch. Addresses of column values are available by position column has been added at.
+     *
+     * @param columnIndex index of fixed-width column in journal
+     * @return position of column in batch
+     */
+    public int addColumn(int columnIndex) {
+        columns.add(columnIndex);
+        addresses.add(0);
+        return columns.size() - 1;
+    }
+
+    /**
+     * Address of first value in batch.
+     *
+     * @param position position of column, returned by {@link #addColumn(int)}
+     * @return memory address
+     */
+    public long getAddress(int position) {
+        return addresses.getQuick(position);
+    }
+
+    public Partition getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return local row id of first row in batch
+     */
+    public long getRowLo() {
+        return rowLo;
+    }
+
+    public boolean next() {
+        while (nextRowLo > rowHi) {
+            if (!partitionCursor.hasNext()) {
+                return false;
+            }
+
+            PartitionSlice slice = partitionCursor.next();
+            partition = slice.partition;
+            nextRowLo = slice.lo;
+            rowHi = slice.calcHi ? partition.size() - 1 : slice.hi;
+        }
+
+        long n = Math.min(rowHi - nextRowLo + 1, Integer.MAX_VALUE);
+        for (int i = 0, k = columns.size(); i < k; i++) {
+            FixedColumn column = partition.fixCol(columns.getQuick(i));
+            n = Math.min(n, column.getPageRows(nextRowLo));
+            addresses.setQuick(i, column.getAddress(nextRowLo));
+        }
+
+        rowLo = nextRowLo;
+        size = (int) n;
+        nextRowLo += n;
+        return true;
+    }
+
+    public ColumnBatchCursor of(PartitionCursor partitionCursor) {
+        this.partitionCursor = partitionCursor;
+        this.partition = null;
+        this.rowHi = -1;
+        this.nextRowLo = 0;
+        this.size = 0;
+        return this;
+    }
+
+    /**
+     * @return number of rows in batch
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -86,6 +86,11 @@ public class JournalRecord extends AbstractRecord {
         return partition.getFlyweightStrB(rowid, col);
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return partition.getFlyweightSym(rowid, col);
+    }
+
     @Override
     public int getInt(int col) {
         return partition.getInt(rowid, col);
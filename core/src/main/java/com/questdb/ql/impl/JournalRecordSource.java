@@ -26,6 +26,7 @@ package com.questdb.ql.impl;
 import com.questdb.factory.JournalReaderFactory;
 import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
 import com.questdb.misc.Rows;
 import com.questdb.ql.*;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
@@ -49,6 +50,7 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
 
     @Override
     public void close() {
+        Misc.free(rowSource);
     }
 
     @Override
@@ -65,6 +67,16 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
         return this;
     }
 
+    /**
+     * Partition cursor of prepared cursor. Rows of its slices are the rows of this source only when
+     * rows are not filtered, see {@link #supportsBatches()}.
+     *
+     * @return partition cursor
+     */
+    public PartitionCursor getPartitionCursor() {
+        return partitionCursor;
+    }
+
     @Override
     public StorageFacade getStorageFacade() {
         return partitionCursor.getStorageFacade();
@@ -81,6 +93,17 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
         return rec;
     }
 
+    /**
+     * Iterates rows in batches of column values instead of records. Batches are only available when
+     * rows are not filtered, see {@link #supportsBatches()}. Cursor has to be prepared first.
+     *
+     * @param batchCursor cursor with columns to read
+     * @return batch cursor over rows of this source
+     */
+    public ColumnBatchCursor prepareBatchCursor(ColumnBatchCursor batchCursor) {
+        return batchCursor.of(partitionCursor);
+    }
+
     @Override
     public Record newRecord() {
         return new JournalRecord();
@@ -99,6 +122,10 @@ public class JournalRecordSource extends AbstractCombinedRecordSource {
         setPartition((JournalRecord) record, atRowId);
     }
 
+    public boolean supportsBatches() {
+        return rowSource instanceof AllRowSource;
+    }
+
     @Override
     public boolean supportsRowIdAccess() {
         return true;
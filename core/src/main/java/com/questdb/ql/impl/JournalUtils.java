@@ -27,14 +27,11 @@ import com.questdb.JournalEntryWriter;
 import com.questdb.JournalWriter;
 import com.questdb.ex.JournalException;
 import com.questdb.factory.JournalFactory;
-import com.questdb.factory.configuration.ColumnMetadata;
 import com.questdb.factory.configuration.JournalStructure;
-import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
 import com.questdb.ql.RecordSource;
-import com.questdb.std.ObjList;
 import com.questdb.store.ColumnType;
 
 public final class JournalUtils {
@@ -42,79 +39,108 @@ public final class JournalUtils {
     private JournalUtils() {
     }
 
+    static void append(JournalWriter w, RecordMetadata metadata, Record r, int timestampIndex) throws JournalException {
+        JournalEntryWriter ew = timestampIndex == -1 ? w.entryWriter() : w.entryWriter(r.getDate(timestampIndex));
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            switch (metadata.getColumnQuick(i).getType()) {
+                case ColumnType.DATE:
+                    ew.putDate(i, r.getDate(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    ew.putDouble(i, r.getDouble(i));
+                    break;
+                case ColumnType.FLOAT:
+                    ew.putFloat(i, r.getFloat(i));
+                    break;
+                case ColumnType.INT:
+                    ew.putInt(i, r.getInt(i));
+                    break;
+                case ColumnType.STRING:
+                    ew.putStr(i, r.getFlyweightStr(i));
+                    break;
+                case ColumnType.SYMBOL:
+                    ew.putSym(i, r.getSym(i));
+                    break;
+                case ColumnType.SHORT:
+                    ew.putShort(i, r.getShort(i));
+                    break;
+                case ColumnType.LONG:
+                    ew.putLong(i, r.getLong(i));
+                    break;
+                case ColumnType.BYTE:
+                    ew.put(i, r.get(i));
+                    break;
+                case ColumnType.BOOLEAN:
+                    ew.putBool(i, r.getBool(i));
+                    break;
+                case ColumnType.BINARY:
+                    ew.putBin(i, r.getBin(i));
+                    break;
+                default:
+                    break;
+            }
+        }
+        ew.append();
+    }
+
     public static void createJournal(JournalFactory factory, String name, RecordSource rs) throws JournalException {
         final RecordMetadata metadata = rs.getMetadata();
-        final int n = metadata.getColumnCount();
 
-        JournalWriter w = factory.bulkWriter(createStructure(name, metadata).build());
+        JournalWriter w = factory.bulkWriter(createStructure(name, metadata, -1).build());
         RecordCursor cursor = rs.prepareCursor(factory);
         while (cursor.hasNext()) {
-            JournalEntryWriter ew = w.entryWriter();
-            Record r = cursor.next();
-
-            for (int i = 0; i < n; i++) {
-                switch (metadata.getColumnQuick(i).getType()) {
-                    case ColumnType.DATE:
-                        ew.putDate(i, r.getDate(i));
-                        break;
-                    case ColumnType.DOUBLE:
-                        ew.putDouble(i, r.getDouble(i));
-                        break;
-                    case ColumnType.FLOAT:
-                        ew.putFloat(i, r.getFloat(i));
-                        break;
-                    case ColumnType.INT:
-                        ew.putInt(i, r.getInt(i));
-                        break;
-                    case ColumnType.STRING:
-                        ew.putStr(i, r.getFlyweightStr(i));
-                        break;
-                    case ColumnType.SYMBOL:
-                        ew.putSym(i, r.getSym(i));
-                        break;
-                    case ColumnType.SHORT:
-                        ew.putShort(i, r.getShort(i));
-                        break;
-                    case ColumnType.LONG:
-                        ew.putLong(i, r.getLong(i));
-                        break;
-                    case ColumnType.BYTE:
-                        ew.put(i, r.get(i));
-                        break;
-                    case ColumnType.BOOLEAN:
-                        ew.putBool(i, r.getBool(i));
-                        break;
-                    case ColumnType.BINARY:
-                        ew.putBin(i, r.getBin(i));
-                        break;
-                    default:
-                        break;
-                }
-            }
-            ew.append();
+            append(w, metadata, cursor.next(), -1);
         }
         w.commit();
     }
 
-    private static JournalStructure createStructure(String location, RecordMetadata rm) {
-        int n = rm.getColumnCount();
-        ObjList<ColumnMetadata> m = new ObjList<>(n);
-        for (int i = 0; i < n; i++) {
-            ColumnMetadata cm = new ColumnMetadata();
-            RecordColumnMetadata im = rm.getColumnQuick(i);
-            cm.name = im.getName();
-            cm.type = im.getType();
+    static JournalStructure createStructure(String location, RecordMetadata rm, int timestampIndex) {
+        JournalStructure structure = new JournalStructure(location);
+        for (int i = 0, n = rm.getColumnCount(); i < n; i++) {
+            String name = rm.getColumnName(i);
+            if (i == timestampIndex) {
+                structure.$ts(name);
+                continue;
+            }
 
-            switch (cm.type) {
+            switch (rm.getColumnQuick(i).getType()) {
+                case ColumnType.DATE:
+                    structure.$date(name);
+                    break;
+                case ColumnType.DOUBLE:
+                    structure.$double(name);
+                    break;
+                case ColumnType.FLOAT:
+                    structure.$float(name);
+                    break;
+                case ColumnType.INT:
+                    structure.$int(name);
+                    break;
                 case ColumnType.STRING:
-                    cm.size = cm.avgSize + 4;
+                    structure.$str(name);
+                    break;
+                case ColumnType.SYMBOL:
+                    structure.$sym(name);
+                    break;
+                case ColumnType.SHORT:
+                    structure.$short(name);
+                    break;
+                case ColumnType.LONG:
+                    structure.$long(name);
+                    break;
+                case ColumnType.BYTE:
+                    structure.$byte(name);
+                    break;
+                case ColumnType.BOOLEAN:
+                    structure.$bool(name);
+                    break;
+                case ColumnType.BINARY:
+                    structure.$bin(name);
                     break;
                 default:
-                    cm.size = ColumnType.sizeOf(cm.type);
                     break;
             }
-            m.add(cm);
         }
-        return new JournalStructure(location, m);
+        return structure;
     }
 }
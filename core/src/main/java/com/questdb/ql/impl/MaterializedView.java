@@ -0,0 +1,184 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.JournalWriter;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.ex.ParserException;
+import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.JournalFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.misc.Misc;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.store.ColumnType;
+import com.questdb.store.TxListener;
+
+import java.io.Closeable;
+
+/**
+ * Result of "sample by" query stored in its own journal and brought up to date incrementally. View is refreshed
+ * by registering it as {@link TxListener} of the source journal writer, or by calling {@link #refresh()} directly.
+ * Each refresh reads only source rows appended after last sample stored in view.
+ * <p>
+ * All samples but last are final as long as source rows are appended in timestamp order. Last sample is committed
+ * with OPEN_PIN and is rolled back and recomputed on next refresh, this also works across restarts because pin
+ * is persisted in view's transaction log.
+ * <p>
+ * Query must read single journal. View timestamp is the first DATE column of query result.
+ */
+public class MaterializedView implements TxListener, Closeable {
+    private static final Log LOG = LogFactory.getLog(MaterializedView.class);
+    private static final long CLOSED_PIN = 0;
+    private static final long OPEN_PIN = 1;
+    private static final int PAGE_SIZE = 64 * 1024;
+    private final QueryCompiler compiler = new QueryCompiler();
+    private final JournalCachingFactory readerFactory;
+    private final String query;
+    private final RecordMetadata metadata;
+    private final int timestampIndex;
+    private final JournalWriter writer;
+    private final RecordList openSample;
+
+    public MaterializedView(JournalFactory factory, String name, String query) throws JournalException, ParserException {
+        this.query = query;
+        this.readerFactory = new JournalCachingFactory(factory.getConfiguration());
+        RecordSource rs = compiler.compile(readerFactory, query);
+        try {
+            this.metadata = rs.getMetadata();
+            this.timestampIndex = timestampIndex(metadata);
+            if (timestampIndex == -1) {
+                throw new JournalRuntimeException("View %s: query must select DATE column", name);
+            }
+            this.writer = factory.writer(JournalUtils.createStructure(name, metadata, timestampIndex));
+            this.openSample = new RecordList(metadata, PAGE_SIZE);
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+        openSample.close();
+        readerFactory.close();
+    }
+
+    public JournalWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public void onCommit() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            LOG.error().$("Failed to refresh view ").$(writer.getMetadata().getLocation()).$(e).$();
+        }
+    }
+
+    @Override
+    public void onError() {
+    }
+
+    public synchronized void refresh() throws JournalException, ParserException {
+        // discard leftovers of failed refresh
+        writer.rollback();
+        if (writer.getTxPin() == OPEN_PIN) {
+            writer.rollback(writer.getTxn() - 1, CLOSED_PIN, false);
+        }
+
+        // last stored sample is closed, rows of it we read again are partial re-aggregates to be skipped
+        final long lo = writer.size() == 0 ? Long.MIN_VALUE : writer.getMaxTimestamp();
+        readerFactory.refresh();
+        RecordSource rs = compiler.compile(readerFactory, query, lo == Long.MIN_VALUE ? lo : lo + 1);
+        try {
+            RecordCursor cursor = rs.prepareCursor(readerFactory);
+            openSample.clear();
+            openSample.setStorageFacade(cursor.getStorageFacade());
+
+            long sampleTimestamp = Long.MIN_VALUE;
+            long head = -1L;
+            long tail = -1L;
+
+            writer.beginTx();
+            while (cursor.hasNext()) {
+                Record r = cursor.next();
+                long timestamp = r.getDate(timestampIndex);
+                if (timestamp <= lo) {
+                    continue;
+                }
+
+                if (timestamp != sampleTimestamp) {
+                    // rows of previous sample are final now
+                    appendOpenSample(head);
+                    openSample.clear();
+                    head = tail = -1L;
+                    sampleTimestamp = timestamp;
+                }
+
+                tail = openSample.append(r, tail);
+                if (head == -1L) {
+                    head = tail;
+                }
+            }
+            long txn = writer.getTxn() + 1;
+            writer.commit(false, txn, CLOSED_PIN);
+
+            if (head != -1L) {
+                writer.beginTx();
+                appendOpenSample(head);
+                writer.commit(false, txn + 1, OPEN_PIN);
+            }
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    private static int timestampIndex(RecordMetadata metadata) {
+        if (metadata.getTimestampIndex() != -1) {
+            return metadata.getTimestampIndex();
+        }
+
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (metadata.getColumnQuick(i).getType() == ColumnType.DATE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void appendOpenSample(long head) throws JournalException {
+        openSample.of(head);
+        while (openSample.hasNext()) {
+            JournalUtils.append(writer, metadata, openSample.next(), timestampIndex);
+        }
+    }
+}
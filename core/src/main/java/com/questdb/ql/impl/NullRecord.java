@@ -91,6 +91,11 @@ public class NullRecord implements Record {
         return null;
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return null;
+    }
+
     @Override
     public int getInt(int col) {
         return Numbers.INT_NaN;
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Numbers;
+import com.questdb.mp.*;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.std.ObjList;
+import com.questdb.std.ObjectFactory;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Processes chunks of parallel query on query thread and {@link WorkerPool} threads. Query thread takes first
+ * chunk and then helps with the rest, so chunks are done even when all workers are busy. First failure halts
+ * chunks that are still running, they see it through cancellation handler passed to them, and is rethrown on
+ * query thread.
+ *
+ * @param <T> type of chunk
+ */
+public class ParallelRunner<T> {
+    private static final JournalRuntimeException HALTED = new JournalRuntimeException("Parallel query halted");
+    private final Task<T> task;
+    private final WorkerPool workerPool;
+    private final RingQueue<ChunkHolder> queue;
+    private final Sequence pubSeq;
+    private final Sequence subSeq;
+    private final CancellationHandler haltCheck = new CancellationHandler() {
+        @Override
+        public void check() {
+            if (halted) {
+                throw HALTED;
+            }
+        }
+    };
+    private final Runnable worker = new Runnable() {
+        @Override
+        public void run() {
+            drain(haltCheck);
+        }
+    };
+    private volatile CountDownLatch latch;
+    private volatile boolean halted;
+    private volatile Throwable error;
+
+    /**
+     * @param task       processes single chunk
+     * @param workers    maximum number of chunks in one run, including first one
+     * @param workerPool runs chunks other than first one
+     */
+    public ParallelRunner(Task<T> task, int workers, WorkerPool workerPool) {
+        this.task = task;
+        this.workerPool = workerPool;
+        this.queue = new RingQueue<>(ChunkHolder.FACTORY, Numbers.ceilPow2(workers));
+        this.pubSeq = new SPSequence(queue.getCapacity());
+        this.subSeq = new MCSequence(queue.getCapacity(), null);
+        this.pubSeq.then(subSeq).then(pubSeq);
+    }
+
+    /**
+     * Processes first n chunks and returns when all of them are done.
+     *
+     * @param chunks              chunks to process
+     * @param n                   number of chunks to process
+     * @param cancellationHandler checked by query thread
+     */
+    public void run(ObjList<T> chunks, int n, CancellationHandler cancellationHandler) {
+        if (n > 1) {
+            halted = false;
+            error = null;
+            latch = new CountDownLatch(n - 1);
+            for (int i = 1; i < n; i++) {
+                long seq = pubSeq.nextBully();
+                queue.get(seq).chunk = chunks.getQuick(i);
+                pubSeq.done(seq);
+                workerPool.execute(worker);
+            }
+        }
+
+        boolean success = false;
+        try {
+            task.run(chunks.getQuick(0), cancellationHandler);
+            if (n > 1) {
+                drain(cancellationHandler);
+            }
+            success = true;
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        } finally {
+            if (n > 1) {
+                if (!success) {
+                    // chunks nobody has taken yet are halted straight away
+                    halted = true;
+                    drain(haltCheck);
+                }
+                await();
+            }
+        }
+
+        if (error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw new JournalRuntimeException(error);
+        }
+    }
+
+    private void await() {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignore) {
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain(CancellationHandler cancellationHandler) {
+        while (true) {
+            long seq = subSeq.next();
+            if (seq == -1) {
+                return;
+            }
+
+            if (seq == -2) {
+                continue;
+            }
+
+            T chunk = (T) queue.get(seq).chunk;
+            subSeq.done(seq);
+
+            try {
+                task.run(chunk, cancellationHandler);
+            } catch (Throwable e) {
+                if (!halted) {
+                    error = e;
+                    halted = true;
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    public interface Task<T> {
+        void run(T chunk, CancellationHandler cancellationHandler) throws JournalException;
+    }
+
+    private static class ChunkHolder {
+        private static final ObjectFactory<ChunkHolder> FACTORY = new ObjectFactory<ChunkHolder>() {
+            @Override
+            public ChunkHolder newInstance() {
+                return new ChunkHolder();
+            }
+        };
+
+        private Object chunk;
+    }
+}
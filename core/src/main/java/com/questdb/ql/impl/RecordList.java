@@ -78,6 +78,18 @@ public class RecordList extends AbstractImmutableIterator<Record> implements Clo
         Misc.free(mem);
     }
 
+    public long getMemorySize() {
+        return mem.size();
+    }
+
+    /**
+     * Address of record chained after the one at given address or -1 when chain ends. Unlike {@link #next()}
+     * this does not move cursor, so chains can be walked concurrently.
+     */
+    public long getNextAddress(long address) {
+        return Unsafe.getUnsafe().getLong(address - 8);
+    }
+
     @Override
     public StorageFacade getStorageFacade() {
         return storageFacade;
@@ -113,7 +125,7 @@ public class RecordList extends AbstractImmutableIterator<Record> implements Clo
     @Override
     public Record next() {
         record.of(readAddress);
-        readAddress = Unsafe.getUnsafe().getLong(readAddress - 8);
+        readAddress = getNextAddress(readAddress);
         return record;
     }
 
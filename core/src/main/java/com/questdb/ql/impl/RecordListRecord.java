@@ -142,6 +142,11 @@ public class RecordListRecord extends AbstractRecord {
         return csB.of(readAddress + 4, readAddress + 4 + len * 2);
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return storageFacade.getSymbolTable(col).getFlyweightValue(getInt(col));
+    }
+
     @Override
     public int getInt(int col) {
         assert offsets[col] >= 0;
@@ -177,6 +182,10 @@ public class RecordListRecord extends AbstractRecord {
     public void getStr(int col, CharSink sink) {
         long readAddress = addressOf(col);
         final int len = Unsafe.getUnsafe().getInt(readAddress);
+        if (len < 0) {
+            sink.put("null");
+            return;
+        }
         readAddress += 2;
         for (int i = 0; i < len; i++) {
             sink.put(Unsafe.getUnsafe().getChar(readAddress += 2));
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.Journal;
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.PartitionSource;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.model.ColumnRange;
+import com.questdb.std.AbstractImmutableIterator;
+import com.questdb.std.CharSink;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnStats;
+
+/**
+ * Skips partitions and row blocks, which column statistics rule out for all of column ranges.
+ * Partitions are not opened until statistics confirm they may contain matching rows, so underlying
+ * source is expected to supply closed partitions.
+ */
+public class StatsPartitionSource extends AbstractImmutableIterator<PartitionSlice> implements PartitionSource, PartitionCursor {
+    private final PartitionSource partitionSource;
+    private final ObjList<ColumnRange> ranges = new ObjList<>();
+    private final ObjList<ColumnStats> stats = new ObjList<>();
+    private final PartitionSlice result = new PartitionSlice();
+    private PartitionCursor partitionCursor;
+    private PartitionSlice slice;
+    private boolean needPartition = true;
+    private long nextRowLo;
+    private long sliceRowHi;
+    private long size;
+
+    public StatsPartitionSource(PartitionSource partitionSource, ObjList<ColumnRange> ranges) {
+        this.partitionSource = partitionSource;
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            this.ranges.add(new ColumnRange(ranges.getQuick(i)));
+        }
+    }
+
+    @Override
+    public JournalMetadata getMetadata() {
+        return partitionSource.getMetadata();
+    }
+
+    @Override
+    public PartitionCursor prepareCursor(JournalReaderFactory readerFactory) {
+        needPartition = true;
+        partitionCursor = partitionSource.prepareCursor(readerFactory);
+        return this;
+    }
+
+    @Override
+    public Partition getPartition(int index) {
+        return partitionCursor.getPartition(index);
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return partitionCursor.getStorageFacade();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (true) {
+                if (needPartition) {
+                    if (!partitionCursor.hasNext()) {
+                        return false;
+                    }
+
+                    slice = partitionCursor.next();
+                    if (excludesPartition(slice.partition)) {
+                        continue;
+                    }
+
+                    slice.partition.open();
+                    size = slice.partition.size();
+                    nextRowLo = slice.lo;
+                    sliceRowHi = slice.calcHi ? size - 1 : slice.hi;
+                    needPartition = false;
+                }
+
+                if (nextRowLo > sliceRowHi) {
+                    needPartition = true;
+                    continue;
+                }
+
+                int block = (int) (nextRowLo >>> ColumnStats.BLOCK_BITS);
+                int lastBlock = (int) (sliceRowHi >>> ColumnStats.BLOCK_BITS);
+
+                while (block <= lastBlock && excludesBlock(block)) {
+                    block++;
+                }
+
+                if (block > lastBlock) {
+                    needPartition = true;
+                    continue;
+                }
+
+                int end = block + 1;
+                while (end <= lastBlock && !excludesBlock(end)) {
+                    end++;
+                }
+
+                result.partition = slice.partition;
+                result.lo = Math.max(nextRowLo, ((long) block) << ColumnStats.BLOCK_BITS);
+                result.hi = Math.min((((long) end) << ColumnStats.BLOCK_BITS) - 1, sliceRowHi);
+                result.calcHi = false;
+                nextRowLo = result.hi + 1;
+                return true;
+            }
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+    }
+
+    @Override
+    public PartitionSlice next() {
+        return result;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("StatsPartitionSource").put(',');
+        sink.putQuoted("psrc").put(':').put(partitionSource).put(',');
+        sink.putQuoted("columns").put(':').put('[');
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(getMetadata().getColumnName(ranges.getQuick(i).columnIndex));
+        }
+        sink.put(']');
+        sink.put('}');
+    }
+
+    private boolean excludesBlock(int block) {
+        long blockHi = Math.min(((long) block + 1) << ColumnStats.BLOCK_BITS, size);
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            ColumnStats s = stats.getQuick(i);
+            // block might not be covered by statistics when writer is ahead of reader
+            if (s != null && blockHi <= s.getRowCount() && excludes(s, ranges.getQuick(i), block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean excludes(ColumnStats s, ColumnRange r, int block) {
+        if (r.isDouble()) {
+            return block == -1 ? s.excludes(r.doubleLo, r.doubleHi) : s.excludes(block, r.doubleLo, r.doubleHi);
+        }
+        return block == -1 ? s.excludes(r.lo, r.hi) : s.excludes(block, r.lo, r.hi);
+    }
+
+    private boolean excludesPartition(Partition partition) throws JournalException {
+        // partitions followed by other partitions are sealed and their statistics
+        // are complete, row count of the rest is known either from transaction or open columns
+        long rows = partition.isOpen() ? partition.size() : partition.getTxLimit();
+        boolean excluded = false;
+        stats.clear();
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            ColumnStats s = partition.getColumnStats(ranges.getQuick(i).columnIndex);
+            stats.add(s);
+            if (!excluded && s != null) {
+                long covered = s.getRowCount();
+                excluded = covered > 0 && (rows == Journal.TX_LIMIT_EVAL || rows <= covered) && excludes(s, ranges.getQuick(i), -1);
+            }
+        }
+        return excluded;
+    }
+}
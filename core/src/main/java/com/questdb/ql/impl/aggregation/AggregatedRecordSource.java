@@ -25,10 +25,14 @@ package com.questdb.ql.impl.aggregation;
 
 
 import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Misc;
+import com.questdb.mp.WorkerPool;
 import com.questdb.ql.*;
+import com.questdb.ql.impl.ColumnBatchCursor;
+import com.questdb.ql.impl.JournalRecordSource;
 import com.questdb.ql.impl.map.*;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.std.*;
@@ -46,6 +50,10 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     private final DirectMapStorageFacade storageFacade;
     private final DirectMapRecord record;
     private final ObjList<MapRecordValueInterceptor> interceptors;
+    // batch positions of aggregated columns, null when aggregates have to be calculated record by record
+    private final IntList batchColumns;
+    private final ColumnBatchCursor batchCursor;
+    private final ParallelAggregator parallelAggregator;
     private RecordCursor recordCursor;
     private Iterator<DirectMapEntry> mapCursor;
 
@@ -53,7 +61,9 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
             RecordSource recordSource,
             @Transient ObjHashSet<String> keyColumns,
             ObjList<AggregatorFunction> aggregators,
-            int pageSize
+            int pageSize,
+            int workers,
+            WorkerPool workerPool
     ) {
         int keyColumnsSize = keyColumns.size();
         this.keyIndices = new IntList(keyColumnsSize);
@@ -86,14 +96,46 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         this.interceptors = interceptors;
         this.metadata = new DirectMapMetadata(rm, keyColumns, columns);
         this.storageFacade = new DirectMapStorageFacade(columns.size(), keyIndices);
-        this.map = new DirectMap(pageSize, keyColumnsSize, AggregationUtils.toThreadLocalTypes(columns));
+        IntList valueTypes = AggregationUtils.toThreadLocalTypes(columns);
+        this.map = new DirectMap(pageSize, keyColumnsSize, valueTypes);
         this.recordSource = recordSource;
         this.record = new DirectMapRecord(storageFacade);
+
+        if (keyColumnsSize == 0 && isBatchable(recordSource, aggregators)) {
+            this.batchCursor = new ColumnBatchCursor();
+            this.batchColumns = new IntList(aggregators.size());
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                int column = ((BatchAggregatorFunction) aggregators.getQuick(i)).getBatchColumn();
+                batchColumns.add(column == BatchAggregatorFunction.NO_COLUMN ? -1 : batchCursor.addColumn(column));
+            }
+        } else {
+            this.batchCursor = null;
+            this.batchColumns = null;
+        }
+
+        if (workers > 1 && isJournalScan(recordSource)) {
+            this.parallelAggregator = new ParallelAggregator(
+                    (JournalMetadata) rm,
+                    keyIndices,
+                    keyColumnsSize,
+                    valueTypes,
+                    aggregators,
+                    -1,
+                    null,
+                    batchColumns,
+                    workers,
+                    workerPool,
+                    pageSize
+            );
+        } else {
+            this.parallelAggregator = null;
+        }
     }
 
     @Override
     public void close() {
         Misc.free(this.map);
+        Misc.free(parallelAggregator);
         Misc.free(recordSource);
     }
 
@@ -107,7 +149,14 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         map.clear();
         this.recordCursor = recordSource.prepareCursor(factory, cancellationHandler);
         this.storageFacade.prepare(this.recordCursor);
-        buildMap(cancellationHandler);
+        if (parallelAggregator != null) {
+            parallelAggregator.aggregate(((JournalRecordSource) recordSource).getPartitionCursor(), map, cancellationHandler);
+            mapCursor = map.iterator();
+        } else if (batchCursor != null) {
+            buildMap(((JournalRecordSource) recordSource).prepareBatchCursor(batchCursor), cancellationHandler);
+        } else {
+            buildMap(cancellationHandler);
+        }
         return this;
     }
 
@@ -159,6 +208,12 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
     public void toSink(CharSink sink) {
         sink.put('{');
         sink.putQuoted("op").put(':').putQuoted("AggregatedRecordSource").put(',');
+        if (batchCursor != null) {
+            sink.putQuoted("batch").put(':').put(true).put(',');
+        }
+        if (parallelAggregator != null) {
+            sink.putQuoted("workers").put(':').put(parallelAggregator.getWorkers()).put(',');
+        }
         sink.putQuoted("src").put(':').put(recordSource);
         sink.put('}');
     }
@@ -187,6 +242,41 @@ public class AggregatedRecordSource extends AbstractCombinedRecordSource impleme
         mapCursor = map.iterator();
     }
 
+    private void buildMap(ColumnBatchCursor cursor, CancellationHandler cancellationHandler) {
+        while (cursor.next()) {
+            cancellationHandler.check();
+
+            DirectMapValues values = map.getOrCreateValues(map.keyWriter());
+            for (int i = 0, n = aggregators.size(); i < n; i++) {
+                int position = batchColumns.getQuick(i);
+                ((BatchAggregatorFunction) aggregators.getQuick(i)).calculate(position == -1 ? 0 : cursor.getAddress(position), cursor.size(), values);
+            }
+        }
+        mapCursor = map.iterator();
+    }
+
+    private static boolean isBatchable(RecordSource recordSource, ObjList<AggregatorFunction> aggregators) {
+        if (!isJournalScan(recordSource)) {
+            return false;
+        }
+
+        for (int i = 0, n = aggregators.size(); i < n; i++) {
+            AggregatorFunction f = aggregators.getQuick(i);
+            if (!(f instanceof BatchAggregatorFunction) || ((BatchAggregatorFunction) f).getBatchColumn() == BatchAggregatorFunction.NOT_BATCHED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param recordSource source of aggregated rows
+     * @return true when source reads all rows of journal partitions, which can then be read by other means than records
+     */
+    static boolean isJournalScan(RecordSource recordSource) {
+        return recordSource instanceof JournalRecordSource && ((JournalRecordSource) recordSource).supportsBatches();
+    }
+
     private void notifyInterceptors(DirectMapEntry entry) {
         for (int i = 0, n = interceptors.size(); i < n; i++) {
             interceptors.getQuick(i).beforeRecord(entry.values());
@@ -163,6 +163,11 @@ public class CountRecordSource extends AbstractCombinedRecordSource {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public CharSequence getFlyweightSym(int col) {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public int getInt(int col) {
             throw new UnsupportedOperationException();
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.aggregation;
+
+import com.questdb.Journal;
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.mp.WorkerPool;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.ColumnBatchCursor;
+import com.questdb.ql.impl.JournalRecord;
+import com.questdb.ql.impl.ParallelRunner;
+import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.DirectMapEntry;
+import com.questdb.ql.impl.map.DirectMapValues;
+import com.questdb.ql.impl.map.MapUtils;
+import com.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Aggregates rows of unfiltered journal scan on several threads. Rows are split into chunks of about
+ * equal size, one chunk per worker. First chunk is aggregated by query thread straight into result map.
+ * Other chunks are processed by {@link ParallelRunner}, each is read with its own journal reader into its
+ * own map. Readers are closed as soon as chunks are aggregated.
+ * <p>
+ * Chunk maps are merged into result map in row order. This keeps order-sensitive aggregates, such as
+ * first() and last(), and order of keys the same as when rows are aggregated one after another.
+ */
+class ParallelAggregator implements Closeable {
+    // scan has to be at least this large for extra chunk to pay off
+    private static final long MIN_CHUNK_ROWS = 64 * 1024;
+    private final JournalMetadata metadata;
+    private final IntList keyIndices;
+    private final IntList keyTypes;
+    private final int keyCount;
+    private final IntList valueTypes = new IntList();
+    private final ObjList<AggregatorFunction> aggregators;
+    private final int tsIndex;
+    private final TimestampSampler sampler;
+    private final IntList batchColumns;
+    private final int pageSize;
+    private final ObjList<Chunk> chunks;
+    private final ParallelRunner<Chunk> runner;
+    // triplets of partition index, lo and hi row
+    private final LongList scanned = new LongList();
+    private DirectMap resultMap;
+
+    /**
+     * @param metadata     metadata of scanned journal
+     * @param keyIndices   indices of key columns
+     * @param keyCount     number of key columns in map, including sample
+     * @param valueTypes   types of map value columns
+     * @param aggregators  aggregate functions
+     * @param tsIndex      index of timestamp column to sample, ignored when sampler is null
+     * @param sampler      sampler of timestamp, which is the first key, or null
+     * @param batchColumns batch positions of aggregated columns or null to aggregate rows one by one
+     * @param workers      maximum number of threads to aggregate on, including query thread
+     * @param workerPool   threads to aggregate on other than query thread
+     * @param pageSize     memory page size of chunk maps
+     */
+    ParallelAggregator(
+            JournalMetadata metadata,
+            IntList keyIndices,
+            int keyCount,
+            @Transient IntList valueTypes,
+            ObjList<AggregatorFunction> aggregators,
+            int tsIndex,
+            TimestampSampler sampler,
+            IntList batchColumns,
+            int workers,
+            WorkerPool workerPool,
+            int pageSize
+    ) {
+        this.metadata = metadata;
+        this.keyIndices = keyIndices;
+        this.keyTypes = new IntList(keyIndices.size());
+        for (int i = 0, n = keyIndices.size(); i < n; i++) {
+            keyTypes.add(metadata.getColumnQuick(keyIndices.getQuick(i)).getType());
+        }
+        this.keyCount = keyCount;
+        this.valueTypes.addAll(valueTypes);
+        this.aggregators = aggregators;
+        this.tsIndex = tsIndex;
+        this.sampler = sampler;
+        this.batchColumns = batchColumns;
+        this.pageSize = pageSize;
+        this.chunks = new ObjList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            chunks.add(new Chunk());
+        }
+        this.runner = new ParallelRunner<>(new ParallelRunner.Task<Chunk>() {
+            @Override
+            public void run(Chunk chunk, CancellationHandler cancellationHandler) throws JournalException {
+                if (chunk == chunks.getQuick(0)) {
+                    aggregate(chunk, resultMap, cancellationHandler);
+                } else {
+                    chunk.prepare();
+                    aggregate(chunk, chunk.map, cancellationHandler);
+                }
+            }
+        }, workers, workerPool);
+    }
+
+    /**
+     * Aggregates rows of partition slices into map.
+     *
+     * @param cursor              cursor of partition slices, rows of which are aggregated
+     * @param map                 result map
+     * @param cancellationHandler checked by query thread
+     */
+    void aggregate(PartitionCursor cursor, DirectMap map, CancellationHandler cancellationHandler) {
+        Chunk first = chunks.getQuick(0);
+        int n = split(cursor);
+
+        if (n == 1) {
+            aggregate(first, map, cancellationHandler);
+            return;
+        }
+
+        resultMap = map;
+        try {
+            runner.run(chunks, n, cancellationHandler);
+        } finally {
+            resultMap = null;
+            for (int i = 1; i < n; i++) {
+                Chunk chunk = chunks.getQuick(i);
+                chunk.journal = Misc.free(chunk.journal);
+            }
+        }
+
+        for (int i = 1; i < n; i++) {
+            merge(map, chunks.getQuick(i).map);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = chunks.size(); i < n; i++) {
+            Chunk chunk = chunks.getQuick(i);
+            chunk.map = Misc.free(chunk.map);
+            chunk.journal = Misc.free(chunk.journal);
+        }
+    }
+
+    int getWorkers() {
+        return chunks.size();
+    }
+
+    private void aggregate(Chunk chunk, DirectMap map, CancellationHandler cancellationHandler) {
+        if (batchColumns != null) {
+            chunk.sliceIndex = 0;
+            ColumnBatchCursor cursor = chunk.batchCursor.of(chunk);
+            while (cursor.next()) {
+                cancellationHandler.check();
+
+                DirectMapValues values = map.getOrCreateValues(map.keyWriter());
+                for (int i = 0, n = aggregators.size(); i < n; i++) {
+                    int position = batchColumns.getQuick(i);
+                    ((BatchAggregatorFunction) aggregators.getQuick(i)).calculate(position == -1 ? 0 : cursor.getAddress(position), cursor.size(), values);
+                }
+            }
+            return;
+        }
+
+        JournalRecord rec = chunk.record;
+        LongList slices = chunk.slices;
+        for (int i = 0, n = slices.size(); i < n; i += 3) {
+            rec.partitionIndex = (int) slices.getQuick(i);
+            rec.partition = chunk.getPartition(rec.partitionIndex);
+
+            for (long row = slices.getQuick(i + 1), hi = slices.getQuick(i + 2); row <= hi; row++) {
+                cancellationHandler.check();
+
+                rec.rowid = row;
+                DirectMap.KeyWriter kw = map.keyWriter();
+                if (sampler != null) {
+                    kw.putLong(sampler.resample(rec.getLong(tsIndex)));
+                }
+                for (int k = 0, m = keyIndices.size(); k < m; k++) {
+                    MapUtils.putRecord(kw, rec, keyIndices.getQuick(k), keyTypes.getQuick(k));
+                }
+
+                DirectMapValues values = map.getOrCreateValues(kw);
+                for (int k = 0, m = aggregators.size(); k < m; k++) {
+                    aggregators.getQuick(k).calculate(rec, values);
+                }
+            }
+        }
+    }
+
+    private void merge(DirectMap map, DirectMap partial) {
+        for (DirectMapEntry e : partial) {
+            DirectMapValues values = map.getOrCreateValues(e);
+            if (!values.isNew()) {
+                DirectMapValues p = e.values();
+                for (int i = 0, n = aggregators.size(); i < n; i++) {
+                    aggregators.getQuick(i).merge(values, p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits rows of partition slices between chunks. Partitions of first chunk are those of query thread.
+     *
+     * @param cursor partition cursor of query thread
+     * @return number of chunks to aggregate
+     */
+    private int split(PartitionCursor cursor) {
+        scanned.clear();
+        long total = 0;
+        boolean irregular = false;
+        while (cursor.hasNext()) {
+            PartitionSlice slice = cursor.next();
+            long hi = slice.calcHi ? slice.partition.size() - 1 : slice.hi;
+            if (hi >= slice.lo) {
+                scanned.add(slice.partition.getPartitionIndex());
+                scanned.add(slice.lo);
+                scanned.add(hi);
+                total += hi - slice.lo + 1;
+                irregular |= slice.partition.getJournal().getIrregularPartition() == slice.partition;
+            }
+        }
+
+        // lag partition is replaced by writer and cannot be matched between readers reliably
+        int n = irregular ? 1 : (int) Math.max(1, Math.min(chunks.size(), total / MIN_CHUNK_ROWS));
+        long quota = (total + n - 1) / n;
+        long room = quota;
+        int k = 0;
+        Chunk chunk = chunks.getQuick(0);
+        chunk.clear();
+        chunk.partitionCursor = cursor;
+
+        for (int i = 0, m = scanned.size(); i < m; i += 3) {
+            int partitionIndex = (int) scanned.getQuick(i);
+            long lo = scanned.getQuick(i + 1);
+            long hi = scanned.getQuick(i + 2);
+
+            while (lo <= hi) {
+                if (room == 0) {
+                    chunk = chunks.getQuick(++k);
+                    chunk.clear();
+                    room = quota;
+                }
+                long rows = Math.min(room, hi - lo + 1);
+                chunk.add(partitionIndex, lo, lo + rows - 1);
+                lo += rows;
+                room -= rows;
+            }
+        }
+        return k + 1;
+    }
+
+    private class Chunk extends AbstractImmutableIterator<PartitionSlice> implements PartitionCursor {
+        // triplets of partition index, lo and hi row
+        private final LongList slices = new LongList();
+        private final PartitionSlice slice = new PartitionSlice();
+        private final JournalRecord record = new JournalRecord();
+        private final ColumnBatchCursor batchCursor;
+        private PartitionCursor partitionCursor;
+        private Journal journal;
+        private DirectMap map;
+        private int sliceIndex;
+
+        private Chunk() {
+            if (batchColumns != null) {
+                batchCursor = new ColumnBatchCursor();
+                for (int i = 0, n = aggregators.size(); i < n; i++) {
+                    int column = ((BatchAggregatorFunction) aggregators.getQuick(i)).getBatchColumn();
+                    if (column != BatchAggregatorFunction.NO_COLUMN) {
+                        batchCursor.addColumn(column);
+                    }
+                }
+            } else {
+                batchCursor = null;
+            }
+        }
+
+        @Override
+        public Partition getPartition(int index) {
+            if (partitionCursor != null) {
+                return partitionCursor.getPartition(index);
+            }
+
+            try {
+                return journal.getPartition(index, true);
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+        }
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return sliceIndex < slices.size();
+        }
+
+        @Override
+        public PartitionSlice next() {
+            int i = sliceIndex;
+            sliceIndex += 3;
+            slice.partition = getPartition((int) slices.getQuick(i));
+            slice.lo = slices.getQuick(i + 1);
+            slice.hi = slices.getQuick(i + 2);
+            return slice;
+        }
+
+        private void add(int partitionIndex, long lo, long hi) {
+            slices.add(partitionIndex);
+            slices.add(lo);
+            slices.add(hi);
+        }
+
+        private void clear() {
+            slices.clear();
+            partitionCursor = null;
+        }
+
+        private void prepare() throws JournalException {
+            // reader is opened after query thread's one, so it sees at least the same rows
+            journal = new Journal<>(new JournalMetadata<>(metadata), metadata.getKey());
+
+            if (map == null) {
+                map = new DirectMap(pageSize, keyCount, valueTypes);
+            } else {
+                map.clear();
+            }
+        }
+    }
+}
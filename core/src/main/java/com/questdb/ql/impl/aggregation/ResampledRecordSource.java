@@ -25,10 +25,13 @@ package com.questdb.ql.impl.aggregation;
 
 
 import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
 import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.misc.Misc;
+import com.questdb.mp.WorkerPool;
 import com.questdb.ql.*;
+import com.questdb.ql.impl.JournalRecordSource;
 import com.questdb.ql.impl.map.*;
 import com.questdb.ql.ops.AbstractCombinedRecordSource;
 import com.questdb.std.*;
@@ -44,6 +47,7 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
     private final DirectMapRecord record;
     private final DirectMapStorageFacade storageFacade;
     private final ObjList<MapRecordValueInterceptor> interceptors;
+    private final ParallelAggregator parallelAggregator;
     private RecordCursor recordCursor;
     private DirectMapIterator mapCursor;
     private Record nextRecord = null;
@@ -54,7 +58,9 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
             @Transient ObjHashSet<String> keyColumns,
             ObjList<AggregatorFunction> aggregators,
             TimestampSampler sampler,
-            int pageSize
+            int pageSize,
+            int workers,
+            WorkerPool workerPool
     ) {
         int keyColumnsSize = keyColumns.size();
         this.keyIndices = new IntList(keyColumnsSize);
@@ -100,13 +106,35 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
         this.storageFacade = new DirectMapStorageFacade(columns.size() + 1, keyIndices);
         this.metadata = new DirectMapMetadata(rm, keyCols, columns);
         this.record = new DirectMapRecord(this.storageFacade);
-        this.map = new DirectMap(pageSize, keyCols.size(), AggregationUtils.toThreadLocalTypes(columns));
+        IntList valueTypes = AggregationUtils.toThreadLocalTypes(columns);
+        this.map = new DirectMap(pageSize, keyCols.size(), valueTypes);
         this.recordSource = recordSource;
+
+        // samples of all rows are aggregated at once, rows are in timestamp order within every chunk
+        // and merged map keeps this order
+        if (workers > 1 && AggregatedRecordSource.isJournalScan(recordSource)) {
+            this.parallelAggregator = new ParallelAggregator(
+                    (JournalMetadata) rm,
+                    keyIndices,
+                    keyCols.size(),
+                    valueTypes,
+                    aggregators,
+                    tsIndex,
+                    sampler,
+                    null,
+                    workers,
+                    workerPool,
+                    pageSize
+            );
+        } else {
+            this.parallelAggregator = null;
+        }
     }
 
     @Override
     public void close() {
         Misc.free(map);
+        Misc.free(parallelAggregator);
         Misc.free(recordSource);
     }
 
@@ -119,8 +147,13 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
     public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
         map.clear();
         nextRecord = null;
+        mapCursor = null;
         this.recordCursor = recordSource.prepareCursor(factory, cancellationHandler);
         this.storageFacade.prepare(this.recordCursor);
+        if (parallelAggregator != null) {
+            parallelAggregator.aggregate(((JournalRecordSource) recordSource).getPartitionCursor(), map, cancellationHandler);
+            mapCursor = map.iterator();
+        }
         return this;
     }
 
@@ -131,7 +164,7 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
 
     @Override
     public boolean hasNext() {
-        return mapCursor != null && mapCursor.hasNext() || buildMap();
+        return mapCursor != null && mapCursor.hasNext() || parallelAggregator == null && buildMap();
     }
 
     @Override
@@ -149,6 +182,9 @@ public class ResampledRecordSource extends AbstractCombinedRecordSource {
     public void toSink(CharSink sink) {
         sink.put('{');
         sink.putQuoted("op").put(':').putQuoted("ResampledRecordSource").put(',');
+        if (parallelAggregator != null) {
+            sink.putQuoted("workers").put(':').put(parallelAggregator.getWorkers()).put(',');
+        }
         sink.putQuoted("src").put(':').put(recordSource).put(',');
         sink.putQuoted("sampler").put(':').put(sampler);
         sink.put('}');
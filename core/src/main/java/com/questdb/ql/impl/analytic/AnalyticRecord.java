@@ -101,6 +101,11 @@ public class AnalyticRecord extends AbstractRecord {
         return col < split ? base.getFlyweightStrB(col) : functions.getQuick(col - split).getFlyweightStrB();
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return col < split ? base.getFlyweightSym(col) : functions.getQuick(col - split).getSym();
+    }
+
     @Override
     public int getInt(int col) {
         return col < split ? base.getInt(col) : functions.getQuick(col - split).getInt();
@@ -0,0 +1,461 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.NullRecord;
+import com.questdb.ql.impl.SplitRecordMetadata;
+import com.questdb.ql.impl.join.hash.FakeRecord;
+import com.questdb.ql.impl.join.hash.MultiRecordMap;
+import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.MapUtils;
+import com.questdb.ql.impl.sort.RunFile;
+import com.questdb.ql.impl.sort.SpillRecord;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.std.Path;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Hash join for slave sides that do not fit in memory. Slave is hashed into memory for as long as hash table
+ * stays within budget, in which case join behaves exactly as {@link HashJoinRecordSource}. When budget is
+ * exceeded slave is read again and both sides are partitioned by hash of join key into bucket files in
+ * database directory. Bucket pairs are then joined one at a time, bucket that still does not fit in budget
+ * is partitioned again on next bits of the hash.
+ * <p>
+ * Output of partitioned join is grouped by bucket and does not follow master order.
+ */
+public class GraceHashJoinRecordSource extends AbstractCombinedRecordSource implements Closeable {
+    private static final int FAN_OUT_BITS = 4;
+    private static final int FAN_OUT = 1 << FAN_OUT_BITS;
+    private static final int MAX_LEVEL = 32 / FAN_OUT_BITS - 1;
+    private final RecordSource master;
+    private final RecordSource slave;
+    private final SplitRecordMetadata metadata;
+    private final SplitRecord currentRecord;
+    private final SplitRecordStorageFacade storageFacade;
+    private final ObjList<RecordColumnMetadata> masterColumns = new ObjList<>();
+    private final ObjList<RecordColumnMetadata> slaveColumns = new ObjList<>();
+    private final IntList masterColIndex;
+    private final IntList slaveColIndex;
+    private final FakeRecord fakeRecord = new FakeRecord();
+    private final boolean byRowId;
+    private final boolean outer;
+    private final long budget;
+    private final int keyPageSize;
+    private final int dataPageSize;
+    private final MultiRecordMap recordMap;
+    private final SpillRecord masterSpill;
+    private final SpillRecord slaveSpill;
+    private final ObjList<RunFile> masterParts = new ObjList<>(FAN_OUT);
+    private final ObjList<RunFile> slaveParts = new ObjList<>(FAN_OUT);
+    private final ObjList<Bucket> buckets = new ObjList<>();
+    private final Path path = new Path();
+    private MultiRecordMap bucketMap;
+    private RecordCursor slaveCursor;
+    private RecordCursor masterCursor;
+    private RecordCursor hashTableCursor;
+    private CancellationHandler cancellationHandler;
+    private File dir;
+    private Bucket bucket;
+    private boolean partitioned;
+
+    public GraceHashJoinRecordSource(
+            RecordSource master,
+            IntList masterColIndices,
+            RecordSource slave,
+            IntList slaveColIndices,
+            boolean outer,
+            int keyPageSize,
+            int dataPageSize,
+            int rowIdPageSize,
+            long budget
+    ) {
+        this.master = master;
+        this.slave = slave;
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata()) {
+            @Override
+            public int getTimestampIndex() {
+                // rows of spilled buckets are not in master order
+                return -1;
+            }
+        };
+        this.currentRecord = new SplitRecord(master.getMetadata().getColumnCount());
+        this.byRowId = slave.supportsRowIdAccess();
+        this.masterColIndex = masterColIndices;
+        this.slaveColIndex = slaveColIndices;
+        this.keyPageSize = keyPageSize;
+        this.dataPageSize = dataPageSize;
+        this.recordMap = createRecordMap(master, slave, keyPageSize, dataPageSize, rowIdPageSize);
+        this.bucketMap = byRowId ? null : recordMap;
+        this.outer = outer;
+        this.budget = budget;
+        this.storageFacade = new SplitRecordStorageFacade(master.getMetadata().getColumnCount());
+        this.masterSpill = new SpillRecord(master.getMetadata());
+        this.slaveSpill = new SpillRecord(slave.getMetadata());
+        this.masterParts.setAll(FAN_OUT, null);
+        this.slaveParts.setAll(FAN_OUT, null);
+    }
+
+    @Override
+    public void close() {
+        freeBuckets();
+        if (bucketMap != recordMap) {
+            Misc.free(bucketMap);
+        }
+        Misc.free(recordMap);
+        Misc.free(master);
+        Misc.free(slave);
+        Misc.free(path);
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        freeBuckets();
+        this.hashTableCursor = null;
+        this.cancellationHandler = cancellationHandler;
+        this.recordMap.clear();
+        this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        this.masterCursor = master.prepareCursor(factory, cancellationHandler);
+        this.partitioned = !buildHashTable();
+        if (partitioned) {
+            partition(factory);
+        }
+        recordMap.setStorageFacade(slaveCursor.getStorageFacade());
+        storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        return this;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hashTableCursor != null && hashTableCursor.hasNext()) {
+            Record rec = hashTableCursor.next();
+            currentRecord.setB(byRowId && !partitioned ? slaveCursor.recordAt(rec.getLong(0)) : rec);
+            return true;
+        }
+        return partitioned ? hasNextPartitioned() : hasNext0();
+    }
+
+    @Override
+    public SplitRecord next() {
+        return currentRecord;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("GraceHashJoinRecordSource").put(',');
+        sink.putQuoted("budget").put(':').put(budget).put(',');
+        sink.putQuoted("master").put(':').put(master).put(',');
+        sink.putQuoted("slave").put(':').put(slave).put(',');
+        sink.putQuoted("joinOn").put(':').put('[');
+        sink.put('[');
+        for (int i = 0, n = masterColumns.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(masterColumns.getQuick(i).getName());
+        }
+        sink.put(']').put(',');
+        sink.put('[');
+        for (int i = 0, n = slaveColumns.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(slaveColumns.getQuick(i).getName());
+        }
+        sink.put("]]}");
+    }
+
+    /**
+     * Hashes slave into memory.
+     *
+     * @return false when hash table exceeds budget
+     */
+    private boolean buildHashTable() {
+        for (Record r : slaveCursor) {
+            cancellationHandler.check();
+            final DirectMap.KeyWriter key = populateKey(recordMap, r, slaveColIndex, slaveColumns);
+            if (byRowId) {
+                recordMap.add(key, fakeRecord.of(r.getRowId()));
+            } else {
+                recordMap.add(key, r);
+            }
+
+            if (recordMap.getMemorySize() > budget) {
+                recordMap.clear();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MultiRecordMap createRecordMap(RecordSource masterSource,
+                                           RecordSource slaveSource,
+                                           int keyPageSize,
+                                           int dataPageSize,
+                                           int rowIdPageSize) {
+        RecordMetadata mm = masterSource.getMetadata();
+        for (int i = 0, k = masterColIndex.size(); i < k; i++) {
+            this.masterColumns.add(mm.getColumnQuick(masterColIndex.getQuick(i)));
+        }
+
+        RecordMetadata sm = slaveSource.getMetadata();
+        for (int i = 0, k = slaveColIndex.size(); i < k; i++) {
+            int index = slaveColIndex.getQuick(i);
+            this.slaveColumns.add(sm.getColumnQuick(index));
+        }
+        return byRowId ? new MultiRecordMap(slaveColumns.size(), MapUtils.ROWID_RECORD_METADATA, keyPageSize, rowIdPageSize) :
+                new MultiRecordMap(slaveColumns.size(), slaveSource.getMetadata(), keyPageSize, dataPageSize);
+    }
+
+    private void freeBuckets() {
+        bucket = Misc.free(bucket);
+        for (int i = 0, n = buckets.size(); i < n; i++) {
+            Misc.free(buckets.getQuick(i));
+        }
+        buckets.clear();
+
+        // partitions are left behind when partitioning did not complete
+        for (int i = 0; i < FAN_OUT; i++) {
+            Misc.free(masterParts.getQuick(i));
+            Misc.free(slaveParts.getQuick(i));
+        }
+        masterParts.setAll(FAN_OUT, null);
+        slaveParts.setAll(FAN_OUT, null);
+    }
+
+    private boolean hasNext0() {
+        while (masterCursor.hasNext()) {
+            if (probe(masterCursor.next(), recordMap, byRowId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasNextPartitioned() {
+        while (true) {
+            if (bucket != null) {
+                while (bucket.master.next()) {
+                    cancellationHandler.check();
+                    if (probe(masterSpill, bucketMap, false)) {
+                        return true;
+                    }
+                }
+                bucket = Misc.free(bucket);
+            }
+
+            if (!nextBucket()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Loads slave side of bucket into memory. Bucket that exceeds budget is partitioned further and freed.
+     *
+     * @return false when bucket was partitioned
+     */
+    private boolean load(Bucket b) {
+        bucketMap.clear();
+        if (b.slave != null) {
+            while (b.slave.next()) {
+                cancellationHandler.check();
+                bucketMap.add(populateKey(bucketMap, slaveSpill, slaveColIndex, slaveColumns), slaveSpill);
+                if (b.level < MAX_LEVEL && bucketMap.getMemorySize() > budget) {
+                    bucketMap.clear();
+                    b.slave.toTop();
+                    while (b.slave.next()) {
+                        cancellationHandler.check();
+                        spill(slaveSpill, slaveColIndex, slaveColumns, slaveParts, slaveSpill, b.level + 1);
+                    }
+                    while (b.master.next()) {
+                        cancellationHandler.check();
+                        spill(masterSpill, masterColIndex, masterColumns, masterParts, masterSpill, b.level + 1);
+                    }
+                    Misc.free(b);
+                    pushBuckets(b.level + 1);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean nextBucket() {
+        while (buckets.size() > 0) {
+            int last = buckets.size() - 1;
+            Bucket b = buckets.getQuick(last);
+            buckets.remove(last);
+            if (load(b)) {
+                bucket = b;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RunFile newBucketFile(SpillRecord record) {
+        File file;
+        try {
+            file = File.createTempFile("join", ".bucket", dir);
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Cannot create join bucket in %s", e, dir.getAbsolutePath());
+        }
+        return new RunFile(file, path, record);
+    }
+
+    private void partition(JournalReaderFactory factory) {
+        dir = factory.getConfiguration().getJournalBase();
+        if (bucketMap == null) {
+            bucketMap = new MultiRecordMap(slaveColumns.size(), slave.getMetadata(), keyPageSize, dataPageSize);
+        }
+
+        // slave has to be read again, part of it is already consumed by hash table
+        slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        for (Record r : slaveCursor) {
+            cancellationHandler.check();
+            spill(r, slaveColIndex, slaveColumns, slaveParts, slaveSpill, 0);
+        }
+
+        for (Record r : masterCursor) {
+            cancellationHandler.check();
+            spill(r, masterColIndex, masterColumns, masterParts, masterSpill, 0);
+        }
+        pushBuckets(0);
+
+        masterSpill.setStorageFacade(masterCursor.getStorageFacade());
+        slaveSpill.setStorageFacade(slaveCursor.getStorageFacade());
+        bucketMap.setStorageFacade(slaveCursor.getStorageFacade());
+    }
+
+    private DirectMap.KeyWriter populateKey(MultiRecordMap map, Record r, IntList indices, ObjList<RecordColumnMetadata> columns) {
+        DirectMap.KeyWriter key = map.claimKey();
+        for (int i = 0, k = masterColumns.size(); i < k; i++) {
+            MapUtils.putRecord(key, r, indices.getQuick(i), columns.getQuick(i).getType());
+        }
+        return key;
+    }
+
+    private boolean probe(Record r, MultiRecordMap map, boolean rowIds) {
+        currentRecord.setA(r);
+        hashTableCursor = map.get(populateKey(map, r, masterColIndex, masterColumns));
+        if (hashTableCursor.hasNext()) {
+            Record rec = hashTableCursor.next();
+            currentRecord.setB(rowIds ? slaveCursor.recordAt(rec.getLong(0)) : rec);
+            return true;
+        } else if (outer) {
+            hashTableCursor = null;
+            currentRecord.setB(NullRecord.INSTANCE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Turns partitions written by {@link #spill} into bucket pairs, pairs that cannot produce rows are dropped.
+     */
+    private void pushBuckets(int level) {
+        int count = 0;
+        for (int i = 0; i < FAN_OUT; i++) {
+            if (slaveParts.getQuick(i) != null) {
+                count++;
+            }
+        }
+
+        // all slave rows share hash bits, which is typically single key, partitioning it further is pointless
+        if (count == 1) {
+            level = MAX_LEVEL;
+        }
+
+        // stack is popped from the end, push in reverse to join buckets in order
+        for (int i = FAN_OUT - 1; i > -1; i--) {
+            RunFile m = masterParts.getQuick(i);
+            RunFile s = slaveParts.getQuick(i);
+            if (m == null || (s == null && !outer)) {
+                Misc.free(m);
+                Misc.free(s);
+                continue;
+            }
+
+            m.finish();
+            if (s != null) {
+                s.finish();
+            }
+            buckets.add(new Bucket(m, s, level));
+        }
+        masterParts.setAll(FAN_OUT, null);
+        slaveParts.setAll(FAN_OUT, null);
+    }
+
+    private void spill(Record r, IntList indices, ObjList<RecordColumnMetadata> columns, ObjList<RunFile> parts, SpillRecord record, int level) {
+        int hash = populateKey(recordMap, r, indices, columns).hash() * 0x9E3779B9;
+        int index = (hash >>> (32 - FAN_OUT_BITS * (level + 1))) & (FAN_OUT - 1);
+        RunFile run = parts.getQuick(index);
+        if (run == null) {
+            parts.setQuick(index, run = newBucketFile(record));
+        }
+        run.append(r);
+    }
+
+    private static class Bucket implements Closeable {
+        private final RunFile master;
+        private final RunFile slave;
+        private final int level;
+
+        private Bucket(RunFile master, RunFile slave, int level) {
+            this.master = master;
+            this.slave = slave;
+            this.level = level;
+        }
+
+        @Override
+        public void close() {
+            Misc.free(master);
+            Misc.free(slave);
+        }
+    }
+}
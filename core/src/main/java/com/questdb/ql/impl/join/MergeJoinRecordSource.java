@@ -0,0 +1,295 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Misc;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.NullRecord;
+import com.questdb.ql.impl.SplitRecordMetadata;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.CharSink;
+import com.questdb.std.DirectLongList;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+
+/**
+ * Equi-join of two sources ordered by timestamp, where join condition includes equality of timestamps.
+ * Both sides are read once in step with each other. Only row ids of slave rows that share timestamp
+ * with current master row are kept, so memory does not depend on size of either side. Remaining key
+ * columns are compared row by row within timestamp group.
+ * <p>
+ * Slave must support row id access.
+ */
+public class MergeJoinRecordSource extends AbstractCombinedRecordSource implements Closeable {
+    private final RecordSource master;
+    private final RecordSource slave;
+    private final int masterTimestampIndex;
+    private final int slaveTimestampIndex;
+    private final IntList masterColIndex;
+    private final IntList slaveColIndex;
+    private final ObjList<RecordColumnMetadata> masterColumns = new ObjList<>();
+    private final ObjList<RecordColumnMetadata> slaveColumns = new ObjList<>();
+    private final SplitRecordMetadata metadata;
+    private final SplitRecord currentRecord;
+    private final SplitRecordStorageFacade storageFacade;
+    private final DirectLongList group = new DirectLongList(64);
+    private final boolean outer;
+    private RecordCursor masterCursor;
+    private RecordCursor slaveCursor;
+    private Record masterRecord;
+    private Record slaveRecord;
+    private long masterTimestamp;
+    private long groupTimestamp;
+    private int groupIndex;
+    private boolean pending;
+    private long pendingRowId;
+    private long pendingTimestamp;
+
+    public MergeJoinRecordSource(
+            RecordSource master,
+            int masterTimestampIndex,
+            IntList masterColIndices,
+            RecordSource slave,
+            int slaveTimestampIndex,
+            IntList slaveColIndices,
+            boolean outer
+    ) {
+        this.master = master;
+        this.slave = slave;
+        this.masterTimestampIndex = masterTimestampIndex;
+        this.slaveTimestampIndex = slaveTimestampIndex;
+        this.masterColIndex = masterColIndices;
+        this.slaveColIndex = slaveColIndices;
+        this.outer = outer;
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
+        this.currentRecord = new SplitRecord(master.getMetadata().getColumnCount());
+        this.storageFacade = new SplitRecordStorageFacade(master.getMetadata().getColumnCount());
+
+        RecordMetadata mm = master.getMetadata();
+        RecordMetadata sm = slave.getMetadata();
+        for (int i = 0, n = masterColIndices.size(); i < n; i++) {
+            masterColumns.add(mm.getColumnQuick(masterColIndices.getQuick(i)));
+            slaveColumns.add(sm.getColumnQuick(slaveColIndices.getQuick(i)));
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(group);
+        Misc.free(master);
+        Misc.free(slave);
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        this.masterCursor = master.prepareCursor(factory, cancellationHandler);
+        this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        this.slaveRecord = slaveCursor.newRecord();
+        this.masterRecord = null;
+        this.group.clear();
+        this.groupTimestamp = Long.MIN_VALUE;
+        this.pending = false;
+        storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        return this;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (masterRecord != null && nextInGroup()) {
+            return true;
+        }
+
+        while (masterCursor.hasNext()) {
+            masterRecord = masterCursor.next();
+            currentRecord.setA(masterRecord);
+            masterTimestamp = masterRecord.getDate(masterTimestampIndex);
+            if (masterTimestamp > groupTimestamp) {
+                seek(masterTimestamp);
+            }
+
+            groupIndex = 0;
+            if (nextInGroup()) {
+                return true;
+            }
+
+            masterRecord = null;
+            if (outer) {
+                currentRecord.setB(NullRecord.INSTANCE);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SplitRecord next() {
+        return currentRecord;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("MergeJoinRecordSource").put(',');
+        sink.putQuoted("master").put(':').put(master).put(',');
+        sink.putQuoted("slave").put(':').put(slave).put(',');
+        sink.putQuoted("joinOn").put(':').put('[');
+        sink.put('[');
+        sink.putQuoted(master.getMetadata().getColumnQuick(masterTimestampIndex).getName());
+        for (int i = 0, n = masterColumns.size(); i < n; i++) {
+            sink.put(',').putQuoted(masterColumns.getQuick(i).getName());
+        }
+        sink.put(']').put(',');
+        sink.put('[');
+        sink.putQuoted(slave.getMetadata().getColumnQuick(slaveTimestampIndex).getName());
+        for (int i = 0, n = slaveColumns.size(); i < n; i++) {
+            sink.put(',').putQuoted(slaveColumns.getQuick(i).getName());
+        }
+        sink.put("]]}");
+    }
+
+    private static boolean equals(CharSequence a, CharSequence b) {
+        return a == null ? b == null : b != null && Chars.equals(a, b);
+    }
+
+    private boolean keysMatch(Record a, Record b) {
+        for (int i = 0, n = masterColumns.size(); i < n; i++) {
+            int ia = masterColIndex.getQuick(i);
+            int ib = slaveColIndex.getQuick(i);
+            switch (masterColumns.getQuick(i).getType()) {
+                case ColumnType.BOOLEAN:
+                    if (a.getBool(ia) != b.getBool(ib)) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.BYTE:
+                    if (a.get(ia) != b.get(ib)) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.SHORT:
+                    if (a.getShort(ia) != b.getShort(ib)) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.INT:
+                    if (a.getInt(ia) != b.getInt(ib)) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                    if (a.getLong(ia) != b.getLong(ib)) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.FLOAT:
+                    if (Float.floatToIntBits(a.getFloat(ia)) != Float.floatToIntBits(b.getFloat(ib))) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.DOUBLE:
+                    if (Double.doubleToLongBits(a.getDouble(ia)) != Double.doubleToLongBits(b.getDouble(ib))) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.STRING:
+                    if (!equals(a.getFlyweightStr(ia), b.getFlyweightStr(ib))) {
+                        return false;
+                    }
+                    break;
+                case ColumnType.SYMBOL:
+                    // symbol keys are local to their journals, compare values
+                    if (!equals(a.getSym(ia), b.getSym(ib))) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nextInGroup() {
+        if (groupTimestamp != masterTimestamp) {
+            return false;
+        }
+
+        while (groupIndex < group.size()) {
+            slaveCursor.recordAt(slaveRecord, group.get(groupIndex++));
+            if (keysMatch(masterRecord, slaveRecord)) {
+                currentRecord.setB(slaveRecord);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advances slave to timestamp of master and collects row ids of slave rows with the same timestamp.
+     * First slave row past the timestamp is kept for next group.
+     */
+    private void seek(long timestamp) {
+        group.clear();
+        groupTimestamp = timestamp;
+        while (pending || readSlave()) {
+            if (pendingTimestamp > timestamp) {
+                return;
+            }
+
+            if (pendingTimestamp == timestamp) {
+                group.add(pendingRowId);
+            }
+            pending = false;
+        }
+    }
+
+    private boolean readSlave() {
+        if (slaveCursor.hasNext()) {
+            Record r = slaveCursor.next();
+            pendingRowId = r.getRowId();
+            pendingTimestamp = r.getDate(slaveTimestampIndex);
+            return pending = true;
+        }
+        return false;
+    }
+}
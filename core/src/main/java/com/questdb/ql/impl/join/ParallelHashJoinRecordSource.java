@@ -0,0 +1,461 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.Journal;
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.RecordColumnMetadata;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.mp.WorkerPool;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.*;
+import com.questdb.ql.impl.join.hash.FakeRecord;
+import com.questdb.ql.impl.join.hash.MultiRecordMap;
+import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.MapUtils;
+import com.questdb.ql.ops.AbstractCombinedRecordSource;
+import com.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Hash join of two unfiltered journal scans on several threads. Rows of each side are split into chunks of
+ * about equal size, one chunk per worker, each chunk other than first is read by worker with its own journal
+ * reader.
+ * <p>
+ * Build phase hashes row ids of slave chunks into per-chunk maps, which are then merged into hash table
+ * in chunk order. Probe phase goes over master in rounds, each chunk of a round looks up limited number of
+ * master rows in hash table and collects pairs of master and slave row ids. Pairs are returned chunk after
+ * chunk and next round starts when they run out, so output is in the same order as that of
+ * {@link HashJoinRecordSource} and memory used by pairs does not grow with master.
+ * <p>
+ * Chunks are processed by {@link ParallelRunner}. Worker readers are opened for every build or probe round and
+ * closed when it is done.
+ */
+public class ParallelHashJoinRecordSource extends AbstractCombinedRecordSource implements Closeable {
+    // scan has to be at least this large for extra chunk to pay off
+    private static final long MIN_CHUNK_ROWS = 64 * 1024;
+    // maximum number of master rows probed by one chunk in one round
+    private static final long PROBE_BATCH_ROWS = 64 * 1024;
+    private final JournalRecordSource master;
+    private final JournalRecordSource slave;
+    private final SplitRecordMetadata metadata;
+    private final SplitRecord currentRecord;
+    private final SplitRecordStorageFacade storageFacade;
+    private final ObjList<RecordColumnMetadata> masterColumns = new ObjList<>();
+    private final ObjList<RecordColumnMetadata> slaveColumns = new ObjList<>();
+    private final IntList masterColIndex;
+    private final IntList slaveColIndex;
+    private final boolean outer;
+    private final int keyPageSize;
+    private final int rowIdPageSize;
+    private final MultiRecordMap recordMap;
+    private final ObjList<Chunk> buildChunks;
+    private final ObjList<Chunk> probeChunks;
+    private final ParallelRunner<Chunk> runner;
+    // triplets of partition index, lo and hi row
+    private final LongList scanned = new LongList();
+    private RecordCursor masterCursor;
+    private RecordCursor slaveCursor;
+    private CancellationHandler cancellationHandler;
+    private PartitionCursor probeCursor;
+    private int probeWorkers;
+    private long probeQuota;
+    // position of next master row to probe in scanned triplets
+    private int scanIndex;
+    private long scanLo;
+    private long scanTotal;
+    private int probeCount;
+    private int chunkIndex;
+    private int rowIndex;
+
+    public ParallelHashJoinRecordSource(
+            JournalRecordSource master,
+            IntList masterColIndices,
+            JournalRecordSource slave,
+            IntList slaveColIndices,
+            boolean outer,
+            int keyPageSize,
+            int rowIdPageSize,
+            int workers,
+            WorkerPool workerPool
+    ) {
+        this.master = master;
+        this.slave = slave;
+        this.metadata = new SplitRecordMetadata(master.getMetadata(), slave.getMetadata());
+        this.currentRecord = new SplitRecord(master.getMetadata().getColumnCount());
+        this.masterColIndex = masterColIndices;
+        this.slaveColIndex = slaveColIndices;
+        this.outer = outer;
+        this.keyPageSize = keyPageSize;
+        this.rowIdPageSize = rowIdPageSize;
+        this.storageFacade = new SplitRecordStorageFacade(master.getMetadata().getColumnCount());
+
+        RecordMetadata mm = master.getMetadata();
+        for (int i = 0, k = masterColIndex.size(); i < k; i++) {
+            this.masterColumns.add(mm.getColumnQuick(masterColIndex.getQuick(i)));
+        }
+
+        RecordMetadata sm = slave.getMetadata();
+        for (int i = 0, k = slaveColIndex.size(); i < k; i++) {
+            this.slaveColumns.add(sm.getColumnQuick(slaveColIndex.getQuick(i)));
+        }
+
+        this.recordMap = new MultiRecordMap(slaveColumns.size(), MapUtils.ROWID_RECORD_METADATA, keyPageSize, rowIdPageSize);
+        this.buildChunks = new ObjList<>(workers);
+        this.probeChunks = new ObjList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            buildChunks.add(new Chunk((JournalMetadata) sm, true));
+            probeChunks.add(new Chunk((JournalMetadata) mm, false));
+        }
+        this.runner = new ParallelRunner<>(new ParallelRunner.Task<Chunk>() {
+            @Override
+            public void run(Chunk chunk, CancellationHandler cancellationHandler) throws JournalException {
+                boolean first = chunk.partitionCursor != null;
+                if (!first) {
+                    chunk.prepare();
+                }
+
+                if (chunk.build) {
+                    build(chunk, first ? recordMap : chunk.map, cancellationHandler);
+                } else {
+                    probe(chunk, cancellationHandler);
+                }
+            }
+        }, workers, workerPool);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = buildChunks.size(); i < n; i++) {
+            Misc.free(buildChunks.getQuick(i));
+            Misc.free(probeChunks.getQuick(i));
+        }
+        Misc.free(recordMap);
+        Misc.free(master);
+        Misc.free(slave);
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        recordMap.clear();
+        this.cancellationHandler = cancellationHandler;
+        this.slaveCursor = slave.prepareCursor(factory, cancellationHandler);
+        this.masterCursor = master.prepareCursor(factory, cancellationHandler);
+
+        PartitionCursor cursor = slave.getPartitionCursor();
+        int n = scan(cursor, buildChunks.size());
+        n = assign(cursor, buildChunks, n, quota(n));
+        run(buildChunks, n);
+        for (int i = 1; i < n; i++) {
+            recordMap.merge(buildChunks.getQuick(i).map);
+        }
+
+        probeCursor = master.getPartitionCursor();
+        probeWorkers = scan(probeCursor, probeChunks.size());
+        probeQuota = Math.min(quota(probeWorkers), PROBE_BATCH_ROWS);
+        probeCount = 0;
+
+        storageFacade.prepare(factory, masterCursor.getStorageFacade(), slaveCursor.getStorageFacade());
+        chunkIndex = 0;
+        rowIndex = 0;
+        return this;
+    }
+
+    @Override
+    public StorageFacade getStorageFacade() {
+        return storageFacade;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            while (chunkIndex < probeCount) {
+                DirectLongList rows = probeChunks.getQuick(chunkIndex).rows;
+                if (rowIndex < rows.size()) {
+                    long slaveRowId = rows.get(rowIndex + 1);
+                    currentRecord.setA(masterCursor.recordAt(rows.get(rowIndex)));
+                    currentRecord.setB(slaveRowId == -1 ? NullRecord.INSTANCE : slaveCursor.recordAt(slaveRowId));
+                    rowIndex += 2;
+                    return true;
+                }
+                chunkIndex++;
+                rowIndex = 0;
+            }
+
+            if (scanIndex >= scanned.size()) {
+                return false;
+            }
+
+            probeCount = assign(probeCursor, probeChunks, probeWorkers, probeQuota);
+            run(probeChunks, probeCount);
+            chunkIndex = 0;
+        }
+    }
+
+    @Override
+    public SplitRecord next() {
+        return currentRecord;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ParallelHashJoinRecordSource").put(',');
+        sink.putQuoted("workers").put(':').put(buildChunks.size()).put(',');
+        sink.putQuoted("master").put(':').put(master).put(',');
+        sink.putQuoted("slave").put(':').put(slave).put(',');
+        sink.putQuoted("joinOn").put(':').put('[');
+        sink.put('[');
+        for (int i = 0, n = masterColumns.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(masterColumns.getQuick(i).getName());
+        }
+        sink.put(']').put(',');
+        sink.put('[');
+        for (int i = 0, n = slaveColumns.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.putQuoted(slaveColumns.getQuick(i).getName());
+        }
+        sink.put("]]}");
+    }
+
+    private static DirectMap.KeyWriter populateKey(DirectMap.KeyWriter key, Record r, IntList indices, ObjList<RecordColumnMetadata> columns) {
+        for (int i = 0, k = indices.size(); i < k; i++) {
+            MapUtils.putRecord(key, r, indices.getQuick(i), columns.getQuick(i).getType());
+        }
+        return key;
+    }
+
+    /**
+     * Hands out scanned rows, which are not assigned yet, to chunks. Partitions of first chunk are those of
+     * query thread.
+     *
+     * @param cursor partition cursor of query thread
+     * @param chunks chunks to split rows between
+     * @param n      maximum number of chunks to use
+     * @param quota  maximum number of rows per chunk
+     * @return number of chunks to process
+     */
+    private int assign(PartitionCursor cursor, ObjList<Chunk> chunks, int n, long quota) {
+        long room = quota;
+        int k = 0;
+        Chunk chunk = chunks.getQuick(0);
+        chunk.clear();
+        chunk.partitionCursor = cursor;
+
+        for (int m = scanned.size(); scanIndex < m; scanIndex += 3, scanLo = -1) {
+            int partitionIndex = (int) scanned.getQuick(scanIndex);
+            long lo = scanLo == -1 ? scanned.getQuick(scanIndex + 1) : scanLo;
+            long hi = scanned.getQuick(scanIndex + 2);
+
+            while (lo <= hi) {
+                if (room == 0) {
+                    if (k + 1 == n) {
+                        scanLo = lo;
+                        return n;
+                    }
+                    chunk = chunks.getQuick(++k);
+                    chunk.clear();
+                    room = quota;
+                }
+                long rows = Math.min(room, hi - lo + 1);
+                chunk.add(partitionIndex, lo, lo + rows - 1);
+                lo += rows;
+                room -= rows;
+            }
+        }
+        return k + 1;
+    }
+
+    private void build(Chunk chunk, MultiRecordMap map, CancellationHandler cancellationHandler) {
+        JournalRecord rec = chunk.record;
+        LongList slices = chunk.slices;
+        for (int i = 0, n = slices.size(); i < n; i += 3) {
+            rec.partitionIndex = (int) slices.getQuick(i);
+            rec.partition = chunk.getPartition(rec.partitionIndex);
+
+            for (long row = slices.getQuick(i + 1), hi = slices.getQuick(i + 2); row <= hi; row++) {
+                cancellationHandler.check();
+                rec.rowid = row;
+                map.add(populateKey(map.claimKey(), rec, slaveColIndex, slaveColumns), chunk.fakeRecord.of(rec.getRowId()));
+            }
+        }
+    }
+
+    private void probe(Chunk chunk, CancellationHandler cancellationHandler) {
+        JournalRecord rec = chunk.record;
+        LongList slices = chunk.slices;
+        MultiRecordMap.Probe probe = chunk.probe;
+        DirectLongList rows = chunk.rows;
+        for (int i = 0, n = slices.size(); i < n; i += 3) {
+            rec.partitionIndex = (int) slices.getQuick(i);
+            rec.partition = chunk.getPartition(rec.partitionIndex);
+
+            for (long row = slices.getQuick(i + 1), hi = slices.getQuick(i + 2); row <= hi; row++) {
+                cancellationHandler.check();
+                rec.rowid = row;
+                if (probe.of(populateKey(probe.claimKey(), rec, masterColIndex, masterColumns))) {
+                    long rowId = rec.getRowId();
+                    while (probe.hasNext()) {
+                        rows.add(rowId);
+                        rows.add(probe.next().getLong(0));
+                    }
+                } else if (outer) {
+                    rows.add(rec.getRowId());
+                    rows.add(-1);
+                }
+            }
+        }
+    }
+
+    private long quota(int n) {
+        return (scanTotal + n - 1) / n;
+    }
+
+    private void run(ObjList<Chunk> chunks, int n) {
+        try {
+            runner.run(chunks, n, cancellationHandler);
+        } finally {
+            for (int i = 1; i < n; i++) {
+                Chunk chunk = chunks.getQuick(i);
+                chunk.journal = Misc.free(chunk.journal);
+            }
+        }
+    }
+
+    /**
+     * Collects rows of partition slices, which are then handed out to chunks by
+     * {@link #assign(PartitionCursor, ObjList, int, long)}.
+     *
+     * @param cursor partition cursor of query thread
+     * @param max    number of available chunks
+     * @return number of chunks rows should be split between
+     */
+    private int scan(PartitionCursor cursor, int max) {
+        scanned.clear();
+        scanIndex = 0;
+        scanLo = -1;
+        long total = 0;
+        boolean irregular = false;
+        while (cursor.hasNext()) {
+            PartitionSlice slice = cursor.next();
+            long hi = slice.calcHi ? slice.partition.size() - 1 : slice.hi;
+            if (hi >= slice.lo) {
+                scanned.add(slice.partition.getPartitionIndex());
+                scanned.add(slice.lo);
+                scanned.add(hi);
+                total += hi - slice.lo + 1;
+                irregular |= slice.partition.getJournal().getIrregularPartition() == slice.partition;
+            }
+        }
+        scanTotal = total;
+
+        // lag partition is replaced by writer and cannot be matched between readers reliably
+        return irregular ? 1 : (int) Math.max(1, Math.min(max, total / MIN_CHUNK_ROWS));
+    }
+
+    private class Chunk implements Closeable {
+        // triplets of partition index, lo and hi row
+        private final LongList slices = new LongList();
+        private final JournalRecord record = new JournalRecord();
+        private final FakeRecord fakeRecord = new FakeRecord();
+        private final JournalMetadata metadata;
+        private final boolean build;
+        private final MultiRecordMap.Probe probe;
+        private final DirectLongList rows;
+        private PartitionCursor partitionCursor;
+        private Journal journal;
+        private MultiRecordMap map;
+
+        private Chunk(JournalMetadata metadata, boolean build) {
+            this.metadata = metadata;
+            this.build = build;
+            this.probe = build ? null : recordMap.newProbe();
+            this.rows = build ? null : new DirectLongList(1024);
+        }
+
+        @Override
+        public void close() {
+            map = Misc.free(map);
+            journal = Misc.free(journal);
+            Misc.free(probe);
+            Misc.free(rows);
+        }
+
+        private void add(int partitionIndex, long lo, long hi) {
+            slices.add(partitionIndex);
+            slices.add(lo);
+            slices.add(hi);
+        }
+
+        private void clear() {
+            slices.clear();
+            partitionCursor = null;
+            if (rows != null) {
+                rows.clear();
+            }
+        }
+
+        private Partition getPartition(int index) {
+            if (partitionCursor != null) {
+                return partitionCursor.getPartition(index);
+            }
+
+            try {
+                return journal.getPartition(index, true);
+            } catch (JournalException e) {
+                throw new JournalRuntimeException(e);
+            }
+        }
+
+        private void prepare() throws JournalException {
+            // reader is opened after query thread's one, so it sees at least the same rows
+            journal = new Journal<>(new JournalMetadata<>(metadata), metadata.getKey());
+
+            if (build) {
+                if (map == null) {
+                    map = new MultiRecordMap(slaveColumns.size(), MapUtils.ROWID_RECORD_METADATA, keyPageSize, rowIdPageSize);
+                } else {
+                    map.clear();
+                }
+            }
+        }
+    }
+}
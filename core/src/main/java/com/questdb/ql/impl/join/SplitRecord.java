@@ -132,6 +132,15 @@ class SplitRecord extends AbstractRecord {
         }
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        if (col < split) {
+            return a.getFlyweightSym(col);
+        } else {
+            return b == null ? null : b.getFlyweightSym(col - split);
+        }
+    }
+
     @Override
     public int getInt(int col) {
         if (col < split) {
@@ -82,6 +82,11 @@ abstract class AbstractMemRecord extends AbstractRecord {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return getSymbolTable(col).getFlyweightValue(Unsafe.getUnsafe().getInt(address(col)));
+    }
+
     @Override
     public int getInt(int col) {
         return Unsafe.getUnsafe().getInt(address(col));
@@ -70,7 +70,7 @@ final class RecordUtils {
                     // this is key field
                     // we have to write out string rather than int
                     // because master int values for same strings can be different
-                    kw.putStr(record.getSym(idx));
+                    kw.putStr(record.getFlyweightSym(idx));
                     break;
                 default:
                     break;
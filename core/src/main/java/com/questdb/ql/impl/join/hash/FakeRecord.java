@@ -82,6 +82,11 @@ public class FakeRecord extends AbstractRecord {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public int getInt(int col) {
         throw new UnsupportedOperationException();
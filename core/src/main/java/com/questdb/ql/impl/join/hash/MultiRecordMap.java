@@ -28,8 +28,11 @@ import com.questdb.ql.Record;
 import com.questdb.ql.RecordCursor;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.impl.RecordList;
+import com.questdb.ql.impl.RecordListRecord;
 import com.questdb.ql.impl.map.DirectMap;
+import com.questdb.ql.impl.map.DirectMapEntry;
 import com.questdb.ql.impl.map.DirectMapValues;
+import com.questdb.std.AbstractImmutableIterator;
 import com.questdb.std.IntList;
 import com.questdb.std.Mutable;
 import com.questdb.store.ColumnType;
@@ -39,10 +42,13 @@ import java.io.IOException;
 
 public class MultiRecordMap implements Closeable, Mutable {
     private static final IntList valueCols = new IntList(2);
+    private static final int PROBE_KEY_PAGE_SIZE = 4 * 1024;
+    private final int keyCount;
     private final DirectMap map;
     private final RecordList records;
 
     public MultiRecordMap(int keyCount, RecordMetadata valueMetadata, int keyPageSize, int valuePageSize) {
+        this.keyCount = keyCount;
         map = new DirectMap(keyPageSize, keyCount, valueCols);
         records = new RecordList(valueMetadata, valuePageSize);
     }
@@ -79,10 +85,86 @@ public class MultiRecordMap implements Closeable, Mutable {
         return records;
     }
 
+    public long getMemorySize() {
+        return map.getMemorySize() + records.getMemorySize();
+    }
+
+    /**
+     * Appends records of other map of the same structure. Records of each key are added after
+     * records this map already has for the key.
+     *
+     * @param other map to take records from
+     */
+    public void merge(MultiRecordMap other) {
+        for (DirectMapEntry e : other.map) {
+            DirectMapValues values = map.getOrCreateValues(e);
+            long tail = values.isNew() ? -1 : values.getLong(1);
+            other.records.of(e.values().getLong(0));
+            for (Record r : other.records) {
+                long offset = records.append(r, tail);
+                if (tail == -1) {
+                    values.putLong(0, offset);
+                }
+                tail = offset;
+            }
+            values.putLong(1, tail);
+        }
+    }
+
+    /**
+     * Creates cursor, which looks up records without changing state of this map. Each thread needs its own
+     * probe and map must not change while probes are in use.
+     *
+     * @return probe to be closed by caller
+     */
+    public Probe newProbe() {
+        return new Probe();
+    }
+
     public void setStorageFacade(StorageFacade storageFacade) {
         records.setStorageFacade(storageFacade);
     }
 
+    public class Probe extends AbstractImmutableIterator<Record> implements Closeable {
+        private final DirectMap keys = new DirectMap(PROBE_KEY_PAGE_SIZE, keyCount, valueCols);
+        private final DirectMapValues values = map.newValues();
+        private final RecordListRecord record = records.newRecord();
+        private long next = -1;
+
+        public DirectMap.KeyWriter claimKey() {
+            return keys.keyWriter();
+        }
+
+        @Override
+        public void close() {
+            keys.close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        @Override
+        public Record next() {
+            record.of(next);
+            next = records.getNextAddress(next);
+            return record;
+        }
+
+        /**
+         * Positions probe before first record of key.
+         *
+         * @param key key written by {@link #claimKey()}
+         * @return false when key is not found
+         */
+        public boolean of(DirectMap.KeyWriter key) {
+            DirectMapValues v = map.find(key, values);
+            next = v == null ? -1 : v.getLong(0);
+            return next != -1;
+        }
+    }
+
     static {
         valueCols.add(ColumnType.LONG);
         valueCols.add(ColumnType.LONG);
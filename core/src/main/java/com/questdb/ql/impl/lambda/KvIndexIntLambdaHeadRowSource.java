@@ -34,9 +34,9 @@ import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
 import com.questdb.std.IntHashSet;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.FixedColumn;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 
 public class KvIndexIntLambdaHeadRowSource extends AbstractRowSource {
 
@@ -69,7 +69,7 @@ public class KvIndexIntLambdaHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = partition.getIndexForColumn(columnIndex);
             FixedColumn col = partition.fixCol(columnIndex);
 
             long lo = slice.lo - 1;
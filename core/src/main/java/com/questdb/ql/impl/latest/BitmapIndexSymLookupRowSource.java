@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.RowCursor;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.AbstractRowSource;
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.CharSink;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjList;
+import com.questdb.store.BitmapIndex;
+import com.questdb.store.BitmapIndexCursor;
+import com.questdb.store.SymbolTable;
+
+/**
+ * Rows where each of symbol columns is equal to one of its values. Columns must have bitmap index.
+ * Values of the same column are combined by union of their bitmaps and columns are combined by
+ * intersection, so that rows of one column are never visited just to be rejected by another.
+ */
+public class BitmapIndexSymLookupRowSource extends AbstractRowSource {
+
+    private final ObjList<String> symbols = new ObjList<>();
+    private final ObjList<CharSequenceHashSet> values = new ObjList<>();
+    private final ObjList<IntList> keys = new ObjList<>();
+    private final IntList columnIndexes = new IntList();
+    private final BitmapIndexCursor cursor = new BitmapIndexCursor();
+
+    public BitmapIndexSymLookupRowSource(String symbol, CharSequenceHashSet values) {
+        and(symbol, values);
+    }
+
+    /**
+     * Narrows rows down to those where symbol is one of values.
+     *
+     * @param symbol name of column with bitmap index
+     * @param values symbol values, null stands for null symbol
+     * @return this row source
+     */
+    public final BitmapIndexSymLookupRowSource and(String symbol, CharSequenceHashSet values) {
+        CharSequenceHashSet copy = new CharSequenceHashSet();
+        for (int i = 0, n = values.size(); i < n; i++) {
+            copy.add(Chars.toString(values.get(i)));
+        }
+        this.symbols.add(symbol);
+        this.values.add(copy);
+        this.keys.add(new IntList(copy.size()));
+        return this;
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        columnIndexes.clear();
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            columnIndexes.add(metadata.getColumnIndex(symbols.getQuick(i)));
+        }
+    }
+
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        try {
+            cursor.clear();
+            for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+                cursor.and((BitmapIndex) slice.partition.getIndexForColumn(columnIndexes.getQuick(i)), keys.getQuick(i));
+            }
+            cursor.prepare(slice.lo, slice.calcHi ? slice.partition.open().size() : slice.hi + 1);
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext();
+    }
+
+    @Override
+    public long next() {
+        return cursor.next();
+    }
+
+    @Override
+    public void prepare(StorageFacade facade, CancellationHandler cancellationHandler) {
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            SymbolTable tab = facade.getSymbolTable(columnIndexes.getQuick(i));
+            CharSequenceHashSet set = values.getQuick(i);
+            IntList k = keys.getQuick(i);
+            k.clear();
+            for (int j = 0, m = set.size(); j < m; j++) {
+                k.add(tab.getQuick(set.get(j)));
+            }
+        }
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("BitmapIndexSymLookupRowSource").put(',');
+        sink.putQuoted("terms").put(':').put('[');
+        for (int i = 0, n = symbols.size(); i < n; i++) {
+            if (i > 0) {
+                sink.put(',');
+            }
+            sink.put('{');
+            sink.putQuoted("symbol").put(':').putQuoted(symbols.getQuick(i)).put(',');
+            sink.putQuoted("values").put(':').put('[');
+            CharSequenceHashSet set = values.getQuick(i);
+            for (int j = 0, m = set.size(); j < m; j++) {
+                if (j > 0) {
+                    sink.put(',');
+                }
+                CharSequence v = set.get(j);
+                if (v == null) {
+                    sink.put("null");
+                } else {
+                    sink.putQuoted(v);
+                }
+            }
+            sink.put(']');
+            sink.put('}');
+        }
+        sink.put(']');
+        sink.put('}');
+    }
+}
@@ -37,9 +37,9 @@ import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.std.CharSink;
 import com.questdb.std.IntHashSet;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.FixedColumn;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 
 public class KvIndexIntListHeadRowSource extends AbstractRowSource {
 
@@ -68,7 +68,7 @@ public class KvIndexIntListHeadRowSource extends AbstractRowSource {
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
             Partition partition = rec.partition = slice.partition.open();
-            KVIndex index = partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = partition.getIndexForColumn(columnIndex);
             FixedColumn col = partition.fixCol(columnIndex);
 
             long lo = slice.lo - 1;
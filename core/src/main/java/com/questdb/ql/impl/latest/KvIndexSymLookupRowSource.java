@@ -32,8 +32,8 @@ import com.questdb.ql.RowCursor;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.impl.AbstractRowSource;
 import com.questdb.std.CharSink;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.IndexCursor;
-import com.questdb.store.KVIndex;
 
 public class KvIndexSymLookupRowSource extends AbstractRowSource {
 
@@ -67,7 +67,7 @@ public class KvIndexSymLookupRowSource extends AbstractRowSource {
     @Override
     public RowCursor prepareCursor(PartitionSlice slice) {
         try {
-            KVIndex index = slice.partition.getIndexForColumn(columnIndex);
+            ColumnIndex index = slice.partition.getIndexForColumn(columnIndex);
             this.indexCursor = newCursor ? index.newFwdCursor(symbolKey) : index.fwdCursor(symbolKey);
             this.full = slice.lo == 0 && slice.calcHi;
             this.lo = slice.lo - 1;
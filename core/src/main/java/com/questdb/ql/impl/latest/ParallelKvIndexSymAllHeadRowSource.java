@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.Journal;
+import com.questdb.Partition;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.mp.WorkerPool;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.RowCursor;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.impl.AbstractRowSource;
+import com.questdb.ql.impl.ParallelRunner;
+import com.questdb.std.CharSink;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnIndex;
+import com.questdb.store.IndexCursor;
+
+import java.io.Closeable;
+
+/**
+ * Unfiltered latest row of every symbol key on several threads. Keys of symbol table are split into ranges
+ * of about equal size, one range per worker, each range other than first is walked by worker with its own
+ * journal reader, which is what makes index cursors safe to use concurrently. Worker readers are opened for
+ * each partition slice and closed as soon as ranges are walked.
+ * <p>
+ * Index cursors iterate rows newest first and stop at first row within partition slice. Rows found by workers
+ * are sorted together, so output is in the same order as that of {@link KvIndexSymAllHeadRowSource}.
+ */
+public class ParallelKvIndexSymAllHeadRowSource extends AbstractRowSource implements Closeable {
+    // symbol table has to be at least this large for extra chunk to pay off
+    private static final int MIN_CHUNK_KEYS = 4096;
+    private final String column;
+    private final LongList rows = new LongList();
+    private final ObjList<Chunk> chunks;
+    private final ParallelRunner<Chunk> runner;
+    private JournalMetadata metadata;
+    private CancellationHandler cancellationHandler;
+    private int cursor;
+    private int valueCount;
+    private int columnIndex;
+
+    public ParallelKvIndexSymAllHeadRowSource(String column, int workers, WorkerPool workerPool) {
+        this.column = column;
+        this.chunks = new ObjList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            chunks.add(new Chunk());
+        }
+        this.runner = new ParallelRunner<>(new ParallelRunner.Task<Chunk>() {
+            @Override
+            public void run(Chunk chunk, CancellationHandler cancellationHandler) throws JournalException {
+                chunk.walk(cancellationHandler);
+            }
+        }, workers, workerPool);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = chunks.size(); i < n; i++) {
+            Misc.free(chunks.getQuick(i));
+        }
+    }
+
+    @Override
+    public void configure(JournalMetadata metadata) {
+        this.metadata = metadata;
+        this.columnIndex = metadata.getColumnIndex(column);
+    }
+
+    @Override
+    public RowCursor prepareCursor(PartitionSlice slice) {
+        Partition partition;
+        try {
+            partition = slice.partition.open();
+        } catch (JournalException e) {
+            throw new JournalRuntimeException(e);
+        }
+
+        long lo = slice.lo - 1;
+        long hi = slice.calcHi ? partition.size() : slice.hi + 1;
+        // lag partition is replaced by writer and cannot be matched between readers reliably
+        int n = partition.getJournal().getIrregularPartition() == partition ? 1 : Math.max(1, Math.min(chunks.size(), valueCount / MIN_CHUNK_KEYS));
+        int quota = (valueCount + n - 1) / n;
+
+        for (int i = 0; i < n; i++) {
+            Chunk chunk = chunks.getQuick(i);
+            chunk.of(i == 0 ? partition : null, partition.getPartitionIndex(), i * quota, Math.min(valueCount, (i + 1) * quota), lo, hi);
+        }
+
+        try {
+            runner.run(chunks, n, cancellationHandler);
+        } finally {
+            for (int i = 1; i < n; i++) {
+                Misc.free(chunks.getQuick(i));
+            }
+        }
+
+        rows.clear();
+        for (int i = 0; i < n; i++) {
+            rows.add(chunks.getQuick(i).rows);
+        }
+        rows.sort();
+        cursor = 0;
+        return this;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < rows.size();
+    }
+
+    @Override
+    public long next() {
+        return rows.get(cursor++);
+    }
+
+    @Override
+    public void prepare(StorageFacade facade, CancellationHandler cancellationHandler) {
+        this.cancellationHandler = cancellationHandler;
+        this.valueCount = facade.getSymbolTable(columnIndex).size();
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ParallelKvIndexSymAllHeadRowSource").put(',');
+        sink.putQuoted("column").put(':').putQuoted(column).put(',');
+        sink.putQuoted("workers").put(':').put(chunks.size());
+        sink.put('}');
+    }
+
+    private class Chunk implements Closeable {
+        private final LongList rows = new LongList();
+        private Journal journal;
+        private Partition partition;
+        private int partitionIndex;
+        private int keyLo;
+        private int keyHi;
+        private long lo;
+        private long hi;
+
+        @Override
+        public void close() {
+            journal = Misc.free(journal);
+        }
+
+        private Partition getPartition() throws JournalException {
+            if (partition != null) {
+                return partition;
+            }
+
+            // reader is opened after query thread's one, so it sees at least the same rows
+            journal = new Journal<>(new JournalMetadata<>(metadata), metadata.getKey());
+            return journal.getPartition(partitionIndex, true);
+        }
+
+        private void of(Partition partition, int partitionIndex, int keyLo, int keyHi, long lo, long hi) {
+            this.partition = partition;
+            this.partitionIndex = partitionIndex;
+            this.keyLo = keyLo;
+            this.keyHi = keyHi;
+            this.lo = lo;
+            this.hi = hi;
+            this.rows.clear();
+        }
+
+        private void walk(CancellationHandler cancellationHandler) throws JournalException {
+            ColumnIndex index = getPartition().getIndexForColumn(columnIndex);
+            for (int i = keyLo; i < keyHi; i++) {
+                cancellationHandler.check();
+                IndexCursor c = index.cursor(i);
+                while (c.hasNext()) {
+                    long r = c.next();
+                    if (r > lo && r < hi) {
+                        rows.add(r);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
     private final DirectMapValues values;
     private final DirectMapIterator iterator;
     private final DirectMapEntry entry;
+    private final int[] valueOffsets;
     private int keyBlockOffset;
     private int keyDataOffset;
     private DirectLongList offsets;
@@ -104,6 +105,7 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
 
         }
 
+        this.valueOffsets = valueOffsets;
         this.values = new DirectMapValues(valueOffsets);
         this.keyBlockOffset = offset;
         this.keyDataOffset = this.keyBlockOffset + 4 * keyCount;
@@ -128,6 +130,35 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
         return entry.init(rowid);
     }
 
+    /**
+     * Finds values of key without changing state of this map, which makes it safe for several threads to look up
+     * keys at the same time while map is not being modified. Key has to be written by key writer of another map
+     * of the same structure, one per thread.
+     *
+     * @param keyWriter key writer of another map
+     * @param values    values flyweight of calling thread, see {@link #newValues()}
+     * @return values or null when key is not found
+     */
+    public DirectMapValues find(KeyWriter keyWriter, DirectMapValues values) {
+        keyWriter.seal();
+        int index = Hash.hashMem(keyWriter.startAddr + keyDataOffset, keyWriter.len - keyDataOffset) & mask;
+        long offset;
+        while ((offset = offsets.get(index)) != -1) {
+            if (eq(keyWriter, offset)) {
+                return values.of(kStart + offset, false);
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Native memory held by key area and hash table.
+     */
+    public long getMemorySize() {
+        return capacity + ((long) keyCapacity << 3);
+    }
+
     public DirectMapValues getOrCreateValues(KeyWriter keyWriter) {
         keyWriter.commit();
         // calculate hash remembering "key" structure
@@ -151,6 +182,23 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
         }
     }
 
+    /**
+     * Finds or creates values for key of entry from another map of the same structure. Values of
+     * created entry are copied from the source entry.
+     *
+     * @param entry entry of another map
+     * @return values of this map
+     */
+    public DirectMapValues getOrCreateValues(DirectMapEntry entry) {
+        long address = entry.getRowId();
+        int len = Unsafe.getUnsafe().getInt(address);
+        KeyWriter kw = keyWriter();
+        kw.checkSize(len - keyDataOffset);
+        Unsafe.getUnsafe().copyMemory(address, kw.startAddr, len);
+        kw.appendAddr = kw.startAddr + len;
+        return getOrCreateValues(kw);
+    }
+
     public DirectMapValues getValues(KeyWriter keyWriter) {
         keyWriter.commit();
         // rollback key right away
@@ -176,6 +224,10 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
         return keyWriter.init();
     }
 
+    public DirectMapValues newValues() {
+        return new DirectMapValues(valueOffsets);
+    }
+
     public int size() {
         return size;
     }
@@ -278,6 +330,7 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
 
 
         this.address = kAddress;
+        this.capacity = kCapacity + Unsafe.CACHE_LINE_SIZE;
         this.kStart = kStart;
         this.kLimit = kStart + kCapacity;
     }
@@ -290,10 +343,17 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
         private long nextColOffset;
 
         public void commit() {
-            Unsafe.getUnsafe().putInt(startAddr, len = (int) (appendAddr - startAddr));
+            seal();
             kPos = appendAddr;
         }
 
+        /**
+         * Hash of key written so far, the same one map uses to place the key. Key is not committed.
+         */
+        public int hash() {
+            return Hash.hashMem(startAddr + keyDataOffset, (int) (appendAddr - startAddr) - keyDataOffset);
+        }
+
         public KeyWriter init() {
             startAddr = kPos;
             appendAddr = startAddr + keyDataOffset;
@@ -394,6 +454,10 @@ public class DirectMap extends DirectMemoryStructure implements Mutable, Iterabl
             writeOffset();
         }
 
+        private void seal() {
+            Unsafe.getUnsafe().putInt(startAddr, len = (int) (appendAddr - startAddr));
+        }
+
         private void writeOffset() {
             Unsafe.getUnsafe().putInt(nextColOffset, (int) (appendAddr - startAddr));
             nextColOffset += 4;
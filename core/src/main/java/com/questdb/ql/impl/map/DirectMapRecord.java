@@ -88,6 +88,11 @@ public class DirectMapRecord extends AbstractRecord {
         return entry.getFlyweightStrB(col);
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return storageFacade.getSymbolTable(col).getFlyweightValue(entry.getInt(col));
+    }
+
     @Override
     public int getInt(int col) {
         return entry.getInt(col);
@@ -105,6 +105,11 @@ public class SelectedColumnsRecord extends AbstractRecord {
         return base.getFlyweightStrB(Unsafe.arrayGet(reindex, col));
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return base.getFlyweightSym(Unsafe.arrayGet(reindex, col));
+    }
+
     @Override
     public int getInt(int col) {
         return base.getInt(Unsafe.arrayGet(reindex, col));
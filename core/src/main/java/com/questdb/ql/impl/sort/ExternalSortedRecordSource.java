@@ -0,0 +1,507 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.RecordList;
+import com.questdb.ql.impl.RecordListRecord;
+import com.questdb.ql.ops.AbstractRecordSource;
+import com.questdb.std.*;
+import com.questdb.store.ColumnType;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Sorts result sets that do not have to fit in memory. Rows are copied into record list until it reaches
+ * run size, at which point run is sorted and spilled into temporary file in database directory. Sorted runs
+ * are k-way merged on read. Result set that fits in single run is never written to disk.
+ * <p>
+ * Number of runs on disk never exceeds merge fan-in. When it is reached, youngest runs of equal merge depth
+ * are merged into one run while source is still being read, exhausted runs are closed straight away.
+ * <p>
+ * Runs of single integer, long or date key are sorted by LSD radix sort, all other keys use stable merge
+ * sort with compiled comparator. Merge breaks ties by run order, so output is stable and consistent
+ * with {@link RBTreeSortedRecordSource}.
+ */
+public class ExternalSortedRecordSource extends AbstractRecordSource implements Mutable, RecordSource, Closeable {
+    private static final int MAX_FAN_IN = 64;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private final RecordSource recordSource;
+    private final RecordComparator comparator;
+    private final long runSize;
+    private final int radixColumn;
+    private final int radixType;
+    private final boolean radixDescending;
+    private final RecordList recordList;
+    private final RecordListRecord left;
+    private final RecordListRecord right;
+    private final ObjList<RunFile> runs = new ObjList<>();
+    private final IntList runLevels = new IntList();
+    private final ObjList<RunFile> group = new ObjList<>();
+    private final Path path = new Path();
+    private final int[] counts = new int[257];
+    private final SortCursor cursor = new SortCursor();
+    private DirectLongList rows = new DirectLongList(1024);
+    private DirectLongList spare = new DirectLongList(1024);
+    private int[] heap = new int[MAX_FAN_IN];
+    private int heapSize;
+    private RecordCursor sourceCursor;
+    private File dir;
+    private long index;
+    private RunFile current;
+
+    public ExternalSortedRecordSource(RecordSource recordSource, RecordComparator comparator, IntList orderIndices, int pageSize, long runSize) {
+        this.recordSource = recordSource;
+        this.comparator = comparator;
+        this.runSize = runSize;
+        this.recordList = new RecordList(recordSource.getMetadata(), pageSize);
+        this.left = recordList.newRecord();
+        this.right = recordList.newRecord();
+
+        int col = -1;
+        int type = -1;
+        if (orderIndices.size() == 1) {
+            int i = orderIndices.getQuick(0);
+            col = (i < 0 ? -i : i) - 1;
+            type = recordSource.getMetadata().getColumnQuick(col).getType();
+            switch (type) {
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                    break;
+                default:
+                    col = -1;
+                    break;
+            }
+        }
+        this.radixColumn = col;
+        this.radixType = type;
+        this.radixDescending = orderIndices.size() == 1 && orderIndices.getQuick(0) < 0;
+    }
+
+    @Override
+    public void clear() {
+        freeRuns(runs);
+        runLevels.clear();
+        recordList.clear();
+        rows.clear();
+        index = 0;
+        heapSize = 0;
+        current = null;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(recordSource);
+        Misc.free(recordList);
+        Misc.free(path);
+        rows = Misc.free(rows);
+        spare = Misc.free(spare);
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return recordSource.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        clear();
+        dir = factory.getConfiguration().getJournalBase();
+        sourceCursor = recordSource.prepareCursor(factory, cancellationHandler);
+        StorageFacade facade = sourceCursor.getStorageFacade();
+        recordList.setStorageFacade(facade);
+        left.setStorageFacade(facade);
+        right.setStorageFacade(facade);
+
+        while (sourceCursor.hasNext()) {
+            cancellationHandler.check();
+            Record r = sourceCursor.next();
+            long address = recordList.append(r, -1L);
+            if (radixColumn > -1) {
+                rows.add(radixKey(r));
+            }
+            rows.add(address);
+
+            if (recordList.getMemorySize() >= runSize) {
+                sortRun();
+                spill();
+            }
+        }
+
+        sortRun();
+
+        if (runs.size() > 0) {
+            if (rows.size() > 0) {
+                spill();
+            }
+            startMerge(runs);
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return false;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("ExternalSortedRecordSource").put(',');
+        sink.putQuoted("runSize").put(':').put(runSize).put(',');
+        sink.putQuoted("radix").put(':').put(radixColumn > -1).put(',');
+        sink.putQuoted("src").put(':').put(recordSource);
+        sink.put('}');
+    }
+
+    private static void freeRuns(ObjList<RunFile> runs) {
+        for (int i = 0, n = runs.size(); i < n; i++) {
+            Misc.free(runs.getQuick(i));
+        }
+        runs.clear();
+    }
+
+    /**
+     * Advances run returned by previous call of {@link #nextMerged(ObjList)}.
+     *
+     * @return false when all runs are exhausted
+     */
+    private boolean advance(ObjList<RunFile> src) {
+        if (current != null) {
+            if (current.next()) {
+                siftDown(src, 0);
+            } else {
+                current.close();
+                if (--heapSize > 0) {
+                    heap[0] = heap[heapSize];
+                    siftDown(src, 0);
+                }
+            }
+            current = null;
+        }
+        return heapSize > 0;
+    }
+
+    private int compare(long a, long b) {
+        recordList.recordAt(left, a);
+        recordList.recordAt(right, b);
+        comparator.setLeft(left);
+        return comparator.compare(right);
+    }
+
+    /**
+     * Run heap order, record of run "a" compared to record of run "b", ties go to run that was spilled first.
+     */
+    private boolean greater(ObjList<RunFile> src, int a, int b) {
+        comparator.setLeft(src.getQuick(a).getRecord());
+        int cmp = comparator.compare(src.getQuick(b).getRecord());
+        return cmp > 0 || (cmp == 0 && a > b);
+    }
+
+    private void insertionSort(DirectLongList list, long lo, long hi) {
+        for (long i = lo + 1; i < hi; i++) {
+            long v = list.get(i);
+            long j = i - 1;
+            while (j >= lo && compare(list.get(j), v) > 0) {
+                list.set(j + 1, list.get(j));
+                j--;
+            }
+            list.set(j + 1, v);
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort of record addresses.
+     */
+    private void mergeSort(long n) {
+        for (long lo = 0; lo < n; lo += INSERTION_SORT_THRESHOLD) {
+            insertionSort(rows, lo, Math.min(lo + INSERTION_SORT_THRESHOLD, n));
+        }
+
+        spare.setCapacity(n);
+        spare.setPos(n);
+        for (long width = INSERTION_SORT_THRESHOLD; width < n; width <<= 1) {
+            for (long lo = 0; lo < n; lo += width * 2) {
+                long mid = Math.min(lo + width, n);
+                long hi = Math.min(lo + width * 2, n);
+                long i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    if (compare(rows.get(i), rows.get(j)) > 0) {
+                        spare.set(k++, rows.get(j++));
+                    } else {
+                        spare.set(k++, rows.get(i++));
+                    }
+                }
+                while (i < mid) {
+                    spare.set(k++, rows.get(i++));
+                }
+                while (j < hi) {
+                    spare.set(k++, rows.get(j++));
+                }
+            }
+            swapLists();
+        }
+    }
+
+    private RunFile newRun() {
+        File file;
+        try {
+            file = File.createTempFile("sort", ".run", dir);
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Cannot create sort run in %s", e, dir.getAbsolutePath());
+        }
+        SpillRecord record = new SpillRecord(recordSource.getMetadata());
+        record.setStorageFacade(sourceCursor.getStorageFacade());
+        return new RunFile(file, path, record);
+    }
+
+    /**
+     * Merges youngest runs into one. Runs of lowest merge depth are always at the end of the list, merging them
+     * keeps run order and therefore merge stability. When there is only one such run everything is merged.
+     */
+    private void mergeTail() {
+        int n = runs.size();
+        int lo = n - 1;
+        int level = runLevels.getQuick(lo);
+        while (lo > 0 && runLevels.getQuick(lo - 1) == level) {
+            lo--;
+        }
+
+        if (n - lo < 2) {
+            lo = 0;
+        }
+
+        group.clear();
+        for (int i = lo; i < n; i++) {
+            group.add(runs.getQuick(i));
+        }
+
+        RunFile out = newRun();
+        startMerge(group);
+        RunFile r;
+        while ((r = nextMerged(group)) != null) {
+            out.append(r.getRecord());
+        }
+        out.finish();
+        freeRuns(group);
+
+        for (int i = n - 1; i > lo; i--) {
+            runs.remove(i);
+            runLevels.removeIndex(i);
+        }
+        runs.setQuick(lo, out);
+        runLevels.increment(lo);
+    }
+
+    /**
+     * Returns run holding next record in merge order.
+     *
+     * @return null when all runs are exhausted
+     */
+    private RunFile nextMerged(ObjList<RunFile> src) {
+        return advance(src) ? current = src.getQuick(heap[0]) : null;
+    }
+
+    private long radixKey(Record r) {
+        long k;
+        switch (radixType) {
+            case ColumnType.INT:
+                k = r.getInt(radixColumn);
+                break;
+            case ColumnType.DATE:
+                k = r.getDate(radixColumn);
+                break;
+            default:
+                k = r.getLong(radixColumn);
+                break;
+        }
+        // flip sign bit to make unsigned byte order match signed order
+        k ^= Long.MIN_VALUE;
+        return radixDescending ? ~k : k;
+    }
+
+    /**
+     * LSD radix sort of (key, address) pairs. Passes where all keys share the same byte are skipped.
+     */
+    private void radixSort(long n) {
+        spare.setCapacity(n * 2);
+        spare.setPos(n * 2);
+        for (int shift = 0; shift < 64; shift += 8) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = 0;
+            }
+            for (long i = 0; i < n; i++) {
+                counts[(int) ((rows.get(i * 2) >>> shift) & 0xff) + 1]++;
+            }
+
+            boolean skip = false;
+            for (int i = 1; i < counts.length; i++) {
+                if (counts[i] == n) {
+                    skip = true;
+                    break;
+                }
+                counts[i] += counts[i - 1];
+            }
+
+            if (skip) {
+                continue;
+            }
+
+            for (long i = 0; i < n; i++) {
+                long k = rows.get(i * 2);
+                int p = counts[(int) ((k >>> shift) & 0xff)]++;
+                spare.set(p * 2, k);
+                spare.set(p * 2 + 1, rows.get(i * 2 + 1));
+            }
+            swapLists();
+        }
+    }
+
+    private void siftDown(ObjList<RunFile> src, int p) {
+        int c;
+        while ((c = p * 2 + 1) < heapSize) {
+            if (c + 1 < heapSize && greater(src, heap[c], heap[c + 1])) {
+                c++;
+            }
+
+            if (!greater(src, heap[p], heap[c])) {
+                break;
+            }
+
+            int t = heap[p];
+            heap[p] = heap[c];
+            heap[c] = t;
+            p = c;
+        }
+    }
+
+    private void sortRun() {
+        if (radixColumn > -1) {
+            radixSort(rows.size() / 2);
+        } else {
+            mergeSort(rows.size());
+        }
+    }
+
+    private void spill() {
+        RunFile run = newRun();
+        runs.add(run);
+        runLevels.add(0);
+        int step = radixColumn > -1 ? 2 : 1;
+        for (long i = step - 1, n = rows.size(); i < n; i += step) {
+            recordList.recordAt(left, rows.get(i));
+            run.append(left);
+        }
+        run.finish();
+        recordList.clear();
+        rows.clear();
+
+        if (runs.size() == MAX_FAN_IN) {
+            mergeTail();
+        }
+    }
+
+    private void startMerge(ObjList<RunFile> src) {
+        int n = src.size();
+        if (heap.length < n) {
+            heap = new int[n];
+        }
+
+        heapSize = 0;
+        current = null;
+        for (int i = 0; i < n; i++) {
+            RunFile r = src.getQuick(i);
+            if (r.next()) {
+                heap[heapSize++] = i;
+            } else {
+                r.close();
+            }
+        }
+
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(src, i);
+        }
+    }
+
+    private void swapLists() {
+        DirectLongList tmp = rows;
+        rows = spare;
+        spare = tmp;
+    }
+
+    private class SortCursor extends AbstractImmutableIterator<Record> implements RecordCursor {
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return sourceCursor.getStorageFacade();
+        }
+
+        @Override
+        public Record newRecord() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Record recordAt(long rowId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (runs.size() > 0) {
+                return advance(runs);
+            }
+            return index < rows.size();
+        }
+
+        @Override
+        public Record next() {
+            if (runs.size() > 0) {
+                return nextMerged(runs).getRecord();
+            }
+
+            if (radixColumn > -1) {
+                recordList.recordAt(left, rows.get(index + 1));
+                index += 2;
+            } else {
+                recordList.recordAt(left, rows.get(index++));
+            }
+            return left;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.Record;
+import com.questdb.std.Path;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Run of records spilled to disk, such as sorted run or hash join bucket. Run is written once by appending
+ * records and then read sequentially, possibly more than once. Records are buffered in both directions, each record is prefixed by its length in
+ * spill format, see {@link SpillRecord}. Buffer is only held while run is being written or read, finished run
+ * that waits for its turn costs just a file descriptor.
+ */
+public class RunFile implements Closeable {
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private final File file;
+    private final int[] types;
+    private final SpillRecord record;
+    private long fd;
+    private long buf;
+    private long bufSize;
+    private long lo;
+    private long hi;
+    private long size;
+    private long readOffset;
+
+    public RunFile(File file, Path path, SpillRecord record) {
+        this.file = file;
+        this.record = record;
+        this.types = record.getTypes();
+        this.fd = Files.openRW(path.of(file.getAbsolutePath()));
+        if (fd < 0) {
+            throw new JournalRuntimeException("Cannot create %s", file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (fd != -1) {
+            Files.close(fd);
+            fd = -1;
+            Files.delete(file);
+        }
+        freeBuffer();
+    }
+
+    public void append(Record r) {
+        if (buf == 0) {
+            allocBuffer();
+        }
+
+        long len = SpillRecord.sizeOf(types, r) + 4;
+        if (hi + len > bufSize) {
+            flush();
+            if (len > bufSize) {
+                resize(len);
+            }
+        }
+        Unsafe.getUnsafe().putInt(buf + hi, (int) (len - 4));
+        SpillRecord.write(types, r, buf + hi + 4);
+        hi += len;
+    }
+
+    /**
+     * Completes writing and positions run before first record. Write buffer is released, reading allocates
+     * a new one.
+     */
+    public void finish() {
+        flush();
+        freeBuffer();
+        lo = hi = 0;
+        readOffset = 0;
+    }
+
+    public SpillRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Moves to next record of the run. Previous record becomes invalid. Exhausted run releases its buffer.
+     *
+     * @return false when run is exhausted
+     */
+    public boolean next() {
+        if (!ensure(4)) {
+            freeBuffer();
+            return false;
+        }
+        int len = Unsafe.getUnsafe().getInt(buf + lo);
+        if (!ensure(4 + len)) {
+            throw new JournalRuntimeException("Truncated run %s", file.getAbsolutePath());
+        }
+        record.of(buf + lo + 4);
+        lo += 4 + len;
+        return true;
+    }
+
+    /**
+     * Positions finished run before first record again.
+     */
+    public void toTop() {
+        lo = hi = 0;
+        readOffset = 0;
+    }
+
+    private void allocBuffer() {
+        buf = Unsafe.malloc(bufSize = BLOCK_SIZE);
+    }
+
+    private boolean ensure(long n) {
+        if (hi - lo >= n) {
+            return true;
+        }
+
+        if (buf == 0) {
+            allocBuffer();
+        }
+
+        // move remainder to start of buffer and top it up from file
+        long rem = hi - lo;
+        if (rem > 0 && lo > 0) {
+            Unsafe.getUnsafe().copyMemory(buf + lo, buf, rem);
+        }
+        lo = 0;
+        hi = rem;
+
+        if (n > bufSize) {
+            resize(n);
+        }
+
+        while (hi < n && readOffset < size) {
+            int len = (int) Math.min(bufSize - hi, size - readOffset);
+            long r = Files.read(fd, buf + hi, len, readOffset);
+            if (r <= 0) {
+                throw new JournalRuntimeException("Cannot read %s at %d", file.getAbsolutePath(), readOffset);
+            }
+            hi += r;
+            readOffset += r;
+        }
+        return hi >= n;
+    }
+
+    private void flush() {
+        if (hi > 0) {
+            if (Files.write(fd, buf, (int) hi, size) != hi) {
+                throw new JournalRuntimeException("Cannot write to %s", file.getAbsolutePath());
+            }
+            size += hi;
+            hi = 0;
+        }
+    }
+
+    private void freeBuffer() {
+        if (buf != 0) {
+            Unsafe.free(buf, bufSize);
+            buf = 0;
+            bufSize = 0;
+            lo = hi = 0;
+        }
+    }
+
+    private void resize(long n) {
+        long sz = Math.max(n, bufSize * 2);
+        long p = Unsafe.malloc(sz);
+        if (hi > 0) {
+            Unsafe.getUnsafe().copyMemory(buf, p, hi);
+        }
+        Unsafe.free(buf, bufSize);
+        buf = p;
+        bufSize = sz;
+    }
+}
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Chars;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.AbstractRecord;
+import com.questdb.ql.Record;
+import com.questdb.ql.StorageFacade;
+import com.questdb.std.CharSink;
+import com.questdb.std.DirectCharSequence;
+import com.questdb.std.DirectInputStream;
+import com.questdb.store.ColumnType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Record over contiguous memory in spill format. Columns are laid out back to back in metadata order,
+ * fixed width columns take their natural size, strings are stored as int length followed by chars and
+ * binary values as long length followed by bytes. Negative length denotes null.
+ */
+public class SpillRecord extends AbstractRecord {
+    private final DirectCharSequence csA = new DirectCharSequence();
+    private final DirectCharSequence csB = new DirectCharSequence();
+    private final int[] types;
+    private final long[] addresses;
+    private StorageFacade storageFacade;
+
+    public SpillRecord(RecordMetadata metadata) {
+        int n = metadata.getColumnCount();
+        this.types = new int[n];
+        this.addresses = new long[n];
+        for (int i = 0; i < n; i++) {
+            types[i] = metadata.getColumnQuick(i).getType();
+        }
+    }
+
+    /**
+     * Number of bytes record will take in spill format.
+     */
+    static long sizeOf(int[] types, Record record) {
+        long size = 0;
+        for (int i = 0, n = types.length; i < n; i++) {
+            switch (types[i]) {
+                case ColumnType.STRING:
+                    size += 4;
+                    int len = record.getStrLen(i);
+                    if (len > 0) {
+                        size += len * 2;
+                    }
+                    break;
+                case ColumnType.BINARY:
+                    size += 8;
+                    long bin = record.getBinLen(i);
+                    if (bin > 0) {
+                        size += bin;
+                    }
+                    break;
+                default:
+                    size += ColumnType.sizeOf(types[i]);
+                    break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes record in spill format at given address, which must have at least {@link #sizeOf(int[], Record)} bytes available.
+     */
+    static void write(int[] types, Record record, long address) {
+        long p = address;
+        for (int i = 0, n = types.length; i < n; i++) {
+            switch (types[i]) {
+                case ColumnType.BOOLEAN:
+                    Unsafe.getUnsafe().putByte(p, (byte) (record.getBool(i) ? 1 : 0));
+                    p += 1;
+                    break;
+                case ColumnType.BYTE:
+                    Unsafe.getUnsafe().putByte(p, record.get(i));
+                    p += 1;
+                    break;
+                case ColumnType.DOUBLE:
+                    Unsafe.getUnsafe().putDouble(p, record.getDouble(i));
+                    p += 8;
+                    break;
+                case ColumnType.FLOAT:
+                    Unsafe.getUnsafe().putFloat(p, record.getFloat(i));
+                    p += 4;
+                    break;
+                case ColumnType.INT:
+                case ColumnType.SYMBOL:
+                    Unsafe.getUnsafe().putInt(p, record.getInt(i));
+                    p += 4;
+                    break;
+                case ColumnType.LONG:
+                    Unsafe.getUnsafe().putLong(p, record.getLong(i));
+                    p += 8;
+                    break;
+                case ColumnType.DATE:
+                    Unsafe.getUnsafe().putLong(p, record.getDate(i));
+                    p += 8;
+                    break;
+                case ColumnType.SHORT:
+                    Unsafe.getUnsafe().putShort(p, record.getShort(i));
+                    p += 2;
+                    break;
+                case ColumnType.STRING:
+                    CharSequence cs = record.getFlyweightStr(i);
+                    if (cs == null) {
+                        Unsafe.getUnsafe().putInt(p, -1);
+                        p += 4;
+                    } else {
+                        p += Chars.put(p, cs);
+                    }
+                    break;
+                case ColumnType.BINARY:
+                    DirectInputStream s = record.getBin(i);
+                    if (s == null) {
+                        Unsafe.getUnsafe().putLong(p, -1L);
+                        p += 8;
+                    } else {
+                        long len = s.size();
+                        Unsafe.getUnsafe().putLong(p, len);
+                        p += 8;
+                        if (len > 0) {
+                            s.copyTo(p, 0, len);
+                            p += len;
+                        }
+                    }
+                    break;
+                default:
+                    throw new JournalRuntimeException("Unsupported type: " + types[i]);
+            }
+        }
+    }
+
+    @Override
+    public byte get(int col) {
+        return Unsafe.getUnsafe().getByte(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public void getBin(int col, OutputStream s) {
+        long address = Unsafe.arrayGet(addresses, col);
+        long len = Unsafe.getUnsafe().getLong(address);
+        try {
+            for (long p = address + 8, hi = p + len; p < hi; p++) {
+                s.write(Unsafe.getUnsafe().getByte(p));
+            }
+        } catch (IOException e) {
+            throw new JournalRuntimeException("Reading binary column failed", e);
+        }
+    }
+
+    @Override
+    public DirectInputStream getBin(int col) {
+        long address = Unsafe.arrayGet(addresses, col);
+        long len = Unsafe.getUnsafe().getLong(address);
+        return len < 0 ? null : new MemoryInputStream(address + 8, len);
+    }
+
+    @Override
+    public long getBinLen(int col) {
+        return Unsafe.getUnsafe().getLong(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public boolean getBool(int col) {
+        return Unsafe.getBool(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public long getDate(int col) {
+        return Unsafe.getUnsafe().getLong(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public double getDouble(int col) {
+        return Unsafe.getUnsafe().getDouble(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public float getFloat(int col) {
+        return Unsafe.getUnsafe().getFloat(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public CharSequence getFlyweightStr(int col) {
+        return str(csA, col);
+    }
+
+    @Override
+    public CharSequence getFlyweightStrB(int col) {
+        return str(csB, col);
+    }
+
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return storageFacade.getSymbolTable(col).getFlyweightValue(getInt(col));
+    }
+
+    @Override
+    public int getInt(int col) {
+        return Unsafe.getUnsafe().getInt(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public long getLong(int col) {
+        return Unsafe.getUnsafe().getLong(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public long getRowId() {
+        return -1;
+    }
+
+    @Override
+    public short getShort(int col) {
+        return Unsafe.getUnsafe().getShort(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public CharSequence getStr(int col) {
+        CharSequence cs = str(new DirectCharSequence(), col);
+        return cs == null ? null : cs.toString();
+    }
+
+    @Override
+    public void getStr(int col, CharSink sink) {
+        long address = Unsafe.arrayGet(addresses, col);
+        int len = Unsafe.getUnsafe().getInt(address);
+        if (len < 0) {
+            sink.put("null");
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            sink.put(Unsafe.getUnsafe().getChar(address + 4 + i * 2));
+        }
+    }
+
+    @Override
+    public int getStrLen(int col) {
+        return Unsafe.getUnsafe().getInt(Unsafe.arrayGet(addresses, col));
+    }
+
+    @Override
+    public String getSym(int col) {
+        return storageFacade.getSymbolTable(col).value(getInt(col));
+    }
+
+    int[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Positions record at given address and returns address of byte immediately after the record.
+     */
+    long of(long address) {
+        long p = address;
+        for (int i = 0, n = types.length; i < n; i++) {
+            Unsafe.arrayPut(addresses, i, p);
+            switch (types[i]) {
+                case ColumnType.STRING:
+                    int len = Unsafe.getUnsafe().getInt(p);
+                    p += len > 0 ? 4 + len * 2 : 4;
+                    break;
+                case ColumnType.BINARY:
+                    long bin = Unsafe.getUnsafe().getLong(p);
+                    p += bin > 0 ? 8 + bin : 8;
+                    break;
+                default:
+                    p += ColumnType.sizeOf(types[i]);
+                    break;
+            }
+        }
+        return p;
+    }
+
+    public void setStorageFacade(StorageFacade storageFacade) {
+        this.storageFacade = storageFacade;
+    }
+
+    private CharSequence str(DirectCharSequence cs, int col) {
+        long address = Unsafe.arrayGet(addresses, col);
+        int len = Unsafe.getUnsafe().getInt(address);
+        return len < 0 ? null : cs.of(address + 4, address + 4 + len * 2);
+    }
+
+    private static class MemoryInputStream extends DirectInputStream {
+        private final long address;
+        private final long len;
+        private long position;
+
+        private MemoryInputStream(long address, long len) {
+            this.address = address;
+            this.len = len;
+        }
+
+        @Override
+        public long copyTo(long address, long start, long length) {
+            if (start < 0 || length < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            long n = Math.min(length, len - start);
+            if (n > 0) {
+                Unsafe.getUnsafe().copyMemory(this.address + start, address, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long size() {
+            return len - position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return position < len ? Unsafe.getUnsafe().getByte(address + position++) & 0xff : -1;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.factory.JournalReaderFactory;
+import com.questdb.factory.configuration.RecordMetadata;
+import com.questdb.misc.Misc;
+import com.questdb.ql.*;
+import com.questdb.ql.impl.RecordList;
+import com.questdb.ql.ops.AbstractRecordSource;
+import com.questdb.std.AbstractImmutableIterator;
+import com.questdb.std.CharSink;
+import com.questdb.std.DirectLongList;
+
+import java.io.Closeable;
+
+/**
+ * Sorts and keeps first "limit" rows of underlying source. Rows are kept in bounded max-heap, so that
+ * worst of retained rows is always on top and can be replaced by better row in O(log(limit)).
+ * Heap entries are pairs of row reference and arrival sequence. Sequence breaks ties between rows with
+ * equal keys, which keeps sort stable and consistent with {@link RBTreeSortedRecordSource}.
+ * <p>
+ * When underlying source supports row id access heap holds row ids. Otherwise rows are copied into record
+ * list. Replaced rows are not reclaimed individually, instead record list is compacted once number of
+ * replaced rows exceeds limit.
+ */
+public class TopNSortedRecordSource extends AbstractRecordSource implements RecordSource, Closeable {
+    private final RecordSource recordSource;
+    private final RecordComparator comparator;
+    private final long limit;
+    private final boolean byRowId;
+    private final DirectLongList heap;
+    private final TopCursor cursor = new TopCursor();
+    private RecordList recordList;
+    private RecordList spareList;
+    private RecordCursor sourceCursor;
+    private Record sourceRecord;
+    private Record left;
+    private Record right;
+    private long size;
+    private long sequence;
+    private long garbage;
+
+    public TopNSortedRecordSource(RecordSource recordSource, RecordComparator comparator, long limit, int valuePageSize) {
+        this.recordSource = recordSource;
+        this.comparator = comparator;
+        this.limit = limit;
+        this.byRowId = recordSource.supportsRowIdAccess();
+        this.heap = new DirectLongList(Math.min(limit, 1024) * 2);
+        if (!byRowId) {
+            this.recordList = new RecordList(recordSource.getMetadata(), valuePageSize);
+            this.spareList = new RecordList(recordSource.getMetadata(), valuePageSize);
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(recordSource);
+        Misc.free(recordList);
+        Misc.free(spareList);
+        Misc.free(heap);
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return recordSource.getMetadata();
+    }
+
+    @Override
+    public RecordCursor prepareCursor(JournalReaderFactory factory, CancellationHandler cancellationHandler) {
+        heap.clear();
+        size = 0;
+        sequence = 0;
+        garbage = 0;
+
+        sourceCursor = recordSource.prepareCursor(factory, cancellationHandler);
+        if (byRowId) {
+            sourceRecord = sourceCursor.newRecord();
+            left = sourceCursor.newRecord();
+            right = sourceCursor.newRecord();
+            while (sourceCursor.hasNext()) {
+                cancellationHandler.check();
+                Record r = sourceCursor.next();
+                add(r, r.getRowId());
+            }
+        } else {
+            StorageFacade facade = sourceCursor.getStorageFacade();
+            recordList.clear();
+            recordList.setStorageFacade(facade);
+            spareList.clear();
+            spareList.setStorageFacade(facade);
+            left = recordList.newRecord();
+            right = recordList.newRecord();
+            while (sourceCursor.hasNext()) {
+                cancellationHandler.check();
+                add(sourceCursor.next(), -1);
+            }
+        }
+
+        sort();
+        cursor.index = 0;
+        return cursor;
+    }
+
+    @Override
+    public boolean supportsRowIdAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put('{');
+        sink.putQuoted("op").put(':').putQuoted("TopNSortedRecordSource").put(',');
+        sink.putQuoted("byRowId").put(':').put(byRowId).put(',');
+        sink.putQuoted("limit").put(':').put(limit).put(',');
+        sink.putQuoted("src").put(':').put(recordSource);
+        sink.put('}');
+    }
+
+    private void add(Record record, long rowId) {
+        if (size < limit) {
+            heap.add(byRowId ? rowId : recordList.append(record, -1L));
+            heap.add(sequence++);
+            siftUp(size++);
+            return;
+        }
+
+        // row has to be better than worst of retained rows, on tie
+        // retained row arrived earlier and wins
+        comparator.setLeft(record);
+        if (comparator.compare(recordAt(right, heap.get(0))) < 0) {
+            if (byRowId) {
+                heap.set(0, rowId);
+            } else {
+                heap.set(0, recordList.append(record, -1L));
+                garbage++;
+            }
+            heap.set(1, sequence);
+            siftDown(0, size);
+
+            if (garbage > limit) {
+                compact();
+            }
+        }
+        sequence++;
+    }
+
+    private void compact() {
+        spareList.clear();
+        for (long i = 0; i < size; i++) {
+            heap.set(i * 2, spareList.append(recordList.recordAt(heap.get(i * 2)), -1L));
+        }
+
+        RecordList tmp = recordList;
+        recordList = spareList;
+        spareList = tmp;
+
+        // records are bound to memory of their list
+        left = recordList.newRecord();
+        right = recordList.newRecord();
+        garbage = 0;
+    }
+
+    private int compare(long a, long b) {
+        comparator.setLeft(recordAt(left, heap.get(a * 2)));
+        int cmp = comparator.compare(recordAt(right, heap.get(b * 2)));
+        return cmp != 0 ? cmp : Long.compare(heap.get(a * 2 + 1), heap.get(b * 2 + 1));
+    }
+
+    private Record recordAt(Record record, long ref) {
+        if (byRowId) {
+            sourceCursor.recordAt(record, ref);
+        } else {
+            recordList.recordAt(record, ref);
+        }
+        return record;
+    }
+
+    private void siftDown(long p, long n) {
+        long c;
+        while ((c = p * 2 + 1) < n) {
+            if (c + 1 < n && compare(c + 1, c) > 0) {
+                c++;
+            }
+
+            if (compare(c, p) <= 0) {
+                break;
+            }
+            swap(p, c);
+            p = c;
+        }
+    }
+
+    private void siftUp(long c) {
+        while (c > 0) {
+            long p = (c - 1) / 2;
+            if (compare(c, p) <= 0) {
+                break;
+            }
+            swap(p, c);
+            c = p;
+        }
+    }
+
+    /**
+     * Heap sort in place: worst row is moved to the end, which leaves heap entries in ascending order.
+     */
+    private void sort() {
+        for (long n = size - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+    }
+
+    private void swap(long a, long b) {
+        long ref = heap.get(a * 2);
+        long seq = heap.get(a * 2 + 1);
+        heap.set(a * 2, heap.get(b * 2));
+        heap.set(a * 2 + 1, heap.get(b * 2 + 1));
+        heap.set(b * 2, ref);
+        heap.set(b * 2 + 1, seq);
+    }
+
+    private class TopCursor extends AbstractImmutableIterator<Record> implements RecordCursor {
+        private long index;
+
+        @Override
+        public StorageFacade getStorageFacade() {
+            return sourceCursor.getStorageFacade();
+        }
+
+        @Override
+        public Record newRecord() {
+            return byRowId ? sourceCursor.newRecord() : recordList.newRecord();
+        }
+
+        @Override
+        public Record recordAt(long rowId) {
+            return byRowId ? sourceCursor.recordAt(rowId) : recordList.recordAt(rowId);
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            TopNSortedRecordSource.this.recordAt(record, atRowId);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Record next() {
+            long ref = heap.get(index++ * 2);
+            if (byRowId) {
+                sourceCursor.recordAt(sourceRecord, ref);
+                return sourceRecord;
+            }
+            return recordList.recordAt(ref);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.virtual;
+
+import com.questdb.ql.Record;
+import com.questdb.ql.ops.VirtualColumn;
+
+/**
+ * Contract of classes generated by {@link VirtualColumnCompiler}. Method matching type of compiled
+ * expression is straight-line code, the remaining methods defer to original expression tree.
+ */
+public interface CompiledExpression {
+    boolean getBool(Record rec);
+
+    double getDouble(Record rec);
+
+    int getInt(Record rec);
+
+    long getLong(Record rec);
+
+    void init(VirtualColumn[] columns);
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.virtual;
+
+import com.questdb.ql.Record;
+import com.questdb.ql.StorageFacade;
+import com.questdb.ql.ops.AbstractVirtualColumn;
+import com.questdb.ql.ops.VirtualColumn;
+
+public class CompiledVirtualColumn extends AbstractVirtualColumn {
+    private final VirtualColumn root;
+    private final CompiledExpression expression;
+
+    public CompiledVirtualColumn(VirtualColumn root, CompiledExpression expression) {
+        super(root.getType());
+        this.root = root;
+        this.expression = expression;
+        setName(root.getName());
+    }
+
+    @Override
+    public byte get(Record rec) {
+        return root.get(rec);
+    }
+
+    @Override
+    public boolean getBool(Record rec) {
+        return expression.getBool(rec);
+    }
+
+    @Override
+    public long getDate(Record rec) {
+        return root.getDate(rec);
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        return expression.getDouble(rec);
+    }
+
+    @Override
+    public float getFloat(Record rec) {
+        return root.getFloat(rec);
+    }
+
+    @Override
+    public int getInt(Record rec) {
+        return expression.getInt(rec);
+    }
+
+    @Override
+    public long getLong(Record rec) {
+        return expression.getLong(rec);
+    }
+
+    @Override
+    public short getShort(Record rec) {
+        return root.getShort(rec);
+    }
+
+    public VirtualColumn getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    @Override
+    public void prepare(StorageFacade facade) {
+        root.prepare(facade);
+    }
+}
@@ -0,0 +1,708 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.virtual;
+
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.BytecodeAssembler;
+import com.questdb.ql.ops.*;
+import com.questdb.ql.ops.col.DateRecordSourceColumn;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.ql.ops.col.IntRecordSourceColumn;
+import com.questdb.ql.ops.col.LongRecordSourceColumn;
+import com.questdb.ql.ops.constant.BooleanConstant;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.ql.ops.constant.LongConstant;
+import com.questdb.ql.ops.div.DivDoubleOperator;
+import com.questdb.ql.ops.eq.DoubleEqualsOperator;
+import com.questdb.ql.ops.eq.IntEqualsOperator;
+import com.questdb.ql.ops.eq.LongEqualsOperator;
+import com.questdb.ql.ops.gt.DoubleGreaterThanOperator;
+import com.questdb.ql.ops.gt.IntGreaterThanOperator;
+import com.questdb.ql.ops.gt.LongGreaterThanOperator;
+import com.questdb.ql.ops.gte.DoubleGreaterOrEqualOperator;
+import com.questdb.ql.ops.gte.IntGreaterOrEqualOperator;
+import com.questdb.ql.ops.gte.LongGreaterOrEqualOperator;
+import com.questdb.ql.ops.lt.DoubleLessThanOperator;
+import com.questdb.ql.ops.lt.IntLessThanOperator;
+import com.questdb.ql.ops.lt.LongLessThanOperator;
+import com.questdb.ql.ops.lte.DoubleLessOrEqualOperator;
+import com.questdb.ql.ops.lte.IntLessOrEqualOperator;
+import com.questdb.ql.ops.lte.LongLessOrEqualOperator;
+import com.questdb.ql.ops.minus.MinusDoubleOperator;
+import com.questdb.ql.ops.minus.MinusIntOperator;
+import com.questdb.ql.ops.minus.MinusLongOperator;
+import com.questdb.ql.ops.mult.MultDoubleOperator;
+import com.questdb.ql.ops.mult.MultIntOperator;
+import com.questdb.ql.ops.mult.MultLongOperator;
+import com.questdb.ql.ops.neq.DoubleNotEqualsOperator;
+import com.questdb.ql.ops.neq.IntNotEqualsOperator;
+import com.questdb.ql.ops.neq.LongNotEqualsOperator;
+import com.questdb.ql.ops.plus.AddDoubleOperator;
+import com.questdb.ql.ops.plus.AddIntOperator;
+import com.questdb.ql.ops.plus.AddLongOperator;
+import com.questdb.std.IntList;
+import com.questdb.std.ObjIntHashMap;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+
+/**
+ * Compiles tree of virtual columns into single class, which evaluates whole expression in one method.
+ * Boolean expressions become chains of conditional jumps, arithmetic and comparisons of int, long and double
+ * values are inlined and record columns are read directly from {@link com.questdb.ql.Record}. Parts of tree
+ * that compiler does not understand are still evaluated by their virtual columns, which generated class
+ * keeps in its fields, so any expression can be compiled.
+ */
+public class VirtualColumnCompiler {
+    private static final int OP_AND = 1;
+    private static final int OP_OR = 2;
+    private static final int OP_NOT = 3;
+    private static final int OP_CONST = 4;
+    private static final int OP_EQ = 5;
+    private static final int OP_NE = 6;
+    private static final int OP_GT = 7;
+    private static final int OP_GE = 8;
+    private static final int OP_LT = 9;
+    private static final int OP_LE = 10;
+    private static final int OP_ADD = 11;
+    private static final int OP_SUB = 12;
+    private static final int OP_MUL = 13;
+    private static final int OP_DIV = 14;
+    private static final int OP_MASK = 0xff;
+    // operator null semantics are implemented by its static "eval" method
+    private static final int EVAL = 0x100;
+    private static final ObjIntHashMap<Class<?>> ops = new ObjIntHashMap<>();
+
+    private final BytecodeAssembler asm = new BytecodeAssembler();
+    private final ObjList<VirtualColumn> columns = new ObjList<>();
+    private final IntList fieldIndices = new IntList();
+    private final IntList fieldNameIndices = new IntList();
+    private final IntList constantIndices = new IntList();
+    private final ObjIntHashMap<Class<?>> evalIndices = new ObjIntHashMap<>();
+    private final IntList labels = new IntList();
+    private final IntList jumps = new IntList();
+    private final IntList frames = new IntList();
+    private int recordGetIntIndex;
+    private int recordGetLongIndex;
+    private int recordGetDoubleIndex;
+    private int columnGetBoolIndex;
+    private int columnGetIntIndex;
+    private int columnGetLongIndex;
+    private int columnGetDoubleIndex;
+    private int columnCursor;
+    private int constantCursor;
+
+    /**
+     * Returns virtual column, which computes same values as given one using generated code. Constant expressions
+     * and columns, which compiler would only delegate to, are returned as is.
+     *
+     * @param vc root of expression tree
+     * @return compiled column or argument itself
+     */
+    public VirtualColumn compile(VirtualColumn vc) {
+        int type = vc.getType();
+        if (vc.isConstant() || opOf(vc, type) == 0) {
+            return vc;
+        }
+
+        asm.clear();
+        asm.setupPool();
+        int stackMapTableIndex = asm.poolUtf8("StackMapTable");
+        int thisClassIndex = asm.poolClass(asm.poolUtf8("questdbasm"));
+        int interfaceClassIndex = asm.poolClass(asm.poolUtf8("com/questdb/ql/impl/virtual/CompiledExpression"));
+        int recordClassIndex = asm.poolClass(asm.poolUtf8("com/questdb/ql/Record"));
+        int columnClassIndex = asm.poolClass(asm.poolUtf8("com/questdb/ql/ops/VirtualColumn"));
+        int fieldTypeIndex = asm.poolUtf8("Lcom/questdb/ql/ops/VirtualColumn;");
+        int initNameIndex = asm.poolUtf8("init");
+        int initDescIndex = asm.poolUtf8("([Lcom/questdb/ql/ops/VirtualColumn;)V");
+        int getBoolNameIndex = asm.poolUtf8("getBool");
+        int getBoolDescIndex = asm.poolUtf8("(Lcom/questdb/ql/Record;)Z");
+        int getIntNameIndex = asm.poolUtf8("getInt");
+        int getIntDescIndex = asm.poolUtf8("(Lcom/questdb/ql/Record;)I");
+        int getLongNameIndex = asm.poolUtf8("getLong");
+        int getLongDescIndex = asm.poolUtf8("(Lcom/questdb/ql/Record;)J");
+        int getDoubleNameIndex = asm.poolUtf8("getDouble");
+        int getDoubleDescIndex = asm.poolUtf8("(Lcom/questdb/ql/Record;)D");
+
+        recordGetIntIndex = asm.poolInterfaceMethod(recordClassIndex, asm.poolNameAndType(getIntNameIndex, asm.poolUtf8("(I)I")));
+        recordGetLongIndex = asm.poolInterfaceMethod(recordClassIndex, asm.poolNameAndType(getLongNameIndex, asm.poolUtf8("(I)J")));
+        recordGetDoubleIndex = asm.poolInterfaceMethod(recordClassIndex, asm.poolNameAndType(getDoubleNameIndex, asm.poolUtf8("(I)D")));
+        columnGetBoolIndex = asm.poolInterfaceMethod(columnClassIndex, asm.poolNameAndType(getBoolNameIndex, getBoolDescIndex));
+        columnGetIntIndex = asm.poolInterfaceMethod(columnClassIndex, asm.poolNameAndType(getIntNameIndex, getIntDescIndex));
+        columnGetLongIndex = asm.poolInterfaceMethod(columnClassIndex, asm.poolNameAndType(getLongNameIndex, getLongDescIndex));
+        columnGetDoubleIndex = asm.poolInterfaceMethod(columnClassIndex, asm.poolNameAndType(getDoubleNameIndex, getDoubleDescIndex));
+
+        // root goes first, methods other than one of expression type defer to it
+        columns.clear();
+        columns.add(vc);
+        constantIndices.clear();
+        evalIndices.clear();
+        int maxStack = type == ColumnType.BOOLEAN ? poolBranch(vc) : poolValue(vc, type);
+
+        fieldIndices.clear();
+        fieldNameIndices.clear();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            int nameIndex;
+            fieldNameIndices.add(nameIndex = asm.poolUtf8().put('c').put(i).$());
+            fieldIndices.add(asm.poolField(thisClassIndex, asm.poolNameAndType(nameIndex, fieldTypeIndex)));
+        }
+
+        asm.finishPool();
+        asm.defineClass(1, thisClassIndex);
+        // interface count
+        asm.putShort(1);
+        asm.putShort(interfaceClassIndex);
+        // field count
+        asm.putShort(fieldNameIndices.size());
+        for (int i = 0, n = fieldNameIndices.size(); i < n; i++) {
+            asm.defineField(0x02, fieldNameIndices.getQuick(i), fieldTypeIndex);
+        }
+        // method count
+        asm.putShort(6);
+        asm.defineDefaultConstructor();
+        instrumentInitMethod(initNameIndex, initDescIndex);
+        instrumentGetter(type, ColumnType.BOOLEAN, getBoolNameIndex, getBoolDescIndex, maxStack, stackMapTableIndex);
+        instrumentGetter(type, ColumnType.INT, getIntNameIndex, getIntDescIndex, maxStack, stackMapTableIndex);
+        instrumentGetter(type, ColumnType.LONG, getLongNameIndex, getLongDescIndex, maxStack, stackMapTableIndex);
+        instrumentGetter(type, ColumnType.DOUBLE, getDoubleNameIndex, getDoubleDescIndex, maxStack, stackMapTableIndex);
+        // class attribute count
+        asm.putShort(0);
+
+        CompiledExpression expression;
+        try {
+            expression = (CompiledExpression) asm.loadClass(VirtualColumnCompiler.class).newInstance();
+        } catch (Exception e) {
+            throw new JournalRuntimeException("Cannot instantiate expression: ", e);
+        }
+
+        VirtualColumn[] fields = new VirtualColumn[columns.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = columns.getQuick(i);
+        }
+        expression.init(fields);
+        return new CompiledVirtualColumn(vc, expression);
+    }
+
+    private static boolean isInlineConstant(VirtualColumn vc, int type) {
+        if (vc instanceof IntConstant) {
+            return true;
+        }
+
+        if (vc instanceof LongConstant) {
+            return type != ColumnType.INT;
+        }
+
+        return vc instanceof DoubleConstant && type == ColumnType.DOUBLE;
+    }
+
+    private static int directColumnIndex(VirtualColumn vc, int type) {
+        switch (type) {
+            case ColumnType.INT:
+                if (vc instanceof IntRecordSourceColumn) {
+                    return ((IntRecordSourceColumn) vc).getIndex();
+                }
+                break;
+            case ColumnType.LONG:
+                if (vc instanceof LongRecordSourceColumn) {
+                    return ((LongRecordSourceColumn) vc).getIndex();
+                }
+
+                if (vc instanceof DateRecordSourceColumn) {
+                    return ((DateRecordSourceColumn) vc).getIndex();
+                }
+                break;
+            case ColumnType.DOUBLE:
+                if (vc instanceof DoubleRecordSourceColumn) {
+                    return ((DoubleRecordSourceColumn) vc).getIndex();
+                }
+                break;
+            default:
+                break;
+        }
+        return -1;
+    }
+
+    private static boolean fitsShort(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    private static int op(int code, int operandType) {
+        return code | (operandType << 16);
+    }
+
+    /**
+     * Operator code of virtual column when it computes value of given type, or 0 when virtual
+     * column cannot be compiled for that type.
+     */
+    private static int opOf(VirtualColumn vc, int type) {
+        int op = ops.get(vc.getClass());
+        if (op == -1) {
+            return 0;
+        }
+        return resultTypeOf(op) == type ? op : 0;
+    }
+
+    private static int operandTypeOf(int op) {
+        return op >>> 16;
+    }
+
+    private static int resultTypeOf(int op) {
+        return (op & OP_MASK) < OP_ADD ? ColumnType.BOOLEAN : operandTypeOf(op);
+    }
+
+    private static int sizeOf(int type) {
+        return type == ColumnType.LONG || type == ColumnType.DOUBLE ? 2 : 1;
+    }
+
+    private void emitBranch(VirtualColumn vc, boolean when, int label) {
+        int op = opOf(vc, ColumnType.BOOLEAN);
+        switch (op & OP_MASK) {
+            case 0:
+                emitColumn(columnGetBoolIndex);
+                jump(when ? BytecodeAssembler.ifne : BytecodeAssembler.ifeq, label);
+                break;
+            case OP_AND:
+                if (when) {
+                    int skip = newLabel();
+                    emitBranch(((AbstractBinaryOperator) vc).getLhs(), false, skip);
+                    emitBranch(((AbstractBinaryOperator) vc).getRhs(), true, label);
+                    placeLabel(skip);
+                } else {
+                    emitBranch(((AbstractBinaryOperator) vc).getLhs(), false, label);
+                    emitBranch(((AbstractBinaryOperator) vc).getRhs(), false, label);
+                }
+                break;
+            case OP_OR:
+                if (when) {
+                    emitBranch(((AbstractBinaryOperator) vc).getLhs(), true, label);
+                    emitBranch(((AbstractBinaryOperator) vc).getRhs(), true, label);
+                } else {
+                    int skip = newLabel();
+                    emitBranch(((AbstractBinaryOperator) vc).getLhs(), true, skip);
+                    emitBranch(((AbstractBinaryOperator) vc).getRhs(), false, label);
+                    placeLabel(skip);
+                }
+                break;
+            case OP_NOT:
+                emitBranch(((AbstractUnaryOperator) vc).getValue(), !when, label);
+                break;
+            case OP_CONST:
+                // constant is not folded to avoid unreachable code, which would need its own stack map frame
+                asm.putConstant(vc.getBool(null) ? 1 : 0);
+                jump(when ? BytecodeAssembler.ifne : BytecodeAssembler.ifeq, label);
+                break;
+            default:
+                emitCompare((AbstractBinaryOperator) vc, op, when, label);
+                break;
+        }
+    }
+
+    private void emitColumn(int getterIndex) {
+        asm.put(BytecodeAssembler.aload_0);
+        asm.put(BytecodeAssembler.getfield);
+        asm.putShort(fieldIndices.getQuick(columnCursor++));
+        asm.put(BytecodeAssembler.aload_1);
+        asm.invokeInterface(getterIndex);
+    }
+
+    private void emitCompare(AbstractBinaryOperator vc, int op, boolean when, int label) {
+        int type = operandTypeOf(op);
+        emitValue(vc.getLhs(), type);
+        emitValue(vc.getRhs(), type);
+
+        if ((op & EVAL) != 0) {
+            asm.put(BytecodeAssembler.invokestatic);
+            asm.putShort(evalIndices.get(vc.getClass()));
+            jump(when ? BytecodeAssembler.ifne : BytecodeAssembler.ifeq, label);
+            return;
+        }
+
+        switch (type) {
+            case ColumnType.INT:
+                // only "not equals" is without null check
+                jump(when ? BytecodeAssembler.if_icmpne : BytecodeAssembler.if_icmpeq, label);
+                break;
+            case ColumnType.LONG:
+                asm.put(BytecodeAssembler.lcmp);
+                jump(when ? BytecodeAssembler.ifne : BytecodeAssembler.ifeq, label);
+                break;
+            default:
+                // NaN compares false with everything but "not equals", hence choice of dcmpl and dcmpg
+                switch (op & OP_MASK) {
+                    case OP_EQ:
+                        asm.put(BytecodeAssembler.dcmpl);
+                        jump(when ? BytecodeAssembler.ifeq : BytecodeAssembler.ifne, label);
+                        break;
+                    case OP_NE:
+                        asm.put(BytecodeAssembler.dcmpl);
+                        jump(when ? BytecodeAssembler.ifne : BytecodeAssembler.ifeq, label);
+                        break;
+                    case OP_GT:
+                        asm.put(BytecodeAssembler.dcmpl);
+                        jump(when ? BytecodeAssembler.ifgt : BytecodeAssembler.ifle, label);
+                        break;
+                    case OP_GE:
+                        asm.put(BytecodeAssembler.dcmpl);
+                        jump(when ? BytecodeAssembler.ifge : BytecodeAssembler.iflt, label);
+                        break;
+                    case OP_LT:
+                        asm.put(BytecodeAssembler.dcmpg);
+                        jump(when ? BytecodeAssembler.iflt : BytecodeAssembler.ifge, label);
+                        break;
+                    default:
+                        asm.put(BytecodeAssembler.dcmpg);
+                        jump(when ? BytecodeAssembler.ifle : BytecodeAssembler.ifgt, label);
+                        break;
+                }
+                break;
+        }
+    }
+
+    private void emitValue(VirtualColumn vc, int type) {
+        int op = opOf(vc, type);
+        if (op != 0) {
+            AbstractBinaryOperator b = (AbstractBinaryOperator) vc;
+            emitValue(b.getLhs(), type);
+            emitValue(b.getRhs(), type);
+            if ((op & EVAL) != 0) {
+                asm.put(BytecodeAssembler.invokestatic);
+                asm.putShort(evalIndices.get(vc.getClass()));
+            } else {
+                switch (op & OP_MASK) {
+                    case OP_ADD:
+                        asm.put(BytecodeAssembler.dadd);
+                        break;
+                    case OP_SUB:
+                        asm.put(BytecodeAssembler.dsub);
+                        break;
+                    case OP_MUL:
+                        asm.put(BytecodeAssembler.dmul);
+                        break;
+                    default:
+                        asm.put(BytecodeAssembler.ddiv);
+                        break;
+                }
+            }
+            return;
+        }
+
+        if (isInlineConstant(vc, type)) {
+            switch (type) {
+                case ColumnType.INT:
+                    int value = vc.getInt(null);
+                    if (fitsShort(value)) {
+                        asm.putConstant(value);
+                    } else {
+                        asm.ldc(constantIndices.getQuick(constantCursor++));
+                    }
+                    break;
+                default:
+                    asm.ldc2(constantIndices.getQuick(constantCursor++));
+                    break;
+            }
+            return;
+        }
+
+        int index = directColumnIndex(vc, type);
+        if (index > -1) {
+            asm.put(BytecodeAssembler.aload_1);
+            asm.putConstant(index);
+            asm.invokeInterface(type == ColumnType.INT ? recordGetIntIndex : type == ColumnType.LONG ? recordGetLongIndex : recordGetDoubleIndex);
+            return;
+        }
+
+        emitColumn(type == ColumnType.INT ? columnGetIntIndex : type == ColumnType.LONG ? columnGetLongIndex : columnGetDoubleIndex);
+    }
+
+    /*
+     * init(VirtualColumn[] columns)
+     *
+     * assigns array elements to class fields:
+     *
+     * c0 = columns[0];
+     * c1 = columns[1];
+     * ...
+     */
+    private void instrumentInitMethod(int nameIndex, int descIndex) {
+        asm.startMethod(0x01, nameIndex, descIndex, 3, 2);
+        for (int i = 0, n = fieldIndices.size(); i < n; i++) {
+            asm.put(BytecodeAssembler.aload_0);
+            asm.put(BytecodeAssembler.aload_1);
+            asm.putConstant(i);
+            asm.put(BytecodeAssembler.aaload);
+            asm.put(BytecodeAssembler.putfield);
+            asm.putShort(fieldIndices.getQuick(i));
+        }
+        asm.put(BytecodeAssembler.return_);
+        asm.endMethodCode();
+        // exceptions
+        asm.putShort(0);
+        // attributes
+        asm.putShort(0);
+        asm.endMethod();
+    }
+
+    /*
+     * Getter of expression type evaluates expression, for example "a > 10 and b < c" compiles to:
+     *
+     * aload_1
+     * iconst_0
+     * invokeinterface Record.getInt
+     * bipush 10
+     * invokestatic IntGreaterThanOperator.eval
+     * ifeq FALSE
+     * ...
+     * iconst_1
+     * ireturn
+     * FALSE:
+     * iconst_0
+     * ireturn
+     *
+     * Branches only ever jump with empty stack, so that every branch target can be described by "same" stack map frame.
+     * Getters of other types delegate to root column: "return c0.getLong(rec)"
+     */
+    private void instrumentGetter(int type, int getterType, int nameIndex, int descIndex, int maxStack, int stackMapTableIndex) {
+        if (type != getterType) {
+            asm.startMethod(0x01, nameIndex, descIndex, 2, 2);
+            columnCursor = 0;
+            switch (getterType) {
+                case ColumnType.BOOLEAN:
+                    emitColumn(columnGetBoolIndex);
+                    asm.put(BytecodeAssembler.ireturn);
+                    break;
+                case ColumnType.INT:
+                    emitColumn(columnGetIntIndex);
+                    asm.put(BytecodeAssembler.ireturn);
+                    break;
+                case ColumnType.LONG:
+                    emitColumn(columnGetLongIndex);
+                    asm.put(BytecodeAssembler.lreturn);
+                    break;
+                default:
+                    emitColumn(columnGetDoubleIndex);
+                    asm.put(BytecodeAssembler.dreturn);
+                    break;
+            }
+            asm.endMethodCode();
+            // exceptions
+            asm.putShort(0);
+            // attributes
+            asm.putShort(0);
+            asm.endMethod();
+            return;
+        }
+
+        asm.startMethod(0x01, nameIndex, descIndex, maxStack, 2);
+        int codeStart = asm.position();
+        // root column is not referenced by compiled code
+        columnCursor = 1;
+        constantCursor = 0;
+        labels.clear();
+        jumps.clear();
+
+        VirtualColumn root = columns.getQuick(0);
+        switch (type) {
+            case ColumnType.BOOLEAN:
+                int falseLabel = newLabel();
+                emitBranch(root, false, falseLabel);
+                asm.putConstant(1);
+                asm.put(BytecodeAssembler.ireturn);
+                placeLabel(falseLabel);
+                asm.putConstant(0);
+                asm.put(BytecodeAssembler.ireturn);
+                break;
+            case ColumnType.INT:
+                emitValue(root, type);
+                asm.put(BytecodeAssembler.ireturn);
+                break;
+            case ColumnType.LONG:
+                emitValue(root, type);
+                asm.put(BytecodeAssembler.lreturn);
+                break;
+            default:
+                emitValue(root, type);
+                asm.put(BytecodeAssembler.dreturn);
+                break;
+        }
+
+        // point jumps at their labels
+        for (int i = 0, n = jumps.size(); i < n; i += 2) {
+            int p = jumps.getQuick(i);
+            asm.putShort(p + 1, labels.getQuick(jumps.getQuick(i + 1)) - p);
+        }
+
+        asm.endMethodCode();
+        // exceptions
+        asm.putShort(0);
+
+        if (labels.size() == 0) {
+            // attributes
+            asm.putShort(0);
+        } else {
+            // frames must be ordered by offset and distinct, while
+            // several labels can point at the same instruction
+            frames.clear();
+            for (int i = 0, n = labels.size(); i < n; i++) {
+                int offset = labels.getQuick(i) - codeStart;
+                int j = 0;
+                int m = frames.size();
+                while (j < m && frames.getQuick(j) < offset) {
+                    j++;
+                }
+                if (j == m || frames.getQuick(j) != offset) {
+                    frames.add(j, offset);
+                }
+            }
+            // attributes: 1 - StackMapTable
+            asm.putShort(1);
+            asm.putStackMapSameFrames(stackMapTableIndex, frames);
+        }
+        asm.endMethod();
+    }
+
+    private void jump(int opcode, int label) {
+        jumps.add(asm.position());
+        jumps.add(label);
+        asm.put(opcode);
+        asm.putShort(0);
+    }
+
+    private int newLabel() {
+        labels.add(-1);
+        return labels.size() - 1;
+    }
+
+    private void placeLabel(int label) {
+        labels.setQuick(label, asm.position());
+    }
+
+    private int poolBranch(VirtualColumn vc) {
+        int op = opOf(vc, ColumnType.BOOLEAN);
+        switch (op & OP_MASK) {
+            case 0:
+                columns.add(vc);
+                return 2;
+            case OP_AND:
+            case OP_OR:
+                return Math.max(poolBranch(((AbstractBinaryOperator) vc).getLhs()), poolBranch(((AbstractBinaryOperator) vc).getRhs()));
+            case OP_NOT:
+                return poolBranch(((AbstractUnaryOperator) vc).getValue());
+            case OP_CONST:
+                return 1;
+            default:
+                return poolOperands((AbstractBinaryOperator) vc, op);
+        }
+    }
+
+    private int poolOperands(AbstractBinaryOperator vc, int op) {
+        int type = operandTypeOf(op);
+        int stack = Math.max(poolValue(vc.getLhs(), type), sizeOf(type) + poolValue(vc.getRhs(), type));
+
+        if ((op & EVAL) != 0 && evalIndices.get(vc.getClass()) == -1) {
+            String desc;
+            boolean bool = resultTypeOf(op) == ColumnType.BOOLEAN;
+            if (type == ColumnType.INT) {
+                desc = bool ? "(II)Z" : "(II)I";
+            } else {
+                desc = bool ? "(JJ)Z" : "(JJ)J";
+            }
+            int classIndex = asm.poolClass(asm.poolUtf8(vc.getClass().getName().replace('.', '/')));
+            evalIndices.put(vc.getClass(), asm.poolMethod(classIndex, asm.poolNameAndType(asm.poolUtf8("eval"), asm.poolUtf8(desc))));
+        }
+        return stack;
+    }
+
+    /**
+     * Adds constant pool entries for value of given type and returns stack depth needed to compute it.
+     */
+    private int poolValue(VirtualColumn vc, int type) {
+        int op = opOf(vc, type);
+        if (op != 0) {
+            return poolOperands((AbstractBinaryOperator) vc, op);
+        }
+
+        if (isInlineConstant(vc, type)) {
+            switch (type) {
+                case ColumnType.INT:
+                    int value = vc.getInt(null);
+                    if (!fitsShort(value)) {
+                        constantIndices.add(asm.poolIntConstant(value));
+                    }
+                    return 1;
+                case ColumnType.LONG:
+                    constantIndices.add(asm.poolLongConstant(vc.getLong(null)));
+                    return 2;
+                default:
+                    constantIndices.add(asm.poolDoubleConstant(vc.getDouble(null)));
+                    return 2;
+            }
+        }
+
+        if (directColumnIndex(vc, type) == -1) {
+            columns.add(vc);
+        }
+        // record or column reference and column index, then value
+        return 2;
+    }
+
+    static {
+        ops.put(AndOperator.class, op(OP_AND, ColumnType.BOOLEAN));
+        ops.put(OrOperator.class, op(OP_OR, ColumnType.BOOLEAN));
+        ops.put(NotOperator.class, op(OP_NOT, ColumnType.BOOLEAN));
+        ops.put(BooleanConstant.class, op(OP_CONST, ColumnType.BOOLEAN));
+
+        ops.put(IntEqualsOperator.class, op(OP_EQ | EVAL, ColumnType.INT));
+        ops.put(IntNotEqualsOperator.class, op(OP_NE, ColumnType.INT));
+        ops.put(IntGreaterThanOperator.class, op(OP_GT | EVAL, ColumnType.INT));
+        ops.put(IntGreaterOrEqualOperator.class, op(OP_GE | EVAL, ColumnType.INT));
+        ops.put(IntLessThanOperator.class, op(OP_LT | EVAL, ColumnType.INT));
+        ops.put(IntLessOrEqualOperator.class, op(OP_LE | EVAL, ColumnType.INT));
+
+        ops.put(LongEqualsOperator.class, op(OP_EQ | EVAL, ColumnType.LONG));
+        ops.put(LongNotEqualsOperator.class, op(OP_NE, ColumnType.LONG));
+        ops.put(LongGreaterThanOperator.class, op(OP_GT | EVAL, ColumnType.LONG));
+        ops.put(LongGreaterOrEqualOperator.class, op(OP_GE | EVAL, ColumnType.LONG));
+        ops.put(LongLessThanOperator.class, op(OP_LT | EVAL, ColumnType.LONG));
+        ops.put(LongLessOrEqualOperator.class, op(OP_LE | EVAL, ColumnType.LONG));
+
+        ops.put(DoubleEqualsOperator.class, op(OP_EQ, ColumnType.DOUBLE));
+        ops.put(DoubleNotEqualsOperator.class, op(OP_NE, ColumnType.DOUBLE));
+        ops.put(DoubleGreaterThanOperator.class, op(OP_GT, ColumnType.DOUBLE));
+        ops.put(DoubleGreaterOrEqualOperator.class, op(OP_GE, ColumnType.DOUBLE));
+        ops.put(DoubleLessThanOperator.class, op(OP_LT, ColumnType.DOUBLE));
+        ops.put(DoubleLessOrEqualOperator.class, op(OP_LE, ColumnType.DOUBLE));
+
+        ops.put(AddIntOperator.class, op(OP_ADD | EVAL, ColumnType.INT));
+        ops.put(MinusIntOperator.class, op(OP_SUB | EVAL, ColumnType.INT));
+        ops.put(MultIntOperator.class, op(OP_MUL | EVAL, ColumnType.INT));
+        ops.put(AddLongOperator.class, op(OP_ADD | EVAL, ColumnType.LONG));
+        ops.put(MinusLongOperator.class, op(OP_SUB | EVAL, ColumnType.LONG));
+        ops.put(MultLongOperator.class, op(OP_MUL | EVAL, ColumnType.LONG));
+        ops.put(AddDoubleOperator.class, op(OP_ADD, ColumnType.DOUBLE));
+        ops.put(MinusDoubleOperator.class, op(OP_SUB, ColumnType.DOUBLE));
+        ops.put(MultDoubleOperator.class, op(OP_MUL, ColumnType.DOUBLE));
+        ops.put(DivDoubleOperator.class, op(OP_DIV, ColumnType.DOUBLE));
+    }
+}
@@ -97,6 +97,11 @@ class VirtualRecord extends AbstractRecord {
         return col < split ? base.getFlyweightStrB(col) : virtualColumns.get(col - split).getFlyweightStrB(base);
     }
 
+    @Override
+    public CharSequence getFlyweightSym(int col) {
+        return col < split ? base.getFlyweightSym(col) : virtualColumns.get(col - split).getSym(base);
+    }
+
     @Override
     public int getInt(int col) {
         return col < split ? base.getInt(col) : virtualColumns.get(col - split).getInt(base);
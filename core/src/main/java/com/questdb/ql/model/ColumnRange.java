@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.model;
+
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjectFactory;
+import com.questdb.store.ColumnType;
+
+/**
+ * Inclusive range of values numeric column is compared to in filter. Range does not replace filter,
+ * it is only used to skip partitions and row blocks by column statistics.
+ */
+public class ColumnRange implements Mutable {
+    public static final ColumnRangeFactory FACTORY = new ColumnRangeFactory();
+    public int columnIndex;
+    public int columnType;
+    public long lo = Long.MIN_VALUE;
+    public long hi = Long.MAX_VALUE;
+    public double doubleLo = Double.NEGATIVE_INFINITY;
+    public double doubleHi = Double.POSITIVE_INFINITY;
+
+    public ColumnRange() {
+    }
+
+    public ColumnRange(ColumnRange that) {
+        this.columnIndex = that.columnIndex;
+        this.columnType = that.columnType;
+        this.lo = that.lo;
+        this.hi = that.hi;
+        this.doubleLo = that.doubleLo;
+        this.doubleHi = that.doubleHi;
+    }
+
+    @Override
+    public void clear() {
+        columnIndex = -1;
+        columnType = -1;
+        lo = Long.MIN_VALUE;
+        hi = Long.MAX_VALUE;
+        doubleLo = Double.NEGATIVE_INFINITY;
+        doubleHi = Double.POSITIVE_INFINITY;
+    }
+
+    public boolean isDouble() {
+        return columnType == ColumnType.DOUBLE || columnType == ColumnType.FLOAT;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnRange{" +
+                "columnIndex=" + columnIndex +
+                ", lo=" + (isDouble() ? doubleLo : lo) +
+                ", hi=" + (isDouble() ? doubleHi : hi) +
+                '}';
+    }
+
+    public static final class ColumnRangeFactory implements ObjectFactory<ColumnRange> {
+        @Override
+        public ColumnRange newInstance() {
+            return new ColumnRange();
+        }
+    }
+}
@@ -28,12 +28,15 @@ import com.questdb.ql.impl.interval.IntervalSource;
 import com.questdb.std.CharSequenceHashSet;
 import com.questdb.std.IntList;
 import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
 import com.questdb.std.ObjectFactory;
 
 public class IntrinsicModel implements Mutable {
     public static final IntrinsicModelFactory FACTORY = new IntrinsicModelFactory();
     public final CharSequenceHashSet keyValues = new CharSequenceHashSet();
     public final IntList keyValuePositions = new IntList();
+    public final ObjList<ColumnRange> columnRanges = new ObjList<>();
+    public final ObjList<KeyTerm> keyTerms = new ObjList<>();
     public String keyColumn;
     public long intervalLo = Long.MIN_VALUE;
     public long intervalHi = Long.MAX_VALUE;
@@ -57,6 +60,8 @@ public class IntrinsicModel implements Mutable {
         intervalSource = null;
         intrinsicValue = IntrinsicValue.UNDEFINED;
         keyValuesIsLambda = false;
+        columnRanges.clear();
+        keyTerms.clear();
     }
 
     public void clearInterval() {
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.model;
+
+import com.questdb.std.CharSequenceHashSet;
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjectFactory;
+
+/**
+ * Values indexed symbol column is compared to with "=" or "in" in filter. Term does not replace filter,
+ * it is only used to intersect bitmap indexes of several columns.
+ */
+public class KeyTerm implements Mutable {
+    public static final KeyTermFactory FACTORY = new KeyTermFactory();
+    public final CharSequenceHashSet values = new CharSequenceHashSet();
+    public String column;
+
+    @Override
+    public void clear() {
+        column = null;
+        values.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "KeyTerm{" +
+                "column='" + column + '\'' +
+                ", values=" + values +
+                '}';
+    }
+
+    public static final class KeyTermFactory implements ObjectFactory<KeyTerm> {
+        @Override
+        public KeyTerm newInstance() {
+            return new KeyTerm();
+        }
+    }
+}
@@ -34,6 +34,10 @@ public abstract class AbstractUnaryOperator extends AbstractVirtualColumn implem
         super(columnType);
     }
 
+    public VirtualColumn getValue() {
+        return value;
+    }
+
     @Override
     public boolean isConstant() {
         return value.isConstant();
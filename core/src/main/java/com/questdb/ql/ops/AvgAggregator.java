@@ -69,6 +69,12 @@ public final class AvgAggregator extends AbstractUnaryOperator implements Aggreg
         }
     }
 
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putLong(countIdx, values.getLong(countIdx) + partial.getLong(countIdx));
+        values.putDouble(sumIdx, values.getDouble(sumIdx) + partial.getDouble(sumIdx));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_COUNT);
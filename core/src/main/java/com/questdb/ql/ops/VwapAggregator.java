@@ -71,6 +71,12 @@ public final class VwapAggregator extends AbstractBinaryOperator implements Aggr
         }
     }
 
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putDouble(sumAmtIdx, values.getDouble(sumAmtIdx) + partial.getDouble(sumAmtIdx));
+        values.putDouble(sumQtyIdx, values.getDouble(sumQtyIdx) + partial.getDouble(sumQtyIdx));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(INTERNAL_COL_AMOUNT);
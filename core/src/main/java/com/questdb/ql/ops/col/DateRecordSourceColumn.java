@@ -46,6 +46,10 @@ public class DateRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getLong(index);
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean isConstant() {
         return false;
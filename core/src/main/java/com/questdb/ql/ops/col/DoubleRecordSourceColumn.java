@@ -41,6 +41,10 @@ public class DoubleRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getDouble(index);
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean isConstant() {
         return false;
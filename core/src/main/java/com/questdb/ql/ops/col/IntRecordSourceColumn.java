@@ -59,6 +59,10 @@ public class IntRecordSourceColumn extends AbstractVirtualColumn {
         return v != Integer.MIN_VALUE ? v : Long.MIN_VALUE;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean isConstant() {
         return false;
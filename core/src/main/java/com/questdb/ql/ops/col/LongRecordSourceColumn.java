@@ -47,6 +47,10 @@ public class LongRecordSourceColumn extends AbstractVirtualColumn {
         return rec.getLong(index);
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean isConstant() {
         return false;
@@ -42,7 +42,7 @@ public class SymRecordSourceColumn extends AbstractVirtualColumn {
 
     @Override
     public CharSequence getFlyweightStr(Record rec) {
-        return rec.getSym(index);
+        return rec.getFlyweightSym(index);
     }
 
     @Override
@@ -62,12 +62,12 @@ public class SymRecordSourceColumn extends AbstractVirtualColumn {
 
     @Override
     public void getStr(Record rec, CharSink sink) {
-        sink.put(rec.getSym(index));
+        sink.put(rec.getFlyweightSym(index));
     }
 
     @Override
     public int getStrLen(Record rec) {
-        CharSequence cs = rec.getSym(index);
+        CharSequence cs = rec.getFlyweightSym(index);
         return cs == null ? VariableColumn.NULL_LEN : cs.length();
     }
 
@@ -24,7 +24,7 @@
 package com.questdb.ql.ops.count;
 
 import com.questdb.factory.configuration.RecordColumnMetadata;
-import com.questdb.ql.AggregatorFunction;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.StorageFacade;
 import com.questdb.ql.impl.map.DirectMapValues;
@@ -35,7 +35,7 @@ import com.questdb.std.ObjList;
 import com.questdb.std.ObjectFactory;
 import com.questdb.store.ColumnType;
 
-public final class CountAggregator extends AbstractVirtualColumn implements AggregatorFunction, Function {
+public final class CountAggregator extends AbstractVirtualColumn implements BatchAggregatorFunction, Function {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -59,6 +59,25 @@ public final class CountAggregator extends AbstractVirtualColumn implements Aggr
         }
     }
 
+    @Override
+    public void calculate(long address, int count, DirectMapValues values) {
+        if (values.isNew()) {
+            values.putLong(index, count);
+        } else {
+            values.putLong(index, values.getLong(index) + count);
+        }
+    }
+
+    @Override
+    public int getBatchColumn() {
+        return NO_COLUMN;
+    }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putLong(index, values.getLong(index) + partial.getLong(index));
+    }
+
     @Override
     public void prepare(ObjList<RecordColumnMetadata> columns, int offset) {
         columns.add(this);
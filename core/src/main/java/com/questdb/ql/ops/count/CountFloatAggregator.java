@@ -52,4 +52,9 @@ public final class CountFloatAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + 1);
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putLong(valueIndex, values.getLong(valueIndex) + partial.getLong(valueIndex));
+    }
 }
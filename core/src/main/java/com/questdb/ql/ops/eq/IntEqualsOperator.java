@@ -42,9 +42,12 @@ public class IntEqualsOperator extends AbstractBinaryOperator {
         super(ColumnType.BOOLEAN);
     }
 
+    public static boolean eval(int l, int r) {
+        return l == r && l > Integer.MIN_VALUE;
+    }
+
     @Override
     public boolean getBool(Record rec) {
-        int l = lhs.getInt(rec);
-        return l == rhs.getInt(rec) && l > Integer.MIN_VALUE;
+        return eval(lhs.getInt(rec), rhs.getInt(rec));
     }
 }
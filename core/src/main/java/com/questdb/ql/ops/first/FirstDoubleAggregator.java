@@ -49,4 +49,9 @@ public final class FirstDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, value.getDouble(rec));
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        // value of earlier rows stays
+    }
 }
@@ -49,4 +49,9 @@ public final class FirstIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, value.getInt(rec));
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        // value of earlier rows stays
+    }
 }
@@ -49,4 +49,9 @@ public final class FirstLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, value.getLong(rec));
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        // value of earlier rows stays
+    }
 }
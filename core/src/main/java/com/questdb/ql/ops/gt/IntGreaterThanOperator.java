@@ -42,9 +42,12 @@ public class IntGreaterThanOperator extends AbstractBinaryOperator {
         super(ColumnType.BOOLEAN);
     }
 
+    public static boolean eval(int l, int r) {
+        return l > r && r > Integer.MIN_VALUE;
+    }
+
     @Override
     public boolean getBool(Record rec) {
-        int r = rhs.getInt(rec);
-        return lhs.getInt(rec) > r && r > Integer.MIN_VALUE;
+        return eval(lhs.getInt(rec), rhs.getInt(rec));
     }
 }
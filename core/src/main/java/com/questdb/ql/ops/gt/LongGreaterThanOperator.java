@@ -42,9 +42,12 @@ public class LongGreaterThanOperator extends AbstractBinaryOperator {
         super(ColumnType.BOOLEAN);
     }
 
+    public static boolean eval(long l, long r) {
+        return l > r && r > Long.MIN_VALUE;
+    }
+
     @Override
     public boolean getBool(Record rec) {
-        long r = rhs.getLong(rec);
-        return lhs.getLong(rec) > r && r > Long.MIN_VALUE;
+        return eval(lhs.getLong(rec), rhs.getLong(rec));
     }
 }
@@ -42,9 +42,12 @@ public class LongLessThanOperator extends AbstractBinaryOperator {
         super(ColumnType.BOOLEAN);
     }
 
+    public static boolean eval(long l, long r) {
+        return l < r && l > Long.MIN_VALUE;
+    }
+
     @Override
     public boolean getBool(Record rec) {
-        long l = lhs.getLong(rec);
-        return l < rhs.getLong(rec) && l > Long.MIN_VALUE;
+        return eval(lhs.getLong(rec), rhs.getLong(rec));
     }
 }
@@ -50,4 +50,12 @@ public final class MaxDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        double v = partial.getDouble(valueIndex);
+        if (v > values.getDouble(valueIndex)) {
+            values.putDouble(valueIndex, v);
+        }
+    }
 }
@@ -49,4 +49,12 @@ public final class MaxIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        int v = partial.getInt(valueIndex);
+        if (v > values.getInt(valueIndex)) {
+            values.putInt(valueIndex, v);
+        }
+    }
 }
@@ -49,4 +49,12 @@ public final class MinDateAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, v);
         }
     }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        long v = partial.getLong(valueIndex);
+        if (v < values.getLong(valueIndex)) {
+            values.putLong(valueIndex, v);
+        }
+    }
 }
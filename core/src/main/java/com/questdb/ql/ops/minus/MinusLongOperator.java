@@ -42,6 +42,10 @@ public class MinusLongOperator extends AbstractBinaryOperator {
         super(ColumnType.LONG);
     }
 
+    public static long eval(long l, long r) {
+        return l > Long.MIN_VALUE && r > Long.MIN_VALUE ? l - r : Long.MIN_VALUE;
+    }
+
     @Override
     public double getDouble(Record rec) {
         long l = lhs.getLong(rec);
@@ -51,8 +55,6 @@ public class MinusLongOperator extends AbstractBinaryOperator {
 
     @Override
     public long getLong(Record rec) {
-        long l = lhs.getLong(rec);
-        long r = rhs.getLong(rec);
-        return l > Long.MIN_VALUE && r > Long.MIN_VALUE ? l - r : Long.MIN_VALUE;
+        return eval(lhs.getLong(rec), rhs.getLong(rec));
     }
 }
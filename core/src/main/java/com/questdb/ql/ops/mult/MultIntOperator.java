@@ -42,6 +42,10 @@ public class MultIntOperator extends AbstractBinaryOperator {
         super(ColumnType.INT);
     }
 
+    public static int eval(int l, int r) {
+        return l > Integer.MIN_VALUE && r > Integer.MIN_VALUE ? l * r : Integer.MIN_VALUE;
+    }
+
     @Override
     public double getDouble(Record rec) {
         int l = lhs.getInt(rec);
@@ -58,9 +62,7 @@ public class MultIntOperator extends AbstractBinaryOperator {
 
     @Override
     public int getInt(Record rec) {
-        int l = lhs.getInt(rec);
-        int r = rhs.getInt(rec);
-        return l > Integer.MIN_VALUE && r > Integer.MIN_VALUE ? l * r : Integer.MIN_VALUE;
+        return eval(lhs.getInt(rec), rhs.getInt(rec));
     }
 
     @Override
@@ -23,14 +23,17 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
 import com.questdb.std.ObjectFactory;
 import com.questdb.store.ColumnType;
 
-public final class SumDoubleAggregator extends AbstractUnaryAggregator {
+public final class SumDoubleAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -51,4 +54,32 @@ public final class SumDoubleAggregator extends AbstractUnaryAggregator {
             values.putDouble(valueIndex, values.getDouble(valueIndex) + value.getDouble(rec));
         }
     }
+
+    @Override
+    public void calculate(long address, int count, DirectMapValues values) {
+        double sum;
+        long p = address;
+        long lim = address + ((long) count << 3);
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getDouble(p);
+            p += 8;
+        } else {
+            sum = values.getDouble(valueIndex);
+        }
+
+        for (; p < lim; p += 8) {
+            sum += Unsafe.getUnsafe().getDouble(p);
+        }
+        values.putDouble(valueIndex, sum);
+    }
+
+    @Override
+    public int getBatchColumn() {
+        return value instanceof DoubleRecordSourceColumn ? ((DoubleRecordSourceColumn) value).getIndex() : NOT_BATCHED;
+    }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putDouble(valueIndex, values.getDouble(valueIndex) + partial.getDouble(valueIndex));
+    }
 }
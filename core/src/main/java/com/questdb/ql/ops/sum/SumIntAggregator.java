@@ -23,14 +23,17 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
+import com.questdb.ql.ops.col.IntRecordSourceColumn;
 import com.questdb.std.ObjectFactory;
 import com.questdb.store.ColumnType;
 
-public final class SumIntAggregator extends AbstractUnaryAggregator {
+public final class SumIntAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
         public Function newInstance() {
@@ -50,4 +53,32 @@ public final class SumIntAggregator extends AbstractUnaryAggregator {
             values.putInt(valueIndex, values.getInt(valueIndex) + value.getInt(rec));
         }
     }
+
+    @Override
+    public void calculate(long address, int count, DirectMapValues values) {
+        int sum;
+        long p = address;
+        long lim = address + ((long) count << 2);
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getInt(p);
+            p += 4;
+        } else {
+            sum = values.getInt(valueIndex);
+        }
+
+        for (; p < lim; p += 4) {
+            sum += Unsafe.getUnsafe().getInt(p);
+        }
+        values.putInt(valueIndex, sum);
+    }
+
+    @Override
+    public int getBatchColumn() {
+        return value instanceof IntRecordSourceColumn ? ((IntRecordSourceColumn) value).getIndex() : NOT_BATCHED;
+    }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putInt(valueIndex, values.getInt(valueIndex) + partial.getInt(valueIndex));
+    }
 }
@@ -23,14 +23,17 @@
 
 package com.questdb.ql.ops.sum;
 
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.BatchAggregatorFunction;
 import com.questdb.ql.Record;
 import com.questdb.ql.impl.map.DirectMapValues;
 import com.questdb.ql.ops.AbstractUnaryAggregator;
 import com.questdb.ql.ops.Function;
+import com.questdb.ql.ops.col.LongRecordSourceColumn;
 import com.questdb.std.ObjectFactory;
 import com.questdb.store.ColumnType;
 
-public final class SumLongAggregator extends AbstractUnaryAggregator {
+public final class SumLongAggregator extends AbstractUnaryAggregator implements BatchAggregatorFunction {
 
     public static final ObjectFactory<Function> FACTORY = new ObjectFactory<Function>() {
         @Override
@@ -51,4 +54,32 @@ public final class SumLongAggregator extends AbstractUnaryAggregator {
             values.putLong(valueIndex, values.getLong(valueIndex) + value.getLong(rec));
         }
     }
+
+    @Override
+    public void calculate(long address, int count, DirectMapValues values) {
+        long sum;
+        long p = address;
+        long lim = address + ((long) count << 3);
+        if (values.isNew()) {
+            sum = Unsafe.getUnsafe().getLong(p);
+            p += 8;
+        } else {
+            sum = values.getLong(valueIndex);
+        }
+
+        for (; p < lim; p += 8) {
+            sum += Unsafe.getUnsafe().getLong(p);
+        }
+        values.putLong(valueIndex, sum);
+    }
+
+    @Override
+    public int getBatchColumn() {
+        return value instanceof LongRecordSourceColumn ? ((LongRecordSourceColumn) value).getIndex() : NOT_BATCHED;
+    }
+
+    @Override
+    public void merge(DirectMapValues values, DirectMapValues partial) {
+        values.putLong(valueIndex, values.getLong(valueIndex) + partial.getLong(valueIndex));
+    }
 }
@@ -33,6 +33,7 @@ import com.questdb.factory.configuration.RecordColumnMetadata;
 import com.questdb.factory.configuration.RecordMetadata;
 import com.questdb.io.sink.StringSink;
 import com.questdb.misc.*;
+import com.questdb.mp.WorkerPool;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.ql.AggregatorFunction;
 import com.questdb.ql.PartitionSource;
@@ -47,13 +48,19 @@ import com.questdb.ql.impl.interval.SingleIntervalSource;
 import com.questdb.ql.impl.join.AsOfJoinRecordSource;
 import com.questdb.ql.impl.join.AsOfPartitionedJoinRecordSource;
 import com.questdb.ql.impl.join.CrossJoinRecordSource;
+import com.questdb.ql.impl.join.GraceHashJoinRecordSource;
 import com.questdb.ql.impl.join.HashJoinRecordSource;
+import com.questdb.ql.impl.join.MergeJoinRecordSource;
+import com.questdb.ql.impl.join.ParallelHashJoinRecordSource;
 import com.questdb.ql.impl.lambda.*;
 import com.questdb.ql.impl.latest.*;
 import com.questdb.ql.impl.select.SelectedColumnsRecordSource;
 import com.questdb.ql.impl.sort.ComparatorCompiler;
+import com.questdb.ql.impl.sort.ExternalSortedRecordSource;
 import com.questdb.ql.impl.sort.RBTreeSortedRecordSource;
 import com.questdb.ql.impl.sort.RecordComparator;
+import com.questdb.ql.impl.sort.TopNSortedRecordSource;
+import com.questdb.ql.impl.virtual.VirtualColumnCompiler;
 import com.questdb.ql.impl.virtual.VirtualColumnRecordSource;
 import com.questdb.ql.model.*;
 import com.questdb.ql.ops.FunctionFactories;
@@ -63,6 +70,7 @@ import com.questdb.ql.ops.VirtualColumn;
 import com.questdb.ql.ops.constant.LongConstant;
 import com.questdb.std.*;
 import com.questdb.store.ColumnType;
+import com.questdb.store.IndexType;
 
 import java.util.ArrayDeque;
 
@@ -87,6 +95,7 @@ public class QueryCompiler {
     private final ObjectPool<JoinContext> contextPool = new ObjectPool<>(JoinContext.FACTORY, 16);
     private final PostOrderTreeTraversalAlgo traversalAlgo = new PostOrderTreeTraversalAlgo();
     private final VirtualColumnBuilder virtualColumnBuilder = new VirtualColumnBuilder(traversalAlgo);
+    private final VirtualColumnCompiler virtualColumnCompiler = new VirtualColumnCompiler();
     private final IntList clausesToSteal = new IntList();
     private final IntList literalCollectorAIndexes = new IntList();
     private final ObjList<CharSequence> literalCollectorANames = new ObjList<>();
@@ -122,17 +131,28 @@ public class QueryCompiler {
     private final ComparatorCompiler cc = new ComparatorCompiler();
     private final LiteralMatcher literalMatcher = new LiteralMatcher(traversalAlgo);
     private final ServerConfiguration configuration;
+    private final WorkerPool workerPool;
     private final ObjObjHashMap<IntList, ObjList<AnalyticFunction>> grouppedAnalytic = new ObjObjHashMap<>();
     private ObjList<JoinContext> emittedJoinClauses;
     private int aggregateColumnSequence;
+    private long timestampLo = Long.MIN_VALUE;
 
     public QueryCompiler() {
         this(new ServerConfiguration());
     }
 
     public QueryCompiler(ServerConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    /**
+     * @param configuration query settings
+     * @param workerPool    threads for parallel query plans, which are not used when pool is null
+     */
+    public QueryCompiler(ServerConfiguration configuration, WorkerPool workerPool) {
         // seed column name assembly with default column prefix, which we will reuse
         this.configuration = configuration;
+        this.workerPool = workerPool;
         columnNameAssembly.put("col");
         columnNamePrefixLen = 3;
     }
@@ -147,6 +167,26 @@ public class QueryCompiler {
         return rs;
     }
 
+    /**
+     * Compiles query that reads only rows with timestamp greater or equal to timestampLo. Lower bound
+     * applies to every journal query reads, it is intended for incremental evaluation of single
+     * journal queries, such as maintenance of materialized views.
+     *
+     * @param factory     reader factory
+     * @param query       query text
+     * @param timestampLo lowest timestamp of rows to read, Long.MIN_VALUE reads all rows
+     * @return record source
+     * @throws ParserException when query is invalid
+     */
+    public RecordSource compile(JournalReaderFactory factory, CharSequence query, long timestampLo) throws ParserException {
+        this.timestampLo = timestampLo;
+        try {
+            return compile(factory, query);
+        } finally {
+            this.timestampLo = Long.MIN_VALUE;
+        }
+    }
+
     public void execute(JournalFactory factory, CharSequence statement) throws ParserException, JournalException {
 
         clearState();
@@ -489,7 +529,19 @@ public class QueryCompiler {
         }
     }
 
-    private RowSource buildRowSourceForSym(IntrinsicModel im) {
+    private RowSource buildRowSourceForSym(IntrinsicModel im, JournalMetadata metadata) {
+        if (metadata.getColumnQuick(metadata.getColumnIndex(im.keyColumn)).indexType == IndexType.BITMAP) {
+            BitmapIndexSymLookupRowSource rs = new BitmapIndexSymLookupRowSource(im.keyColumn, im.keyValues);
+            // other columns with bitmap index narrow rows down before filter sees them
+            for (int i = 0, n = im.keyTerms.size(); i < n; i++) {
+                KeyTerm t = im.keyTerms.getQuick(i);
+                if (!t.column.equals(im.keyColumn) && metadata.getColumnQuick(metadata.getColumnIndex(t.column)).indexType == IndexType.BITMAP) {
+                    rs.and(t.column, t.values);
+                }
+            }
+            return rs;
+        }
+
         int nSrc = im.keyValues.size();
         switch (nSrc) {
             case 1:
@@ -551,7 +603,7 @@ public class QueryCompiler {
 
         RecordSource out;
         if (sampleBy == null) {
-            out = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage());
+            out = new AggregatedRecordSource(rs, groupKeyColumns, af, configuration.getDbAggregatePage(), parallelWorkers(configuration.getDbAggregateWorkers()), workerPool);
         } else {
             TimestampSampler sampler = SamplerFactory.from(sampleBy.token);
             if (sampler == null) {
@@ -563,7 +615,9 @@ public class QueryCompiler {
                     groupKeyColumns,
                     af,
                     sampler,
-                    configuration.getDbAggregatePage());
+                    configuration.getDbAggregatePage(),
+                    parallelWorkers(configuration.getDbAggregateWorkers()),
+                    workerPool);
         }
         return out;
     }
@@ -688,6 +742,7 @@ public class QueryCompiler {
         ObjList<QueryModel> joinModels = model.getJoinModels();
         IntList ordered = model.getOrderedJoinModels();
         RecordSource master = null;
+        boolean timeOrdered = false;
 
         boolean needColumnNameHistogram = model.getColumns().size() > 0;
 
@@ -715,6 +770,8 @@ public class QueryCompiler {
             // check if this is the root of joins
             if (master == null) {
                 master = slave;
+                // all joins below preserve order of master rows
+                timeOrdered = isTimeOrdered(m);
             } else {
                 // not the root, join to "master"
                 switch (m.getJoinType()) {
@@ -726,7 +783,11 @@ public class QueryCompiler {
                         master = createAsOfJoin(model.getTimestamp(), m, master, slave);
                         break;
                     default:
-                        master = createHashJoin(m, master, slave);
+                        master = createHashJoin(m, master, slave, timeOrdered && isTimeOrdered(m));
+                        if (master instanceof GraceHashJoinRecordSource) {
+                            // spilled buckets are joined one after another, master order is lost
+                            timeOrdered = false;
+                        }
                         break;
                 }
             }
@@ -734,7 +795,7 @@ public class QueryCompiler {
             // check if there are post-filters
             ExprNode filter = m.getPostJoinWhereClause();
             if (filter != null) {
-                master = new FilteredJournalRecordSource(master, virtualColumnBuilder.createVirtualColumn(model, filter, master.getMetadata()), filter);
+                master = new FilteredJournalRecordSource(master, virtualColumnCompiler.compile(virtualColumnBuilder.createVirtualColumn(model, filter, master.getMetadata())), filter);
             }
         }
 
@@ -821,6 +882,8 @@ public class QueryCompiler {
                     } else {
                         im.intrinsicValue = IntrinsicValue.FALSE;
                     }
+                } else {
+                    filter = virtualColumnCompiler.compile(filter);
                 }
             }
 
@@ -828,6 +891,11 @@ public class QueryCompiler {
                 ps = new NoOpJournalPartitionSource(journalMetadata);
             } else {
 
+                if (latestByCol == null && im.columnRanges.size() > 0) {
+                    // statistics decide which partitions are worth opening
+                    ps = new StatsPartitionSource(new JournalPartitionSource(journalMetadata, false), im.columnRanges);
+                }
+
                 if (im.intervalHi < Long.MAX_VALUE || im.intervalLo > Long.MIN_VALUE) {
 
                     ps = new MultiIntervalPartitionSource(ps,
@@ -846,7 +914,7 @@ public class QueryCompiler {
                     if (im.keyColumn != null) {
                         switch (journalMetadata.getColumn(im.keyColumn).getType()) {
                             case ColumnType.SYMBOL:
-                                rs = buildRowSourceForSym(im);
+                                rs = buildRowSourceForSym(im, journalMetadata);
                                 break;
                             case ColumnType.STRING:
                                 rs = buildRowSourceForStr(im);
@@ -899,7 +967,7 @@ public class QueryCompiler {
                                 if (im.keyColumn != null) {
                                     rs = new KvIndexSymListHeadRowSource(latestByCol, new CharSequenceHashSet(im.keyValues), filter);
                                 } else {
-                                    rs = new KvIndexSymAllHeadRowSource(latestByCol, filter);
+                                    rs = newSymAllHeadRowSource(latestByCol, filter);
                                 }
                                 break;
                             case ColumnType.STRING:
@@ -927,7 +995,7 @@ public class QueryCompiler {
         } else if (latestByCol != null) {
             switch (latestByMetadata.getType()) {
                 case ColumnType.SYMBOL:
-                    rs = new KvIndexSymAllHeadRowSource(latestByCol, null);
+                    rs = newSymAllHeadRowSource(latestByCol, null);
                     break;
                 default:
                     Misc.free(rs);
@@ -935,6 +1003,10 @@ public class QueryCompiler {
             }
         }
 
+        if (timestampLo > Long.MIN_VALUE) {
+            ps = new MultiIntervalPartitionSource(ps, new SingleIntervalSource(new Interval(timestampLo, Long.MAX_VALUE)));
+        }
+
         // check for case of simple "select count() from tab"
         if (rs == null && model.getColumns().size() == 1) {
             QueryColumn qc = model.getColumns().getQuick(0);
@@ -980,7 +1052,7 @@ public class QueryCompiler {
             QueryColumn qc = outerVirtualColumns.get(i);
             VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), rs.getMetadata());
             vc.setName(qc.getAlias());
-            outer.add(vc);
+            outer.add(virtualColumnCompiler.compile(vc));
         }
         return new VirtualColumnRecordSource(rs, outer);
     }
@@ -1022,7 +1094,7 @@ public class QueryCompiler {
                     return new NoOpJournalRecordSource(rs);
                 }
             }
-            return new FilteredJournalRecordSource(rs, vc, im.filter);
+            return new FilteredJournalRecordSource(rs, virtualColumnCompiler.compile(vc), im.filter);
         } else {
             return rs;
         }
@@ -1089,7 +1161,7 @@ public class QueryCompiler {
         }
     }
 
-    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave) throws ParserException {
+    private RecordSource createHashJoin(QueryModel model, RecordSource master, RecordSource slave, boolean timeOrdered) throws ParserException {
         JoinContext jc = model.getContext();
         RecordMetadata bm = master.getMetadata();
         RecordMetadata am = slave.getMetadata();
@@ -1120,6 +1192,54 @@ public class QueryCompiler {
             masterColIndices.add(ib);
             slaveColIndices.add(ia);
         }
+
+        // both sides are read in timestamp order and timestamps are
+        // part of join key, rows can be matched without hash table
+        if (timeOrdered && slave.supportsRowIdAccess()) {
+            int mts = bm.getTimestampIndex();
+            int sts = am.getTimestampIndex();
+            for (int k = 0, kn = masterColIndices.size(); k < kn; k++) {
+                if (mts > -1 && masterColIndices.getQuick(k) == mts && slaveColIndices.getQuick(k) == sts) {
+                    masterColIndices.removeIndex(k);
+                    slaveColIndices.removeIndex(k);
+                    return new MergeJoinRecordSource(master,
+                            mts,
+                            masterColIndices,
+                            slave,
+                            sts,
+                            slaveColIndices,
+                            model.getJoinType() == QueryModel.JOIN_OUTER
+                    );
+                }
+            }
+        }
+
+        if (configuration.getDbHashBudget() > 0) {
+            return new GraceHashJoinRecordSource(master,
+                    masterColIndices,
+                    slave,
+                    slaveColIndices,
+                    model.getJoinType() == QueryModel.JOIN_OUTER,
+                    configuration.getDbHashKeyPage(),
+                    configuration.getDbHashDataPage(),
+                    configuration.getDbHashRowPage(),
+                    configuration.getDbHashBudget()
+            );
+        }
+
+        if (parallelWorkers(configuration.getDbHashWorkers()) > 1 && isJournalScan(master) && isJournalScan(slave)) {
+            return new ParallelHashJoinRecordSource((JournalRecordSource) master,
+                    masterColIndices,
+                    (JournalRecordSource) slave,
+                    slaveColIndices,
+                    model.getJoinType() == QueryModel.JOIN_OUTER,
+                    configuration.getDbHashKeyPage(),
+                    configuration.getDbHashRowPage(),
+                    configuration.getDbHashWorkers(),
+                    workerPool
+            );
+        }
+
         return new HashJoinRecordSource(master,
                 masterColIndices,
                 slave,
@@ -1293,6 +1413,21 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Unfiltered journal scans can be split between threads by partition rows.
+     */
+    private boolean isJournalScan(RecordSource rs) {
+        return rs instanceof JournalRecordSource && ((JournalRecordSource) rs).supportsBatches();
+    }
+
+    /**
+     * Journal models without "latest by" are read in order of designated timestamp.
+     * Sub-queries can re-order rows and are treated as unordered.
+     */
+    private boolean isTimeOrdered(QueryModel model) {
+        return model.getRecordSource() == null && model.getLatestBy() == null;
+    }
+
     private boolean joinModelIsFalse(QueryModel model) throws ParserException {
         ExprNode current = null;
         IntHashSet constants = model.getParsedWhereConsts();
@@ -1649,16 +1784,37 @@ public class QueryCompiler {
         }
     }
 
+    private RowSource newSymAllHeadRowSource(String latestByCol, VirtualColumn filter) {
+        // filters are not thread safe, filtered lookup stays on query thread
+        if (filter == null && parallelWorkers(configuration.getDbLatestWorkers()) > 1) {
+            return new ParallelKvIndexSymAllHeadRowSource(latestByCol, configuration.getDbLatestWorkers(), workerPool);
+        }
+        return new KvIndexSymAllHeadRowSource(latestByCol, filter);
+    }
+
     private RecordSource order(RecordSource rs, QueryModel model) throws ParserException {
         ObjList<ExprNode> orderBy = model.getOrderBy();
         if (orderBy.size() > 0) {
             try {
                 RecordMetadata m = rs.getMetadata();
+                IntList indices = toOrderIndices(m, orderBy, model.getOrderByDirection());
+                RecordComparator comparator = cc.compile(m, indices);
+                VirtualColumn hi = model.getLimitHiVc();
+                // constant limit means only first "hi" rows of sort order are ever read,
+                // there is no need to sort the rest
+                if (hi instanceof LongConstant && hi.getLong(null) > 0) {
+                    return new TopNSortedRecordSource(rs, comparator, hi.getLong(null), configuration.getDbSortDataPage());
+                }
+
+                if (configuration.getDbSortRunSize() > 0) {
+                    return new ExternalSortedRecordSource(rs,
+                            comparator,
+                            indices,
+                            configuration.getDbSortDataPage(),
+                            configuration.getDbSortRunSize());
+                }
                 return new RBTreeSortedRecordSource(rs,
-                        cc.compile(
-                                m,
-                                toOrderIndices(m, orderBy, model.getOrderByDirection())
-                        ),
+                        comparator,
                         configuration.getDbSortKeyPage(),
                         configuration.getDbSortDataPage());
             } catch (ParserException e) {
@@ -1670,6 +1826,13 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Parallel plans need worker pool, without one query runs on its thread alone.
+     */
+    private int parallelWorkers(int workers) {
+        return workerPool == null ? 1 : workers;
+    }
+
     // todo: remove
     CharSequence plan(JournalReaderFactory factory, CharSequence query) throws ParserException {
         QueryModel model = parser.parse(query).getQueryModel();
@@ -2058,7 +2221,7 @@ public class QueryCompiler {
 
                     VirtualColumn vc = virtualColumnBuilder.createVirtualColumn(model, qc.getAst(), recordSource.getMetadata());
                     vc.setName(qc.getAlias());
-                    virtualColumns.add(vc);
+                    virtualColumns.add(virtualColumnCompiler.compile(vc));
                     groupKeyColumns.add(qc.getAlias());
                 }
             }
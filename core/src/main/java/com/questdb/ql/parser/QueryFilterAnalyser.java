@@ -34,10 +34,13 @@ import com.questdb.misc.Numbers;
 import com.questdb.ql.impl.interval.MillisIntervalSource;
 import com.questdb.ql.impl.interval.MonthsIntervalSource;
 import com.questdb.ql.impl.interval.YearIntervalSource;
+import com.questdb.ql.model.ColumnRange;
 import com.questdb.ql.model.ExprNode;
 import com.questdb.ql.model.IntrinsicModel;
 import com.questdb.ql.model.IntrinsicValue;
+import com.questdb.ql.model.KeyTerm;
 import com.questdb.std.*;
+import com.questdb.store.ColumnStats;
 import com.questdb.store.ColumnType;
 
 import java.util.ArrayDeque;
@@ -49,6 +52,8 @@ final class QueryFilterAnalyser {
     private final ObjList<ExprNode> keyNodes = new ObjList<>();
     private final ObjList<ExprNode> timestampNodes = new ObjList<>();
     private final ObjectPool<IntrinsicModel> models = new ObjectPool<>(IntrinsicModel.FACTORY, 8);
+    private final ObjectPool<ColumnRange> columnRanges = new ObjectPool<>(ColumnRange.FACTORY, 8);
+    private final ObjectPool<KeyTerm> keyTerms = new ObjectPool<>(KeyTerm.FACTORY, 8);
     private final CharSequenceHashSet tempKeys = new CharSequenceHashSet();
     private final IntList tempPos = new IntList();
     private final CharSequenceHashSet tempK = new CharSequenceHashSet();
@@ -278,6 +283,71 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    /**
+     * Collects values indexed symbol column is compared to with "=" or "in". Comparison stays in filter,
+     * term only allows intersecting bitmap indexes of several columns.
+     */
+    private void analyzeKeyTerm(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (node.paramCount < 2) {
+            return;
+        }
+
+        ExprNode col;
+        KeyTerm term;
+        if ("=".equals(node.token)) {
+            ExprNode val;
+            if (node.lhs == null || node.rhs == null) {
+                return;
+            }
+
+            if (node.lhs.type == ExprNode.LITERAL && node.rhs.type == ExprNode.CONSTANT) {
+                col = node.lhs;
+                val = node.rhs;
+            } else if (node.rhs.type == ExprNode.LITERAL && node.lhs.type == ExprNode.CONSTANT) {
+                col = node.rhs;
+                val = node.lhs;
+            } else {
+                return;
+            }
+
+            if (!isIndexedSymbol(col, m)) {
+                return;
+            }
+            term = keyTerms.next();
+            term.clear();
+            term.values.add(Chars.equals("null", val.token) ? null : Chars.stripQuotes(val.token));
+        } else {
+            col = node.paramCount < 3 ? node.lhs : node.args.getLast();
+            if (!isIndexedSymbol(col, m)) {
+                return;
+            }
+
+            if (node.paramCount == 2) {
+                if (node.rhs == null || node.rhs.type != ExprNode.CONSTANT) {
+                    return;
+                }
+            } else {
+                for (int i = 0, n = node.paramCount - 1; i < n; i++) {
+                    if (node.args.getQuick(i).type != ExprNode.CONSTANT) {
+                        return;
+                    }
+                }
+            }
+
+            term = keyTerms.next();
+            term.clear();
+            if (node.paramCount == 2) {
+                term.values.add(Chars.stripQuotes(node.rhs.token));
+            } else {
+                for (int i = 0, n = node.paramCount - 1; i < n; i++) {
+                    term.values.add(Chars.stripQuotes(node.args.getQuick(i).token));
+                }
+            }
+        }
+        term.column = col.token;
+        model.keyTerms.add(term);
+    }
+
     private boolean analyzeLess(IntrinsicModel model, ExprNode node, int inc) throws ParserException {
         if (timestamp == null) {
             return false;
@@ -385,6 +455,125 @@ final class QueryFilterAnalyser {
         return false;
     }
 
+    /**
+     * Collects value range of numeric column compared to constant. Comparison stays in filter,
+     * range only allows skipping partitions and row blocks by column statistics. Constant has to be
+     * of the same type as column to make sure null values are excluded from comparison.
+     */
+    private void analyzeRange(IntrinsicModel model, ExprNode node, RecordMetadata m) {
+        if (node.paramCount != 2 || node.lhs == null || node.rhs == null) {
+            return;
+        }
+
+        ExprNode col;
+        ExprNode val;
+        boolean flip;
+
+        if (node.lhs.type == ExprNode.LITERAL && node.rhs.type == ExprNode.CONSTANT) {
+            col = node.lhs;
+            val = node.rhs;
+            flip = false;
+        } else if (node.rhs.type == ExprNode.LITERAL && node.lhs.type == ExprNode.CONSTANT) {
+            col = node.rhs;
+            val = node.lhs;
+            flip = true;
+        } else {
+            return;
+        }
+
+        int index;
+        if (isTimestamp(col) || (index = m.getColumnIndexQuiet(col.token)) == -1) {
+            return;
+        }
+
+        int type = m.getColumnQuick(index).getType();
+        if (!ColumnStats.isSupported(type)) {
+            return;
+        }
+
+        // operator as if column was on the left
+        String op = node.token;
+        if (flip) {
+            switch (op) {
+                case ">":
+                    op = "<";
+                    break;
+                case ">=":
+                    op = "<=";
+                    break;
+                case "<":
+                    op = ">";
+                    break;
+                case "<=":
+                    op = ">=";
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        ColumnRange range;
+        try {
+            switch (type) {
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    double d = Numbers.parseDouble(val.token);
+                    if (d != d) {
+                        return;
+                    }
+                    range = columnRanges.next();
+                    range.clear();
+                    // strict comparisons are widened to inclusive, which is safe for pruning
+                    switch (op) {
+                        case ">":
+                        case ">=":
+                            range.doubleLo = d;
+                            break;
+                        case "<":
+                        case "<=":
+                            range.doubleHi = d;
+                            break;
+                        default:
+                            range.doubleLo = range.doubleHi = d;
+                            break;
+                    }
+                    break;
+                default:
+                    long v = type == ColumnType.INT ? Numbers.parseInt(val.token) : Numbers.parseLong(val.token);
+                    if (v == Numbers.LONG_NaN || v == Numbers.INT_NaN && type == ColumnType.INT
+                            || v == Long.MAX_VALUE && ">".equals(op)) {
+                        return;
+                    }
+                    range = columnRanges.next();
+                    range.clear();
+                    switch (op) {
+                        case ">":
+                            range.lo = v + 1;
+                            break;
+                        case ">=":
+                            range.lo = v;
+                            break;
+                        case "<":
+                            range.hi = v - 1;
+                            break;
+                        case "<=":
+                            range.hi = v;
+                            break;
+                        default:
+                            range.lo = range.hi = v;
+                            break;
+                    }
+                    break;
+            }
+        } catch (NumericException e) {
+            return;
+        }
+
+        range.columnIndex = index;
+        range.columnType = type;
+        model.columnRanges.add(range);
+    }
+
     private ExprNode collapseIntrinsicNodes(ExprNode node) {
         if (node == null || node.intrinsicValue == IntrinsicValue.TRUE) {
             return null;
@@ -448,6 +637,15 @@ final class QueryFilterAnalyser {
         return model;
     }
 
+    private boolean isIndexedSymbol(ExprNode col, RecordMetadata m) {
+        int index;
+        if (col == null || col.type != ExprNode.LITERAL || isTimestamp(col) || (index = m.getColumnIndexQuiet(col.token)) == -1) {
+            return false;
+        }
+        RecordColumnMetadata meta = m.getColumnQuick(index);
+        return meta.getType() == ColumnType.SYMBOL && meta.isIndexed();
+    }
+
     private boolean isTimestamp(ExprNode n) {
         return timestamp != null && timestamp.equals(n.token);
     }
@@ -580,22 +778,36 @@ final class QueryFilterAnalyser {
             return true;
         }
 
+        boolean intrinsic;
         switch (node.token) {
             case "in":
-                return analyzeIn(model, node, m);
+                intrinsic = analyzeIn(model, node, m);
+                analyzeKeyTerm(model, node, m);
+                return intrinsic;
             case ">":
-                return analyzeGreater(model, node, 1);
+                intrinsic = analyzeGreater(model, node, 1);
+                break;
             case ">=":
-                return analyzeGreater(model, node, 0);
+                intrinsic = analyzeGreater(model, node, 0);
+                break;
             case "<":
-                return analyzeLess(model, node, 1);
+                intrinsic = analyzeLess(model, node, 1);
+                break;
             case "<=":
-                return analyzeLess(model, node, 0);
+                intrinsic = analyzeLess(model, node, 0);
+                break;
             case "=":
-                return analyzeEquals(model, node, m);
+                intrinsic = analyzeEquals(model, node, m);
+                analyzeKeyTerm(model, node, m);
+                break;
             default:
                 return false;
         }
+
+        if (!intrinsic) {
+            analyzeRange(model, node, m);
+        }
+        return intrinsic;
     }
 
     private void replaceAllWithOverlap(IntrinsicModel model) {
@@ -619,5 +831,7 @@ final class QueryFilterAnalyser {
 
     void reset() {
         this.models.clear();
+        this.columnRanges.clear();
+        this.keyTerms.clear();
     }
 }
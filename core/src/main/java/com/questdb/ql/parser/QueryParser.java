@@ -601,6 +601,13 @@ public final class QueryParser {
         expectTok(tok, "index");
         builder.index();
 
+        if (isFieldTerm(tok = tok())) {
+            return tok;
+        }
+
+        expectTok(tok, "bitmap");
+        builder.bitmapIndex();
+
         return null;
     }
 
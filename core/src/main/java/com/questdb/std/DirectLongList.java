@@ -159,12 +159,15 @@ public class DirectLongList extends DirectMemoryStructure implements Mutable {
     }
 
     private void extend(long capacity) {
-        long address = Unsafe.malloc(this.capacity = ((capacity << pow2) + CACHE_LINE_SIZE));
+        long size = (capacity << pow2) + CACHE_LINE_SIZE;
+        long address = Unsafe.malloc(size);
         long start = address + (address & (CACHE_LINE_SIZE - 1));
         Unsafe.getUnsafe().copyMemory(this.start, start, limit + onePow2 - this.start);
         if (this.address != 0) {
+            // old block has to be released with its own size to keep allocation counter accurate
             Unsafe.free(this.address, this.capacity);
         }
+        this.capacity = size;
         this.pos = this.pos - this.start + start;
         this.limit = start + ((capacity - 1) << pow2);
         this.address = address;
@@ -82,6 +82,13 @@ public class MemoryPages implements Closeable, Mutable {
         return pageSize;
     }
 
+    /**
+     * Number of bytes allocated since last clear.
+     */
+    public long size() {
+        return cachePageLo;
+    }
+
     private void allocate0(long index) {
         if (index > Integer.MAX_VALUE) {
             throw new OutOfMemoryError();
@@ -24,6 +24,8 @@
 package com.questdb.store;
 
 import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Unsafe;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
@@ -76,4 +78,30 @@ public abstract class AbstractColumn implements Closeable {
     }
 
     public abstract void truncate(long size);
+
+    /**
+     * Copies region of data of another column to the end of this column. Copy is done page by page
+     * of both columns and has to be committed by caller.
+     *
+     * @param that   column to copy from
+     * @param offset offset of region in column to copy from
+     * @param len    length of region
+     */
+    void appendBytes(AbstractColumn that, long offset, long len) {
+        long appendOffset = mappedFile.getAppendOffset();
+        long target = appendOffset + len;
+        long dst = appendOffset;
+        while (dst < target) {
+            long from = that.mappedFile.addressOf(offset, 1);
+            long to = mappedFile.addressOf(dst, 1);
+            long n = Math.min(Math.min(that.mappedFile.pageRemaining(offset), mappedFile.pageRemaining(dst)), target - dst);
+            if (n < 1) {
+                throw new JournalRuntimeException("Internal error. Unable to allocateOffset disk block");
+            }
+            Unsafe.getUnsafe().copyMemory(from, to, n);
+            offset += n;
+            dst += n;
+        }
+        preCommit(target);
+    }
 }
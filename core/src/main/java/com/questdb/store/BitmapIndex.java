@@ -0,0 +1,767 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Files;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.LongList;
+
+import java.io.File;
+
+/**
+ * Index of row IDs by key, which keeps values as compressed bitmaps. Values of key are split into containers
+ * of 64K consecutive row IDs. Container is either sorted array of 16-bit offsets or, when there are more than
+ * 4096 values in container, a plain 8K bitmap. Index of column with few distinct values therefore takes
+ * at most two bytes per row, where KVIndex takes eight.
+ * <p>
+ * Transactions work the same way they do in KVIndex. Key block is copied for each transaction and readers
+ * stay on the copy they were given. Containers readers can see are only ever appended to past cardinality
+ * reader knows of. Array container, which ran out of capacity, is copied to new location, so that readers
+ * of older transactions carry on reading the old copy.
+ * <p>
+ * Values of each key must be added in ascending order, which is how partition assigns row IDs.
+ */
+public class BitmapIndex implements ColumnIndex {
+
+    /*
+        key file has the same structure as in KVIndex, except for key entry
+        struct kdata {
+            long arrayCapacity
+            long txAddress
+            struct txBlock {
+                long keyBlockSize
+                long maxValue
+                struct kdataEntry {
+                    long offsetOfTailContainer
+                    long valueCount
+                    int tailCardinality
+                    int containerCount
+                    long lastValue
+                }
+            }
+        }
+
+        data file is a sequence of containers, which belong to different keys
+        struct container {
+            long offsetOfPrevContainer
+            int chunk
+            int cardinality
+            int capacity // 0 for bitmap container
+            int reserved
+            short values[capacity] or long words[1024]
+        }
+    */
+
+    public static final String KEY_FILE_SUFFIX = ".bk";
+    public static final String DATA_FILE_SUFFIX = ".bd";
+    static final int CHUNK_BITS = 16;
+    static final int WORD_COUNT = 1 << (CHUNK_BITS - 6);
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int ENTRY_SIZE = 32;
+    private static final int HEADER_SIZE = 24;
+    private static final int BITMAP_SIZE = WORD_COUNT * 8;
+    // array container of this many values is as large as bitmap
+    private static final int MAX_ARRAY_CAPACITY = BITMAP_SIZE / 2;
+    private static final int MIN_ARRAY_CAPACITY = 16;
+    private static final long TX_ADDRESS_OFFSET = 8;
+    private final RevIndexCursor cachedCursor = new RevIndexCursor();
+    private final FwdIndexCursor fwdIndexCursor = new FwdIndexCursor();
+    private final FwdIndexCursor valuesCursor = new FwdIndexCursor();
+    private final int arrayCapacity;
+    private final MemoryFile kData;
+    private final MemoryFile rData;
+    private long firstEntryOffset;
+    private long keyBlockSize;
+    private long keyBlockSizeOffset;
+    private long maxValue;
+    private boolean startTx = true;
+
+    public BitmapIndex(File baseName, long keyCountHint, long recordCountHint, int txCountHint, int journalMode, long txAddress) throws JournalException {
+        int keyCount = (int) Math.min(Integer.MAX_VALUE, Math.max(keyCountHint, 1));
+        this.kData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + KEY_FILE_SUFFIX), ByteBuffers.getBitHint(8, keyCount * txCountHint), journalMode);
+
+        if (kData.getAppendOffset() > 0) {
+            this.arrayCapacity = (int) getLong(kData, 0);
+            this.keyBlockSizeOffset = txAddress == 0 ? getLong(kData, TX_ADDRESS_OFFSET) : txAddress;
+            this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+            this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+        } else if (journalMode == JournalMode.APPEND || journalMode == JournalMode.BULK_APPEND) {
+            // expected number of values key has in one container
+            long l = Math.min(recordCountHint, CHUNK_MASK + 1) / keyCount;
+            this.arrayCapacity = l < MIN_ARRAY_CAPACITY ? MIN_ARRAY_CAPACITY : l > MAX_ARRAY_CAPACITY ? MAX_ARRAY_CAPACITY : Numbers.ceilPow2((int) l);
+            this.keyBlockSizeOffset = 16;
+            this.keyBlockSize = 0;
+            this.maxValue = 0;
+            putLong(kData, 0, arrayCapacity);
+            putLong(kData, TX_ADDRESS_OFFSET, keyBlockSizeOffset);
+            putLong(kData, keyBlockSizeOffset, keyBlockSize);
+            putLong(kData, keyBlockSizeOffset + 8, maxValue);
+            kData.setAppendOffset(8 + 8 + 8 + 8);
+        } else {
+            this.kData.close();
+            throw new JournalException("Cannot open uninitialized index in read-only mode");
+        }
+
+        this.firstEntryOffset = keyBlockSizeOffset + 16;
+        try {
+            this.rData = new MemoryFile(new File(baseName.getParentFile(), baseName.getName() + DATA_FILE_SUFFIX), ByteBuffers.getBitHint(HEADER_SIZE + BITMAP_SIZE, keyCount), journalMode);
+        } catch (JournalException e) {
+            this.kData.close();
+            throw e;
+        }
+
+        // zero offset stands for "no container"
+        if (rData.getAppendOffset() == 0 && journalMode != JournalMode.READ && journalMode != JournalMode.BULK_READ) {
+            rData.setAppendOffset(8);
+        }
+    }
+
+    public static void delete(File base) {
+        Files.delete(new File(base.getParentFile(), base.getName() + KEY_FILE_SUFFIX));
+        Files.delete(new File(base.getParentFile(), base.getName() + DATA_FILE_SUFFIX));
+    }
+
+    /**
+     * Adds value to index. Values of key must be added in ascending order.
+     *
+     * @param key   value of key
+     * @param value value
+     */
+    @Override
+    public void add(int key, long value) {
+
+        if (startTx) {
+            tx();
+        }
+
+        long keyOffset = getKeyOffset(key);
+
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            long oldSize = keyBlockSize;
+            keyBlockSize = keyOffset + ENTRY_SIZE - firstEntryOffset;
+            // entries of keys we skipped over as well as entry of this key may hold random values
+            Unsafe.getUnsafe().setMemory(kData.addressOf(firstEntryOffset + oldSize, (int) (keyBlockSize - oldSize)), keyBlockSize - oldSize, (byte) 0);
+        }
+
+        long address = kData.addressOf(keyOffset, ENTRY_SIZE);
+        long tail = Unsafe.getUnsafe().getLong(address);
+        long count = Unsafe.getUnsafe().getLong(address + 8);
+        int cardinality = Unsafe.getUnsafe().getInt(address + 16);
+
+        if (count > 0 && value <= Unsafe.getUnsafe().getLong(address + 24)) {
+            throw new JournalRuntimeException("Values must be added in ascending order. Key: %d, value: %d", key, value);
+        }
+
+        int chunk = (int) (value >>> CHUNK_BITS);
+        if (tail == 0 || getInt(rData, tail + 8) != chunk) {
+            tail = allocateContainer(tail, chunk, arrayCapacity);
+            cardinality = 0;
+            Unsafe.getUnsafe().putInt(address + 20, Unsafe.getUnsafe().getInt(address + 20) + 1);
+        }
+
+        long container = containerAddress(tail);
+        int capacity = Unsafe.getUnsafe().getInt(container + 16);
+        if (capacity > 0 && cardinality == capacity) {
+            tail = capacity < MAX_ARRAY_CAPACITY ? copyArray(container, cardinality, capacity << 1) : copyToBitmap(container, cardinality);
+            container = containerAddress(tail);
+            capacity = Unsafe.getUnsafe().getInt(container + 16);
+        }
+
+        int low = (int) (value & CHUNK_MASK);
+        if (capacity > 0) {
+            Unsafe.getUnsafe().putShort(container + HEADER_SIZE + (cardinality << 1), (short) low);
+        } else {
+            long p = container + HEADER_SIZE + ((low >>> 6) << 3);
+            Unsafe.getUnsafe().putLong(p, Unsafe.getUnsafe().getLong(p) | (1L << low));
+        }
+        Unsafe.getUnsafe().putInt(container + 12, ++cardinality);
+
+        Unsafe.getUnsafe().putLong(address, tail);
+        Unsafe.getUnsafe().putLong(address + 8, count + 1);
+        Unsafe.getUnsafe().putInt(address + 16, cardinality);
+        Unsafe.getUnsafe().putLong(address + 24, value);
+
+        if (maxValue <= value) {
+            maxValue = value + 1;
+        }
+    }
+
+    /**
+     * Closes underlying files.
+     */
+    @Override
+    public void close() {
+        rData.close();
+        kData.close();
+    }
+
+    @Override
+    public void commit() {
+        if (!startTx) {
+            putLong(kData, keyBlockSizeOffset, keyBlockSize);
+            putLong(kData, keyBlockSizeOffset + 8, maxValue);
+            kData.setAppendOffset(firstEntryOffset + keyBlockSize);
+            putLong(kData, TX_ADDRESS_OFFSET, keyBlockSizeOffset);
+            startTx = true;
+        }
+    }
+
+    /**
+     * Removes empty space at end of index files.
+     *
+     * @throws JournalException in case of IO problems.
+     */
+    @Override
+    public void compact() throws JournalException {
+        kData.compact();
+        rData.compact();
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return getValueCount(key) > 0;
+    }
+
+    @Override
+    public IndexCursor cursor(int key) {
+        return cachedCursor.setKey(key);
+    }
+
+    @Override
+    public void force() {
+        kData.force();
+        rData.force();
+    }
+
+    @Override
+    public IndexCursor fwdCursor(int key) {
+        return fwdIndexCursor.setKey(key);
+    }
+
+    @Override
+    public long getTxAddress() {
+        return keyBlockSizeOffset;
+    }
+
+    @Override
+    public void setTxAddress(long txAddress) {
+        if (txAddress == 0) {
+            refresh();
+        } else {
+            this.keyBlockSizeOffset = txAddress;
+            this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+            this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+            this.firstEntryOffset = keyBlockSizeOffset + 16;
+        }
+    }
+
+    @Override
+    public int getValueCount(int key) {
+        long keyOffset = getKeyOffset(key);
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            return 0;
+        } else {
+            return (int) getLong(kData, keyOffset + 8);
+        }
+    }
+
+    /**
+     * Searches for indexed value of a key. Containers are visited from the last one, so newest values
+     * are found faster than oldest.
+     *
+     * @param key value of key
+     * @param i   index of key value to get.
+     * @return long value for given index.
+     */
+    @Override
+    public long getValueQuick(int key, int i) {
+        long address = keyAddressOrError(key);
+        long container = Unsafe.getUnsafe().getLong(address);
+        long count = Unsafe.getUnsafe().getLong(address + 8);
+
+        if (i >= count) {
+            throw new JournalRuntimeException("Index out of bounds: %d, max: %d", i, count - 1);
+        }
+
+        // index of first value in container
+        long first = count - Unsafe.getUnsafe().getInt(address + 16);
+        while (i < first) {
+            container = getLong(rData, container);
+            if (container == 0) {
+                throw new JournalRuntimeException("Count doesn't match number of containers. Corrupt index? : %s", this);
+            }
+            first -= getInt(rData, container + 12);
+        }
+        return valueAt(containerAddress(container), (int) (i - first));
+    }
+
+    @Override
+    public LongList getValues(int key) {
+        LongList result = new LongList();
+        getValues(key, result);
+        return result;
+    }
+
+    @Override
+    public void getValues(int key, LongList values) {
+
+        if (key < 0) {
+            return;
+        }
+
+        long keyOffset = getKeyOffset(key);
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            return;
+        }
+
+        values.clear();
+        IndexCursor cursor = valuesCursor.setKey(key);
+        values.ensureCapacity((int) cursor.size());
+        while (cursor.hasNext()) {
+            values.add(cursor.next());
+        }
+    }
+
+    @Override
+    public long lastValue(int key) {
+        return Unsafe.getUnsafe().getLong(keyAddressOrError(key) + 24);
+    }
+
+    @Override
+    public IndexCursor newFwdCursor(int key) {
+        return new FwdIndexCursor().setKey(key);
+    }
+
+    /**
+     * Size of index is maximum of all row IDs plus one, same as in KVIndex.
+     *
+     * @return max of all row IDs in index.
+     */
+    @Override
+    public long size() {
+        return maxValue;
+    }
+
+    @Override
+    public void truncate(long size) {
+        long sz = 0;
+        for (long offset = firstEntryOffset, hi = firstEntryOffset + keyBlockSize; offset < hi; offset += ENTRY_SIZE) {
+            long address = kData.addressOf(offset, ENTRY_SIZE);
+            long tail = Unsafe.getUnsafe().getLong(address);
+            long count = Unsafe.getUnsafe().getLong(address + 8);
+            int cardinality = Unsafe.getUnsafe().getInt(address + 16);
+            int containerCount = Unsafe.getUnsafe().getInt(address + 20);
+
+            while (tail != 0) {
+                long container = containerAddress(tail);
+                int keep = truncateContainer(container, cardinality, size);
+                if (keep > 0) {
+                    count -= cardinality - keep;
+                    cardinality = keep;
+                    break;
+                }
+                // discard whole container
+                count -= cardinality;
+                containerCount--;
+                tail = Unsafe.getUnsafe().getLong(container);
+                cardinality = tail == 0 ? 0 : getInt(rData, tail + 12);
+            }
+
+            long last = tail == 0 ? 0 : valueAt(containerAddress(tail), cardinality - 1);
+            if (tail != 0 && last >= sz) {
+                sz = last + 1;
+            }
+
+            Unsafe.getUnsafe().putLong(address, tail);
+            Unsafe.getUnsafe().putLong(address + 8, count);
+            Unsafe.getUnsafe().putInt(address + 16, cardinality);
+            Unsafe.getUnsafe().putInt(address + 20, containerCount);
+            Unsafe.getUnsafe().putLong(address + 24, last);
+        }
+
+        maxValue = sz;
+        commit();
+    }
+
+    private static int containerSize(int capacity) {
+        return HEADER_SIZE + (capacity > 0 ? capacity << 1 : BITMAP_SIZE);
+    }
+
+    private static int getInt(MemoryFile storage, long offset) {
+        return Unsafe.getUnsafe().getInt(storage.addressOf(offset, 4));
+    }
+
+    private static long getLong(MemoryFile storage, long offset) {
+        return Unsafe.getUnsafe().getLong(storage.addressOf(offset, 8));
+    }
+
+    private static void putLong(MemoryFile storage, long offset, long value) {
+        Unsafe.getUnsafe().putLong(storage.addressOf(offset, 8), value);
+    }
+
+    private static long valueAt(long container, int n) {
+        long base = ((long) Unsafe.getUnsafe().getInt(container + 8)) << CHUNK_BITS;
+        if (Unsafe.getUnsafe().getInt(container + 16) > 0) {
+            return base | (Unsafe.getUnsafe().getShort(container + HEADER_SIZE + (n << 1)) & CHUNK_MASK);
+        }
+
+        long p = container + HEADER_SIZE;
+        for (int w = 0; w < WORD_COUNT; w++, p += 8) {
+            long word = Unsafe.getUnsafe().getLong(p);
+            int c = Long.bitCount(word);
+            if (n < c) {
+                while (n-- > 0) {
+                    word &= word - 1;
+                }
+                return base | (w << 6) | Long.numberOfTrailingZeros(word);
+            }
+            n -= c;
+        }
+        throw new JournalRuntimeException("Cardinality of container is larger than bitmap. Corrupt index?");
+    }
+
+    private long allocateContainer(long prev, int chunk, int capacity) {
+        int size = containerSize(capacity);
+        long offset = rData.getAppendOffset();
+        rData.setAppendOffset(offset + size);
+        long address = rData.addressOf(offset, size);
+        Unsafe.getUnsafe().putLong(address, prev);
+        Unsafe.getUnsafe().putInt(address + 8, chunk);
+        Unsafe.getUnsafe().putInt(address + 12, 0);
+        Unsafe.getUnsafe().putInt(address + 16, capacity);
+        Unsafe.getUnsafe().putInt(address + 20, 0);
+        if (capacity == 0) {
+            Unsafe.getUnsafe().setMemory(address + HEADER_SIZE, BITMAP_SIZE, (byte) 0);
+        }
+        return offset;
+    }
+
+    private long containerAddress(long offset) {
+        return rData.addressOf(offset, containerSize(Unsafe.getUnsafe().getInt(rData.addressOf(offset, HEADER_SIZE) + 16)));
+    }
+
+    private long copyArray(long src, int cardinality, int capacity) {
+        long offset = allocateContainer(Unsafe.getUnsafe().getLong(src), Unsafe.getUnsafe().getInt(src + 8), capacity);
+        long dst = containerAddress(offset);
+        Unsafe.getUnsafe().copyMemory(src + HEADER_SIZE, dst + HEADER_SIZE, cardinality << 1);
+        Unsafe.getUnsafe().putInt(dst + 12, cardinality);
+        return offset;
+    }
+
+    private long copyToBitmap(long src, int cardinality) {
+        long offset = allocateContainer(Unsafe.getUnsafe().getLong(src), Unsafe.getUnsafe().getInt(src + 8), 0);
+        long dst = containerAddress(offset);
+        for (int i = 0; i < cardinality; i++) {
+            int low = Unsafe.getUnsafe().getShort(src + HEADER_SIZE + (i << 1)) & CHUNK_MASK;
+            long p = dst + HEADER_SIZE + ((low >>> 6) << 3);
+            Unsafe.getUnsafe().putLong(p, Unsafe.getUnsafe().getLong(p) | (1L << low));
+        }
+        Unsafe.getUnsafe().putInt(dst + 12, cardinality);
+        return offset;
+    }
+
+    private long getKeyOffset(long key) {
+        return firstEntryOffset + (key + 1) * ENTRY_SIZE;
+    }
+
+    private long keyAddressOrError(int key) {
+        long keyOffset = getKeyOffset(key);
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            throw new JournalRuntimeException("Key doesn't exist: %d", key);
+        }
+        return kData.addressOf(keyOffset, ENTRY_SIZE);
+    }
+
+    private void refresh() {
+        commit();
+        this.keyBlockSizeOffset = getLong(kData, TX_ADDRESS_OFFSET);
+        this.keyBlockSize = getLong(kData, keyBlockSizeOffset);
+        this.maxValue = getLong(kData, keyBlockSizeOffset + 8);
+        this.firstEntryOffset = keyBlockSizeOffset + 16;
+    }
+
+    /**
+     * Removes values, which are not less than size, from container.
+     *
+     * @return number of values left in container
+     */
+    private int truncateContainer(long container, int cardinality, long size) {
+        long base = ((long) Unsafe.getUnsafe().getInt(container + 8)) << CHUNK_BITS;
+        if (base >= size) {
+            return 0;
+        }
+
+        if (size - base > CHUNK_MASK) {
+            return cardinality;
+        }
+
+        // values with lower bits under limit stay
+        int limit = (int) (size - base);
+        int keep = 0;
+        if (Unsafe.getUnsafe().getInt(container + 16) > 0) {
+            while (keep < cardinality && (Unsafe.getUnsafe().getShort(container + HEADER_SIZE + (keep << 1)) & CHUNK_MASK) < limit) {
+                keep++;
+            }
+        } else {
+            long p = container + HEADER_SIZE;
+            int w = limit >>> 6;
+            Unsafe.getUnsafe().putLong(p + (w << 3), Unsafe.getUnsafe().getLong(p + (w << 3)) & ((1L << (limit & 63)) - 1));
+            Unsafe.getUnsafe().setMemory(p + ((w + 1) << 3), (WORD_COUNT - w - 1) << 3, (byte) 0);
+            for (int i = 0; i <= w; i++) {
+                keep += Long.bitCount(Unsafe.getUnsafe().getLong(p + (i << 3)));
+            }
+        }
+        Unsafe.getUnsafe().putInt(container + 12, keep);
+        return keep;
+    }
+
+    private void tx() {
+        if (startTx) {
+            this.keyBlockSizeOffset = kData.getAppendOffset();
+            this.firstEntryOffset = keyBlockSizeOffset + 16;
+
+            long srcOffset = getLong(kData, TX_ADDRESS_OFFSET);
+            long dstOffset = this.keyBlockSizeOffset;
+            int size = (int) (this.keyBlockSize + 8 + 8);
+
+            while (size > 0) {
+                long src = kData.addressOf(srcOffset, 1);
+                int srcLen = kData.pageRemaining(srcOffset);
+
+                kData.lockBuffers();
+                long dst = kData.addressOf(dstOffset, 1);
+                int dstLen = kData.pageRemaining(dstOffset);
+                kData.unlockBuffers();
+
+                int len = size < (srcLen < dstLen ? srcLen : dstLen) ? size : (srcLen < dstLen ? srcLen : dstLen);
+
+                Unsafe.getUnsafe().copyMemory(src, dst, len);
+                size -= len;
+                srcOffset += len;
+                dstOffset += len;
+            }
+            keyBlockSize = dstOffset - firstEntryOffset;
+        }
+        startTx = false;
+    }
+
+    /**
+     * Collects containers of key in ascending order as triplets of container offset, chunk and cardinality.
+     * Rows of chunk are [chunk * 64K, (chunk + 1) * 64K).
+     *
+     * @param key        value of key
+     * @param containers list to copy containers to, contents of list is overwritten
+     */
+    void getContainers(int key, LongList containers) {
+        containers.clear();
+
+        if (key < -1) {
+            return;
+        }
+
+        long keyOffset = getKeyOffset(key);
+        if (keyOffset >= firstEntryOffset + keyBlockSize) {
+            return;
+        }
+
+        long address = kData.addressOf(keyOffset, ENTRY_SIZE);
+        long container = Unsafe.getUnsafe().getLong(address);
+        long cardinality = Unsafe.getUnsafe().getInt(address + 16);
+        int n = Unsafe.getUnsafe().getInt(address + 20);
+
+        containers.setPos(n * 3);
+        for (int i = (n - 1) * 3; i > -1 && container != 0; i -= 3) {
+            long header = rData.addressOf(container, HEADER_SIZE);
+            containers.setQuick(i, container);
+            containers.setQuick(i + 1, Unsafe.getUnsafe().getInt(header + 8));
+            containers.setQuick(i + 2, cardinality);
+            container = Unsafe.getUnsafe().getLong(header);
+            if (container != 0) {
+                cardinality = getInt(rData, container + 12);
+            }
+        }
+    }
+
+    /**
+     * Sets bits of container values in 64K bitmap. Tail bitmap container may have values added after
+     * transaction of this index, caller must exclude rows past partition size.
+     *
+     * @param container   offset of container
+     * @param cardinality number of container values in this transaction
+     * @param words       bitmap of chunk rows
+     */
+    void or(long container, int cardinality, long[] words) {
+        long address = containerAddress(container);
+        long p = address + HEADER_SIZE;
+        if (Unsafe.getUnsafe().getInt(address + 16) > 0) {
+            for (long lim = p + (cardinality << 1); p < lim; p += 2) {
+                int low = Unsafe.getUnsafe().getShort(p) & CHUNK_MASK;
+                words[low >>> 6] |= 1L << low;
+            }
+        } else {
+            for (int i = 0; i < WORD_COUNT; i++, p += 8) {
+                words[i] |= Unsafe.getUnsafe().getLong(p);
+            }
+        }
+    }
+
+    private class RevIndexCursor implements IndexCursor {
+        private long size;
+        private long remaining;
+        private int containerRemaining;
+        private long container;
+        private long base;
+        private boolean array;
+        private int wordIndex;
+        private long word;
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public long next() {
+            if (containerRemaining == 0) {
+                long prev = Unsafe.getUnsafe().getLong(container);
+                of(prev, getInt(rData, prev + 12), CHUNK_MASK);
+            }
+
+            remaining--;
+            containerRemaining--;
+
+            if (array) {
+                return base | (Unsafe.getUnsafe().getShort(container + HEADER_SIZE + (containerRemaining << 1)) & CHUNK_MASK);
+            }
+
+            while (word == 0) {
+                word = Unsafe.getUnsafe().getLong(container + HEADER_SIZE + ((--wordIndex) << 3));
+            }
+            int bit = 63 - Long.numberOfLeadingZeros(word);
+            word &= ~(1L << bit);
+            return base | (wordIndex << 6) | bit;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        private void of(long offset, int cardinality, int lastLow) {
+            this.container = containerAddress(offset);
+            this.base = ((long) Unsafe.getUnsafe().getInt(container + 8)) << CHUNK_BITS;
+            this.containerRemaining = cardinality;
+            this.array = Unsafe.getUnsafe().getInt(container + 16) > 0;
+            if (!array) {
+                // ignore values added to tail container after this transaction
+                this.wordIndex = lastLow >>> 6;
+                this.word = Unsafe.getUnsafe().getLong(container + HEADER_SIZE + (wordIndex << 3)) & (-1L >>> (63 - (lastLow & 63)));
+            }
+        }
+
+        private RevIndexCursor setKey(int key) {
+            this.size = 0;
+            this.remaining = 0;
+
+            if (key < 0) {
+                return this;
+            }
+
+            long keyOffset = getKeyOffset(key);
+            if (keyOffset < firstEntryOffset + keyBlockSize) {
+                long address = kData.addressOf(keyOffset, ENTRY_SIZE);
+                this.size = this.remaining = Unsafe.getUnsafe().getLong(address + 8);
+                if (size > 0) {
+                    of(Unsafe.getUnsafe().getLong(address), Unsafe.getUnsafe().getInt(address + 16), (int) (Unsafe.getUnsafe().getLong(address + 24) & CHUNK_MASK));
+                }
+            }
+            return this;
+        }
+    }
+
+    private class FwdIndexCursor implements IndexCursor {
+        private final LongList containers = new LongList();
+        private long size;
+        private long remaining;
+        private int containerIndex;
+        private int containerRemaining;
+        private long base;
+        private boolean array;
+        private long address;
+        private int wordIndex;
+        private long word;
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public long next() {
+            if (containerRemaining == 0) {
+                long container = containerAddress(containers.getQuick(containerIndex));
+                this.base = containers.getQuick(containerIndex + 1) << CHUNK_BITS;
+                this.containerRemaining = (int) containers.getQuick(containerIndex + 2);
+                this.array = Unsafe.getUnsafe().getInt(container + 16) > 0;
+                this.address = container + HEADER_SIZE;
+                this.wordIndex = -1;
+                this.word = 0;
+                containerIndex += 3;
+            }
+
+            remaining--;
+            containerRemaining--;
+
+            if (array) {
+                long v = base | (Unsafe.getUnsafe().getShort(address) & CHUNK_MASK);
+                address += 2;
+                return v;
+            }
+
+            while (word == 0) {
+                word = Unsafe.getUnsafe().getLong(address + ((++wordIndex) << 3));
+            }
+            long v = base | (wordIndex << 6) | Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return v;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        private FwdIndexCursor setKey(int key) {
+            getContainers(key, containers);
+            long sz = 0;
+            for (int i = 2, n = containers.size(); i < n; i += 3) {
+                sz += containers.getQuick(i);
+            }
+            this.size = this.remaining = sz;
+            this.containerIndex = 0;
+            this.containerRemaining = 0;
+            return this;
+        }
+    }
+}
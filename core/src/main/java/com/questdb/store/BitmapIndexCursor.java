@@ -0,0 +1,251 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+import java.util.Arrays;
+
+/**
+ * Forward cursor over row IDs, which match all terms added to cursor. Term matches rows of any of its keys
+ * in one bitmap index. Terms are evaluated 64K rows at a time: containers of keys in the same term are
+ * OR-ed together and results of terms are AND-ed. Chunks, where any of terms has no containers,
+ * are skipped without reading them.
+ * <p>
+ * Bitmap indexes of terms must belong to the same partition.
+ */
+public class BitmapIndexCursor implements IndexCursor {
+    private final ObjList<Term> terms = new ObjList<>();
+    private final long[] words = new long[BitmapIndex.WORD_COUNT];
+    private final long[] scratch = new long[BitmapIndex.WORD_COUNT];
+    private int termCount = 0;
+    private long lo;
+    private long hi;
+    private long chunk;
+    private long nextChunk;
+    private int wordIndex;
+    private long word;
+
+    /**
+     * Adds term, which matches rows of any of given keys.
+     *
+     * @param index bitmap index of column
+     * @param keys  keys of column values, negative keys of values, which do not exist, are ignored
+     * @return this cursor
+     */
+    public BitmapIndexCursor and(BitmapIndex index, IntList keys) {
+        Term t = terms.getQuiet(termCount);
+        if (t == null) {
+            terms.extendAndSet(termCount, t = new Term());
+        }
+        termCount++;
+        t.of(index, keys);
+        return this;
+    }
+
+    public BitmapIndexCursor clear() {
+        termCount = 0;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (word != 0) {
+                return true;
+            }
+
+            while (++wordIndex < BitmapIndex.WORD_COUNT) {
+                if ((word = words[wordIndex]) != 0) {
+                    return true;
+                }
+            }
+
+            if (!nextChunk()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long next() {
+        long v = (chunk << BitmapIndex.CHUNK_BITS) | (wordIndex << 6) | Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+        return v;
+    }
+
+    /**
+     * Number of rows is not known upfront.
+     *
+     * @return -1
+     */
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    /**
+     * Starts iteration over rows between lo and hi. Terms must be added before cursor is prepared.
+     *
+     * @param lo first row, inclusive
+     * @param hi last row, exclusive
+     * @return this cursor
+     */
+    public BitmapIndexCursor prepare(long lo, long hi) {
+        this.lo = lo;
+        this.hi = hi;
+        this.nextChunk = lo >>> BitmapIndex.CHUNK_BITS;
+        this.wordIndex = BitmapIndex.WORD_COUNT;
+        this.word = 0;
+        for (int i = 0; i < termCount; i++) {
+            terms.getQuick(i).rewind();
+        }
+        return this;
+    }
+
+    private boolean nextChunk() {
+        if (termCount == 0 || lo >= hi) {
+            return false;
+        }
+
+        // find chunk all terms have containers for
+        long c = nextChunk;
+        for (int i = 0, aligned = 0; aligned < termCount; i = (i + 1) % termCount) {
+            long m = terms.getQuick(i).seek(c);
+            if (m == -1) {
+                return false;
+            }
+
+            if (m == c) {
+                aligned++;
+            } else {
+                c = m;
+                aligned = 1;
+            }
+        }
+
+        if (c << BitmapIndex.CHUNK_BITS >= hi) {
+            return false;
+        }
+
+        terms.getQuick(0).or(c, words);
+        for (int i = 1; i < termCount; i++) {
+            terms.getQuick(i).or(c, scratch);
+            for (int k = 0; k < BitmapIndex.WORD_COUNT; k++) {
+                words[k] &= scratch[k];
+            }
+        }
+
+        if (c == lo >>> BitmapIndex.CHUNK_BITS) {
+            clearBelow((int) (lo - (c << BitmapIndex.CHUNK_BITS)));
+        }
+
+        if (c == (hi - 1) >>> BitmapIndex.CHUNK_BITS) {
+            clearAbove((int) (hi - 1 - (c << BitmapIndex.CHUNK_BITS)));
+        }
+
+        this.chunk = c;
+        this.nextChunk = c + 1;
+        this.wordIndex = -1;
+        this.word = 0;
+        return true;
+    }
+
+    private void clearAbove(int bit) {
+        int w = bit >>> 6;
+        words[w] &= -1L >>> (63 - (bit & 63));
+        Arrays.fill(words, w + 1, BitmapIndex.WORD_COUNT, 0);
+    }
+
+    private void clearBelow(int bit) {
+        int w = bit >>> 6;
+        Arrays.fill(words, 0, w, 0);
+        words[w] &= -1L << (bit & 63);
+    }
+
+    private static class Term {
+        private final ObjList<LongList> containers = new ObjList<>();
+        private final IntList positions = new IntList();
+        private BitmapIndex index;
+        private int keyCount;
+
+        private void of(BitmapIndex index, IntList keys) {
+            this.index = index;
+            this.keyCount = 0;
+            for (int i = 0, n = keys.size(); i < n; i++) {
+                int key = keys.getQuick(i);
+                if (key < -1) {
+                    continue;
+                }
+                LongList list = containers.getQuiet(keyCount);
+                if (list == null) {
+                    containers.extendAndSet(keyCount, list = new LongList());
+                }
+                index.getContainers(key, list);
+                keyCount++;
+            }
+        }
+
+        private void or(long chunk, long[] words) {
+            Arrays.fill(words, 0);
+            for (int i = 0; i < keyCount; i++) {
+                LongList list = containers.getQuick(i);
+                int p = positions.getQuick(i);
+                if (p < list.size() && list.getQuick(p + 1) == chunk) {
+                    index.or(list.getQuick(p), (int) list.getQuick(p + 2), words);
+                }
+            }
+        }
+
+        private void rewind() {
+            positions.clear();
+            for (int i = 0; i < keyCount; i++) {
+                positions.add(0);
+            }
+        }
+
+        /**
+         * @return first chunk, which is not below given one and which any of keys has container for, or -1
+         */
+        private long seek(long chunk) {
+            long min = -1;
+            for (int i = 0; i < keyCount; i++) {
+                LongList list = containers.getQuick(i);
+                int p = positions.getQuick(i);
+                int n = list.size();
+                while (p < n && list.getQuick(p + 1) < chunk) {
+                    p += 3;
+                }
+                positions.setQuick(i, p);
+                if (p < n && (min == -1 || list.getQuick(p + 1) < min)) {
+                    min = list.getQuick(p + 1);
+                }
+            }
+            return min;
+        }
+    }
+}
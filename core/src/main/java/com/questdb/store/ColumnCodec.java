@@ -0,0 +1,452 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+import com.questdb.misc.Zip;
+import com.questdb.std.LongList;
+import com.questdb.std.Path;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Encodes column files of sealed partitions into compact form and decodes them back.
+ * <p>
+ * Data region of column file is split into blocks of {@link #BLOCK_SIZE} bytes. Every block is transformed with
+ * codec chosen by column type and deflated on its own, so that any block can be decoded without reading the rest
+ * of the file. Timestamps are stored as delta-of-delta, longs as delta, symbol keys are bit-packed with per-block
+ * frame of reference. Everything else, including string and binary data, is deflated as is.
+ * <p>
+ * Compressed file layout is: length of data region (long), magic (int), codec (int), block count (int), deflated
+ * blocks and offsets of blocks (long per block and one more for end of last block). Length of data region is where
+ * {@link MemoryFile} keeps it, so size of compressed column is known without decoding any of its blocks.
+ */
+public class ColumnCodec implements Closeable {
+    public static final String FILE_SUFFIX = ".z";
+    public static final int BLOCK_BITS = 20;
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int MAGIC = 0x325a4c43;
+    private static final int HEADER_SIZE = 20;
+    private static final int CODEC_PLAIN = 0;
+    private static final int CODEC_DELTA = 1;
+    private static final int CODEC_DELTA_OF_DELTA = 2;
+    private static final int CODEC_BIT_PACK = 3;
+    // bit-packed block carries min value (int) and bit width (byte) in front of packed values
+    private static final int BIT_PACK_HEADER = 5;
+    private static final int BUF_SIZE = 64 * 1024;
+    private final Path path = new Path();
+    private final long buf;
+    private final LongList offsets = new LongList();
+    // encoding buffers are only allocated by compress() and decompress()
+    private long block;
+    private long packed;
+    private long z_deflate;
+    private long z_inflate;
+    private long prev;
+    private long prevDelta;
+
+    public ColumnCodec() {
+        this.buf = Unsafe.malloc(BUF_SIZE);
+    }
+
+    public static int codecOf(int columnType, boolean indexFile) {
+        if (indexFile) {
+            // offsets in index of variable column are always ascending
+            return CODEC_DELTA;
+        }
+
+        switch (columnType) {
+            case ColumnType.DATE:
+                return CODEC_DELTA_OF_DELTA;
+            case ColumnType.LONG:
+                return CODEC_DELTA;
+            case ColumnType.SYMBOL:
+                return CODEC_BIT_PACK;
+            default:
+                return CODEC_PLAIN;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (z_deflate != 0) {
+            Zip.deflateEnd(z_deflate);
+            z_deflate = 0;
+        }
+
+        if (z_inflate != 0) {
+            Zip.inflateEnd(z_inflate);
+            z_inflate = 0;
+        }
+
+        if (block != 0) {
+            Unsafe.free(block, BLOCK_SIZE);
+            Unsafe.free(packed, BLOCK_SIZE + BIT_PACK_HEADER);
+            block = packed = 0;
+        }
+        Unsafe.free(buf, BUF_SIZE);
+        path.close();
+    }
+
+    /**
+     * Writes compressed copy of column file. Source file is left intact.
+     *
+     * @param src   column file in MemoryFile format
+     * @param dst   file to write compressed data to, existing file is overwritten
+     * @param codec one of codecs returned by {@link #codecOf(int, boolean)}
+     * @throws JournalException when either of files cannot be read or written
+     */
+    public void compress(File src, File dst, int codec) throws JournalException {
+        long in = Files.openRO(path.of(src.getAbsolutePath()));
+        if (in < 0) {
+            throw new JournalException("Cannot open %s", src.getAbsolutePath());
+        }
+
+        try {
+            if (Files.read(in, buf, 8, 0) != 8) {
+                throw new JournalException("Cannot read header of %s", src.getAbsolutePath());
+            }
+            final long len = Unsafe.getUnsafe().getLong(buf);
+            final int blockCount = (int) ((len + BLOCK_SIZE - 1) >>> BLOCK_BITS);
+
+            if ((codec == CODEC_BIT_PACK && (len & 3) != 0) || ((codec == CODEC_DELTA || codec == CODEC_DELTA_OF_DELTA) && (len & 7) != 0)) {
+                // not a whole number of values, transforms do not apply
+                codec = CODEC_PLAIN;
+            }
+
+            Files.delete(dst);
+            long out = Files.openAppend(path.of(dst.getAbsolutePath()));
+            if (out < 0) {
+                throw new JournalException("Cannot create %s", dst.getAbsolutePath());
+            }
+
+            try {
+                Unsafe.getUnsafe().putLong(buf, len);
+                Unsafe.getUnsafe().putInt(buf + 8, MAGIC);
+                Unsafe.getUnsafe().putInt(buf + 12, codec);
+                Unsafe.getUnsafe().putInt(buf + 16, blockCount);
+                Files.append(out, buf, HEADER_SIZE);
+
+                if (z_deflate == 0) {
+                    z_deflate = Zip.deflateInit();
+                    if (z_deflate <= 0) {
+                        z_deflate = 0;
+                        throw new OutOfMemoryError();
+                    }
+                }
+                allocateBlock();
+
+                offsets.clear();
+                long offset = HEADER_SIZE;
+                for (int i = 0; i < blockCount; i++) {
+                    long pos = (long) i << BLOCK_BITS;
+                    int n = (int) Math.min(BLOCK_SIZE, len - pos);
+                    if (Files.read(in, block, n, pos + 8) != n) {
+                        throw new JournalException("Cannot read %s at %d", src.getAbsolutePath(), pos);
+                    }
+                    offsets.add(offset);
+                    // blocks do not depend on each other
+                    prev = prevDelta = 0;
+                    Zip.deflateReset(z_deflate);
+                    offset = deflate(out, offset, encode(codec, n));
+                }
+                offsets.add(offset);
+
+                for (int i = 0, n = offsets.size(); i < n; ) {
+                    int k = Math.min(BUF_SIZE >> 3, n - i);
+                    for (int j = 0; j < k; j++) {
+                        Unsafe.getUnsafe().putLong(buf + (j << 3), offsets.getQuick(i + j));
+                    }
+                    Files.append(out, buf, k << 3);
+                    i += k;
+                }
+            } finally {
+                Files.close(out);
+            }
+        } finally {
+            Files.close(in);
+        }
+    }
+
+    /**
+     * Decodes single block of compressed column.
+     *
+     * @param fd     descriptor of compressed file
+     * @param file   compressed file, used in error messages
+     * @param codec  codec returned by {@link #readHeader(long, File, LongList)}
+     * @param offset offset of block in compressed file
+     * @param len    length of decoded block, which is {@link #BLOCK_SIZE} for all but last block
+     * @param dst    address to decode block to
+     * @throws JournalException when block cannot be read
+     */
+    public void decodeBlock(long fd, File file, int codec, long offset, int len, long dst) throws JournalException {
+        if (z_inflate == 0) {
+            z_inflate = Zip.inflateInit(true);
+            if (z_inflate <= 0) {
+                z_inflate = 0;
+                throw new OutOfMemoryError();
+            }
+        } else {
+            Zip.inflateReset(z_inflate);
+        }
+        Zip.setInput(z_inflate, buf, 0);
+
+        switch (codec) {
+            case CODEC_BIT_PACK:
+                offset = inflate(fd, offset, dst, BIT_PACK_HEADER, file);
+                int min = Unsafe.getUnsafe().getInt(dst);
+                int bits = Unsafe.getUnsafe().getByte(dst + 4);
+                inflate(fd, offset, dst, packedSize(len >> 2, bits), file);
+                unpack(dst, len >> 2, min, bits);
+                break;
+            case CODEC_DELTA:
+                inflate(fd, offset, dst, len, file);
+                long v = 0;
+                for (int i = 0; i < len; i += 8) {
+                    v += Unsafe.getUnsafe().getLong(dst + i);
+                    Unsafe.getUnsafe().putLong(dst + i, v);
+                }
+                break;
+            case CODEC_DELTA_OF_DELTA:
+                inflate(fd, offset, dst, len, file);
+                long t = 0;
+                long d = 0;
+                for (int i = 0; i < len; i += 8) {
+                    d += Unsafe.getUnsafe().getLong(dst + i);
+                    t += d;
+                    Unsafe.getUnsafe().putLong(dst + i, t);
+                }
+                break;
+            default:
+                inflate(fd, offset, dst, len, file);
+                break;
+        }
+    }
+
+    /**
+     * Restores column file from its compressed copy.
+     *
+     * @param src compressed file written by {@link #compress(File, File, int)}
+     * @param dst column file to create, existing file is overwritten
+     * @throws JournalException when either of files cannot be read or written, or src is not a compressed column
+     */
+    public void decompress(File src, File dst) throws JournalException {
+        long in = Files.openRO(path.of(src.getAbsolutePath()));
+        if (in < 0) {
+            throw new JournalException("Cannot open %s", src.getAbsolutePath());
+        }
+
+        try {
+            final int codec = readHeader(in, src, offsets);
+            if (Files.read(in, buf, 8, 0) != 8) {
+                throw new JournalException("Cannot read header of %s", src.getAbsolutePath());
+            }
+            final long len = Unsafe.getUnsafe().getLong(buf);
+
+            Files.delete(dst);
+            long out = Files.openAppend(path.of(dst.getAbsolutePath()));
+            if (out < 0) {
+                throw new JournalException("Cannot create %s", dst.getAbsolutePath());
+            }
+
+            try {
+                allocateBlock();
+                // MemoryFile keeps length of data in first 8 bytes
+                Unsafe.getUnsafe().putLong(block, len);
+                Files.append(out, block, 8);
+
+                for (int i = 0, n = offsets.size() - 1; i < n; i++) {
+                    int sz = (int) Math.min(BLOCK_SIZE, len - ((long) i << BLOCK_BITS));
+                    decodeBlock(in, src, codec, offsets.getQuick(i), sz, block);
+                    Files.append(out, block, sz);
+                }
+            } finally {
+                Files.close(out);
+            }
+        } finally {
+            Files.close(in);
+        }
+    }
+
+    /**
+     * Reads header of compressed column.
+     *
+     * @param fd      descriptor of compressed file
+     * @param file    compressed file
+     * @param offsets receives offsets of blocks followed by end of last block
+     * @return codec of column
+     * @throws JournalException when file cannot be read or is not a compressed column
+     */
+    public int readHeader(long fd, File file, LongList offsets) throws JournalException {
+        if (Files.read(fd, buf, HEADER_SIZE, 0) != HEADER_SIZE || Unsafe.getUnsafe().getInt(buf + 8) != MAGIC) {
+            throw new JournalException("Not a compressed column: %s", file.getAbsolutePath());
+        }
+
+        final int codec = Unsafe.getUnsafe().getInt(buf + 12);
+        final int n = Unsafe.getUnsafe().getInt(buf + 16) + 1;
+        long pos = Files.length(path.of(file.getAbsolutePath())) - ((long) n << 3);
+
+        offsets.clear();
+        for (int i = 0; i < n; ) {
+            int k = Math.min(BUF_SIZE >> 3, n - i);
+            if (pos < HEADER_SIZE || Files.read(fd, buf, k << 3, pos) != k << 3) {
+                throw new JournalException("Cannot read block offsets of %s", file.getAbsolutePath());
+            }
+            for (int j = 0; j < k; j++) {
+                offsets.add(Unsafe.getUnsafe().getLong(buf + (j << 3)));
+            }
+            i += k;
+            pos += k << 3;
+        }
+        return codec;
+    }
+
+    private static int packedSize(int count, int bits) {
+        return (int) (((long) count * bits + 7) >>> 3);
+    }
+
+    private static int bitsOf(long range) {
+        return range == 0 ? 0 : 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    /**
+     * Unpacks values in place. Packed values occupy start of block and are unpacked from last to first:
+     * value is never wider than 32 bits, so bytes of values that are yet to be read are always below
+     * the ones being written.
+     */
+    private static void unpack(long address, int count, int min, int bits) {
+        long mask = (1L << bits) - 1;
+        for (int i = count - 1; i > -1; i--) {
+            long bit = (long) i * bits;
+            long v = 0;
+            // values are at most 32 bits wide, so with bit offset they span at most 5 bytes
+            for (int b = 0, k = (int) ((bit & 7) + bits + 7) >>> 3; b < k; b++) {
+                v |= (Unsafe.getUnsafe().getByte(address + (bit >>> 3) + b) & 0xffL) << (b << 3);
+            }
+            Unsafe.getUnsafe().putInt(address + (i << 2), (int) (min + ((v >>> (bit & 7)) & mask)));
+        }
+    }
+
+    private void allocateBlock() {
+        if (block == 0) {
+            block = Unsafe.malloc(BLOCK_SIZE);
+            packed = Unsafe.malloc(BLOCK_SIZE + BIT_PACK_HEADER);
+        }
+    }
+
+    private long deflate(long fd, long offset, int len) throws JournalException {
+        Zip.setInput(z_deflate, packed, len);
+        int ret;
+        do {
+            ret = Zip.deflate(z_deflate, buf, BUF_SIZE, true);
+            if (ret < 0) {
+                throw new JournalException("Deflater error: %d", ret);
+            }
+
+            int n = BUF_SIZE - Zip.availOut(z_deflate);
+            if (n > 0) {
+                Files.append(fd, buf, n);
+                offset += n;
+            }
+        } while (ret != 1);
+        return offset;
+    }
+
+    private int encode(int codec, int n) {
+        switch (codec) {
+            case CODEC_DELTA:
+                for (int i = 0; i < n; i += 8) {
+                    long v = Unsafe.getUnsafe().getLong(block + i);
+                    Unsafe.getUnsafe().putLong(packed + i, v - prev);
+                    prev = v;
+                }
+                return n;
+            case CODEC_DELTA_OF_DELTA:
+                for (int i = 0; i < n; i += 8) {
+                    long v = Unsafe.getUnsafe().getLong(block + i);
+                    long d = v - prev;
+                    Unsafe.getUnsafe().putLong(packed + i, d - prevDelta);
+                    prevDelta = d;
+                    prev = v;
+                }
+                return n;
+            case CODEC_BIT_PACK:
+                int count = n >> 2;
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    int v = Unsafe.getUnsafe().getInt(block + (i << 2));
+                    if (v < min) {
+                        min = v;
+                    }
+                    if (v > max) {
+                        max = v;
+                    }
+                }
+
+                int bits = count == 0 ? 0 : bitsOf((long) max - min);
+                int size = packedSize(count, bits);
+                long p = packed + BIT_PACK_HEADER;
+                Unsafe.getUnsafe().putInt(packed, min);
+                Unsafe.getUnsafe().putByte(packed + 4, (byte) bits);
+                Unsafe.getUnsafe().setMemory(p, size, (byte) 0);
+                for (int i = 0; i < count; i++) {
+                    long bit = (long) i * bits;
+                    long v = ((long) Unsafe.getUnsafe().getInt(block + (i << 2)) - min) << (bit & 7);
+                    for (long a = p + (bit >>> 3); v != 0; a++, v >>>= 8) {
+                        Unsafe.getUnsafe().putByte(a, (byte) (Unsafe.getUnsafe().getByte(a) | v));
+                    }
+                }
+                return BIT_PACK_HEADER + size;
+            default:
+                Unsafe.getUnsafe().copyMemory(block, packed, n);
+                return n;
+        }
+    }
+
+    private long inflate(long fd, long offset, long address, int len, File file) throws JournalException {
+        int n = 0;
+        while (n < len) {
+            if (Zip.availIn(z_inflate) == 0) {
+                long r = Files.read(fd, buf, BUF_SIZE, offset);
+                if (r <= 0) {
+                    throw new JournalException("Unexpected end of %s", file.getAbsolutePath());
+                }
+                offset += r;
+                Zip.setInput(z_inflate, buf, (int) r);
+            }
+
+            int avail = Zip.availIn(z_inflate);
+            int r = Zip.inflate(z_inflate, address + n, len - n, false);
+            if (r < 0 || (r == 0 && avail == Zip.availIn(z_inflate))) {
+                throw new JournalException("Inflater error %d in %s", r, file.getAbsolutePath());
+            }
+            n += r;
+        }
+        return offset;
+    }
+}
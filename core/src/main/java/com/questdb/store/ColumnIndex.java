@@ -0,0 +1,82 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.std.LongList;
+
+import java.io.Closeable;
+
+/**
+ * Index of row IDs by integer key as partition keeps it for indexed columns. Implementations are
+ * selected by {@link IndexType} of column.
+ */
+public interface ColumnIndex extends Closeable {
+
+    void add(int key, long value);
+
+    @Override
+    void close();
+
+    void commit();
+
+    void compact() throws JournalException;
+
+    boolean contains(int key);
+
+    /**
+     * @param key value of key
+     * @return cursor over values of key starting from the last one. Cursor instance is reused between calls.
+     */
+    IndexCursor cursor(int key);
+
+    void force();
+
+    /**
+     * @param key value of key
+     * @return cursor over values of key in order they were added. Cursor instance is reused between calls.
+     */
+    IndexCursor fwdCursor(int key);
+
+    long getTxAddress();
+
+    void setTxAddress(long txAddress);
+
+    int getValueCount(int key);
+
+    long getValueQuick(int key, int i);
+
+    LongList getValues(int key);
+
+    void getValues(int key, LongList values);
+
+    long lastValue(int key);
+
+    IndexCursor newFwdCursor(int key);
+
+    long size();
+
+    void truncate(long size);
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.ex.JournalException;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Min, max and null count of numeric column, kept for whole partition and for every block of
+ * {@link #BLOCK_ROWS} rows. Nulls do not participate in min and max, so block of nulls only has empty range.
+ * <p>
+ * Writer extends statistics on commit before transaction is written, which guarantees that statistics
+ * cover all rows visible to readers. Values of existing entries only ever widen, so readers can use them
+ * without locking.
+ * <p>
+ * File layout is: number of covered rows (long), partition entry followed by block entries. Entry is
+ * min, max and null count, each 8 bytes. INT, LONG and DATE values are stored as longs, FLOAT and DOUBLE as doubles.
+ */
+public class ColumnStats implements Closeable {
+    public static final String FILE_SUFFIX = ".st";
+    public static final int BLOCK_BITS = 16;
+    public static final long BLOCK_ROWS = 1L << BLOCK_BITS;
+    private static final int BIT_HINT = 12;
+    private static final int ENTRY_SIZE = 24;
+    private static final long PARTITION_ENTRY = 8;
+    private static final long BLOCK_ENTRIES = PARTITION_ENTRY + ENTRY_SIZE;
+    private final MemoryFile mem;
+    private final int columnType;
+    private final boolean fp;
+
+    public ColumnStats(File file, int columnType, int journalMode) throws JournalException {
+        this.mem = new MemoryFile(file, BIT_HINT, journalMode);
+        this.columnType = columnType;
+        this.fp = columnType == ColumnType.FLOAT || columnType == ColumnType.DOUBLE;
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        mem.close();
+    }
+
+    /**
+     * Checks if block values are outside of lo..hi inclusive range.
+     *
+     * @param block block number, row / {@link #BLOCK_ROWS}
+     * @param lo    lower bound of long range
+     * @param hi    upper bound of long range
+     * @return true when none of block values can be within range
+     */
+    public boolean excludes(int block, long lo, long hi) {
+        return excludes0(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE, lo, hi);
+    }
+
+    public boolean excludes(int block, double lo, double hi) {
+        return excludes0(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE, lo, hi);
+    }
+
+    /**
+     * Checks if all values of partition are outside of lo..hi inclusive range.
+     */
+    public boolean excludes(long lo, long hi) {
+        return excludes0(PARTITION_ENTRY, lo, hi);
+    }
+
+    public boolean excludes(double lo, double hi) {
+        return excludes0(PARTITION_ENTRY, lo, hi);
+    }
+
+    public void force() {
+        mem.force();
+    }
+
+    public long getLongMax(int block) {
+        return getLong(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE + 8);
+    }
+
+    public long getLongMin(int block) {
+        return getLong(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE);
+    }
+
+    public double getDoubleMax(int block) {
+        return getDouble(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE + 8);
+    }
+
+    public double getDoubleMin(int block) {
+        return getDouble(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE);
+    }
+
+    public long getNullCount(int block) {
+        return getLong(BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE + 16);
+    }
+
+    public long getNullCount() {
+        return getLong(PARTITION_ENTRY + 16);
+    }
+
+    /**
+     * Number of rows statistics account for. Blocks and partition entry are only usable for
+     * rows below this count.
+     */
+    public long getRowCount() {
+        return mem.getAppendOffset() < BLOCK_ENTRIES ? 0 : getLong(0);
+    }
+
+    /**
+     * Extends statistics to cover rows up to size. Statistics are rebuilt when column
+     * has been truncated below number of covered rows.
+     *
+     * @param column column statistics are calculated for
+     * @param size   number of rows in column
+     */
+    public void update(FixedColumn column, long size) {
+        long row = getRowCount();
+        if (row == size) {
+            return;
+        }
+
+        if (row > size) {
+            // readers must not rely on entries while they are narrowing
+            putLong(0, 0);
+            row = 0;
+        }
+
+        if (row == 0) {
+            clearEntry(PARTITION_ENTRY);
+        }
+
+        while (row < size) {
+            int block = (int) (row >>> BLOCK_BITS);
+            long blockHi = Math.min(((long) block + 1) << BLOCK_BITS, size);
+            long offset = BLOCK_ENTRIES + ((long) block) * ENTRY_SIZE;
+
+            if ((row & (BLOCK_ROWS - 1)) == 0) {
+                clearEntry(offset);
+            }
+
+            if (fp) {
+                updateDouble(column, offset, row, blockHi);
+            } else {
+                updateLong(column, offset, row, blockHi);
+            }
+            row = blockHi;
+        }
+
+        mem.setAppendOffset(BLOCK_ENTRIES + ((size + BLOCK_ROWS - 1) >>> BLOCK_BITS) * ENTRY_SIZE);
+        putLong(0, size);
+    }
+
+    private void clearEntry(long offset) {
+        if (fp) {
+            putDouble(offset, Double.POSITIVE_INFINITY);
+            putDouble(offset + 8, Double.NEGATIVE_INFINITY);
+        } else {
+            putLong(offset, Long.MAX_VALUE);
+            putLong(offset + 8, Long.MIN_VALUE);
+        }
+        putLong(offset + 16, 0);
+    }
+
+    private boolean excludes0(long offset, long lo, long hi) {
+        return getLong(offset) > hi || getLong(offset + 8) < lo;
+    }
+
+    private boolean excludes0(long offset, double lo, double hi) {
+        return getDouble(offset) > hi || getDouble(offset + 8) < lo;
+    }
+
+    private double getDouble(long offset) {
+        return Unsafe.getUnsafe().getDouble(mem.addressOf(offset, 8));
+    }
+
+    private long getLong(long offset) {
+        return Unsafe.getUnsafe().getLong(mem.addressOf(offset, 8));
+    }
+
+    private void putDouble(long offset, double value) {
+        Unsafe.getUnsafe().putDouble(mem.addressOf(offset, 8), value);
+    }
+
+    private void putLong(long offset, long value) {
+        Unsafe.getUnsafe().putLong(mem.addressOf(offset, 8), value);
+    }
+
+    private void updateDouble(FixedColumn column, long offset, long lo, long hi) {
+        double min = getDouble(offset);
+        double max = getDouble(offset + 8);
+        long nulls = 0;
+
+        for (long i = lo; i < hi; i++) {
+            double v = columnType == ColumnType.FLOAT ? column.getFloat(i) : column.getDouble(i);
+            if (v != v) {
+                nulls++;
+            } else {
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+        }
+
+        putDouble(offset, min);
+        putDouble(offset + 8, max);
+        putLong(offset + 16, getLong(offset + 16) + nulls);
+
+        if (min < getDouble(PARTITION_ENTRY)) {
+            putDouble(PARTITION_ENTRY, min);
+        }
+        if (max > getDouble(PARTITION_ENTRY + 8)) {
+            putDouble(PARTITION_ENTRY + 8, max);
+        }
+        putLong(PARTITION_ENTRY + 16, getLong(PARTITION_ENTRY + 16) + nulls);
+    }
+
+    private void updateLong(FixedColumn column, long offset, long lo, long hi) {
+        long min = getLong(offset);
+        long max = getLong(offset + 8);
+        long nulls = 0;
+        boolean isInt = columnType == ColumnType.INT;
+
+        for (long i = lo; i < hi; i++) {
+            long v;
+            if (isInt) {
+                int n = column.getInt(i);
+                v = n == Numbers.INT_NaN ? Numbers.LONG_NaN : n;
+            } else {
+                v = column.getLong(i);
+            }
+
+            if (v == Numbers.LONG_NaN) {
+                nulls++;
+            } else {
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+        }
+
+        putLong(offset, min);
+        putLong(offset + 8, max);
+        putLong(offset + 16, getLong(offset + 16) + nulls);
+
+        if (min < getLong(PARTITION_ENTRY)) {
+            putLong(PARTITION_ENTRY, min);
+        }
+        if (max > getLong(PARTITION_ENTRY + 8)) {
+            putLong(PARTITION_ENTRY + 8, max);
+        }
+        putLong(PARTITION_ENTRY + 16, getLong(PARTITION_ENTRY + 16) + nulls);
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.ByteBuffers;
+import com.questdb.misc.Files;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.LongList;
+import com.questdb.std.Path;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Read-only column file compressed by {@link ColumnCodec}. Pages are blocks of compressed file, which are decoded
+ * into memory when they are first accessed and released together with other pages, so reading part of column does
+ * not decode the rest of it.
+ */
+public class CompressedMemoryFile extends MemoryFile {
+    private final File file;
+    private final ColumnCodec codec = new ColumnCodec();
+    private final LongList blocks = new LongList();
+    private final long length;
+    private final int codecType;
+    private long fd = -1;
+
+    public CompressedMemoryFile(File file, int journalMode) throws JournalException {
+        super(file, ColumnCodec.BLOCK_BITS, journalMode == JournalMode.BULK_READ ? JournalMode.BULK_READ : JournalMode.READ, false, true);
+        this.file = file;
+        this.length = getAppendOffset();
+        long fd;
+        try (Path path = new Path(file.getAbsolutePath())) {
+            fd = Files.openRO(path);
+        }
+
+        if (fd < 0) {
+            codec.close();
+            super.close();
+            throw new JournalException("Cannot open %s", file.getAbsolutePath());
+        }
+        this.fd = fd;
+
+        try {
+            this.codecType = codec.readHeader(fd, file, blocks);
+        } catch (JournalException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (fd != -1) {
+            Files.close(fd);
+            fd = -1;
+            codec.close();
+        }
+    }
+
+    @Override
+    public void compact() {
+        // compressed file is as compact as it gets
+    }
+
+    @Override
+    public void force() {
+        // nothing is ever written
+    }
+
+    @Override
+    public void setAppendOffset(long offset) {
+        throw new JournalRuntimeException("Compressed column is read-only: %s", file.getAbsolutePath());
+    }
+
+    @Override
+    protected MappedByteBuffer mapBufferInternal(long offset, int size) {
+        int sz = (int) Math.min(size, length - offset);
+        assert sz > 0;
+
+        // direct buffer is MappedByteBuffer that is not backed by file
+        MappedByteBuffer buf = (MappedByteBuffer) ByteBuffer.allocateDirect(sz).order(ByteOrder.LITTLE_ENDIAN);
+        long address = ByteBuffers.getAddress(buf);
+        int lo = (int) (offset >>> ColumnCodec.BLOCK_BITS);
+        int hi = (int) ((offset + sz - 1) >>> ColumnCodec.BLOCK_BITS);
+
+        try {
+            if (lo == hi && sz == blockSize(lo)) {
+                codec.decodeBlock(fd, file, codecType, blocks.getQuick(lo), sz, address);
+            } else {
+                // stitch of values that cross block boundary
+                long tmp = Unsafe.malloc(ColumnCodec.BLOCK_SIZE);
+                try {
+                    for (int i = lo; i <= hi; i++) {
+                        long blockLo = (long) i << ColumnCodec.BLOCK_BITS;
+                        int n = blockSize(i);
+                        codec.decodeBlock(fd, file, codecType, blocks.getQuick(i), n, tmp);
+                        long from = Math.max(offset, blockLo);
+                        long to = Math.min(offset + sz, blockLo + n);
+                        Unsafe.getUnsafe().copyMemory(tmp + from - blockLo, address + from - offset, to - from);
+                    }
+                } finally {
+                    Unsafe.free(tmp, ColumnCodec.BLOCK_SIZE);
+                }
+            }
+        } catch (JournalException e) {
+            ByteBuffers.release(buf);
+            throw new JournalRuntimeException(e);
+        }
+        return buf;
+    }
+
+    private int blockSize(int block) {
+        return (int) Math.min(ColumnCodec.BLOCK_SIZE, length - ((long) block << ColumnCodec.BLOCK_BITS));
+    }
+}
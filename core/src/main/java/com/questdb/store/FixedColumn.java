@@ -33,6 +33,18 @@ public class FixedColumn extends AbstractColumn {
         this.width = width;
     }
 
+    /**
+     * Appends values of rows of another column of the same width.
+     *
+     * @param that  column to copy values from
+     * @param lo    first row to copy
+     * @param count number of rows to copy
+     */
+    public void append(FixedColumn that, long lo, long count) {
+        appendBytes(that, that.getOffset(lo), count * width);
+        commit();
+    }
+
     public long bsearchEdge(long val, BSearchType type) {
         return bsearchEdge(val, type, 0, size() - 1);
     }
@@ -65,6 +77,14 @@ public class FixedColumn extends AbstractColumn {
         Unsafe.getUnsafe().copyMemory(obj, offset, null, getAddress(), width);
     }
 
+    /**
+     * Address of value in given row. Values of rows that follow are adjacent in memory,
+     * {@link #getPageRows(long)} tells how many of them can be read from this address.
+     */
+    public long getAddress(long localRowID) {
+        return mappedFile.addressOf(getOffset(localRowID), width);
+    }
+
     public boolean getBool(long localRowID) {
         return Unsafe.getBool(mappedFile.addressOf(getOffset(localRowID), 1));
     }
@@ -89,6 +109,15 @@ public class FixedColumn extends AbstractColumn {
         return Unsafe.getUnsafe().getLong(mappedFile.addressOf(getOffset(localRowID), 8));
     }
 
+    /**
+     * Number of rows, starting with given one, that are mapped into contiguous block of memory.
+     */
+    public int getPageRows(long localRowID) {
+        long offset = getOffset(localRowID);
+        mappedFile.addressOf(offset, width);
+        return mappedFile.pageRemaining(offset) / width;
+    }
+
     @Override
     public long getOffset(long localRowID) {
         return localRowID * width;
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+/**
+ * Types of index partition can keep for indexed column.
+ */
+public final class IndexType {
+    /**
+     * Key-value index, see {@link KVIndex}. Row IDs of key are stored as blocks of longs.
+     */
+    public static final int KV = 0;
+    /**
+     * Compressed bitmap index, see {@link BitmapIndex}. Suits columns with few distinct values.
+     */
+    public static final int BITMAP = 1;
+
+    private IndexType() {
+    }
+
+    public static String nameOf(int indexType) {
+        switch (indexType) {
+            case KV:
+                return "KV";
+            case BITMAP:
+                return "BITMAP";
+            default:
+                return "UNKNOWN";
+        }
+    }
+}
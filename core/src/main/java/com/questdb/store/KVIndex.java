@@ -32,10 +32,9 @@ import com.questdb.misc.Numbers;
 import com.questdb.misc.Unsafe;
 import com.questdb.std.LongList;
 
-import java.io.Closeable;
 import java.io.File;
 
-public class KVIndex implements Closeable {
+public class KVIndex implements ColumnIndex {
 
     /*
         storage for row count and offset
@@ -43,8 +43,13 @@ public class MemoryFile implements Closeable {
     // reserve first 8 bytes in the file for storing pointer to logical end of file
     // so the actual data begins from "DATA_OFFSET"
     private final static int DATA_OFFSET = 8;
+    // largest data region that can be mapped by single MappedByteBuffer
+    private final static long MAX_CONTIGUOUS_SIZE = Integer.MAX_VALUE - DATA_OFFSET;
+    private static final boolean CONTIGUOUS_DEFAULT = Os.type != Os._32Bit && System.getProperty("questDbContiguousMmap") != null;
     private final File file;
     private final int journalMode;
+    // pages of files that supply their own content are never enlarged to fit file
+    private final boolean fixedBitHint;
     private int bitHint;
     private FileChannel channel;
     private MappedByteBuffer offsetBuffer;
@@ -57,10 +62,29 @@ public class MemoryFile implements Closeable {
     private long cachedAddress;
     private long offsetDirectAddr;
     private boolean unlockedBuffers = true;
+    // contiguous mode maps whole file as single buffer, which is re-mapped to a larger size on demand.
+    // Buffers that were superseded by re-map, or by switch to paged mapping, are retained until file
+    // is closed because callers might still be holding addresses inside them. Bulk modes are exempt,
+    // same as they are with pages.
+    private boolean contiguous;
+    private MappedByteBuffer contiguousBuffer;
+    private long contiguousAddress;
+    private long contiguousSize = 0;
+    private ObjList<MappedByteBuffer> retired;
 
     public MemoryFile(File file, int bitHint, int journalMode) throws JournalException {
+        this(file, bitHint, journalMode, CONTIGUOUS_DEFAULT);
+    }
+
+    public MemoryFile(File file, int bitHint, int journalMode, boolean contiguous) throws JournalException {
+        this(file, bitHint, journalMode, contiguous, false);
+    }
+
+    protected MemoryFile(File file, int bitHint, int journalMode, boolean contiguous, boolean fixedBitHint) throws JournalException {
         this.file = file;
         this.journalMode = journalMode;
+        this.contiguous = contiguous;
+        this.fixedBitHint = fixedBitHint;
         if (bitHint < 2) {
             LOG.info().$("BitHint is too small for ").$(file).$();
         }
@@ -68,9 +92,17 @@ public class MemoryFile implements Closeable {
         long size = open();
         this.buffers = new ObjList<>((int) (size >>> bitHint) + 1);
         this.stitches = new ObjList<>(buffers.size());
+        this.retired = contiguous ? new ObjList<MappedByteBuffer>() : null;
     }
 
     public long addressOf(long offset, int size) {
+        if (contiguous) {
+            if (offset + size <= contiguousSize) {
+                return contiguousAddress + offset;
+            }
+            return remapAddress(offset, size);
+        }
+
         if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
             return cachedAddress + offset - cachedBufferLo - 1;
         } else {
@@ -111,6 +143,9 @@ public class MemoryFile implements Closeable {
     public void force() {
         int stitchesSize = stitches.size();
         offsetBuffer.force();
+        if (contiguousBuffer != null) {
+            contiguousBuffer.force();
+        }
         for (int i = 0, k = buffers.size(); i < k; i++) {
             MappedByteBuffer b = buffers.getQuick(i);
             if (b != null) {
@@ -142,6 +177,17 @@ public class MemoryFile implements Closeable {
     }
 
     public MappedByteBuffer getBuffer(long offset, int size) {
+        if (contiguous) {
+            if (offset + size > contiguousSize) {
+                remapAddress(offset, size);
+            }
+
+            if (contiguous) {
+                contiguousBuffer.position((int) offset);
+                return contiguousBuffer;
+            }
+        }
+
         if (offset > cachedBufferLo && offset + size < cachedBufferHi) {
             cachedBuffer.position((int) (offset - cachedBufferLo - 1));
         } else {
@@ -153,6 +199,10 @@ public class MemoryFile implements Closeable {
         return cachedBuffer;
     }
 
+    public boolean isContiguous() {
+        return contiguous;
+    }
+
     public void lockBuffers() {
         unlockedBuffers = false;
     }
@@ -252,11 +302,79 @@ public class MemoryFile implements Closeable {
         return buffer;
     }
 
+    private long remapAddress(long offset, int size) {
+        long required = offset + size;
+
+        if (required > MAX_CONTIGUOUS_SIZE) {
+            // file outgrew what can be mapped in one go, continue with paged mapping
+            LOG.info().$("Contiguous mapping is too large, switching to pages for ").$(file).$();
+            // addresses inside contiguous buffer remain valid until file is closed
+            if (contiguousBuffer != null) {
+                retired.add(contiguousBuffer);
+                contiguousBuffer = null;
+            }
+            contiguousAddress = 0;
+            contiguousSize = 0;
+            contiguous = false;
+            return allocateAddress(offset, size);
+        }
+
+        long sz;
+        switch (journalMode) {
+            case JournalMode.READ:
+            case JournalMode.BULK_READ:
+                try {
+                    sz = Math.min(Math.max(required, channel.size() - DATA_OFFSET), MAX_CONTIGUOUS_SIZE);
+                } catch (IOException e) {
+                    throw new JournalRuntimeException("Failed to get size of: %s", e, file.getAbsolutePath());
+                }
+                break;
+            default:
+                // grow geometrically in page increments to keep number of re-maps logarithmic
+                long pageMask = (1L << bitHint) - 1;
+                sz = Math.max(required, contiguousSize << 1);
+                sz = Math.min((sz + pageMask) & ~pageMask, MAX_CONTIGUOUS_SIZE);
+                break;
+        }
+
+        MappedByteBuffer buffer = mapBufferInternal(0, (int) sz);
+        if (contiguousBuffer != null) {
+            if (unlockedBuffers && (journalMode == JournalMode.BULK_READ || journalMode == JournalMode.BULK_APPEND)) {
+                // same as with pages, bulk operations should not hold on to memory they have moved past
+                ByteBuffers.release(contiguousBuffer);
+            } else {
+                retired.add(contiguousBuffer);
+            }
+        }
+        contiguousBuffer = buffer;
+        contiguousAddress = ByteBuffers.getAddress(buffer);
+        contiguousSize = buffer.limit();
+        return contiguousAddress + offset;
+    }
+
+    private void releaseContiguous() {
+        for (int i = 0, k = retired.size(); i < k; i++) {
+            ByteBuffers.release(retired.getQuick(i));
+        }
+        retired.clear();
+        contiguousBuffer = ByteBuffers.release(contiguousBuffer);
+        contiguousAddress = 0;
+        contiguousSize = 0;
+    }
+
     private String getFullFileName() {
         return this.file.getAbsolutePath();
     }
 
-    private MappedByteBuffer mapBufferInternal(long offset, int size) {
+    /**
+     * Maps region of data. Subclasses can supply content of their own, in which case file is only used to
+     * keep length of data.
+     *
+     * @param offset offset of region relative to start of data
+     * @param size   size of region
+     * @return buffer of region
+     */
+    protected MappedByteBuffer mapBufferInternal(long offset, int size) {
         long actualOffset = offset + DATA_OFFSET;
 
         try {
@@ -334,7 +452,7 @@ public class MemoryFile implements Closeable {
             offsetDirectAddr = ByteBuffers.getAddress(offsetBuffer);
             // adjust bitHint to make sure it is not too small
             long offset = getAppendOffset();
-            if (offset > 0) {
+            if (offset > 0 && !fixedBitHint) {
                 if (offset > Integer.MAX_VALUE) {
                     bitHint = 30;
                 } else {
@@ -360,6 +478,10 @@ public class MemoryFile implements Closeable {
     }
 
     int pageRemaining(long offset) {
+        if (contiguous) {
+            return offset < contiguousSize ? (int) (contiguousSize - offset) : 0;
+        }
+
         if (offset > cachedBufferLo && offset < cachedBufferHi) {
             return (int) (cachedBufferHi - offset - 1);
         } else {
@@ -368,6 +490,10 @@ public class MemoryFile implements Closeable {
     }
 
     private void unmap() {
+        if (retired != null) {
+            releaseContiguous();
+        }
+
         for (int i = 0, k = buffers.size(); i < k; i++) {
             ByteBuffers.release(buffers.getQuick(i));
         }
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.misc.Chars;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Unsafe;
+import com.questdb.std.Mutable;
+
+import java.util.HashMap;
+
+/**
+ * Open addressing map of symbol values to their keys. Values themselves are not kept, candidates are compared
+ * against symbol data column instead. Entries live in single int array, so cache holds no object references
+ * for garbage collector to trace, and neither lookups nor inserts allocate.
+ * <p>
+ * Each entry is two ints: key + 1, where zero marks free slot, and hash code of value.
+ * <p>
+ * Symbol tables of all journals open on the same data file share one cache, which is obtained by
+ * {@link #acquire(String, int)} and freed once every table has released it. Entries are hints: key is
+ * returned only after value is confirmed against caller's own data column and key is within caller's view
+ * of symbol table, so readers behind newest transaction never see keys they do not have. Lookups take no
+ * locks. Inserts are serialized and publish new entry by writing its key last; reader that sees partially
+ * written entry, or array that rehash has replaced, misses and falls back to symbol index.
+ */
+final class SymbolKeyCache implements Mutable {
+    private static final int MIN_CAPACITY = 16;
+    private static final HashMap<String, SymbolKeyCache> CACHES = new HashMap<>();
+    private final String path;
+    private final int initialCapacity;
+    private volatile int[] entries;
+    private int free;
+    private int refCount;
+
+    private SymbolKeyCache(String path, int keyCount) {
+        this.path = path;
+        this.initialCapacity = Numbers.ceilPow2(Math.max(MIN_CAPACITY, keyCount * 2));
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Finds cache of symbol data file or creates one.
+     *
+     * @param path     absolute path of symbol data file
+     * @param keyCount expected number of keys, used when cache is created
+     * @return cache to be released by {@link #release()}
+     */
+    static SymbolKeyCache acquire(String path, int keyCount) {
+        synchronized (CACHES) {
+            SymbolKeyCache cache = CACHES.get(path);
+            if (cache == null) {
+                CACHES.put(path, cache = new SymbolKeyCache(path, keyCount));
+            }
+            cache.refCount++;
+            return cache;
+        }
+    }
+
+    static int hashCode(CharSequence value) {
+        int h = Chars.hashCode(value);
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public synchronized void clear() {
+        // readers may be probing current array, it is replaced rather than wiped
+        allocate(initialCapacity);
+    }
+
+    /**
+     * @param value value to look up
+     * @param hash  hash code of value
+     * @param data  symbol data column of caller
+     * @param size  number of keys caller's symbol table has
+     * @return key of value or {@link SymbolTable#VALUE_NOT_FOUND} when value is not cached
+     */
+    int get(CharSequence value, int hash, VariableColumn data, int size) {
+        final int[] entries = this.entries;
+        final int mask = (entries.length >> 1) - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int k = Unsafe.arrayGet(entries, i << 1);
+            if (k == 0) {
+                return SymbolTable.VALUE_NOT_FOUND;
+            }
+
+            if (k <= size && Unsafe.arrayGet(entries, (i << 1) + 1) == hash && data.cmpStr(k - 1, value)) {
+                return k - 1;
+            }
+        }
+    }
+
+    synchronized void put(int key, int hash) {
+        int[] entries = this.entries;
+        int mask = (entries.length >> 1) - 1;
+        int i = hash & mask;
+        int k;
+        while ((k = Unsafe.arrayGet(entries, i << 1)) != 0) {
+            // another table sharing cache has added the same key
+            if (k == key + 1) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (free == 0) {
+            rehash();
+            entries = this.entries;
+            mask = (entries.length >> 1) - 1;
+            i = hash & mask;
+            while (Unsafe.arrayGet(entries, i << 1) != 0) {
+                i = (i + 1) & mask;
+            }
+        }
+        Unsafe.arrayPut(entries, (i << 1) + 1, hash);
+        Unsafe.arrayPut(entries, i << 1, key + 1);
+        free--;
+    }
+
+    void release() {
+        synchronized (CACHES) {
+            if (--refCount == 0) {
+                CACHES.remove(path);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.free = capacity >> 1;
+        this.entries = new int[capacity << 1];
+    }
+
+    private void rehash() {
+        int[] old = entries;
+        int[] entries = new int[old.length << 1];
+        int mask = (entries.length >> 1) - 1;
+        int n = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            int k = Unsafe.arrayGet(old, i);
+            if (k != 0) {
+                int hash = Unsafe.arrayGet(old, i + 1);
+                int j = hash & mask;
+                while (Unsafe.arrayGet(entries, j << 1) != 0) {
+                    j = (j + 1) & mask;
+                }
+                Unsafe.arrayPut(entries, j << 1, k);
+                Unsafe.arrayPut(entries, (j << 1) + 1, hash);
+                n++;
+            }
+        }
+        this.free = (entries.length >> 2) - n;
+        // array is published once filled
+        this.entries = entries;
+    }
+}
@@ -32,8 +32,6 @@ import com.questdb.misc.Hash;
 import com.questdb.misc.Misc;
 import com.questdb.misc.Numbers;
 import com.questdb.std.AbstractImmutableIterator;
-import com.questdb.std.CharSequenceIntHashMap;
-import com.questdb.std.ObjList;
 
 import java.io.Closeable;
 import java.io.File;
@@ -48,8 +46,7 @@ public class SymbolTable implements Closeable {
     private static final double CACHE_LOAD_FACTOR = 0.2;
     private final int hashKeyCount;
     private final String column;
-    private final CharSequenceIntHashMap valueCache;
-    private final ObjList<String> keyCache;
+    private final SymbolKeyCache valueCache;
     private final boolean noCache;
     private final Iter iter = new Iter();
     private VariableColumn data;
@@ -94,8 +91,7 @@ public class SymbolTable implements Closeable {
             this.data.close();
             throw e;
         }
-        this.valueCache = new CharSequenceIntHashMap(noCache ? 0 : keyCount, 0.5, VALUE_NOT_FOUND);
-        this.keyCache = new ObjList<>(noCache ? 0 : keyCount);
+        this.valueCache = noCache ? null : SymbolKeyCache.acquire(new File(directory, column + DATA_FILE_SUFFIX).getAbsolutePath(), keyCount);
     }
 
     public void alignSize() {
@@ -108,6 +104,9 @@ public class SymbolTable implements Closeable {
     }
 
     public void close() {
+        if (valueCache != null && data != null) {
+            valueCache.release();
+        }
         data = Misc.free(data);
         index = Misc.free(index);
     }
@@ -135,6 +134,37 @@ public class SymbolTable implements Closeable {
         return data;
     }
 
+    /**
+     * Value of key as flyweight over symbol data, valid until next call of this method.
+     *
+     * @param key symbol key
+     * @return value or null when key is negative
+     */
+    public CharSequence getFlyweightValue(int key) {
+        if (key < 0) {
+            return null;
+        }
+
+        if (key < size) {
+            return data.getFlyweightStr(key);
+        }
+        throw new JournalRuntimeException("Invalid symbol key: " + key);
+    }
+
+    /**
+     * Same as {@link #getFlyweightValue(int)}, but returns separate flyweight, so that two values can be compared.
+     */
+    public CharSequence getFlyweightValueB(int key) {
+        if (key < 0) {
+            return null;
+        }
+
+        if (key < size) {
+            return data.getFlyweightStrB(key);
+        }
+        throw new JournalRuntimeException("Invalid symbol key: " + key);
+    }
+
     public long getIndexTxAddress() {
         return index.getTxAddress();
     }
@@ -145,21 +175,28 @@ public class SymbolTable implements Closeable {
         }
 
         if (!noCache) {
-            int key = valueCache.get(value);
+            int hash = SymbolKeyCache.hashCode(value);
+            int key = valueCache.get(value, hash, data, size);
             if (key != VALUE_NOT_FOUND) {
                 return key;
             }
+            key = get0(value);
+            if (key != VALUE_NOT_FOUND) {
+                valueCache.put(key, hash);
+            }
+            return key;
         }
 
         return get0(value);
     }
 
     public SymbolTable preLoad() {
-        for (int key = 0, size = (int) data.size(); key < size; key++) {
-            String value = data.getStr(key);
-            valueCache.putIfAbsent(value, key);
-            keyCache.add(value);
+        if (noCache) {
+            return this;
+        }
 
+        for (int key = 0, size = (int) data.size(); key < size; key++) {
+            valueCache.put(key, SymbolKeyCache.hashCode(data.getFlyweightStr(key)));
         }
         return this;
     }
@@ -171,7 +208,9 @@ public class SymbolTable implements Closeable {
             data.commit();
             index.add(hashKey(value), key);
             size++;
-            cache(key, value.toString());
+            if (!noCache) {
+                valueCache.put(key, SymbolKeyCache.hashCode(value));
+            }
         }
         return key;
     }
@@ -202,20 +241,22 @@ public class SymbolTable implements Closeable {
         }
     }
 
+    /**
+     * Value of key as new String. Values are not cached on heap, callers that do not keep value should use
+     * {@link #getFlyweightValue(int)}.
+     *
+     * @param key symbol key
+     * @return value or null when key is negative
+     */
     public String value(int key) {
         if (key < 0) {
             return null;
         }
 
         if (key < size) {
-            String value = key < keyCache.size() ? keyCache.getQuick(key) : null;
-            if (value == null) {
-                cache(key, value = data.getStr(key));
-            }
-            return value;
+            return data.getStr(key);
         }
         throw new JournalRuntimeException("Invalid symbol key: " + key);
-
     }
 
     public boolean valueExists(CharSequence value) {
@@ -228,18 +269,10 @@ public class SymbolTable implements Closeable {
         return iter;
     }
 
-    private void cache(int key, String value) {
-        if (noCache) {
-            return;
-        }
-
-        valueCache.put(value, key);
-        keyCache.extendAndSet(key, value);
-    }
-
     private void clearCache() {
-        valueCache.clear();
-        keyCache.clear();
+        if (!noCache) {
+            valueCache.clear();
+        }
     }
 
     private int get0(CharSequence value) {
@@ -253,7 +286,6 @@ public class SymbolTable implements Closeable {
         while (cursor.hasNext()) {
             int key;
             if (data.cmpStr((key = (int) cursor.next()), value)) {
-                cache(key, value.toString());
                 return key;
             }
         }
@@ -29,6 +29,8 @@ public class Tx {
 
     public static final byte TX_NORMAL = 0;
     public static final byte TX_FORCE = 1;
+    // flag of transaction that replaced partition directories or inserted partitions before last one
+    public static final byte TX_PARTITIONS = 2;
     public long address;
     public long prevTxAddress;
     public byte command;
@@ -102,6 +102,13 @@ public class TxLog implements Closeable {
         return hb.getLong();
     }
 
+    /**
+     * Number, which is going to be given to next transaction unless caller supplies its own.
+     */
+    public long getNextTxn() {
+        return txn;
+    }
+
     public boolean hasNext() {
         return readCurrentTxAddress() > headAddress;
     }
@@ -117,6 +124,27 @@ public class TxLog implements Closeable {
         return hb.getAppendOffset() < 10 || readCurrentTxAddress() < 1;
     }
 
+    /**
+     * Checks if transactions committed on top of one at given address replaced or inserted partitions.
+     * Transaction that is no longer part of the log, which is the case after rollback, is treated as such change.
+     *
+     * @param address address of transaction to check from
+     * @return true if partitions have to be discovered again
+     */
+    public boolean isPartitionChanged(long address) {
+        long a = getCurrentTxAddress();
+        while (a > address) {
+            // command follows previous address, txn, pin and timestamp
+            hb.setPos(a + 32);
+            if ((hb.get() & Tx.TX_PARTITIONS) != 0) {
+                return true;
+            }
+            hb.setPos(a);
+            a = hb.getLong();
+        }
+        return a != address;
+    }
+
     public void read(long address, Tx tx) {
         assert address > 0 : "zero headAddress: " + address;
         tx.address = address;
@@ -52,6 +52,25 @@ public class VariableColumn extends AbstractColumn {
         this.indexColumn = new FixedColumn(indexFile, 8);
     }
 
+    /**
+     * Appends values of rows of another column. Values are copied as they are stored, without being decoded.
+     *
+     * @param that  column to copy values from
+     * @param lo    first row to copy
+     * @param count number of rows to copy
+     */
+    public void append(VariableColumn that, long lo, long count) {
+        long hi = lo + count;
+        long offset = that.getOffset(lo);
+        long delta = getOffset() - offset;
+        appendBytes(that, offset, (hi < that.size() ? that.getOffset(hi) : that.getOffset()) - offset);
+        for (long r = lo; r < hi; r++) {
+            indexColumn.putLong(that.getOffset(r) + delta);
+            indexColumn.commit();
+        }
+        commit();
+    }
+
     @Override
     public void close() {
         indexColumn.close();
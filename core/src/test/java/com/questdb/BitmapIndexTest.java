@@ -0,0 +1,290 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.ex.JournalException;
+import com.questdb.ex.JournalRuntimeException;
+import com.questdb.misc.Rnd;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.store.*;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class BitmapIndexTest extends AbstractTest {
+    private static final int ROWS = 300000;
+    private File indexFile;
+    private File kvFile;
+
+    @Before
+    public void setUp() {
+        indexFile = new File(factory.getConfiguration().getJournalBase(), "bitmap-test");
+        kvFile = new File(factory.getConfiguration().getJournalBase(), "kv-test");
+    }
+
+    @Test
+    public void testAgainstKvIndex() throws Exception {
+        try (BitmapIndex index = new BitmapIndex(indexFile, 16, ROWS, 1, JournalMode.APPEND, 0);
+             KVIndex kv = new KVIndex(kvFile, 16, ROWS, 1, JournalMode.APPEND, 0)) {
+            populate(new Rnd(), 0, ROWS, index, kv);
+            index.commit();
+            kv.commit();
+
+            assertSame(kv, index);
+            // low cardinality column takes fraction of space
+            Assert.assertTrue(new File(indexFile.getParentFile(), indexFile.getName() + BitmapIndex.DATA_FILE_SUFFIX).length() * 2
+                    < new File(kvFile.getParentFile(), kvFile.getName() + ".r").length());
+        }
+
+        try (BitmapIndex index = new BitmapIndex(indexFile, 16, ROWS, 1, JournalMode.READ, 0);
+             KVIndex kv = new KVIndex(kvFile, 16, ROWS, 1, JournalMode.READ, 0)) {
+            assertSame(kv, index);
+        }
+    }
+
+    @Test
+    public void testAppendNullAfterTruncate() throws JournalException {
+        try (BitmapIndex index = new BitmapIndex(indexFile, 2, 1, 1, JournalMode.APPEND, 0)) {
+            for (int i = -1; i < 2; i++) {
+                index.add(i, i + 1);
+            }
+
+            Assert.assertEquals(3, index.size());
+
+            index.truncate(0);
+
+            Assert.assertEquals(0, index.size());
+            Assert.assertFalse(index.contains(-1));
+            index.add(-1, 10);
+            Assert.assertEquals(11, index.size());
+            Assert.assertEquals(10, index.lastValue(-1));
+        }
+    }
+
+    @Test
+    public void testCursorIntersectsIndexes() throws Exception {
+        File otherFile = new File(factory.getConfiguration().getJournalBase(), "bitmap-other");
+        Rnd rnd = new Rnd();
+        int a[] = new int[ROWS];
+        int b[] = new int[ROWS];
+        try (BitmapIndex ia = new BitmapIndex(indexFile, 4, ROWS, 1, JournalMode.APPEND, 0);
+             BitmapIndex ib = new BitmapIndex(otherFile, 32, ROWS, 1, JournalMode.APPEND, 0)) {
+            for (int i = 0; i < ROWS; i++) {
+                // second half of rows has no "b" values below 16
+                ia.add(a[i] = rnd.nextPositiveInt() % 4, i);
+                ib.add(b[i] = rnd.nextPositiveInt() % 16 + (i < ROWS / 2 ? 0 : 16), i);
+            }
+            ia.commit();
+            ib.commit();
+
+            IntList ka = new IntList();
+            ka.add(1);
+            ka.add(3);
+            // key, which does not exist, is ignored
+            ka.add(SymbolTable.VALUE_NOT_FOUND);
+            IntList kb = new IntList();
+            kb.add(5);
+
+            BitmapIndexCursor cursor = new BitmapIndexCursor();
+            long lo = 1000;
+            long hi = ROWS - 1000;
+            cursor.and(ia, ka).and(ib, kb).prepare(lo, hi);
+            int count = 0;
+            for (long i = lo; i < hi; i++) {
+                if ((a[(int) i] == 1 || a[(int) i] == 3) && b[(int) i] == 5) {
+                    Assert.assertTrue(cursor.hasNext());
+                    Assert.assertEquals(i, cursor.next());
+                    count++;
+                }
+            }
+            Assert.assertFalse(cursor.hasNext());
+            Assert.assertTrue(count > 0);
+
+            // union alone
+            cursor.clear().and(ia, ka).prepare(0, ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                if (a[i] == 1 || a[i] == 3) {
+                    Assert.assertTrue(cursor.hasNext());
+                    Assert.assertEquals(i, cursor.next());
+                }
+            }
+            Assert.assertFalse(cursor.hasNext());
+
+            // terms, which have nothing in common
+            kb.clear();
+            kb.add(20);
+            cursor.clear().and(ib, kb).and(ia, ka).prepare(0, ROWS / 2);
+            Assert.assertFalse(cursor.hasNext());
+        }
+    }
+
+    @Test
+    public void testGetValueQuick() throws Exception {
+        long expected[][] = {
+                {0, 3, 5, 6, 8, 10, 12, 14, 16, 22, 70000, 70001, 200000},
+                {1, 2, 3, 4, 6, 8, 9, 11, 16, 21, 33}
+        };
+        try (BitmapIndex index = new BitmapIndex(indexFile, 10, 60, 1, JournalMode.APPEND, 0)) {
+            for (int i = 0; i < expected.length; i++) {
+                for (int k = 0; k < expected[i].length; k++) {
+                    index.add(i, expected[i][k]);
+                }
+            }
+
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i].length, index.getValueCount(i));
+                for (int k = 0; k < expected[i].length; k++) {
+                    Assert.assertEquals(expected[i][k], index.getValueQuick(i, k));
+                }
+            }
+            Assert.assertEquals(200001, index.size());
+        }
+    }
+
+    @Test
+    public void testIndexTx() throws Exception {
+        try (BitmapIndex index = new BitmapIndex(indexFile, 16, ROWS, 1, JournalMode.APPEND, 0);
+             KVIndex kv = new KVIndex(kvFile, 16, ROWS, 1, JournalMode.APPEND, 0)) {
+            Rnd rnd = new Rnd();
+            populate(rnd, 0, ROWS / 2, index, kv);
+            index.commit();
+            kv.commit();
+
+            try (BitmapIndex reader = new BitmapIndex(indexFile, 16, ROWS, 1, JournalMode.READ, index.getTxAddress())) {
+                // rows of next transaction grow array containers and turn them into bitmaps
+                populate(rnd, ROWS / 2, ROWS, index, null);
+                index.commit();
+
+                assertSame(kv, reader);
+
+                reader.setTxAddress(0);
+                Assert.assertEquals(ROWS, reader.size());
+                Assert.assertEquals(index.getValueCount(0), reader.getValueCount(0));
+            }
+        }
+    }
+
+    @Test(expected = JournalRuntimeException.class)
+    public void testKeyOutOfBounds() throws JournalException {
+        try (BitmapIndex index = new BitmapIndex(indexFile, 10, 60, 1, JournalMode.APPEND, 0)) {
+            index.add(0, 0);
+            index.lastValue(1);
+        }
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        long sizes[] = {ROWS - 1, 200000, 131072, 131071, 70000, 65536, 100, 0};
+        for (long size : sizes) {
+            BitmapIndex.delete(indexFile);
+            KVIndex.delete(kvFile);
+            try (BitmapIndex index = new BitmapIndex(indexFile, 16, ROWS, 1, JournalMode.APPEND, 0);
+                 KVIndex kv = new KVIndex(kvFile, 16, ROWS, 1, JournalMode.APPEND, 0)) {
+                Rnd rnd = new Rnd();
+                populate(rnd, 0, ROWS, index, kv);
+                index.commit();
+                kv.commit();
+
+                index.truncate(size);
+                kv.truncate(size);
+                assertSame(kv, index);
+
+                // index carries on after truncate
+                populate(rnd, size, size + 1000, index, kv);
+                index.commit();
+                kv.commit();
+                assertSame(kv, index);
+            }
+        }
+    }
+
+    @Test(expected = JournalRuntimeException.class)
+    public void testValuesMustAscend() throws JournalException {
+        try (BitmapIndex index = new BitmapIndex(indexFile, 10, 60, 1, JournalMode.APPEND, 0)) {
+            index.add(0, 10);
+            index.add(0, 5);
+        }
+    }
+
+    private static void assertSame(KVIndex expected, BitmapIndex actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        LongList values = new LongList();
+        for (int key = -1; key < 16; key++) {
+            int count = expected.getValueCount(key);
+            Assert.assertEquals(count, actual.getValueCount(key));
+            Assert.assertEquals(expected.contains(key), actual.contains(key));
+
+            if (count == 0) {
+                Assert.assertFalse(actual.fwdCursor(key).hasNext());
+                continue;
+            }
+
+            Assert.assertEquals(expected.lastValue(key), actual.lastValue(key));
+
+            IndexCursor e = expected.fwdCursor(key);
+            IndexCursor a = actual.fwdCursor(key);
+            Assert.assertEquals(e.size(), a.size());
+            while (e.hasNext()) {
+                Assert.assertTrue(a.hasNext());
+                Assert.assertEquals(e.next(), a.next());
+            }
+            Assert.assertFalse(a.hasNext());
+
+            if (key > -1) {
+                e = expected.cursor(key);
+                a = actual.cursor(key);
+                Assert.assertEquals(e.size(), a.size());
+                while (e.hasNext()) {
+                    Assert.assertTrue(a.hasNext());
+                    Assert.assertEquals(e.next(), a.next());
+                }
+                Assert.assertFalse(a.hasNext());
+
+                actual.getValues(key, values);
+                Assert.assertEquals(count, values.size());
+                for (int i = 0; i < count; i += 997) {
+                    Assert.assertEquals(values.getQuick(i), expected.getValueQuick(key, i));
+                    Assert.assertEquals(values.getQuick(i), actual.getValueQuick(key, i));
+                }
+            }
+        }
+    }
+
+    private static void populate(Rnd rnd, long lo, long hi, BitmapIndex index, KVIndex kv) {
+        for (long i = lo; i < hi; i++) {
+            // key 0 takes half of rows and gets bitmap containers, the rest stay arrays
+            int r = rnd.nextPositiveInt();
+            int key = (r & 1) == 0 ? 0 : (r >>> 1) % 16 - 1;
+            index.add(key, i);
+            if (kv != null) {
+                kv.add(key, i);
+            }
+        }
+    }
+}
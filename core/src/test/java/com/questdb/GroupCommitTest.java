@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.model.Quote;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GroupCommitTest extends AbstractTest {
+
+    @Test
+    public void testAsyncCommits() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "expected")) {
+            TestUtils.generateQuoteData(w, 10000);
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "actual")) {
+            w.setGroupCommit(true);
+            Assert.assertTrue(w.isGroupCommit());
+
+            try (Journal<Quote> src = factory.reader(Quote.class, "expected")) {
+                long last = 0;
+                int n = 0;
+                for (Quote q : src) {
+                    w.append(q);
+                    if (++n % 100 == 0) {
+                        long seq = w.commitAsync();
+                        Assert.assertEquals(last + 1, seq);
+                        last = seq;
+                    }
+                }
+                // nothing left to commit, sequence stays put
+                Assert.assertEquals(last, w.commitAsync());
+                w.waitDurable(last);
+                w.commitDurable();
+            }
+        }
+
+        try (Journal<Quote> expected = factory.reader(Quote.class, "expected")) {
+            try (Journal<Quote> actual = factory.reader(Quote.class, "actual")) {
+                TestUtils.assertDataEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testDisableGroupCommit() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("x").$int("i").$ts().partitionBy(PartitionBy.DAY))) {
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            w.setGroupCommit(true);
+            for (int i = 0; i < 1000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putInt(0, i);
+                ew.putDate(1, t);
+                ew.append();
+                t += 600000;
+                if (i % 10 == 0) {
+                    w.commitAsync();
+                }
+            }
+            long seq = w.commitAsync();
+            w.setGroupCommit(false);
+            // commits published before group commit is disabled are durable
+            w.waitDurable(seq);
+
+            JournalEntryWriter ew = w.entryWriter(t);
+            ew.putInt(0, 1000);
+            ew.putDate(1, t);
+            ew.append();
+            Assert.assertEquals(seq + 1, w.commitAsync());
+        }
+
+        try (Journal r = factory.reader("x")) {
+            Assert.assertEquals(1001, r.size());
+        }
+    }
+}
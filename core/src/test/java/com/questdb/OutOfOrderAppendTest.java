@@ -0,0 +1,235 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb;
+
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.model.Quote;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutOfOrderAppendTest extends AbstractTest {
+
+    @Test
+    public void testAppendShuffled() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "expected")) {
+            TestUtils.generateQuoteData(w, 5000, Dates.parseDateTime("2013-09-04T10:00:00.000Z"), 30 * Dates.MINUTE_MILLIS);
+            w.commit();
+        }
+
+        List<Quote> quotes = new ArrayList<>();
+        try (Journal<Quote> r = factory.reader(Quote.class, "expected")) {
+            for (Quote q : r) {
+                quotes.add(q);
+            }
+        }
+
+        Rnd rnd = new Rnd();
+        for (int i = quotes.size() - 1; i > 0; i--) {
+            int j = rnd.nextPositiveInt() % (i + 1);
+            Quote q = quotes.get(i);
+            quotes.set(i, quotes.get(j));
+            quotes.set(j, q);
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "actual")) {
+            // every batch after first one has rows for every partition
+            for (int i = 0; i < quotes.size(); i += 500) {
+                w.appendOutOfOrder(quotes.subList(i, i + 500));
+            }
+        }
+
+        try (Journal<Quote> expected = factory.reader(Quote.class, "expected")) {
+            try (Journal<Quote> actual = factory.reader(Quote.class, "actual")) {
+                Assert.assertEquals(4, actual.getPartitionCount());
+                TestUtils.assertDataEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedPartitionRewrite() throws Exception {
+        long t = Dates.parseDateTime("2013-09-04T10:00:00.000Z");
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "expected")) {
+            TestUtils.generateQuoteData(w, 3000, t, 60 * Dates.MINUTE_MILLIS);
+            w.commit();
+        }
+
+        List<Quote> quotes = new ArrayList<>();
+        try (Journal<Quote> r = factory.reader(Quote.class, "expected")) {
+            for (Quote q : r) {
+                quotes.add(q);
+            }
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "actual")) {
+            w.setCompressSealedPartitions(true);
+            List<Quote> late = new ArrayList<>();
+            List<Quote> onTime = new ArrayList<>();
+            for (int i = 0; i < quotes.size(); i++) {
+                (i % 10 == 0 ? late : onTime).add(quotes.get(i));
+            }
+            w.appendOutOfOrder(onTime);
+            Assert.assertTrue(w.getPartitionCount() > 2);
+            w.appendOutOfOrder(late);
+        }
+
+        try (Journal<Quote> expected = factory.reader(Quote.class, "expected")) {
+            try (Journal<Quote> actual = factory.reader(Quote.class, "actual")) {
+                TestUtils.assertDataEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testNewPartitions() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            List<Quote> quotes = new ArrayList<>();
+            quotes.add(new Quote().setSym("A").setTimestamp(Dates.parseDateTime("2013-09-04T10:00:00.000Z")));
+            quotes.add(new Quote().setSym("B").setTimestamp(Dates.parseDateTime("2013-11-04T10:00:00.000Z")));
+            w.appendOutOfOrder(quotes);
+            Assert.assertEquals(2, w.getPartitionCount());
+
+            // rows between partitions and before first one
+            quotes.clear();
+            quotes.add(new Quote().setSym("C").setTimestamp(Dates.parseDateTime("2013-10-04T10:00:00.000Z")));
+            quotes.add(new Quote().setSym("D").setTimestamp(Dates.parseDateTime("2013-08-04T10:00:00.000Z")));
+            w.appendOutOfOrder(quotes);
+            Assert.assertEquals(4, w.getPartitionCount());
+
+            quotes.clear();
+            quotes.add(new Quote().setSym("E").setTimestamp(Dates.parseDateTime("2013-09-05T10:00:00.000Z")));
+            quotes.add(new Quote().setSym("F").setTimestamp(Dates.parseDateTime("2013-09-04T10:00:00.000Z")));
+            w.appendOutOfOrder(quotes);
+        }
+
+        try (Journal<Quote> r = factory.reader(Quote.class)) {
+            Assert.assertEquals(4, r.getPartitionCount());
+            Assert.assertEquals("DAFECB", toSymbols(r));
+        }
+    }
+
+    @Test
+    public void testReaderSeesMergeOnCommit() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class)) {
+            List<Quote> quotes = new ArrayList<>();
+            quotes.add(new Quote().setSym("A").setTimestamp(Dates.parseDateTime("2013-09-04T10:00:00.000Z")));
+            quotes.add(new Quote().setSym("B").setTimestamp(Dates.parseDateTime("2013-11-04T10:00:00.000Z")));
+            w.appendOutOfOrder(quotes);
+
+            try (Journal<Quote> r = factory.reader(Quote.class)) {
+                Assert.assertEquals("AB", toSymbols(r));
+
+                int sym = w.getMetadata().getColumnIndex("sym");
+                JournalEntryWriter ew = w.entryWriterOutOfOrder(Dates.parseDateTime("2013-09-05T10:00:00.000Z"));
+                ew.putSym(sym, "C");
+                ew.append();
+                ew = w.entryWriterOutOfOrder(Dates.parseDateTime("2013-08-04T10:00:00.000Z"));
+                ew.putSym(sym, "D");
+                ew.append();
+                ew = w.entryWriterOutOfOrder(Dates.parseDateTime("2013-11-05T10:00:00.000Z"));
+                ew.putSym(sym, "E");
+                ew.append();
+
+                r.refresh();
+                Assert.assertEquals("AB", toSymbols(r));
+
+                w.commit();
+                // partitions reader holds are not touched by merge
+                Assert.assertEquals("AB", toSymbols(r));
+
+                r.refresh();
+                Assert.assertEquals(3, r.getPartitionCount());
+                Assert.assertEquals("DACBE", toSymbols(r));
+            }
+        }
+    }
+
+    @Test
+    public void testRollbackFailedMerge() throws Exception {
+        long t = Dates.parseDateTime("2013-09-04T10:00:00.000Z");
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "expected")) {
+            TestUtils.generateQuoteData(w, 3000, t, 60 * Dates.MINUTE_MILLIS);
+            w.commit();
+        }
+
+        List<Quote> late = new ArrayList<>();
+        List<Quote> onTime = new ArrayList<>();
+        try (Journal<Quote> r = factory.reader(Quote.class, "expected")) {
+            int i = 0;
+            for (Quote q : r) {
+                (i++ % 10 == 0 ? late : onTime).add(q);
+            }
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "onTime")) {
+            w.appendOutOfOrder(onTime);
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "actual")) {
+            w.appendOutOfOrder(onTime);
+            Assert.assertTrue(w.getPartitionCount() > 2);
+
+            // row that cannot be written comes after rows that are already kept aside for merge
+            Quote bad = new Quote().setSym("X").setTimestamp(late.get(late.size() / 2).getTimestamp() + 1);
+            Unsafe.getUnsafe().putObject(bad, Unsafe.getUnsafe().objectFieldOffset(Quote.class.getDeclaredField("ex")), new Object());
+            List<Quote> poisoned = new ArrayList<>(late);
+            poisoned.add(bad);
+            try {
+                w.appendOutOfOrder(poisoned);
+                Assert.fail();
+            } catch (ClassCastException ignore) {
+                // expected
+            }
+            w.rollback();
+
+            try (Journal<Quote> expected = factory.reader(Quote.class, "onTime")) {
+                TestUtils.assertDataEquals(expected, w);
+            }
+
+            w.appendOutOfOrder(late);
+        }
+
+        try (Journal<Quote> expected = factory.reader(Quote.class, "expected")) {
+            try (Journal<Quote> actual = factory.reader(Quote.class, "actual")) {
+                TestUtils.assertDataEquals(expected, actual);
+            }
+        }
+    }
+
+    private static String toSymbols(Journal<Quote> r) {
+        StringBuilder b = new StringBuilder();
+        for (Quote q : r) {
+            b.append(q.getSym());
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb;
+
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.model.Quote;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.store.*;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class PartitionCompressionTest extends AbstractTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testBulkWriterKeepsCompressedPartition() throws Exception {
+        final int count = 3000;
+        generateCompressed(count);
+
+        File base = new File(factory.getConfiguration().getJournalBase(), "x");
+        Assert.assertTrue(new File(base, "2016-01-10/s.i" + ColumnCodec.FILE_SUFFIX).exists());
+
+        try (JournalWriter w = factory.bulkWriter(structure())) {
+            w.compact();
+            Assert.assertEquals(count, w.size());
+        }
+
+        Assert.assertFalse(new File(base, "2016-01-10/s.i").exists());
+        Assert.assertTrue(new File(base, "2016-01-10/s.i" + ColumnCodec.FILE_SUFFIX).exists());
+        assertGenericData(count);
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        Rnd rnd = new Rnd();
+        try (ColumnCodec codec = new ColumnCodec()) {
+            // more than one codec block worth of data
+            int count = 300000;
+
+            File dates = temp.newFile();
+            try (FixedColumn c = new FixedColumn(new MemoryFile(dates, 20, JournalMode.APPEND), 8)) {
+                long ts = 1000000L;
+                for (int i = 0; i < count; i++) {
+                    c.putLong(ts += rnd.nextPositiveInt() % 1000);
+                    c.commit();
+                }
+            }
+            assertRoundTrip(codec, dates, ColumnCodec.codecOf(ColumnType.DATE, false));
+
+            File longs = temp.newFile();
+            try (FixedColumn c = new FixedColumn(new MemoryFile(longs, 20, JournalMode.APPEND), 8)) {
+                for (int i = 0; i < count; i++) {
+                    c.putLong(rnd.nextLong());
+                    c.commit();
+                }
+            }
+            assertRoundTrip(codec, longs, ColumnCodec.codecOf(ColumnType.LONG, false));
+
+            File symbols = temp.newFile();
+            try (FixedColumn c = new FixedColumn(new MemoryFile(symbols, 20, JournalMode.APPEND), 4)) {
+                for (int i = 0; i < count; i++) {
+                    // includes null key
+                    c.putInt(rnd.nextPositiveInt() % 20 - 1);
+                    c.commit();
+                }
+            }
+            assertRoundTrip(codec, symbols, ColumnCodec.codecOf(ColumnType.SYMBOL, false));
+
+            File empty = temp.newFile();
+            new FixedColumn(new MemoryFile(empty, 20, JournalMode.APPEND), 4).close();
+            assertRoundTrip(codec, empty, ColumnCodec.codecOf(ColumnType.INT, false));
+        }
+    }
+
+    @Test
+    public void testCompressedFileReadsAcrossBlocks() throws Exception {
+        Rnd rnd = new Rnd();
+        File strings = temp.newFile();
+        File index = temp.newFile();
+        int count = 100000;
+        try (VariableColumn c = new VariableColumn(new MemoryFile(strings, 20, JournalMode.APPEND), new MemoryFile(index, 20, JournalMode.APPEND))) {
+            for (int i = 0; i < count; i++) {
+                c.putStr(rnd.nextString(rnd.nextPositiveInt() % 40));
+                c.commit();
+            }
+        }
+
+        File packedStrings = new File(strings.getAbsolutePath() + ColumnCodec.FILE_SUFFIX);
+        File packedIndex = new File(index.getAbsolutePath() + ColumnCodec.FILE_SUFFIX);
+        try (ColumnCodec codec = new ColumnCodec()) {
+            codec.compress(strings, packedStrings, ColumnCodec.codecOf(ColumnType.STRING, false));
+            codec.compress(index, packedIndex, ColumnCodec.codecOf(ColumnType.STRING, true));
+        }
+
+        try (VariableColumn c = new VariableColumn(new CompressedMemoryFile(packedStrings, JournalMode.READ), new CompressedMemoryFile(packedIndex, JournalMode.READ))) {
+            Assert.assertEquals(count, c.size());
+            // strings are read backwards, so that blocks are decoded out of order and some values are stitched
+            rnd = new Rnd();
+            String[] expected = new String[count];
+            for (int i = 0; i < count; i++) {
+                expected[i] = rnd.nextString(rnd.nextPositiveInt() % 40);
+            }
+            for (int i = count - 1; i > -1; i--) {
+                Assert.assertEquals(expected[i], c.getStr(i));
+            }
+        }
+    }
+
+    @Test
+    public void testReadCompressedPartitions() throws Exception {
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "expected")) {
+            TestUtils.generateQuoteData(w, 10000);
+        }
+
+        try (JournalWriter<Quote> w = factory.writer(Quote.class, "actual")) {
+            w.setCompressSealedPartitions(true);
+            TestUtils.generateQuoteData(w, 10000);
+        }
+
+        File[] dirs = new File(factory.getConfiguration().getJournalBase(), "actual").listFiles();
+        Assert.assertNotNull(dirs);
+        int compressed = 0;
+        for (File d : dirs) {
+            if (new File(d, "timestamp.d" + ColumnCodec.FILE_SUFFIX).exists()) {
+                Assert.assertFalse(new File(d, "timestamp.d").exists());
+                compressed++;
+            }
+        }
+        // three monthly partitions, all but last one are sealed
+        Assert.assertEquals(2, compressed);
+
+        try (Journal<Quote> expected = factory.reader(Quote.class, "expected")) {
+            try (Journal<Quote> actual = factory.reader(Quote.class, "actual")) {
+                TestUtils.assertDataEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testRollbackCompressedPartition() throws Exception {
+        try (JournalWriter w = factory.writer(structure())) {
+            w.setCompressSealedPartitions(true);
+            Rnd rnd = new Rnd();
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            t = append(w, rnd, t, 1000);
+            w.commit();
+            long txn = w.getTxn();
+            long txPin = w.getTxPin();
+
+            // rows of next day seal first partition, which is then compressed with rows that are rolled back
+            t = append(w, rnd, t, 1000);
+            append(w, rnd, t, 2000);
+            w.commit();
+            w.rollback(txn, txPin);
+            Assert.assertEquals(1000, w.size());
+        }
+
+        File base = new File(factory.getConfiguration().getJournalBase(), "x");
+        Assert.assertFalse(new File(base, "2016-01-10/s.i" + ColumnCodec.FILE_SUFFIX).exists());
+        assertGenericData(1000);
+    }
+
+    @Test
+    public void testWriterKeepsCompressedPartition() throws Exception {
+        final int count = 3000;
+        generateCompressed(count);
+
+        File base = new File(factory.getConfiguration().getJournalBase(), "x");
+        Assert.assertTrue(new File(base, "2016-01-10/s.i" + ColumnCodec.FILE_SUFFIX).exists());
+        assertGenericData(count);
+
+        try (JournalWriter w = factory.writer(structure())) {
+            // compaction opens every partition, compressed columns are read as they are
+            w.compact();
+            Assert.assertEquals(count, w.size());
+            append(w, new Rnd(), Dates.parseDateTime("2016-01-12T02:00:00.000Z"), 10);
+            w.commit();
+        }
+
+        Assert.assertFalse(new File(base, "2016-01-10/s.i").exists());
+        Assert.assertTrue(new File(base, "2016-01-10/s.i" + ColumnCodec.FILE_SUFFIX).exists());
+        try (Journal r = factory.reader("x")) {
+            Assert.assertEquals(count + 10, r.size());
+        }
+    }
+
+    private static long append(JournalWriter w, Rnd rnd, long t, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(t);
+            ew.putStr(0, rnd.nextString(rnd.nextPositiveInt() % 20));
+            ew.putLong(1, rnd.nextLong());
+            ew.putDate(2, t);
+            ew.append();
+            t += 60000;
+        }
+        return t;
+    }
+
+    private static JournalStructure structure() {
+        return new JournalStructure("x").$str("s").$long("l").$ts().partitionBy(PartitionBy.DAY);
+    }
+
+    private void assertGenericData(int count) throws Exception {
+        Rnd rnd = new Rnd();
+        long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+        try (RecordSource src = compile("x")) {
+            RecordCursor cursor = src.prepareCursor(factory);
+            for (int i = 0; i < count; i++) {
+                Assert.assertTrue(cursor.hasNext());
+                Record r = cursor.next();
+                TestUtils.assertEquals(rnd.nextString(rnd.nextPositiveInt() % 20), r.getFlyweightStr(0));
+                Assert.assertEquals(rnd.nextLong(), r.getLong(1));
+                Assert.assertEquals(t, r.getDate(2));
+                t += 60000;
+            }
+            Assert.assertFalse(cursor.hasNext());
+        }
+    }
+
+    private void generateCompressed(int count) throws Exception {
+        try (JournalWriter w = factory.writer(structure())) {
+            w.setCompressSealedPartitions(true);
+            append(w, new Rnd(), Dates.parseDateTime("2016-01-10T00:00:00.000Z"), count);
+            w.commit();
+        }
+    }
+
+    private void assertRoundTrip(ColumnCodec codec, File file, int codecType) throws Exception {
+        File packed = new File(file.getAbsolutePath() + ColumnCodec.FILE_SUFFIX);
+        File restored = new File(file.getAbsolutePath() + ".restored");
+        codec.compress(file, packed, codecType);
+        codec.decompress(packed, restored);
+
+        try (MemoryFile a = new MemoryFile(file, 20, JournalMode.READ); MemoryFile b = new MemoryFile(restored, 20, JournalMode.READ)) {
+            long len = a.getAppendOffset();
+            Assert.assertEquals(len, b.getAppendOffset());
+            for (long i = 0; i < len; i += 4) {
+                Assert.assertEquals(Unsafe.getUnsafe().getInt(a.addressOf(i, 4)), Unsafe.getUnsafe().getInt(b.addressOf(i, 4)));
+            }
+        }
+    }
+}
@@ -32,6 +32,9 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SymbolTableTest extends AbstractTest {
 
     private static final int DATA_SIZE = 500;
@@ -44,6 +47,27 @@ public class SymbolTableTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testCacheOutgrowsHint() throws Exception {
+        // ten times more values than table is sized for
+        String data[] = new String[DATA_SIZE * 10];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = "VAL" + i;
+        }
+        createTestTable(data);
+
+        try (SymbolTable tab = getReader()) {
+            for (int i = data.length - 1; i >= 0; i--) {
+                Assert.assertEquals(i, tab.getQuick(data[i]));
+            }
+            // cached lookups
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(i, tab.getQuick(data[i]));
+            }
+            Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, tab.getQuick("VAL" + data.length));
+        }
+    }
+
     @Test
     public void testCachePreLoad() throws Exception {
         String data[] = createData();
@@ -56,6 +80,59 @@ public class SymbolTableTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        // more values than cache is sized for, so that readers look up values while cache is rehashed
+        final String data[] = new String[DATA_SIZE * 10];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = "VAL" + i;
+        }
+        createTestTable(data);
+
+        final int threads = 4;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger errors = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try (SymbolTable tab = getReader()) {
+                        for (int k = 0; k < 3; k++) {
+                            for (int i = 0; i < data.length; i++) {
+                                int key = (i * 7 + offset) % data.length;
+                                if (tab.getQuick(data[key]) != key) {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testFlyweightValues() throws Exception {
+        String data[] = createData();
+        createTestTable(data);
+
+        try (SymbolTable tab = getReader()) {
+            for (int i = 0; i < tab.size(); i++) {
+                TestUtils.assertEquals(data[i], tab.getFlyweightValue(i));
+                TestUtils.assertEquals(data[tab.size() - i - 1], tab.getFlyweightValueB(tab.size() - i - 1));
+            }
+            Assert.assertNull(tab.getFlyweightValue(SymbolTable.VALUE_IS_NULL));
+        }
+    }
+
     @Test
     public void testKeyValueMatch() throws Exception {
 
@@ -150,6 +227,30 @@ public class SymbolTableTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testSharedCacheHidesNewerKeys() throws Exception {
+        String data[] = createData();
+        createTestTable(data);
+
+        try (SymbolTable old = getReader()) {
+            String data2[] = {"NEW1", "NEW2"};
+            createTestTable(data2);
+
+            try (SymbolTable current = getReader()) {
+                // newer reader and writer have cached keys that older reader must not see
+                Assert.assertEquals(DATA_SIZE, current.getQuick("NEW1"));
+                Assert.assertEquals(DATA_SIZE + 1, current.getQuick("NEW2"));
+                Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, old.getQuick("NEW1"));
+                Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, old.getQuick("NEW2"));
+
+                for (int i = 0; i < data.length; i++) {
+                    Assert.assertEquals(i, old.getQuick(data[i]));
+                    Assert.assertEquals(i, current.getQuick(data[i]));
+                }
+            }
+        }
+    }
+
     @Test
     public void testTruncate() throws Exception {
         String data[] = createData();
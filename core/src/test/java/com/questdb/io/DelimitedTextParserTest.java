@@ -26,17 +26,37 @@ package com.questdb.io;
 import com.questdb.Journal;
 import com.questdb.factory.configuration.JournalConfiguration;
 import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.io.parser.listener.JournalImportListener;
+import com.questdb.misc.Files;
+import com.questdb.mp.WorkerPool;
 import com.questdb.ql.RecordSource;
 import com.questdb.store.ColumnType;
 import com.questdb.test.tools.AbstractTest;
 import com.questdb.test.tools.TestUtils;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
 
 public class DelimitedTextParserTest extends AbstractTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private final WorkerPool workerPool = new WorkerPool(4);
+
+    @Before
+    public void setUp() {
+        workerPool.start();
+    }
+
+    @After
+    public void tearDown() {
+        workerPool.halt();
+    }
 
     @Test
     public void testImport() throws Exception {
@@ -81,6 +101,75 @@ public class DelimitedTextParserTest extends AbstractTest {
         assertThat(expected, "select StrSym, IntSym, IntCol, DoubleCol, IsoDate from 'test-import-nan.csv' where DoubleCol = NaN");
     }
 
+    @Test
+    public void testImportParallel() throws Exception {
+        String file = this.getClass().getResource("/csv/test-import.csv").getFile();
+        String location = "test-import.csv";
+
+        // small chunks make every worker convert several of them
+        try (JournalImportListener l = new JournalImportListener(factory).of(location, false)) {
+            try (ParallelImporter importer = new ParallelImporter(TextFileDelimiter.CSV, 4, workerPool, 512)) {
+                importer.importFile(new File(file), l, null, 100);
+            }
+            Assert.assertEquals(129, l.getImportedRowCount());
+        }
+
+        File actual = new File(factory.getConfiguration().getJournalBase(), "exp.csv");
+        File expected = new File(this.getClass().getResource("/csv/test-export-expected.csv").getFile());
+
+        try (RecordSource rs = compile("'" + location + "'")) {
+            ExportManager.export(rs, factory, actual, TextFileDelimiter.CSV);
+            TestUtils.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testImportParallelQuoted() throws Exception {
+        StringBuilder b = new StringBuilder("name,count,price,comment\n");
+        for (int i = 0; i < 1000; i++) {
+            b.append("n").append(i % 7).append(',');
+            // every 100th line after type sample fails conversion of count
+            b.append(i > 100 && i % 100 == 99 ? "x" : Integer.toString(i)).append(',');
+            b.append(i / 4.0).append(',');
+            if (i % 3 == 1) {
+                // quoted line ends and delimiters must not split chunks
+                b.append("\"line ").append(i).append(",\nnext\"");
+            } else {
+                b.append("plain ").append(i);
+            }
+            if (i < 999) {
+                b.append('\n');
+            }
+        }
+
+        File serial = temporaryFolder.newFile("serial.csv");
+        File parallel = temporaryFolder.newFile("parallel.csv");
+        Files.writeStringToFile(serial, b.toString());
+        Files.writeStringToFile(parallel, b.toString());
+
+        ImportManager.importFile(factory, serial.getAbsolutePath(), TextFileDelimiter.CSV, null);
+        try (JournalImportListener l = new JournalImportListener(factory).of("parallel.csv", false)) {
+            try (ParallelImporter importer = new ParallelImporter(TextFileDelimiter.CSV, 3, workerPool, 1024)) {
+                importer.importFile(parallel, l, null, 100);
+            }
+            Assert.assertEquals(991, l.getImportedRowCount());
+            Assert.assertEquals(9, l.getErrors().getQuick(1));
+        }
+
+        sink.clear();
+        try (RecordSource rs = compile("'serial.csv'")) {
+            printer.print(rs, factory, true);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.contains("line 4,\nnext"));
+
+        sink.clear();
+        try (RecordSource rs = compile("'parallel.csv'")) {
+            printer.print(rs, factory, true);
+        }
+        TestUtils.assertEquals(expected, sink);
+    }
+
     @Test
     public void testImportSchema() throws Exception {
         String file = this.getClass().getResource("/csv/test-import.csv").getFile();
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerPoolTest {
+
+    @Test
+    public void testFailedTaskKeepsThread() throws Exception {
+        WorkerPool pool = new WorkerPool(1);
+        pool.start();
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    throw new RuntimeException("expected");
+                }
+            });
+
+            final CountDownLatch done = new CountDownLatch(1);
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.halt();
+        }
+    }
+
+    @Test
+    public void testRunsOnPoolThreads() throws Exception {
+        WorkerPool pool = new WorkerPool(2);
+        pool.start();
+        try {
+            final CountDownLatch done = new CountDownLatch(100);
+            final AtomicInteger onCaller = new AtomicInteger();
+            final Thread caller = Thread.currentThread();
+            for (int i = 0; i < 100; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (Thread.currentThread() == caller) {
+                            onCaller.incrementAndGet();
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, onCaller.get());
+        } finally {
+            pool.halt();
+        }
+    }
+
+    @Test
+    public void testStoppedPoolRunsOnCaller() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger count = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                Assert.assertSame(caller, Thread.currentThread());
+                count.incrementAndGet();
+            }
+        };
+
+        WorkerPool pool = new WorkerPool(2);
+        // not started yet
+        pool.execute(task);
+        pool.start();
+        pool.halt();
+        // halted
+        pool.execute(task);
+        // no threads
+        new WorkerPool(0).execute(task);
+        Assert.assertEquals(3, count.get());
+    }
+}
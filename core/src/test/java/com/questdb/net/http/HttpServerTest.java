@@ -26,6 +26,7 @@ package com.questdb.net.http;
 import com.questdb.Journal;
 import com.questdb.JournalEntryWriter;
 import com.questdb.JournalWriter;
+import com.questdb.ex.DisconnectedChannelException;
 import com.questdb.ex.FatalError;
 import com.questdb.ex.NumericException;
 import com.questdb.ex.ResponseContentBufferTooSmallException;
@@ -101,6 +102,27 @@ public class HttpServerTest extends AbstractJournalTest {
             "Accept-Language: en-US,en;q=0.8\r\n" +
             "Cookie: textwrapon=false; textautoformat=false; wysiwyg=textarea\r\n" +
             "\r\n";
+    private final static String NOT_FOUND = "HTTP/1.1 404 Not Found\r\n" +
+            "Server: questDB/1.0\r\n" +
+            "Date: Sat, 5 Dec 2015 13:30:0 GMT\r\n" +
+            "Transfer-Encoding: chunked\r\n" +
+            "Content-Type: text/html; charset=utf-8\r\n" +
+            "\r\n" +
+            "b\r\n" +
+            "Not Found\r\n" +
+            "\r\n" +
+            "0\r\n" +
+            "\r\n";
+    private final static Clock FIXED_CLOCK = new Clock() {
+        @Override
+        public long getTicks() {
+            try {
+                return Dates.parseDateTime("2015-12-05T13:30:00.000Z");
+            } catch (NumericException ignore) {
+                throw new FatalError(ignore);
+            }
+        }
+    };
     @Rule
     public final TemporaryFolder temp = new TemporaryFolder();
 
@@ -181,6 +203,29 @@ public class HttpServerTest extends AbstractJournalTest {
         }
     }
 
+    @Test
+    public void testConnectionClose() throws Exception {
+        HttpServer server = new HttpServer(new ServerConfiguration(), new SimpleUrlMatcher());
+        server.setClock(FIXED_CLOCK);
+        server.start();
+
+        try (SocketChannel channel = openChannel("localhost", 9000, 5000)) {
+            ByteBuffer out = ByteBuffer.allocate(1024);
+            ByteBuffers.copy(ByteBuffer.wrap(request.replace("keep-alive", "close").getBytes()), channel);
+
+            channel.configureBlocking(false);
+            try {
+                ByteBuffers.copyGreedyNonBlocking(channel, out, 100000);
+                Assert.fail("Server must close connection");
+            } catch (DisconnectedChannelException ignore) {
+            }
+            assertResponse(NOT_FOUND.replace("Content-Type: text/html; charset=utf-8\r\n", "Content-Type: text/html; charset=utf-8\r\nConnection: close\r\n"), out);
+            Assert.assertEquals(0, server.getConnectionCount());
+        } finally {
+            server.halt();
+        }
+    }
+
     @Test
     public void testConnectionCount() throws Exception {
         final ServerConfiguration configuration = new ServerConfiguration(new File(resourceFile("/site"), "conf/questdb.conf"));
@@ -529,6 +574,30 @@ public class HttpServerTest extends AbstractJournalTest {
         assertNotModified(configuration, server);
     }
 
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        HttpServer server = new HttpServer(new ServerConfiguration(), new SimpleUrlMatcher());
+        server.setClock(FIXED_CLOCK);
+        server.start();
+
+        try (SocketChannel channel = openChannel("localhost", 9000, 5000)) {
+            ByteBuffer out = ByteBuffer.allocate(1024);
+            // three requests in single write, last one is split in two
+            String requests = request + request + request;
+            int split = requests.length() - 20;
+            ByteBuffers.copy(ByteBuffer.wrap(requests.substring(0, split).getBytes()), channel);
+            Thread.sleep(100);
+            ByteBuffers.copy(ByteBuffer.wrap(requests.substring(split).getBytes()), channel);
+
+            channel.configureBlocking(false);
+            ByteBuffers.copyGreedyNonBlocking(channel, out, 100000);
+            assertResponse(NOT_FOUND + NOT_FOUND + NOT_FOUND, out);
+            Assert.assertEquals(1, server.getConnectionCount());
+        } finally {
+            server.halt();
+        }
+    }
+
     @Test
     public void testRangesNative() throws Exception {
         final ServerConfiguration configuration = new ServerConfiguration(new File(HttpServerTest.class.getResource("/site").getPath(), "conf/questdb.conf"));
@@ -577,6 +646,13 @@ public class HttpServerTest extends AbstractJournalTest {
         server.halt();
     }
 
+    private static void assertResponse(String expected, ByteBuffer out) {
+        Assert.assertEquals(expected.length(), out.remaining());
+        for (int i = 0, k = expected.length(); i < k; i++) {
+            Assert.assertEquals(expected.charAt(i), out.get());
+        }
+    }
+
     private static HttpClientBuilder clientBuilder(boolean ssl) throws Exception {
         return (ssl ? createHttpClient_AcceptsUntrustedCerts() : HttpClientBuilder.create());
     }
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.JournalFactoryPool;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Files;
+import com.questdb.misc.Rnd;
+import com.questdb.net.http.HttpServer;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.net.http.SimpleUrlMatcher;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.test.tools.HttpTestUtils;
+import com.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.net.URLEncoder;
+
+public class CsvHandlerTest extends AbstractOptimiserTest {
+
+    @ClassRule
+    public static final TemporaryFolder temp = new TemporaryFolder();
+    private static JournalFactoryPool factoryPool;
+    private static HttpServer server;
+    private static File exportPath;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        final ServerConfiguration serverConfiguration = new ServerConfiguration();
+        exportPath = temp.newFolder();
+        // file of export interrupted by previous run
+        Assert.assertTrue(new File(exportPath, "export1.csv").createNewFile());
+        serverConfiguration.setHttpExportPath(exportPath);
+        // small batches make export resume several times
+        serverConfiguration.setDbCyclesBeforeCancel(1024);
+        factoryPool = new JournalFactoryPool(factory.getConfiguration(), 1);
+        final CsvHandler handler = new CsvHandler(factoryPool, serverConfiguration);
+
+        server = new HttpServer(serverConfiguration, new SimpleUrlMatcher() {{
+            put("/csv", handler);
+        }});
+
+        server.start();
+
+        try (JournalWriter w = factory.writer(new JournalStructure("tab").$str("s").$double("d").$int("i").$ts())) {
+            Rnd rnd = new Rnd();
+            long t = Dates.parseDateTime("2016-05-01T00:00:00.000Z");
+            for (int i = 0; i < 100000; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putStr(0, rnd.nextChars(10));
+                ew.putDouble(1, rnd.nextDouble());
+                ew.putInt(2, rnd.nextInt());
+                ew.putDate(3, t += 1000);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.halt();
+        factoryPool.close();
+    }
+
+    @Test
+    public void testFileExport() throws Exception {
+        assertFileExport("tab", null);
+    }
+
+    @Test
+    public void testFileExportCleansPath() throws Exception {
+        Assert.assertEquals(0, countExportFiles());
+    }
+
+    @Test
+    public void testFileExportLimit() throws Exception {
+        assertFileExport("tab where i > 0", "15,25000");
+    }
+
+    @Test
+    public void testFileExportQueryError() throws Exception {
+        String expected = download("tab where x = 1", null, false);
+        Assert.assertTrue(expected.startsWith("Error at(10): Invalid column"));
+        TestUtils.assertEquals(expected, download("tab where x = 1", null, true));
+    }
+
+    private static int countExportFiles() {
+        String[] files = exportPath.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("export") && name.endsWith(".csv");
+            }
+        });
+        Assert.assertNotNull(files);
+        return files.length;
+    }
+
+    private static String download(String query, String limit, boolean file) throws Exception {
+        File f = temp.newFile();
+        String url = "http://localhost:9000/csv?query=" + URLEncoder.encode(query, "UTF-8") + (limit == null ? "" : "&limit=" + limit) + (file ? "&file=true" : "");
+        HttpTestUtils.download(HttpTestUtils.clientBuilder(false), url, f);
+        return Files.readStringFromFile(f);
+    }
+
+    private void assertFileExport(String query, String limit) throws Exception {
+        String expected = download(query, limit, false);
+        Assert.assertTrue(expected.length() > 0);
+        TestUtils.assertEquals(expected, download(query, limit, true));
+
+        // export file is removed once response is sent, which client may see first
+        for (int i = 0; i < 100 && countExportFiles() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, countExportFiles());
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlanCacheTest extends AbstractTest {
+
+    @Before
+    public void setUp() throws Exception {
+        factory.writer(new JournalStructure("x").$int("i").$double("d").$ts()).close();
+    }
+
+    @Test
+    public void testCheckOutAndReturn() throws Exception {
+        try (PlanCache cache = new PlanCache(8)) {
+            Assert.assertNull(cache.poll("x"));
+
+            // two threads running same query at once get separate plans
+            RecordSource a = compile("x");
+            RecordSource b = compile("x");
+            cache.put("x", a);
+            cache.put("x", b);
+            Assert.assertEquals(2, cache.size());
+
+            RecordSource p1 = cache.poll("x");
+            RecordSource p2 = cache.poll("x");
+            Assert.assertNotNull(p1);
+            Assert.assertNotNull(p2);
+            Assert.assertNotSame(p1, p2);
+            Assert.assertNull(cache.poll("x"));
+            Assert.assertEquals(0, cache.size());
+
+            cache.put("x", p1);
+            cache.put("x", p2);
+
+            Assert.assertEquals(2, cache.getHits());
+            Assert.assertEquals(2, cache.getMisses());
+            Assert.assertEquals(0, cache.getEvictions());
+        }
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        try (PlanCache cache = new PlanCache(3)) {
+            cache.put("x", compile("x"));
+            cache.put("x where i = 1", compile("x where i = 1"));
+            cache.put("x where i = 2", compile("x where i = 2"));
+
+            // touch oldest query so that it survives
+            RecordSource rs = cache.poll("x");
+            Assert.assertNotNull(rs);
+            cache.put("x", rs);
+
+            cache.put("x where i = 3", compile("x where i = 3"));
+            Assert.assertEquals(3, cache.size());
+            Assert.assertEquals(1, cache.getEvictions());
+
+            Assert.assertNull(cache.poll("x where i = 1"));
+            Assert.assertSame(rs, cache.poll("x"));
+            cache.put("x", rs);
+        }
+    }
+
+    @Test
+    public void testSameQueryOverCapacity() throws Exception {
+        try (PlanCache cache = new PlanCache(2)) {
+            cache.put("x", compile("x"));
+            cache.put("x", compile("x"));
+            RecordSource last = compile("x");
+            cache.put("x", last);
+            Assert.assertEquals(2, cache.size());
+            Assert.assertEquals(1, cache.getEvictions());
+            Assert.assertSame(last, cache.poll("x"));
+            last.close();
+        }
+    }
+}
@@ -38,7 +38,11 @@ import com.questdb.net.http.HttpServer;
 import com.questdb.net.http.QueryResponse;
 import com.questdb.net.http.ServerConfiguration;
 import com.questdb.net.http.SimpleUrlMatcher;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
 import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
 import com.questdb.test.tools.HttpTestUtils;
 import com.questdb.test.tools.TestUtils;
 import org.junit.*;
@@ -46,7 +50,11 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 public class QueryHandlerTest extends AbstractOptimiserTest {
 
@@ -77,6 +85,59 @@ public class QueryHandlerTest extends AbstractOptimiserTest {
         factoryPool.close();
     }
 
+    @Test
+    public void testBinary() throws Exception {
+        generateJournal("bin", 10000);
+        BinaryResult r = downloadBinary("bin", null);
+        Assert.assertArrayEquals(new String[]{"id", "x", "y", "z", "w", "timestamp"}, r.names);
+        Assert.assertArrayEquals(new String[]{"SYMBOL", "DOUBLE", "DOUBLE", "LONG", "INT", "DATE"}, r.types);
+        Assert.assertEquals("[4096, 4096, 1808]", r.batches.toString());
+        Assert.assertEquals(10000, r.count);
+        Assert.assertEquals(10000, r.rows.size());
+
+        try (RecordSource src = new QueryCompiler().compile(factory, "bin")) {
+            RecordCursor cursor = src.prepareCursor(factory);
+            int i = 0;
+            while (cursor.hasNext()) {
+                Record rec = cursor.next();
+                Object[] row = r.rows.get(i++);
+                Assert.assertEquals(rec.getSym(0), row[0]);
+                Assert.assertEquals(rec.getDouble(1), (double) row[1], 0);
+                Assert.assertEquals(rec.getDouble(2), (double) row[2], 0);
+                Assert.assertEquals(rec.getLong(3), (long) row[3]);
+                Assert.assertEquals(rec.getInt(4), (int) row[4]);
+                Assert.assertEquals(rec.getDate(5), (long) row[5]);
+            }
+            Assert.assertEquals(10000, i);
+        }
+    }
+
+    @Test
+    public void testBinaryEmpty() throws Exception {
+        BinaryResult r = downloadBinary("tab where 1 = 2", null);
+        Assert.assertEquals(6, r.names.length);
+        Assert.assertEquals(0, r.batches.size());
+        Assert.assertEquals(0, r.count);
+    }
+
+    @Test
+    public void testBinaryLimits() throws Exception {
+        BinaryResult r = downloadBinary("select id, w from tab", "2,4");
+        Assert.assertEquals(2, r.rows.size());
+        Assert.assertEquals("id2", r.rows.get(0)[0]);
+        Assert.assertEquals("id3", r.rows.get(1)[0]);
+    }
+
+    @Test
+    public void testBinaryQueryError() throws Exception {
+        File f = temp.newFile();
+        String url = "http://localhost:9000/js?fmt=bin&query=" + URLEncoder.encode("select nope from tab", "UTF-8");
+        HttpTestUtils.download(HttpTestUtils.clientBuilder(false), url, f);
+        QueryResponse queryResponse = new Gson().fromJson(Files.readStringFromFile(f), QueryResponse.class);
+        Assert.assertEquals("select nope from tab", queryResponse.query);
+        Assert.assertNull(queryResponse.result);
+    }
+
     @Test
     public void testJournalDoesNotExist() throws Exception {
         File f = temp.newFile();
@@ -309,6 +370,59 @@ public class QueryHandlerTest extends AbstractOptimiserTest {
         return gson.fromJson(s, QueryResponse.class);
     }
 
+    private static BinaryResult downloadBinary(String query, String limit) throws Exception {
+        File f = temp.newFile();
+        String url = "http://localhost:9000/js?fmt=bin&query=" + URLEncoder.encode(query, "UTF-8");
+        if (limit != null) {
+            url += "&limit=" + limit;
+        }
+        HttpTestUtils.download(HttpTestUtils.clientBuilder(false), url, f);
+
+        ByteBuffer buf = ByteBuffer.wrap(java.nio.file.Files.readAllBytes(f.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryResult r = new BinaryResult();
+        int columnCount = buf.getInt();
+        r.names = new String[columnCount];
+        r.types = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            r.names[i] = getStr(buf);
+            r.types[i] = getStr(buf);
+        }
+
+        int rowCount;
+        while ((rowCount = buf.getInt()) > 0) {
+            r.batches.add(rowCount);
+            int base = r.rows.size();
+            for (int i = 0; i < rowCount; i++) {
+                r.rows.add(new Object[columnCount]);
+            }
+            for (int c = 0; c < columnCount; c++) {
+                int end = buf.getInt();
+                end += buf.position();
+                for (int i = 0; i < rowCount; i++) {
+                    Object[] row = r.rows.get(base + i);
+                    switch (r.types[c]) {
+                        case "SYMBOL":
+                            row[c] = getStr(buf);
+                            break;
+                        case "DOUBLE":
+                            row[c] = buf.getDouble();
+                            break;
+                        case "INT":
+                            row[c] = buf.getInt();
+                            break;
+                        default:
+                            row[c] = buf.getLong();
+                            break;
+                    }
+                }
+                Assert.assertEquals(end, buf.position());
+            }
+        }
+        r.count = buf.getLong();
+        Assert.assertFalse(buf.hasRemaining());
+        return r;
+    }
+
     private static void generateJournal() throws JournalException, NumericException {
         generateJournal("tab", new QueryResponse.Tab[0], 1000);
     }
@@ -320,4 +434,24 @@ public class QueryHandlerTest extends AbstractOptimiserTest {
     private static QueryResponse download(String queryUrl, int limitFrom, int limitTo) throws Exception {
         return download(queryUrl, limitFrom, limitTo, false, false, temp);
     }
-}
\ No newline at end of file
+
+    private static String getStr(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len == -1) {
+            return null;
+        }
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = buf.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static class BinaryResult {
+        private final List<Integer> batches = new ArrayList<>();
+        private final List<Object[]> rows = new ArrayList<>();
+        private String[] names;
+        private String[] types;
+        private long count;
+    }
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.http.handlers;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.JournalCachingFactory;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Unsafe;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest extends AbstractTest {
+
+    private JournalWriter writer;
+    private long timestamp;
+    private JournalCachingFactory readerFactory;
+    private long memUsed;
+
+    @Before
+    public void setUp() throws Exception {
+        writer = factory.writer(new JournalStructure("x").$int("i").$ts());
+        append(10);
+        readerFactory = new JournalCachingFactory(factory.getConfiguration());
+        readerFactory.reader(writer.getMetadata());
+        memUsed = Unsafe.getMemUsed();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+        readerFactory.close();
+        writer.close();
+    }
+
+    @Test
+    public void testEntryInUseOutlivesEviction() throws Exception {
+        try (ResultCache cache = new ResultCache(64 * 1024)) {
+            cache.put("a", fill(cache, 'a', 10000), readerFactory.getUsedJournals());
+            ResultCache.Entry e = cache.get("a", readerFactory);
+            Assert.assertNotNull(e);
+
+            append(1);
+            Assert.assertNull(cache.get("a", readerFactory));
+            Assert.assertEquals(0, cache.getSize());
+
+            // memory of stale entry is still readable by client that is being served
+            assertContent(e, 'a', 10000);
+            cache.release(e);
+        }
+    }
+
+    @Test
+    public void testHitAndInvalidation() throws Exception {
+        try (ResultCache cache = new ResultCache(64 * 1024)) {
+            cache.put("q", fill(cache, 'x', 100), readerFactory.getUsedJournals());
+
+            for (int i = 0; i < 3; i++) {
+                ResultCache.Entry e = cache.get("q", readerFactory);
+                Assert.assertNotNull(e);
+                assertContent(e, 'x', 100);
+                cache.release(e);
+            }
+
+            // uncommitted rows do not invalidate entry
+            JournalEntryWriter ew = writer.entryWriter(timestamp++);
+            ew.putInt(0, 1);
+            ew.append();
+            ResultCache.Entry e = cache.get("q", readerFactory);
+            Assert.assertNotNull(e);
+            cache.release(e);
+
+            writer.commit();
+            Assert.assertNull(cache.get("q", readerFactory));
+            Assert.assertNull(cache.get("q", readerFactory));
+        }
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        try (ResultCache cache = new ResultCache(64 * 1024)) {
+            cache.put("a", fill(cache, 'a', 16 * 1024), readerFactory.getUsedJournals());
+            cache.put("b", fill(cache, 'b', 16 * 1024), readerFactory.getUsedJournals());
+            cache.put("c", fill(cache, 'c', 16 * 1024), readerFactory.getUsedJournals());
+            cache.put("d", fill(cache, 'd', 16 * 1024), readerFactory.getUsedJournals());
+            Assert.assertEquals(64 * 1024, cache.getSize());
+
+            cache.release(cache.get("a", readerFactory));
+            cache.put("e", fill(cache, 'e', 16 * 1024), readerFactory.getUsedJournals());
+
+            Assert.assertNull(cache.get("b", readerFactory));
+            ResultCache.Entry e = cache.get("a", readerFactory);
+            Assert.assertNotNull(e);
+            assertContent(e, 'a', 16 * 1024);
+            cache.release(e);
+            Assert.assertEquals(64 * 1024, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testNormalize() throws Exception {
+        StringSink sink = new StringSink();
+        ResultCache.normalize("  select  x,\ty \n from tab where s = 'a  b' and t = \"c\td\"  ", sink);
+        TestUtils.assertEquals("select x, y from tab where s = 'a  b' and t = \"c\td\"", sink);
+    }
+
+    @Test
+    public void testOversizedEntry() throws Exception {
+        try (ResultCache cache = new ResultCache(64 * 1024)) {
+            cache.put("a", fill(cache, 'a', 16 * 1024 + 1), readerFactory.getUsedJournals());
+            Assert.assertNull(cache.get("a", readerFactory));
+            Assert.assertEquals(0, cache.getSize());
+        }
+    }
+
+    private static void assertContent(ResultCache.Entry e, char c, int len) {
+        Assert.assertEquals(len, e.length());
+        for (int i = 0; i < len; i++) {
+            Assert.assertEquals(c, (char) Unsafe.getUnsafe().getByte(e.getAddress() + i));
+        }
+    }
+
+    private static ResultCache.Entry fill(ResultCache cache, char c, int len) {
+        ResultCache.Entry e = cache.newEntry();
+        for (int i = 0; i < len; i++) {
+            e.put(c);
+        }
+        return e;
+    }
+
+    private void append(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = writer.entryWriter(timestamp++);
+            ew.putInt(0, i);
+            ew.append();
+        }
+        writer.commit();
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.net.lp;
+
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Unsafe;
+
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineProtocolParserTest {
+    private final LineProtocolParser parser = new LineProtocolParser();
+    private final StringSink sink = new StringSink();
+    private final LineProtocolParser.Listener listener = new LineProtocolParser.Listener() {
+        @Override
+        public void onLine(LineProtocolParser parser) {
+            sink.put(parser.getMeasurement());
+            for (int i = 0, n = parser.getTokenCount(); i < n; i++) {
+                sink.put(' ').put(parser.getName(i)).put(':').put(parser.getType(i)).put('=').put(parser.getValue(i));
+            }
+            if (parser.getTimestamp() != LineProtocolParser.NO_TIMESTAMP) {
+                sink.put(" @").put(parser.getTimestamp());
+            }
+            sink.put('\n');
+        }
+    };
+
+    @Test
+    public void testIncompleteLine() throws Exception {
+        String s = "cpu,host=a usage=1.5\ncpu,host=b usa";
+        long address = TestUtils.toMemory(s);
+        try {
+            long lo = parser.parse(address, address + s.length(), listener);
+            Assert.assertEquals(address + s.indexOf("cpu,host=b"), lo);
+            TestUtils.assertEquals("cpu host:1=a usage:2=1.5\n", sink);
+        } finally {
+            Unsafe.free(address, s.length());
+        }
+    }
+
+    @Test
+    public void testMalformedLines() throws Exception {
+        String s = "cpu\n" +
+                "cpu,host usage=1\n" +
+                "cpu usage=\n" +
+                "cpu name=\"abc\n" +
+                "cpu usage=1 12x\n" +
+                "cpu usage=2\n";
+        long address = TestUtils.toMemory(s);
+        try {
+            Assert.assertEquals(address + s.length(), parser.parse(address, address + s.length(), listener));
+            TestUtils.assertEquals("cpu usage:2=2\n", sink);
+            Assert.assertEquals(5, parser.getErrorCount());
+        } finally {
+            Unsafe.free(address, s.length());
+        }
+    }
+
+    @Test
+    public void testValueTypes() throws Exception {
+        String s = "# comment\n" +
+                "cpu,host=a,region=eu usage=1.5,count=3i,ok=t,up=False,name=\"x y\" 1000\r\n" +
+                "\n" +
+                "mem free=2";
+        long address = TestUtils.toMemory(s);
+        try {
+            long hi = address + s.length();
+            long lo = parser.parse(address, hi, listener);
+            parser.parseLine(lo, hi, listener);
+            final String expected = "cpu host:1=a region:1=eu usage:2=1.5 count:3=3 ok:4=t up:4=False name:5=x y @1000\n" +
+                    "mem free:2=2\n";
+            TestUtils.assertEquals(expected, sink);
+            Assert.assertEquals(0, parser.getErrorCount());
+        } finally {
+            Unsafe.free(address, s.length());
+        }
+    }
+}
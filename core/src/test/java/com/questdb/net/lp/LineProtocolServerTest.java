@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+public class LineProtocolServerTest extends AbstractOptimiserTest {
+
+    @Test
+    public void testExistingJournal() throws Exception {
+        factory.writer(new JournalStructure("existing").$sym("host").$int("count").$ts()).close();
+
+        ServerConfiguration configuration = new ServerConfiguration();
+        LineProtocolServer server = new LineProtocolServer(configuration, factory);
+        Assert.assertTrue(server.start());
+        try {
+            sendTcp(configuration, "existing,host=a count=10i,other=1 1000\n" +
+                    "existing,host=b count=x 2000\n" +
+                    "existing,host=c count=30i 3000");
+            awaitRows(server, 2);
+            Assert.assertEquals(1, server.getErrorCount());
+        } finally {
+            server.halt();
+        }
+
+        assertRows("a\t10\t1970-01-01T00:00:01.000Z\n" +
+                "c\t30\t1970-01-01T00:00:03.000Z\n", "existing");
+    }
+
+    @Test
+    public void testHaltAfterFailedStart() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        LineProtocolServer server = new LineProtocolServer(configuration, factory);
+        Assert.assertTrue(server.start());
+        try {
+            LineProtocolServer other = new LineProtocolServer(configuration, factory);
+            Assert.assertFalse(other.start());
+            other.halt();
+        } finally {
+            server.halt();
+        }
+    }
+
+    @Test
+    public void testInvalidMeasurement() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        LineProtocolServer server = new LineProtocolServer(configuration, factory);
+        Assert.assertTrue(server.start());
+        try {
+            sendTcp(configuration, "../escape,host=a count=1i 1000\n" +
+                    "x\\..\\escape,host=b count=2i 2000\n" +
+                    "..,host=c count=3i 3000\n" +
+                    "valid,host=d count=4i 4000\n");
+            awaitRows(server, 1);
+            Assert.assertEquals(3, server.getErrorCount());
+        } finally {
+            server.halt();
+        }
+
+        File base = factory.getConfiguration().getJournalBase();
+        Assert.assertFalse(new File(base.getParentFile(), "escape").exists());
+        Assert.assertFalse(new File(base, "x\\..\\escape").exists());
+        assertRows("d\t4\t1970-01-01T00:00:04.000Z\n", "valid");
+    }
+
+    @Test
+    public void testTcp() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        LineProtocolServer server = new LineProtocolServer(configuration, factory);
+        Assert.assertTrue(server.start());
+        try {
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                b.append("tcp,host=h").append(i % 3).append(" usage=").append(i).append(".5,count=").append(i).append("i,ok=").append(i % 2 == 0 ? 't' : 'f').append(' ').append(i * 1000L).append('\n');
+            }
+            sendTcp(configuration, b);
+            awaitRows(server, 1000);
+        } finally {
+            server.halt();
+        }
+
+        assertRows("h1\t1.500000000000\t1\tfalse\t1970-01-01T00:00:01.000Z\n" +
+                        "h2\t2.500000000000\t2\ttrue\t1970-01-01T00:00:02.000Z\n",
+                "tcp where usage > 1 and usage < 3");
+        Assert.assertEquals(1000, factory.reader("tcp").size());
+    }
+
+    @Test
+    public void testUdp() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setLineCommitInterval(10);
+        LineProtocolServer server = new LineProtocolServer(configuration, factory);
+        Assert.assertTrue(server.start());
+        try {
+            try (DatagramSocket socket = new DatagramSocket()) {
+                byte[] bytes = "udp,host=a name=\"first\" 1000\nudp,host=b name=\"second\" 2000".getBytes("UTF8");
+                socket.send(new DatagramPacket(bytes, bytes.length, new InetSocketAddress("127.0.0.1", configuration.getLineUdpPort())));
+            }
+            awaitRows(server, 2);
+            // idle journal is committed after commit interval
+            long deadline = System.currentTimeMillis() + 5000;
+            while (factory.reader("udp").size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            server.halt();
+        }
+
+        assertRows("a\tfirst\t1970-01-01T00:00:01.000Z\n" +
+                "b\tsecond\t1970-01-01T00:00:02.000Z\n", "udp");
+    }
+
+    private static void awaitRows(LineProtocolServer server, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRowCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, server.getRowCount());
+    }
+
+    private static void sendTcp(ServerConfiguration configuration, CharSequence lines) throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", configuration.getLineTcpPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(lines.toString().getBytes("UTF8"));
+            out.flush();
+        }
+    }
+
+    private void assertRows(String expected, String query) throws Exception {
+        try (RecordSource rs = compileSource(query)) {
+            assertThat(expected, rs, false);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.net.lp;
+
+import com.questdb.factory.configuration.JournalConfiguration;
+import com.questdb.iter.clock.Clock;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LineProtocolWriterTest extends AbstractOptimiserTest {
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    public void testConcurrentJournals() throws Exception {
+        final int threads = 4;
+        final int lines = 1000;
+        final LineProtocolWriter writer = new LineProtocolWriter(factory, new ServerConfiguration(), clock);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger errors = new AtomicInteger();
+        try {
+            for (int i = 0; i < threads; i++) {
+                // two threads per journal, so that both distinct and shared journals are appended concurrently;
+                // lines are stamped by clock, timestamps of threads sharing journal would be out of order
+                final String measurement = "j" + (i % 2);
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            LineProtocolParser parser = new LineProtocolParser();
+                            for (int k = 0; k < lines; k++) {
+                                write(parser, writer, measurement + ",host=h" + (k % 5) + " v=" + k + "i\n");
+                            }
+                        } catch (Throwable e) {
+                            e.printStackTrace();
+                            errors.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+            done.await();
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(threads * lines, writer.getRowCount());
+        Assert.assertEquals(0, writer.getErrorCount());
+        Assert.assertEquals(2 * lines, factory.reader("j0").size());
+        Assert.assertEquals(2 * lines, factory.reader("j1").size());
+    }
+
+    @Test
+    public void testIdleWriterClosed() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setLineIdleTimeout(100);
+        LineProtocolWriter writer = new LineProtocolWriter(factory, configuration, clock);
+        LineProtocolParser parser = new LineProtocolParser();
+        try {
+            clock.ticks = 1000;
+            write(parser, writer, "idle,host=a v=1i 1000\n");
+            Assert.assertEquals(0, factory.reader("idle").size());
+
+            clock.ticks = 1050;
+            Assert.assertFalse(writer.closeIdle(clock.ticks));
+
+            clock.ticks = 1100;
+            Assert.assertTrue(writer.closeIdle(clock.ticks));
+            // closed writer has committed its rows and released journal
+            Assert.assertEquals(1, factory.reader("idle").size());
+            factory.writer("idle").close();
+
+            write(parser, writer, "idle,host=b v=2i 2000\n");
+            writer.commitAll();
+            Assert.assertEquals(2, factory.reader("idle").size());
+        } finally {
+            writer.close();
+        }
+        assertRows("a\t1\t1970-01-01T00:00:01.000Z\n" +
+                "b\t2\t1970-01-01T00:00:02.000Z\n", "idle");
+    }
+
+    @Test
+    public void testMaxJournals() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setLineMaxJournals(1);
+        LineProtocolWriter writer = new LineProtocolWriter(factory, configuration, clock);
+        LineProtocolParser parser = new LineProtocolParser();
+        try {
+            write(parser, writer, "first,host=a v=1i 1000\n" +
+                    "second,host=b v=2i 2000\n" +
+                    "first,host=c v=3i 3000\n" +
+                    "second,host=d v=4i 4000\n");
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(2, writer.getRowCount());
+        Assert.assertEquals(2, writer.getErrorCount());
+        Assert.assertEquals(JournalConfiguration.DOES_NOT_EXIST, factory.getConfiguration().exists("second"));
+        assertRows("a\t1\t1970-01-01T00:00:01.000Z\n" +
+                "c\t3\t1970-01-01T00:00:03.000Z\n", "first");
+    }
+
+    private static void write(LineProtocolParser parser, LineProtocolWriter writer, String lines) {
+        long address = TestUtils.toMemory(lines);
+        try {
+            parser.parse(address, address + lines.length(), writer);
+        } finally {
+            Unsafe.free(address, lines.length());
+        }
+    }
+
+    private void assertRows(String expected, String query) throws Exception {
+        try (RecordSource rs = compileSource(query)) {
+            assertThat(expected, rs, false);
+        }
+    }
+
+    private static class TestClock implements Clock {
+        private volatile long ticks;
+
+        @Override
+        public long getTicks() {
+            return ticks;
+        }
+    }
+}
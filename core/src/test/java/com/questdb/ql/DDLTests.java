@@ -32,6 +32,7 @@ import com.questdb.model.configuration.ModelConfiguration;
 import com.questdb.ql.parser.QueryCompiler;
 import com.questdb.ql.parser.QueryError;
 import com.questdb.store.ColumnType;
+import com.questdb.store.IndexType;
 import com.questdb.test.tools.JournalTestFactory;
 import org.junit.After;
 import org.junit.Assert;
@@ -59,6 +60,21 @@ public class DDLTests {
         }
     }
 
+    @Test
+    public void testCreateBitmapIndexedSymbol() throws Exception {
+        compiler.execute(factory, "create journal x (a INT, t TIMESTAMP, x SYMBOL index bitmap, y SYMBOL index) partition by MONTH");
+        // validate journal
+        try (Journal r = factory.reader("x")) {
+            Assert.assertNotNull(r);
+            JournalMetadata m = r.getMetadata();
+            Assert.assertEquals(4, m.getColumnCount());
+            Assert.assertTrue(m.getColumnQuick(2).isIndexed());
+            Assert.assertEquals(IndexType.BITMAP, m.getColumnQuick(2).indexType);
+            Assert.assertTrue(m.getColumnQuick(3).isIndexed());
+            Assert.assertEquals(IndexType.KV, m.getColumnQuick(3).indexType);
+        }
+    }
+
     @Test
     public void testCreateAllFieldTypes() throws Exception {
         compiler.execute(factory, "create journal x (a INT, b BYTE, c SHORT, d LONG, e FLOAT, f DOUBLE, g DATE, h BINARY, t TIMESTAMP, x SYMBOL, z STRING) partition by MONTH");
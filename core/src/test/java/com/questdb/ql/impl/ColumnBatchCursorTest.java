@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnBatchCursorTest extends AbstractTest {
+
+    private static final int COUNT = 100000;
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("x").$int("i").$long("l").$double("d").$str("s").$ts().partitionBy(PartitionBy.DAY).recordCountHint(100))) {
+            Rnd rnd = new Rnd();
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            for (int i = 0; i < COUNT; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putInt(0, rnd.nextInt());
+                ew.putLong(1, rnd.nextLong());
+                ew.putDouble(2, rnd.nextDouble());
+                ew.putStr(3, rnd.nextChars(4));
+                ew.putDate(4, t);
+                ew.append();
+                t += 2000;
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testBatchAggregates() throws Exception {
+        try (RecordSource src = compile("select sum(d), sum(l), sum(i), count() from x")) {
+            sink.clear();
+            sink.put(src);
+            Assert.assertTrue(sink.toString().contains("\"batch\":true"));
+        }
+
+        // expressions are calculated record by record and must produce exactly the same values
+        sink.clear();
+        printer.print(compile("select sum(d * 1), sum(l + 0), sum(i + 0), count() from x"), factory, false);
+        String expected = sink.toString();
+
+        assertThat(expected, "select sum(d), sum(l), sum(i), count() from x");
+    }
+
+    @Test
+    public void testBatchesFollowPages() throws Exception {
+        try (Journal r = factory.reader("x")) {
+            ColumnBatchCursor cursor = new ColumnBatchCursor();
+            int i = cursor.addColumn(0);
+            int d = cursor.addColumn(2);
+
+            JournalPartitionSource ps = new JournalPartitionSource(r.getMetadata(), true);
+            cursor.of(ps.prepareCursor(factory));
+
+            Rnd rnd = new Rnd();
+            int batches = 0;
+            long rows = 0;
+            int partitionIndex = -1;
+            long expectedRowLo = 0;
+
+            while (cursor.next()) {
+                batches++;
+                if (cursor.getPartition().getPartitionIndex() != partitionIndex) {
+                    partitionIndex = cursor.getPartition().getPartitionIndex();
+                    expectedRowLo = 0;
+                }
+                Assert.assertEquals(expectedRowLo, cursor.getRowLo());
+                expectedRowLo += cursor.size();
+
+                for (int k = 0; k < cursor.size(); k++) {
+                    int iv = rnd.nextInt();
+                    rnd.nextLong();
+                    double dv = rnd.nextDouble();
+                    rnd.nextChars(4);
+                    Assert.assertEquals(iv, Unsafe.getUnsafe().getInt(cursor.getAddress(i) + k * 4));
+                    Assert.assertEquals(dv, Unsafe.getUnsafe().getDouble(cursor.getAddress(d) + k * 8), 0);
+                }
+                rows += cursor.size();
+            }
+
+            Assert.assertEquals(COUNT, rows);
+            // three daily partitions, batches must also break on column pages
+            Assert.assertTrue(batches > 3);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MaterializedViewTest extends AbstractTest {
+
+    private static final String QUERY = "select timestamp, sym, sum(v) s, count() c from src sample by 1h";
+    private final Rnd rnd = new Rnd();
+    private long timestamp = Dates.toMillis(2016, 5, 1, 0, 0);
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("src").$sym("sym").$double("v").$ts().partitionBy(PartitionBy.DAY))) {
+            try (MaterializedView view = new MaterializedView(factory, "v", QUERY)) {
+                w.setTxListener(view);
+                for (int i = 0; i < 30; i++) {
+                    append(w, rnd.nextPositiveInt() % 500);
+                    w.commit();
+                    assertView();
+                }
+                // empty commit does not change the view
+                w.commit();
+                assertView();
+            }
+        }
+    }
+
+    @Test
+    public void testQueryWithoutDate() throws Exception {
+        factory.writer(new JournalStructure("src").$sym("sym").$double("v").$ts()).close();
+        try {
+            new MaterializedView(factory, "v", "select sym, sum(v) from src sample by 1h");
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e.getMessage().contains("DATE"));
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("src").$sym("sym").$double("v").$ts().partitionBy(PartitionBy.DAY))) {
+            try (MaterializedView view = new MaterializedView(factory, "v", QUERY)) {
+                w.setTxListener(view);
+                for (int i = 0; i < 5; i++) {
+                    append(w, 300);
+                    w.commit();
+                }
+                assertView();
+            }
+
+            // rows appended while view is not listening are picked up on next refresh
+            w.setTxListener(null);
+            append(w, 1000);
+            w.commit();
+
+            try (MaterializedView view = new MaterializedView(factory, "v", QUERY)) {
+                view.refresh();
+                assertView();
+
+                w.setTxListener(view);
+                append(w, 200);
+                w.commit();
+                assertView();
+            }
+        }
+    }
+
+    private void append(JournalWriter w, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            JournalEntryWriter ew = w.entryWriter(timestamp);
+            ew.putSym(0, rnd.nextChars(1));
+            ew.putDouble(1, rnd.nextDouble());
+            ew.putDate(2, timestamp);
+            ew.append();
+            timestamp += rnd.nextPositiveInt() % 60000;
+        }
+    }
+
+    private void assertView() throws Exception {
+        sink.clear();
+        try (RecordSource rs = compile(QUERY)) {
+            printer.print(rs, factory, false);
+        }
+        String expected = sink.toString();
+
+        sink.clear();
+        try (RecordSource rs = compile("v")) {
+            printer.print(rs, factory, false);
+        }
+        TestUtils.assertEquals(expected, sink);
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl;
+
+import com.questdb.Journal;
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalMetadata;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.io.sink.StringSink;
+import com.questdb.misc.Dates;
+import com.questdb.ql.PartitionCursor;
+import com.questdb.ql.PartitionSlice;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.model.ColumnRange;
+import com.questdb.std.ObjList;
+import com.questdb.store.ColumnType;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatsPartitionSourceTest extends AbstractTest {
+
+    // three daily partitions, second partition is larger than one block
+    private static final int COUNT = 200000;
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("x").$int("i").$double("d").$ts().partitionBy(PartitionBy.DAY))) {
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            for (int i = 0; i < COUNT; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putInt(0, i);
+                ew.putDouble(1, i % 2 == 0 ? Double.NaN : i / 2.0);
+                ew.putDate(2, t);
+                ew.append();
+                t += 1000;
+                if (i % 50000 == 0) {
+                    w.commit();
+                }
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testDoubleRange() throws Exception {
+        assertSlices("0:0-65535\n", ColumnType.DOUBLE, 10, 100);
+        assertSlices("2:0-27199\n", ColumnType.DOUBLE, 90000, 100000);
+        assertSlices("", ColumnType.DOUBLE, 100000, 200000);
+    }
+
+    @Test
+    public void testIntRange() throws Exception {
+        assertSlices("1:65536-86399\n2:0-27199\n", ColumnType.INT, 160001, Long.MAX_VALUE);
+        assertSlices("0:65536-86399\n1:0-65535\n", ColumnType.INT, 70000, 90000);
+        assertSlices("", ColumnType.INT, Long.MIN_VALUE, -1);
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        try (RecordSource src = compile("x where i > 160000 and d > 0")) {
+            sink.clear();
+            sink.put(src);
+            Assert.assertTrue(sink.toString().contains("\"op\":\"StatsPartitionSource\""));
+
+            RecordCursor cursor = src.prepareCursor(factory);
+            int expected = 160001;
+            int count = 0;
+            while (cursor.hasNext()) {
+                Record r = cursor.next();
+                if (expected % 2 == 0) {
+                    expected++;
+                }
+                Assert.assertEquals(expected, r.getInt(0));
+                expected++;
+                count++;
+            }
+            // odd values only, even ones have null in double column
+            Assert.assertEquals(20000, count);
+        }
+
+        // same query without pruning
+        assertThat("39999\n", "select count() from x where i + 0 > 160000");
+        assertThat("39999\n", "select count() from x where i > 160000");
+        assertEmpty("x where i < 0");
+    }
+
+    private void assertSlices(String expected, int type, long lo, long hi) throws Exception {
+        ObjList<ColumnRange> ranges = new ObjList<>();
+        ColumnRange range = new ColumnRange();
+        range.clear();
+        range.columnType = type;
+        if (type == ColumnType.DOUBLE) {
+            range.columnIndex = 1;
+            range.doubleLo = lo;
+            range.doubleHi = hi;
+        } else {
+            range.columnIndex = 0;
+            range.lo = lo;
+            range.hi = hi;
+        }
+        ranges.add(range);
+
+        JournalMetadata metadata;
+        try (Journal r = factory.reader("x")) {
+            metadata = r.getMetadata();
+        }
+
+        StatsPartitionSource src = new StatsPartitionSource(new JournalPartitionSource(metadata, false), ranges);
+        StringSink s = new StringSink();
+        PartitionCursor cursor = src.prepareCursor(factory);
+        while (cursor.hasNext()) {
+            PartitionSlice slice = cursor.next();
+            s.put(slice.partition.getPartitionIndex()).put(':').put(slice.lo).put('-').put(slice.hi).put('\n');
+        }
+        TestUtils.assertEquals(expected, s);
+    }
+}
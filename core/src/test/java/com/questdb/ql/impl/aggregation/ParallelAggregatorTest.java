@@ -0,0 +1,136 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.aggregation;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.WorkerPool;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelAggregatorTest extends AbstractTest {
+
+    private final WorkerPool workerPool = new WorkerPool(3);
+    private final QueryCompiler parallelCompiler;
+
+    public ParallelAggregatorTest() {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbAggregateWorkers(4);
+        parallelCompiler = new QueryCompiler(configuration, workerPool);
+    }
+
+    @After
+    public void tearDown() {
+        workerPool.halt();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        workerPool.start();
+        try (JournalWriter w = factory.writer(new JournalStructure("x").$sym("s").$int("i").$long("l").$double("d").$ts().partitionBy(PartitionBy.DAY))) {
+            Rnd rnd = new Rnd();
+            String[] syms = {"AA", "BB", "CC", "DD", "EE"};
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            for (int i = 0; i < 400000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putSym(0, syms[rnd.nextPositiveInt() % syms.length]);
+                ew.putInt(1, rnd.nextInt() % 1000);
+                ew.putLong(2, rnd.nextLong() % 1000000);
+                // whole numbers keep double sums exact regardless of order of addition
+                ew.putDouble(3, rnd.nextInt() % 10000);
+                ew.putDate(4, t);
+                ew.append();
+                t += 500;
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        assertParallel("select sum(d), sum(l), sum(i), count() from x", true);
+    }
+
+    @Test
+    public void testFilterIsNotParallel() throws Exception {
+        assertParallel("select s, sum(d), count() from x where i > 0", false);
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertParallel("select s, sum(d), first(i), last(i), count() from x where timestamp = '2016-01-11'", true);
+    }
+
+    @Test
+    public void testKeyed() throws Exception {
+        assertParallel("select s, sum(d), sum(l), count(), min(i), max(i), first(d), last(d), avg(d), vwap(d, i), count(i) from x", true);
+    }
+
+    @Test
+    public void testResampled() throws Exception {
+        assertParallel("select s, sum(d), first(l), last(l), max(d), count() from x sample by 1h", true);
+    }
+
+    @Test
+    public void testSmallScanStaysOnQueryThread() throws Exception {
+        assertParallel("select s, sum(d), count() from x where timestamp = '2016-01-12T00'", true);
+    }
+
+    private void assertParallel(String query, boolean parallel) throws Exception {
+        sink.clear();
+        try (RecordSource src = compile(query)) {
+            printer.print(src, factory, false);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.length() > 0);
+
+        long memUsed = Unsafe.getMemUsed();
+        try (RecordSource src = parallelCompiler.compile(factory, query)) {
+            sink.clear();
+            sink.put(src);
+            Assert.assertEquals(parallel, sink.toString().contains("\"workers\":4"));
+
+            // second run re-uses chunk maps
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(src, factory, false);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+    }
+}
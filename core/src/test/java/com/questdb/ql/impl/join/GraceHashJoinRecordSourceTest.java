@@ -0,0 +1,192 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class GraceHashJoinRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        generate("ga", 3000, 500, new Rnd());
+        generate("gb", 5000, 600, new Rnd(77, 91));
+
+        // open journals once, so that memory checks do not count reader allocations
+        RecordSource rs = new QueryCompiler().compile(factory, "ga a join gb b on a.k = b.k");
+        try {
+            printer.print(rs, factory);
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        // hash table fits in budget, output is exactly that of hash join
+        String query = "ga a join gb b on a.k = b.k";
+        Assert.assertEquals(print(new QueryCompiler(), query), print(compiler(64 * 1024 * 1024), query));
+    }
+
+    @Test
+    public void testInner() throws Exception {
+        assertSameAsHashJoin(64 * 1024, "ga a join gb b on a.k = b.k");
+        assertSameAsHashJoin(64 * 1024, "ga a join gb b on a.k = b.k and a.s = b.s");
+    }
+
+    @Test
+    public void testJoinAfterSpill() throws Exception {
+        // spilled grace join output is not in master order, next join must not rely on timestamps being ordered
+        String query = "ga a join gb b on a.k = b.k join ga c on a.timestamp = c.timestamp";
+        RecordSource rs = compiler(64 * 1024).compile(factory, query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertFalse(sink.toString(), sink.toString().contains("MergeJoinRecordSource"));
+            Assert.assertEquals(-1, rs.getMetadata().getTimestampIndex());
+        } finally {
+            Misc.free(rs);
+        }
+        assertSameAsHashJoin(64 * 1024, query);
+    }
+
+    @Test
+    public void testNoRowId() throws Exception {
+        assertSameAsHashJoin(64 * 1024, "ga a join (select k, s, d from gb) b on a.k = b.k");
+    }
+
+    @Test
+    public void testOuter() throws Exception {
+        assertSameAsHashJoin(64 * 1024, "ga a outer join gb b on a.k = b.k");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        RecordSource rs = compiler(64 * 1024).compile(factory, "ga a join gb b on a.k = b.k");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString(), sink.toString().startsWith("{\"op\":\"GraceHashJoinRecordSource\",\"budget\":65536,"));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testRepartition() throws Exception {
+        // budget is too small even for single bucket
+        assertSameAsHashJoin(4 * 1024, "ga a outer join gb b on a.k = b.k");
+    }
+
+    private static QueryCompiler compiler(int budget) {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbHashBudget(budget);
+        return new QueryCompiler(configuration);
+    }
+
+    private static void generate(String name, int count, int keys, Rnd rnd) throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure(name).$int("k").$str("s").$double("d").$ts().$())) {
+            long t = 0;
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putInt(0, rnd.nextPositiveInt() % keys);
+                ew.putStr(1, i % 11 == 0 ? null : rnd.nextChars(1));
+                ew.putDouble(2, rnd.nextPositiveInt() % 100);
+                ew.putDate(3, t += 1000);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    private static String print(QueryCompiler compiler, String query) throws Exception {
+        RecordSource rs = compiler.compile(factory, query);
+        try {
+            sink.clear();
+            printer.print(rs, factory);
+            return sink.toString();
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    private static String sorted(String s) {
+        String[] lines = s.split("\n");
+        Arrays.sort(lines);
+        StringBuilder b = new StringBuilder();
+        for (String l : lines) {
+            b.append(l).append('\n');
+        }
+        return b.toString();
+    }
+
+    private void assertNoBuckets() {
+        File[] files = factory.getConfiguration().getJournalBase().listFiles();
+        Assert.assertNotNull(files);
+        for (File f : files) {
+            Assert.assertFalse(f.getName(), f.getName().endsWith(".bucket"));
+        }
+    }
+
+    private void assertSameAsHashJoin(int budget, String query) throws Exception {
+        String expected = print(new QueryCompiler(), query);
+        Assert.assertTrue(expected.length() > 0);
+
+        long memUsed = Unsafe.getMemUsed();
+        QueryCompiler compiler = compiler(budget);
+        RecordSource rs = compiler.compile(factory, query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().startsWith("{\"op\":\"GraceHashJoinRecordSource\""));
+
+            // run twice to make sure cursor is re-entrant
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(rs, factory);
+                TestUtils.assertEquals(sorted(expected), sorted(sink.toString()));
+                assertNoBuckets();
+            }
+        } finally {
+            Misc.free(rs);
+        }
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MergeJoinRecordSourceTest extends AbstractOptimiserTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        generate("ta", 2000, new Rnd());
+        generate("tb", 3000, new Rnd(77, 91));
+    }
+
+    @Test
+    public void testInner() throws Exception {
+        assertSameAsHashJoin("ta a join tb b on a.timestamp = b.timestamp",
+                "ta a join (select sym, v, timestamp from tb) b on a.timestamp = b.timestamp");
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        assertSameAsHashJoin("ta a join tb b on a.timestamp = b.timestamp and a.v = b.v",
+                "ta a join (select sym, v, timestamp from tb) b on a.timestamp = b.timestamp and a.v = b.v");
+    }
+
+    @Test
+    public void testOuter() throws Exception {
+        assertSameAsHashJoin("ta a outer join tb b on a.timestamp = b.timestamp and a.v = b.v",
+                "ta a outer join (select sym, v, timestamp from tb) b on a.timestamp = b.timestamp and a.v = b.v");
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        assertOp("MergeJoinRecordSource", "ta a join tb b on a.timestamp = b.timestamp and a.v = b.v");
+        // timestamp is not part of join key
+        assertOp("HashJoinRecordSource", "ta a join tb b on a.sym = b.sym");
+        // sub-query can be in any order
+        assertOp("HashJoinRecordSource", "ta a join (tb order by v) b on a.timestamp = b.timestamp");
+    }
+
+    private static void generate(String name, int count, Rnd rnd) throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure(name).$sym("sym").$int("v").$ts().$())) {
+            long t = 0;
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putSym(0, rnd.nextChars(1));
+                ew.putInt(1, rnd.nextPositiveInt() % 3);
+                ew.putDate(2, t);
+                ew.append();
+                // plenty of duplicate and missing timestamps on both sides
+                t += rnd.nextPositiveInt() % 3;
+            }
+            w.commit();
+        }
+    }
+
+    private void assertOp(String op, String query) throws Exception {
+        RecordSource rs = compileSource(query);
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString(), sink.toString().startsWith("{\"op\":\"" + op + "\""));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    private void assertSameAsHashJoin(String query, String hashJoinQuery) throws Exception {
+        RecordSource rs = compileSource(hashJoinQuery);
+        try {
+            sink.clear();
+            printer.print(rs, factory);
+        } finally {
+            Misc.free(rs);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.length() > 0);
+        assertThat(expected, query);
+    }
+}
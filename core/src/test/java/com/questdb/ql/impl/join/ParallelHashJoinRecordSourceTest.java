@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.join;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.mp.WorkerPool;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelHashJoinRecordSourceTest extends AbstractTest {
+
+    private final WorkerPool workerPool = new WorkerPool(3);
+    private final QueryCompiler parallelCompiler;
+
+    public ParallelHashJoinRecordSourceTest() {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbHashWorkers(4);
+        parallelCompiler = new QueryCompiler(configuration, workerPool);
+    }
+
+    @After
+    public void tearDown() {
+        workerPool.halt();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        workerPool.start();
+        // master takes more than one round of probing, rounds end in the middle of partition
+        generate("m", 200000, 300000, new Rnd());
+        generate("s", 150000, 300000, new Rnd(77, 91));
+    }
+
+    @Test
+    public void testFilterIsNotParallel() throws Exception {
+        assertParallel("m a join s b on a.k = b.k where a.d > 50", false);
+    }
+
+    @Test
+    public void testInner() throws Exception {
+        assertParallel("m a join s b on a.k = b.k", true);
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        assertParallel("m a join s b on a.k = b.k and a.str = b.str", true);
+    }
+
+    @Test
+    public void testOuter() throws Exception {
+        assertParallel("m a outer join s b on a.k = b.k", true);
+    }
+
+    private void assertParallel(String query, boolean parallel) throws Exception {
+        sink.clear();
+        try (RecordSource src = compile(query)) {
+            printer.print(src, factory, false);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.length() > 0);
+
+        long memUsed = Unsafe.getMemUsed();
+        try (RecordSource src = parallelCompiler.compile(factory, query)) {
+            sink.clear();
+            sink.put(src);
+            Assert.assertEquals(parallel, sink.toString().contains("\"op\":\"ParallelHashJoinRecordSource\",\"workers\":4"));
+
+            // second run re-uses chunk maps
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(src, factory, false);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+    }
+
+    private void generate(String name, int count, int keys, Rnd rnd) throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure(name).$int("k").$str("str").$double("d").$ts().partitionBy(PartitionBy.DAY))) {
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            for (int i = 0; i < count; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putInt(0, rnd.nextPositiveInt() % keys);
+                ew.putStr(1, i % 7 == 0 ? null : rnd.nextChars(1));
+                ew.putDouble(2, rnd.nextPositiveInt() % 100);
+                ew.putDate(3, t);
+                ew.append();
+                t += 1000;
+            }
+            w.commit();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.RecordSource;
+import com.questdb.test.tools.AbstractTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BitmapIndexSymLookupRowSourceTest extends AbstractTest {
+
+    private static final int COUNT = 300000;
+
+    @Before
+    public void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("kv").$sym("a").index().$sym("b").index().$int("i").$ts().partitionBy(PartitionBy.DAY).recordCountHint(COUNT / 3))) {
+            populate(w);
+        }
+
+        try (JournalWriter w = factory.writer(new JournalStructure("bm").$sym("a").bitmapIndex().$sym("b").bitmapIndex().$int("i").$ts().partitionBy(PartitionBy.DAY).recordCountHint(COUNT / 3))) {
+            populate(w);
+        }
+    }
+
+    @Test
+    public void testIntersection() throws Exception {
+        assertSameRows("where a in ('a1', 'a3') and b = 'b5'", "{\"op\":\"BitmapIndexSymLookupRowSource\",\"terms\":[{\"symbol\":\"b\",\"values\":[\"b5\"]},{\"symbol\":\"a\",\"values\":[\"a3\",\"a1\"]}]}");
+    }
+
+    @Test
+    public void testIntersectionWithInterval() throws Exception {
+        assertSameRows("where b in ('b1', 'b2', 'b3') and a = 'a0' and timestamp = '2016-01-11T10'", null);
+    }
+
+    @Test
+    public void testLatestBy() throws Exception {
+        assertSameRows("latest by b where b in ('b1', 'b7', 'b15')", null);
+        assertSameRows("latest by a", null);
+    }
+
+    @Test
+    public void testNullSymbol() throws Exception {
+        assertSameRows("where a = null and b in ('b2', 'b3')", null);
+    }
+
+    @Test
+    public void testUnion() throws Exception {
+        assertSameRows("where a in ('a0', 'a2', 'x')", "{\"op\":\"BitmapIndexSymLookupRowSource\",\"terms\":[{\"symbol\":\"a\",\"values\":[\"a0\",\"a2\",\"x\"]}]}");
+    }
+
+    @Test
+    public void testValueNotFound() throws Exception {
+        assertEmpty("bm where a = 'a1' and b = 'x'");
+    }
+
+    private static void populate(JournalWriter w) throws Exception {
+        Rnd rnd = new Rnd();
+        long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+        for (int i = 0; i < COUNT; i++) {
+            JournalEntryWriter ew = w.entryWriter(t);
+            int n = rnd.nextPositiveInt() % 5;
+            ew.putSym(0, n == 4 ? null : "a" + n);
+            ew.putSym(1, "b" + rnd.nextPositiveInt() % 20);
+            ew.putInt(2, i);
+            ew.putDate(3, t);
+            ew.append();
+            t += 800;
+            // several transactions per partition
+            if (i % 40000 == 0) {
+                w.commit();
+            }
+        }
+        w.commit();
+    }
+
+    private void assertSameRows(String where, String rowSource) throws Exception {
+        sink.clear();
+        try (RecordSource src = compile("kv " + where)) {
+            printer.print(src, factory, false);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.length() > 0);
+
+        if (rowSource != null) {
+            sink.clear();
+            try (RecordSource src = compile("bm " + where)) {
+                sink.put(src);
+            }
+            Assert.assertTrue(sink.toString(), sink.toString().contains(rowSource));
+        }
+        assertThat(expected, "bm " + where);
+    }
+}
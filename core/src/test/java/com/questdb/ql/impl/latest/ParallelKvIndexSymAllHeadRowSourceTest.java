@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.latest;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.PartitionBy;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Dates;
+import com.questdb.misc.Rnd;
+import com.questdb.mp.WorkerPool;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.test.tools.AbstractTest;
+import com.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelKvIndexSymAllHeadRowSourceTest extends AbstractTest {
+
+    private final WorkerPool workerPool = new WorkerPool(3);
+    private final QueryCompiler parallelCompiler;
+
+    public ParallelKvIndexSymAllHeadRowSourceTest() {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbLatestWorkers(4);
+        parallelCompiler = new QueryCompiler(configuration, workerPool);
+    }
+
+    @After
+    public void tearDown() {
+        workerPool.halt();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        workerPool.start();
+        Rnd rnd = new Rnd();
+        try (JournalWriter w = factory.writer(new JournalStructure("t").$sym("s").index().valueCountHint(20000).$double("d").$ts().partitionBy(PartitionBy.DAY))) {
+            long t = Dates.parseDateTime("2016-01-10T00:00:00.000Z");
+            for (int i = 0; i < 200000; i++) {
+                JournalEntryWriter ew = w.entryWriter(t);
+                ew.putSym(0, "s" + rnd.nextPositiveInt() % 20000);
+                ew.putDouble(1, rnd.nextPositiveInt() % 100);
+                ew.putDate(2, t);
+                ew.append();
+                t += 2000;
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testAll() throws Exception {
+        assertParallel("t latest by s", true);
+    }
+
+    @Test
+    public void testFilterIsNotParallel() throws Exception {
+        assertParallel("t latest by s where d > 50", false);
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertParallel("t latest by s where timestamp = '2016-01-11T12:00:00.000Z;1d'", true);
+    }
+
+    private void assertParallel(String query, boolean parallel) throws Exception {
+        sink.clear();
+        try (RecordSource src = compile(query)) {
+            printer.print(src, factory, false);
+        }
+        String expected = sink.toString();
+        Assert.assertTrue(expected.length() > 0);
+
+        try (RecordSource src = parallelCompiler.compile(factory, query)) {
+            sink.clear();
+            sink.put(src);
+            Assert.assertEquals(parallel, sink.toString().contains("\"op\":\"ParallelKvIndexSymAllHeadRowSource\",\"column\":\"s\",\"workers\":4"));
+
+            // worker readers are opened again for second run
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(src, factory, false);
+                TestUtils.assertEquals(expected, sink);
+            }
+        }
+    }
+}
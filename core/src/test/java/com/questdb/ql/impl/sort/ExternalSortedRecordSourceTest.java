@@ -0,0 +1,223 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.net.http.ServerConfiguration;
+import com.questdb.ql.CancellationHandler;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.ql.parser.QueryCompiler;
+import com.questdb.std.IntList;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ExternalSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    private final ComparatorCompiler cc = new ComparatorCompiler();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("ext").$int("i").$long("l").$sym("sym").$str("str").$double("d").$ts().$())) {
+            Rnd rnd = new Rnd();
+            long t = 0;
+            for (int i = 0; i < 20000; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                ew.putInt(0, rnd.nextPositiveInt() % 1000 - 500);
+                ew.putLong(1, i % 17 == 0 ? Long.MIN_VALUE : rnd.nextLong() % 100);
+                ew.putSym(2, rnd.nextChars(1));
+                ew.putStr(3, i % 13 == 0 ? null : rnd.nextChars(rnd.nextPositiveInt() % 20));
+                ew.putDouble(4, rnd.nextPositiveInt() % 100);
+                ew.putDate(5, t += rnd.nextPositiveInt() % 3);
+                ew.append();
+            }
+            w.commit();
+        }
+
+        // open journal once, so that memory checks do not count reader allocations
+        RecordSource rs = new QueryCompiler().compile(factory, "ext");
+        try {
+            printer.print(rs, factory);
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testCompiler() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setDbSortRunSize(64 * 1024);
+        QueryCompiler compiler = new QueryCompiler(configuration);
+
+        RecordSource rs = compiler.compile(factory, "ext order by sym, timestamp desc");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            TestUtils.assertEquals("{\"op\":\"ExternalSortedRecordSource\",\"runSize\":65536,\"radix\":false,\"src\":{\"op\":\"JournalRecordSource\",\"psrc\":{\"op\":\"JournalPartitionSource\",\"journal\":\"ext\"},\"rsrc\":{\"op\":\"AllRowSource\"}}}", sink);
+        } finally {
+            Misc.free(rs);
+        }
+
+        // constant limit still goes to top-N
+        rs = compiler.compile(factory, "ext order by sym limit 10");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("TopNSortedRecordSource"));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        assertSort(64 * 1024 * 1024, 1);
+        assertSort(64 * 1024 * 1024, 4, -6);
+    }
+
+    @Test
+    public void testMultiPassMerge() throws Exception {
+        // run size small enough to produce more runs than single merge can take
+        assertSort(8 * 1024, 4, -6);
+        assertSort(8 * 1024, -2);
+    }
+
+    @Test
+    public void testRadix() throws Exception {
+        assertSort(256 * 1024, 1);
+        assertSort(256 * 1024, -1);
+        assertSort(256 * 1024, 2);
+        assertSort(256 * 1024, -6);
+    }
+
+    @Test
+    public void testRunCountLimit() throws Exception {
+        // tiny pages make well over thousand runs, merge must not let them pile up
+        assertPagedSort(1024, 1024, 4, -6);
+
+        IntList indices = new IntList();
+        indices.add(1);
+        RecordSource rs = compileSource("ext");
+        rs = new ExternalSortedRecordSource(rs, cc.compile(rs.getMetadata(), indices), indices, 1024, 1024);
+        try {
+            RunCounter counter = new RunCounter(factory.getConfiguration().getJournalBase());
+            RecordCursor cursor = rs.prepareCursor(factory, counter);
+            int count = 0;
+            while (cursor.hasNext()) {
+                cursor.next();
+                count++;
+            }
+            Assert.assertEquals(20000, count);
+            Assert.assertTrue(counter.max > 1);
+            Assert.assertTrue(counter.max <= 64);
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testSpilledMerge() throws Exception {
+        assertSort(256 * 1024, 3, 4);
+        assertSort(256 * 1024, -5, 1, 3);
+    }
+
+    private void assertPagedSort(int pageSize, long runSize, int... keys) throws Exception {
+        IntList indices = new IntList();
+        for (int k : keys) {
+            indices.add(k);
+        }
+
+        long memUsed = Unsafe.getMemUsed();
+        RecordSource expected = compileSource("ext");
+        RecordSource actual = compileSource("ext");
+        expected = new RBTreeSortedRecordSource(expected, cc.compile(expected.getMetadata(), indices), 1024 * 1024, 4 * 1024 * 1024);
+        actual = new ExternalSortedRecordSource(actual, cc.compile(actual.getMetadata(), indices), indices, pageSize, runSize);
+        try {
+            sink.clear();
+            printer.print(expected, factory);
+            String s = sink.toString();
+
+            // twice to make sure cursor can be prepared again
+            for (int i = 0; i < 2; i++) {
+                sink.clear();
+                printer.print(actual, factory);
+                TestUtils.assertEquals(s, sink);
+            }
+            TestUtils.assertStrings(actual, factory);
+        } finally {
+            Misc.free(expected);
+            Misc.free(actual);
+        }
+        Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+
+        // run files are removed
+        File[] runs = factory.getConfiguration().getJournalBase().listFiles();
+        Assert.assertNotNull(runs);
+        for (File f : runs) {
+            Assert.assertFalse(f.getName().endsWith(".run"));
+        }
+    }
+
+    private void assertSort(long runSize, int... keys) throws Exception {
+        assertPagedSort(64 * 1024, runSize, keys);
+    }
+
+    private static class RunCounter implements CancellationHandler {
+        private final File dir;
+        private int calls;
+        private int max;
+
+        private RunCounter(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void check() {
+            if ((++calls & 63) != 0) {
+                return;
+            }
+
+            File[] files = dir.listFiles();
+            Assert.assertNotNull(files);
+            int n = 0;
+            for (File f : files) {
+                if (f.getName().endsWith(".run")) {
+                    n++;
+                }
+            }
+            max = Math.max(max, n);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.sort;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Misc;
+import com.questdb.misc.Rnd;
+import com.questdb.misc.Unsafe;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.impl.NoRowIdRecordSource;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.std.IntList;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TopNSortedRecordSourceTest extends AbstractOptimiserTest {
+
+    private final ComparatorCompiler cc = new ComparatorCompiler();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("tab").$int("k").$sym("s").$double("d").$())) {
+            Rnd rnd = new Rnd();
+            for (int i = 0; i < 5000; i++) {
+                JournalEntryWriter ew = w.entryWriter();
+                // narrow key range to have plenty of ties
+                ew.putInt(0, rnd.nextPositiveInt() % 50);
+                ew.putSym(1, rnd.nextChars(2));
+                ew.putDouble(2, (rnd.nextPositiveInt() % 1000) / 8.0);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testLimitLargerThanSource() throws Exception {
+        assertSameAsFullSort("tab order by d limit 10000", "(tab order by d) limit 10000");
+    }
+
+    @Test
+    public void testLimitRange() throws Exception {
+        assertSameAsFullSort("tab order by k desc, d limit 100,120", "(tab order by k desc, d) limit 100,120");
+    }
+
+    @Test
+    public void testNoRowId() throws Exception {
+        IntList indices = new IntList();
+        indices.add(1);
+        for (int limit = 1; limit < 200; limit += 37) {
+            long memUsed = Unsafe.getMemUsed();
+            RecordSource tab = compileSource("tab");
+            RecordSource expected = new RBTreeSortedRecordSource(tab, cc.compile(tab.getMetadata(), indices), 1024 * 1024, 4 * 1024 * 1024);
+            try {
+                sink.clear();
+                printer.print(expected, factory);
+                String[] lines = sink.toString().split("\n");
+                StringBuilder b = new StringBuilder();
+                for (int i = 0; i < limit; i++) {
+                    b.append(lines[i]).append('\n');
+                }
+
+                RecordSource rs = new NoRowIdRecordSource().of(compileSource("tab"));
+                TopNSortedRecordSource topN = new TopNSortedRecordSource(rs, cc.compile(rs.getMetadata(), indices), limit, 4 * 1024 * 1024);
+                try {
+                    sink.clear();
+                    topN.toSink(sink);
+                    Assert.assertTrue(sink.toString().contains("\"byRowId\":false"));
+                    sink.clear();
+                    printer.print(topN, factory);
+                    TestUtils.assertEquals(b, sink);
+                    // second pass must reuse retained memory correctly
+                    sink.clear();
+                    printer.print(topN, factory);
+                    TestUtils.assertEquals(b, sink);
+                } finally {
+                    Misc.free(topN);
+                }
+            } finally {
+                Misc.free(expected);
+            }
+            Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+        }
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        RecordSource rs = compileSource("tab order by k limit 10");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertTrue(sink.toString().contains("TopNSortedRecordSource"));
+        } finally {
+            Misc.free(rs);
+        }
+
+        rs = compileSource("(tab order by k) limit 10");
+        try {
+            sink.clear();
+            rs.toSink(sink);
+            Assert.assertFalse(sink.toString().contains("TopNSortedRecordSource"));
+        } finally {
+            Misc.free(rs);
+        }
+    }
+
+    @Test
+    public void testTies() throws Exception {
+        assertSameAsFullSort("tab order by k limit 75", "(tab order by k) limit 75");
+    }
+
+    private void assertSameAsFullSort(String query, String fullSortQuery) throws Exception {
+        RecordSource rs = compileSource(fullSortQuery);
+        try {
+            sink.clear();
+            printer.print(rs, factory);
+        } finally {
+            Misc.free(rs);
+        }
+        assertThat(sink.toString(), query);
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.ql.impl.virtual;
+
+import com.questdb.JournalEntryWriter;
+import com.questdb.JournalWriter;
+import com.questdb.factory.configuration.JournalStructure;
+import com.questdb.misc.Numbers;
+import com.questdb.misc.Rnd;
+import com.questdb.ql.Record;
+import com.questdb.ql.RecordCursor;
+import com.questdb.ql.RecordSource;
+import com.questdb.ql.ops.AbstractBinaryOperator;
+import com.questdb.ql.ops.AndOperator;
+import com.questdb.ql.ops.Function;
+import com.questdb.ql.ops.NotOperator;
+import com.questdb.ql.ops.OrOperator;
+import com.questdb.ql.ops.VirtualColumn;
+import com.questdb.ql.ops.col.DateRecordSourceColumn;
+import com.questdb.ql.ops.col.DoubleRecordSourceColumn;
+import com.questdb.ql.ops.col.IntRecordSourceColumn;
+import com.questdb.ql.ops.col.LongRecordSourceColumn;
+import com.questdb.ql.ops.col.StrRecordSourceColumn;
+import com.questdb.ql.ops.constant.BooleanConstant;
+import com.questdb.ql.ops.constant.DoubleConstant;
+import com.questdb.ql.ops.constant.IntConstant;
+import com.questdb.ql.ops.constant.LongConstant;
+import com.questdb.ql.ops.constant.StrConstant;
+import com.questdb.ql.ops.div.DivDoubleOperator;
+import com.questdb.ql.ops.eq.DoubleEqualsOperator;
+import com.questdb.ql.ops.eq.IntEqualsOperator;
+import com.questdb.ql.ops.eq.LongEqualsOperator;
+import com.questdb.ql.ops.eq.StrEqualsOperator;
+import com.questdb.ql.ops.gt.DoubleGreaterThanOperator;
+import com.questdb.ql.ops.gt.IntGreaterThanOperator;
+import com.questdb.ql.ops.gte.LongGreaterOrEqualOperator;
+import com.questdb.ql.ops.lt.IntLessThanOperator;
+import com.questdb.ql.ops.lte.DoubleLessOrEqualOperator;
+import com.questdb.ql.ops.minus.MinusLongOperator;
+import com.questdb.ql.ops.mult.MultDoubleOperator;
+import com.questdb.ql.ops.mult.MultIntOperator;
+import com.questdb.ql.ops.neq.DoubleNotEqualsOperator;
+import com.questdb.ql.ops.neq.IntNotEqualsOperator;
+import com.questdb.ql.ops.neq.LongNotEqualsOperator;
+import com.questdb.ql.ops.plus.AddDoubleOperator;
+import com.questdb.ql.ops.plus.AddIntOperator;
+import com.questdb.ql.parser.AbstractOptimiserTest;
+import com.questdb.std.ObjectFactory;
+import com.questdb.store.ColumnType;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class VirtualColumnCompilerTest extends AbstractOptimiserTest {
+
+    private static final int I = 0;
+    private static final int L = 1;
+    private static final int D = 2;
+    private static final int S = 3;
+    private static final int TS = 4;
+    private final VirtualColumnCompiler compiler = new VirtualColumnCompiler();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try (JournalWriter w = factory.writer(new JournalStructure("compiled").$int("i").$long("l").$double("d").$str("s").$date("ts").$())) {
+            Rnd rnd = new Rnd();
+            for (int k = 0; k < 10000; k++) {
+                JournalEntryWriter ew = w.entryWriter();
+                // small value ranges and nulls make for plenty of matches, misses and NaN comparisons
+                ew.putInt(I, rnd.nextPositiveInt() % 10 == 0 ? Numbers.INT_NaN : rnd.nextInt() % 50);
+                ew.putLong(L, rnd.nextPositiveInt() % 10 == 0 ? Numbers.LONG_NaN : rnd.nextLong() % 500000L);
+                ew.putDouble(D, rnd.nextPositiveInt() % 10 == 0 ? Double.NaN : (rnd.nextPositiveInt() % 100) / 4.0);
+                ew.putStr(S, rnd.nextBoolean() ? "abc" : "xyz");
+                ew.putDate(TS, rnd.nextPositiveLong() % 1000L);
+                ew.append();
+            }
+            w.commit();
+        }
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        // (i + 5) * i
+        assertCompiled(bin(MultIntOperator.FACTORY, bin(AddIntOperator.FACTORY, new IntRecordSourceColumn(I), new IntConstant(5)), new IntRecordSourceColumn(I)));
+        // l - 300000 - ts
+        assertCompiled(bin(MinusLongOperator.FACTORY, bin(MinusLongOperator.FACTORY, new LongRecordSourceColumn(L), new LongConstant(300000L)), new DateRecordSourceColumn(TS)));
+        // (d + i) * 2.5 / d
+        assertCompiled(bin(DivDoubleOperator.FACTORY, bin(MultDoubleOperator.FACTORY, bin(AddDoubleOperator.FACTORY, new DoubleRecordSourceColumn(D), new IntRecordSourceColumn(I)), new DoubleConstant(2.5)), new DoubleRecordSourceColumn(D)));
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        assertCompiled(bin(IntEqualsOperator.FACTORY, new IntRecordSourceColumn(I), new IntConstant(7)));
+        assertCompiled(bin(IntEqualsOperator.FACTORY, new IntRecordSourceColumn(I), new IntRecordSourceColumn(I)));
+        assertCompiled(bin(IntNotEqualsOperator.FACTORY, new IntRecordSourceColumn(I), new IntConstant(Numbers.INT_NaN)));
+        assertCompiled(bin(IntGreaterThanOperator.FACTORY, new IntConstant(100000), new IntRecordSourceColumn(I)));
+        assertCompiled(bin(IntLessThanOperator.FACTORY, new IntRecordSourceColumn(I), new IntConstant(-20)));
+        assertCompiled(bin(LongEqualsOperator.FACTORY, new LongRecordSourceColumn(L), new LongRecordSourceColumn(L)));
+        assertCompiled(bin(LongGreaterOrEqualOperator.FACTORY, new LongRecordSourceColumn(L), new IntConstant(0)));
+        assertCompiled(bin(LongGreaterOrEqualOperator.FACTORY, new IntRecordSourceColumn(I), new LongConstant(10)));
+        assertCompiled(bin(LongNotEqualsOperator.FACTORY, new LongRecordSourceColumn(L), new LongConstant(Numbers.LONG_NaN)));
+        assertCompiled(bin(DoubleEqualsOperator.FACTORY, new DoubleRecordSourceColumn(D), new DoubleRecordSourceColumn(D)));
+        assertCompiled(bin(DoubleNotEqualsOperator.FACTORY, new DoubleRecordSourceColumn(D), new DoubleRecordSourceColumn(D)));
+        assertCompiled(bin(DoubleGreaterThanOperator.FACTORY, new DoubleRecordSourceColumn(D), new IntConstant(12)));
+        assertCompiled(bin(DoubleLessOrEqualOperator.FACTORY, new DoubleRecordSourceColumn(D), new LongRecordSourceColumn(L)));
+    }
+
+    @Test
+    public void testLogic() throws Exception {
+        VirtualColumn a = bin(IntGreaterThanOperator.FACTORY, new IntRecordSourceColumn(I), new IntConstant(10));
+        VirtualColumn b = bin(DoubleLessOrEqualOperator.FACTORY, new DoubleRecordSourceColumn(D), new DoubleConstant(12.25));
+        // string comparison is not compiled and has to be delegated to
+        VirtualColumn c = bin(StrEqualsOperator.FACTORY, new StrRecordSourceColumn(S), new StrConstant("abc"));
+        VirtualColumn d = bin(LongGreaterOrEqualOperator.FACTORY, new LongRecordSourceColumn(L), new LongConstant(-100000));
+
+        // a and b or not(c) and d
+        assertCompiled(bin(OrOperator.FACTORY, bin(AndOperator.FACTORY, a, b), bin(AndOperator.FACTORY, not(c), d)));
+        // not(a or b) or c and not(d)
+        assertCompiled(bin(OrOperator.FACTORY, not(bin(OrOperator.FACTORY, a, b)), bin(AndOperator.FACTORY, c, not(d))));
+        // (a or b or c) and (not(d) or false)
+        assertCompiled(bin(AndOperator.FACTORY, bin(OrOperator.FACTORY, bin(OrOperator.FACTORY, a, b), c), bin(OrOperator.FACTORY, not(d), new BooleanConstant(false))));
+    }
+
+    @Test
+    public void testNotCompiled() throws Exception {
+        VirtualColumn c = bin(StrEqualsOperator.FACTORY, new StrRecordSourceColumn(S), new StrConstant("abc"));
+        Assert.assertSame(c, compiler.compile(c));
+
+        VirtualColumn i = new IntRecordSourceColumn(I);
+        Assert.assertSame(i, compiler.compile(i));
+
+        VirtualColumn k = bin(AddIntOperator.FACTORY, new IntConstant(1), new IntConstant(2));
+        Assert.assertSame(k, compiler.compile(k));
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        assertThat("7\t369925\t8.750000000000\txyz\t15\n" +
+                        "7\t327324\t8.000000000000\txyz\t15\n" +
+                        "7\t210993\t2.500000000000\txyz\t15\n",
+                "select i, l, d, s, i * 2 + 1 from compiled where i = 7 and l > 0 and d < 10 and s = 'xyz'");
+    }
+
+    private static VirtualColumn bin(ObjectFactory<Function> factory, VirtualColumn lhs, VirtualColumn rhs) {
+        AbstractBinaryOperator op = (AbstractBinaryOperator) factory.newInstance();
+        op.setLhs(lhs);
+        op.setRhs(rhs);
+        return op;
+    }
+
+    private static VirtualColumn not(VirtualColumn value) throws Exception {
+        Function f = NotOperator.FACTORY.newInstance();
+        f.setArg(0, value);
+        return f;
+    }
+
+    private void assertCompiled(VirtualColumn expected) throws Exception {
+        VirtualColumn actual = compiler.compile(expected);
+        Assert.assertTrue(actual instanceof CompiledVirtualColumn);
+        Assert.assertEquals(expected.getType(), actual.getType());
+
+        try (RecordSource rs = compileSource("compiled")) {
+            RecordCursor cursor = rs.prepareCursor(factory);
+            actual.prepare(cursor.getStorageFacade());
+            while (cursor.hasNext()) {
+                Record r = cursor.next();
+                switch (expected.getType()) {
+                    case ColumnType.BOOLEAN:
+                        Assert.assertEquals(expected.getBool(r), actual.getBool(r));
+                        break;
+                    case ColumnType.INT:
+                        Assert.assertEquals(expected.getInt(r), actual.getInt(r));
+                        // other getters defer to expression tree
+                        Assert.assertEquals(expected.getDouble(r), actual.getDouble(r), 0);
+                        break;
+                    case ColumnType.LONG:
+                        Assert.assertEquals(expected.getLong(r), actual.getLong(r));
+                        break;
+                    default:
+                        Assert.assertEquals(expected.getDouble(r), actual.getDouble(r), 0);
+                        break;
+                }
+            }
+        }
+    }
+}
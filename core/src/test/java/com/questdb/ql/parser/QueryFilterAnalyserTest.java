@@ -29,6 +29,7 @@ import com.questdb.misc.Chars;
 import com.questdb.misc.Dates;
 import com.questdb.misc.Interval;
 import com.questdb.model.Quote;
+import com.questdb.ql.model.ColumnRange;
 import com.questdb.ql.model.ExprNode;
 import com.questdb.ql.model.IntrinsicModel;
 import com.questdb.ql.model.IntrinsicValue;
@@ -89,6 +90,30 @@ public class QueryFilterAnalyserTest extends AbstractTest {
         }
     }
 
+    @Test
+    public void testColumnRanges() throws Exception {
+        IntrinsicModel m = modelOf("bid > 100 and 200 > bidSize and askSize = 5 and ask < bid and askSize > 1.5 and timestamp > '2014-01-01T00:00:00.000Z'");
+        // ranges do not take predicates out of filter
+        assertFilter(m, "1.5askSize>bidask<5askSize=bidSize200>100bid>andandandand");
+        Assert.assertEquals(3, m.columnRanges.size());
+
+        // askSize > 1.5 is not an int comparison and does not yield range
+        ColumnRange r = m.columnRanges.getQuick(0);
+        Assert.assertEquals(w.getMetadata().getColumnIndex("askSize"), r.columnIndex);
+        Assert.assertEquals(5, r.lo);
+        Assert.assertEquals(5, r.hi);
+
+        r = m.columnRanges.getQuick(1);
+        Assert.assertEquals(w.getMetadata().getColumnIndex("bidSize"), r.columnIndex);
+        Assert.assertEquals(Long.MIN_VALUE, r.lo);
+        Assert.assertEquals(199, r.hi);
+
+        r = m.columnRanges.getQuick(2);
+        Assert.assertEquals(w.getMetadata().getColumnIndex("bid"), r.columnIndex);
+        Assert.assertEquals(100, r.doubleLo, 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, r.doubleHi, 0);
+    }
+
     @Test
     public void testComplexInterval1() throws Exception {
         IntrinsicModel m = modelOf("timestamp = '2015-02-23T10:00;2d'");
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2016 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.store;
+
+import com.questdb.JournalMode;
+import com.questdb.misc.Numbers;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class ColumnStatsTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDoubleStats() throws Exception {
+        File data = new File(temporaryFolder.getRoot(), "d.d");
+        File st = new File(temporaryFolder.getRoot(), "d" + ColumnStats.FILE_SUFFIX);
+
+        try (FixedColumn c = new FixedColumn(new MemoryFile(data, 20, JournalMode.APPEND), 8)) {
+            try (ColumnStats stats = new ColumnStats(st, ColumnType.DOUBLE, JournalMode.APPEND)) {
+                for (int i = 0; i < ColumnStats.BLOCK_ROWS; i++) {
+                    c.putDouble(i % 3 == 0 ? Double.NaN : i / 2.0);
+                    c.commit();
+                }
+                // second block is all nulls
+                for (int i = 0; i < 10; i++) {
+                    c.putDouble(Double.NaN);
+                    c.commit();
+                }
+                stats.update(c, c.size());
+
+                Assert.assertEquals(0.5, stats.getDoubleMin(0), 0);
+                // last row of block is null
+                Assert.assertEquals((ColumnStats.BLOCK_ROWS - 2) / 2.0, stats.getDoubleMax(0), 0);
+                Assert.assertTrue(stats.excludes(-10, 0.4));
+                Assert.assertFalse(stats.excludes(-10, 0.5));
+                Assert.assertTrue(stats.excludes(1, -10, 10));
+                Assert.assertEquals(10, stats.getNullCount(1));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdateAndTruncate() throws Exception {
+        File data = new File(temporaryFolder.getRoot(), "i.d");
+        File st = new File(temporaryFolder.getRoot(), "i" + ColumnStats.FILE_SUFFIX);
+        long count = ColumnStats.BLOCK_ROWS * 2 + 100;
+
+        try (FixedColumn c = new FixedColumn(new MemoryFile(data, 20, JournalMode.APPEND), 4)) {
+            try (ColumnStats stats = new ColumnStats(st, ColumnType.INT, JournalMode.APPEND)) {
+                // commit in uneven batches to make updates start mid-block
+                for (long i = 0; i < count; i++) {
+                    c.putInt(i % 10 == 0 ? Numbers.INT_NaN : (int) i);
+                    c.commit();
+                    if (i % 30001 == 0) {
+                        stats.update(c, c.size());
+                    }
+                }
+                stats.update(c, c.size());
+                Assert.assertEquals(count, stats.getRowCount());
+
+                for (int b = 0; b < 3; b++) {
+                    long lo = b * ColumnStats.BLOCK_ROWS;
+                    long hi = Math.min(lo + ColumnStats.BLOCK_ROWS, count) - 1;
+                    Assert.assertEquals(lo % 10 == 0 ? lo + 1 : lo, stats.getLongMin(b));
+                    Assert.assertEquals(hi % 10 == 0 ? hi - 1 : hi, stats.getLongMax(b));
+                    Assert.assertEquals((hi / 10) - (lo == 0 ? -1 : (lo - 1) / 10), stats.getNullCount(b));
+                }
+                Assert.assertEquals(count / 10 + 1, stats.getNullCount());
+
+                Assert.assertTrue(stats.excludes(count, Long.MAX_VALUE));
+                Assert.assertTrue(stats.excludes(0, 100 * 1000, 200 * 1000));
+                Assert.assertFalse(stats.excludes(2, 100 * 1000, 200 * 1000));
+
+                // statistics must narrow down after truncate
+                c.truncate(1000);
+                c.commit();
+                stats.update(c, c.size());
+                Assert.assertEquals(1000, stats.getRowCount());
+                Assert.assertEquals(999, stats.getLongMax(0));
+                Assert.assertTrue(stats.excludes(1000, Long.MAX_VALUE));
+            }
+        }
+
+        // reader sees what writer has committed
+        try (ColumnStats stats = new ColumnStats(st, ColumnType.INT, JournalMode.READ)) {
+            Assert.assertEquals(1000, stats.getRowCount());
+            Assert.assertEquals(1, stats.getLongMin(0));
+            Assert.assertEquals(100, stats.getNullCount(0));
+        }
+    }
+}
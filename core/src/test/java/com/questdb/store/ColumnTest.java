@@ -80,6 +80,52 @@ public class ColumnTest {
         }
     }
 
+    @Test
+    public void testContiguousFixedWidthColumn() throws JournalException {
+        // bit hint 12 = 4k initial mapping, column is re-mapped several times as it grows
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.APPEND, true), 8)) {
+            for (int i = 0; i < 100000; i++) {
+                col.putLong(i);
+                col.commit();
+            }
+            Assert.assertTrue(col.mappedFile.isContiguous());
+            Assert.assertEquals(1L, col.getLong(1));
+            Assert.assertEquals(99999L, col.getLong(99999));
+        }
+
+        try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 12, JournalMode.READ, true), 8)) {
+            Assert.assertEquals(100000, col.size());
+            for (int i = 0; i < 100000; i++) {
+                Assert.assertEquals(i, col.getLong(i));
+            }
+        }
+    }
+
+    @Test
+    public void testContiguousVarcharColumn() throws JournalException {
+        final int recordCount = 10000;
+
+        MemoryFile df1 = new MemoryFile(dataFile, 12, JournalMode.APPEND, true);
+        MemoryFile idxFile1 = new MemoryFile(indexFile, 12, JournalMode.APPEND, true);
+
+        try (VariableColumn varchar1 = new VariableColumn(df1, idxFile1)) {
+            for (int i = 0; i < recordCount; i++) {
+                varchar1.putStr("s" + i);
+                varchar1.commit();
+            }
+        }
+
+        MemoryFile df2 = new MemoryFile(dataFile, 12, JournalMode.READ, true);
+        MemoryFile idxFile2 = new MemoryFile(indexFile, 12, JournalMode.READ, true);
+
+        try (VariableColumn varchar2 = new VariableColumn(df2, idxFile2)) {
+            Assert.assertEquals(recordCount, varchar2.size());
+            for (int i = 0; i < varchar2.size(); i++) {
+                Assert.assertEquals("s" + i, varchar2.getStr(i));
+            }
+        }
+    }
+
     @Test
     public void testFixedWidthFloat() throws Exception {
         try (FixedColumn col = new FixedColumn(new MemoryFile(dataFile, 22, JournalMode.APPEND), 4)) {
@@ -47,8 +47,8 @@ import com.questdb.ql.model.ExprNode;
 import com.questdb.query.ResultSet;
 import com.questdb.std.IntList;
 import com.questdb.std.LongList;
+import com.questdb.store.ColumnIndex;
 import com.questdb.store.ColumnType;
-import com.questdb.store.KVIndex;
 import com.questdb.store.SymbolTable;
 import org.junit.Assert;
 
@@ -149,8 +149,8 @@ public final class TestUtils {
 
             for (int k = 0; k < expected.getMetadata().getColumnCount(); k++) {
                 if (expected.getMetadata().getColumn(k).indexed) {
-                    KVIndex ei = ep.getIndexForColumn(k);
-                    KVIndex ai = ap.getIndexForColumn(k);
+                    ColumnIndex ei = ep.getIndexForColumn(k);
+                    ColumnIndex ai = ap.getIndexForColumn(k);
 
                     int count = colKeyCount.getQuick(k);
 